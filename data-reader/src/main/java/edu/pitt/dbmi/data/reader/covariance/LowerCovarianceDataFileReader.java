@@ -41,222 +41,43 @@ public class LowerCovarianceDataFileReader extends DataFileReader implements Cov
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LowerCovarianceDataFileReader.class);
 
+    /**
+     * Default number of bytes of covariances parsed by each parallel task.
+     */
+    public static final long DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private long chunkSize;
+
     public LowerCovarianceDataFileReader(Path dataFile, Delimiter delimiter) {
         super(dataFile, delimiter);
+
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+    }
+
+    /**
+     * Set the number of bytes of covariances parsed by each parallel task.
+     * Chunks are extended to the end of a line.
+     *
+     * @param chunkSize number of bytes, at least 1
+     */
+    public void setChunkSize(long chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1.");
+        }
+
+        this.chunkSize = chunkSize;
     }
 
     @Override
     public CovarianceData readInData() throws IOException {
         int numOfCases = getNumberOfCases();
         List<String> variables = getVariables();
-        double[][] data = getCovarianceData(variables.size());
+        double[][] data = new ParallelLowerCovarianceDataParser(dataFile, delimiter, quoteCharacter, commentMarker, chunkSize)
+                .readInCovarianceData(variables.size());
 
         return new LowerCovarianceData(numOfCases, variables, data);
     }
 
-    private double[][] getCovarianceData(int matrixSize) throws IOException {
-        double[][] data = new double[matrixSize][matrixSize];
-
-        try (InputStream in = Files.newInputStream(dataFile, StandardOpenOption.READ)) {
-            boolean skip = false;
-            boolean hasSeenNonblankChar = false;
-            boolean hasQuoteChar = false;
-
-            byte delimChar = delimiter.getByteValue();
-
-            // comment marker check
-            byte[] comment = commentMarker.getBytes();
-            int cmntIndex = 0;
-            boolean checkForComment = comment.length > 0;
-
-            int lineDataNum = 1;
-            int lineNum = 1;
-            int colNum = 0;
-            int col = 0;
-            int row = 0;
-
-            StringBuilder dataBuilder = new StringBuilder();
-            byte prevChar = -1;
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int len;
-            while ((len = in.read(buffer)) != -1 && !Thread.currentThread().isInterrupted()) {
-                for (int i = 0; i < len && !Thread.currentThread().isInterrupted(); i++) {
-                    byte currChar = buffer[i];
-
-                    if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
-                        if (currChar == LINE_FEED && prevChar == CARRIAGE_RETURN) {
-                            prevChar = currChar;
-                            continue;
-                        }
-
-                        if (hasSeenNonblankChar && !skip) {
-                            if (lineDataNum >= 3) {
-                                if (col > row) {
-                                    String errMsg = String.format("Excess data on line %d.  Extracted %d value(s) but expected %d.", lineNum, col + 1, row + 1);
-                                    LOGGER.error(errMsg);
-                                    throw new DataReaderException(errMsg);
-                                } else if (col < row) {
-                                    String errMsg = String.format("Insufficent data on line %d.  Extracted %d value(s) but expected %d.", lineNum, col + 1, row + 1);
-                                    LOGGER.error(errMsg);
-                                    throw new DataReaderException(errMsg);
-                                } else {
-                                    String value = dataBuilder.toString().trim();
-                                    dataBuilder.delete(0, dataBuilder.length());
-
-                                    colNum++;
-                                    if (value.isEmpty()) {
-                                        String errMsg = String.format("Missing value on line %d at column %d.", lineNum, colNum);
-                                        LOGGER.error(errMsg);
-                                        throw new DataReaderException(errMsg);
-                                    } else {
-                                        try {
-                                            double covariance = Double.parseDouble(value);
-                                            data[row][col] = covariance;
-                                            data[col][row] = covariance;
-                                        } catch (NumberFormatException exception) {
-                                            String errMsg = String.format("Invalid number %s on line %d at column %d.", value, lineNum, colNum);
-                                            LOGGER.error(errMsg, exception);
-                                            throw new DataReaderException(errMsg);
-                                        }
-                                    }
-                                }
-
-                                row++;
-                            }
-
-                            lineDataNum++;
-                        }
-
-                        lineNum++;
-
-                        // clear data
-                        dataBuilder.delete(0, dataBuilder.length());
-
-                        // reset states
-                        skip = false;
-                        hasSeenNonblankChar = false;
-                        cmntIndex = 0;
-                        col = 0;
-                        colNum = 0;
-                        checkForComment = comment.length > 0;
-                    } else if (!skip) {
-                        if (currChar > SPACE_CHAR) {
-                            hasSeenNonblankChar = true;
-                        }
-
-                        // skip blank chars at the begining of the line
-                        if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
-                            continue;
-                        }
-
-                        // check for comment marker to skip line
-                        if (checkForComment) {
-                            if (currChar == comment[cmntIndex]) {
-                                cmntIndex++;
-                                if (cmntIndex == comment.length) {
-                                    skip = true;
-                                    prevChar = currChar;
-                                    continue;
-                                }
-                            } else {
-                                checkForComment = false;
-                            }
-                        }
-
-                        if (lineDataNum >= 3) {
-                            if (currChar == quoteCharacter) {
-                                hasQuoteChar = !hasQuoteChar;
-                            } else {
-                                if (hasQuoteChar) {
-                                    dataBuilder.append((char) currChar);
-                                } else {
-                                    boolean isDelimiter;
-                                    switch (delimiter) {
-                                        case WHITESPACE:
-                                            isDelimiter = (currChar <= SPACE_CHAR) && (prevChar > SPACE_CHAR);
-                                            break;
-                                        default:
-                                            isDelimiter = (currChar == delimChar);
-                                    }
-
-                                    if (isDelimiter) {
-                                        if (col > row) {
-                                            String errMsg = String.format("Excess data on line %d.  Extracted %d value(s) but expected %d.", lineNum, col + 1, row + 1);
-                                            LOGGER.error(errMsg);
-                                            throw new DataReaderException(errMsg);
-                                        }
-
-                                        String value = dataBuilder.toString().trim();
-                                        dataBuilder.delete(0, dataBuilder.length());
-
-                                        colNum++;
-                                        if (value.isEmpty()) {
-                                            String errMsg = String.format("Missing value on line %d at column %d.", lineNum, colNum);
-                                            LOGGER.error(errMsg);
-                                            throw new DataReaderException(errMsg);
-                                        } else {
-                                            try {
-                                                double covariance = Double.parseDouble(value);
-                                                data[row][col] = covariance;
-                                                data[col][row] = covariance;
-                                            } catch (NumberFormatException exception) {
-                                                String errMsg = String.format("Invalid number %s on line %d at column %d.", value, lineNum, colNum);
-                                                LOGGER.error(errMsg, exception);
-                                                throw new DataReaderException(errMsg);
-                                            }
-                                        }
-
-                                        col++;
-                                    } else {
-                                        dataBuilder.append((char) currChar);
-                                    }
-                                }
-                            }
-                        }
-                    }
-
-                    prevChar = currChar;
-                }
-            }
-
-            if (hasSeenNonblankChar && !skip) {
-                if (lineDataNum >= 3) {
-                    if (col > row) {
-                        String errMsg = String.format("Excess data on line %d.  Extracted %d value(s) but expected %d.", lineNum, col + 1, row + 1);
-                        LOGGER.error(errMsg);
-                        throw new DataReaderException(errMsg);
-                    } else if (col < row) {
-                        String errMsg = String.format("Insufficent data on line %d.  Extracted %d value(s) but expected %d.", lineNum, col + 1, row + 1);
-                        LOGGER.error(errMsg);
-                        throw new DataReaderException(errMsg);
-                    } else {
-                        String value = dataBuilder.toString().trim();
-                        dataBuilder.delete(0, dataBuilder.length());
-
-                        colNum++;
-                        if (value.isEmpty()) {
-                            String errMsg = String.format("Missing value on line %d at column %d.", lineNum, colNum);
-                            LOGGER.error(errMsg);
-                            throw new DataReaderException(errMsg);
-                        } else {
-                            try {
-                                double covariance = Double.parseDouble(value);
-                                data[row][col] = covariance;
-                                data[col][row] = covariance;
-                            } catch (NumberFormatException exception) {
-                                String errMsg = String.format("Invalid number %s on line %d at column %d.", value, lineNum, colNum);
-                                LOGGER.error(errMsg, exception);
-                                throw new DataReaderException(errMsg);
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        return data;
-    }
-
     private List<String> getVariables() throws IOException {
         List<String> variables = new LinkedList<>();
 
@@ -0,0 +1,546 @@
+/*
+ * Copyright (C) 2026 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.covariance;
+
+import edu.pitt.dbmi.data.reader.DataReaderException;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.util.NumberParser;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the covariances of a lower covariance file in parallel. The lines
+ * after the number of cases and the variable names are memory-mapped and
+ * split on line boundaries into chunks. The data lines of each chunk are
+ * counted, so that each chunk knows the row of its first line, and then
+ * the chunks are parsed in parallel straight into the matrix.
+ *
+ * Lines are parsed, and errors reported, the way
+ * LowerCovarianceDataFileReader has always done, except that an unmatched
+ * quote character is not carried past the end of its chunk.
+ *
+ * @author agent
+ */
+final class ParallelLowerCovarianceDataParser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelLowerCovarianceDataParser.class);
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte SPACE_CHAR = Delimiter.SPACE.getByteValue();
+
+    // chunks are never made larger than this, so that each can be mapped
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+
+    // bytes mapped at a time when looking for the end of a line
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // number of lines before the covariances
+    private static final int NUM_OF_HEADER_LINES = 2;
+
+    private final Path dataFile;
+    private final Delimiter delimiter;
+    private final byte quoteCharacter;
+    private final byte[] comment;
+    private final long chunkSize;
+
+    ParallelLowerCovarianceDataParser(Path dataFile, Delimiter delimiter, byte quoteCharacter, String commentMarker, long chunkSize) {
+        this.dataFile = dataFile;
+        this.delimiter = delimiter;
+        this.quoteCharacter = quoteCharacter;
+        this.comment = commentMarker.getBytes();
+        this.chunkSize = Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+    }
+
+    /**
+     * Read in the covariances.
+     *
+     * @param matrixSize number of variables
+     * @return the symmetric covariance matrix
+     * @throws IOException
+     */
+    double[][] readInCovarianceData(int matrixSize) throws IOException {
+        double[][] data = new double[matrixSize][matrixSize];
+
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long start = findEndOfHeader(channel, fileSize);
+
+            List<ChunkParser> chunks = new ArrayList<>();
+            while (start < fileSize) {
+                long end = (fileSize - start <= chunkSize) ? fileSize : findStartOfNextLine(channel, start + chunkSize, fileSize);
+                if (end - start > Integer.MAX_VALUE) {
+                    String errMsg = String.format("Line starting at byte %d is too long.", start);
+                    LOGGER.error(errMsg);
+                    throw new DataReaderException(errMsg);
+                }
+
+                chunks.add(new ChunkParser(channel, data, start, end, end == fileSize));
+
+                start = end;
+            }
+
+            // count the rows of each chunk, then read them in
+            run(channel, chunks);
+
+            int row = 0;
+            for (ChunkParser chunk : chunks) {
+                chunk.firstRow = row;
+                chunk.countOnly = false;
+                row += chunk.numOfRows;
+            }
+
+            run(channel, chunks);
+        }
+
+        return data;
+    }
+
+    /**
+     * Runs the chunk parsers, in parallel if there is more than one,
+     * reporting the first error in the file.
+     */
+    private void run(FileChannel channel, List<ChunkParser> chunks) throws IOException {
+        if (chunks.size() == 1) {
+            try {
+                chunks.get(0).call();
+            } catch (ParseException exception) {
+                throw toDataReaderException(channel, chunks.get(0), exception);
+            }
+        } else if (!chunks.isEmpty()) {
+            List<Future<ChunkParser>> futures = ForkJoinPool.commonPool().invokeAll(chunks);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new DataReaderException("Interrupted while reading data.");
+                } catch (ExecutionException exception) {
+                    Throwable cause = exception.getCause();
+                    if (cause instanceof ParseException) {
+                        throw toDataReaderException(channel, chunks.get(i), (ParseException) cause);
+                    } else if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        throw new DataReaderException(String.valueOf(cause));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the error message for a parse error, numbering lines from the
+     * start of the file.
+     */
+    private DataReaderException toDataReaderException(FileChannel channel, ChunkParser chunk, ParseException exception) throws IOException {
+        int lineNum = countLines(channel, chunk.start) + exception.line + 1;
+        String errMsg = exception.getMessage(lineNum);
+        LOGGER.error(errMsg);
+
+        return new DataReaderException(errMsg);
+    }
+
+    /**
+     * Counts line terminators before the given position, a CR LF pair
+     * counting once.
+     */
+    private int countLines(FileChannel channel, long end) throws IOException {
+        int count = 0;
+        byte prevChar = -1;
+        for (long position = 0; position < end; position += MAX_CHUNK_SIZE) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_CHUNK_SIZE, end - position));
+            int len = buffer.limit();
+            for (int i = 0; i < len; i++) {
+                byte currChar = buffer.get(i);
+                if ((currChar == CARRIAGE_RETURN || currChar == LINE_FEED) && !(currChar == LINE_FEED && prevChar == CARRIAGE_RETURN)) {
+                    count++;
+                }
+                prevChar = currChar;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds the position just after the number of cases and the variable
+     * names, the first two lines that are neither blank nor comments.
+     */
+    private long findEndOfHeader(FileChannel channel, long fileSize) throws IOException {
+        boolean skip = false;
+        boolean hasSeenNonblankChar = false;
+        int cmntIndex = 0;
+        boolean checkForComment = comment.length > 0;
+        int numOfLines = 0;
+
+        for (long position = 0; position < fileSize; position += MAX_CHUNK_SIZE) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_CHUNK_SIZE, fileSize - position));
+            int len = buffer.limit();
+            for (int i = 0; i < len; i++) {
+                byte currChar = buffer.get(i);
+
+                if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
+                    if (hasSeenNonblankChar && !skip && ++numOfLines == NUM_OF_HEADER_LINES) {
+                        long end = position + i + 1;
+                        if (currChar == CARRIAGE_RETURN && end < fileSize && byteAt(channel, end) == LINE_FEED) {
+                            end++;
+                        }
+
+                        return end;
+                    }
+
+                    // reset states
+                    skip = false;
+                    hasSeenNonblankChar = false;
+                    cmntIndex = 0;
+                    checkForComment = comment.length > 0;
+                } else if (!skip) {
+                    if (currChar > SPACE_CHAR) {
+                        hasSeenNonblankChar = true;
+                    }
+
+                    // skip blank chars at the begining of the line
+                    if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
+                        continue;
+                    }
+
+                    // check for comment marker to skip line
+                    if (checkForComment) {
+                        if (currChar == comment[cmntIndex]) {
+                            cmntIndex++;
+                            if (cmntIndex == comment.length) {
+                                skip = true;
+                            }
+                        } else {
+                            checkForComment = false;
+                        }
+                    }
+                }
+            }
+        }
+
+        return fileSize;
+    }
+
+    /**
+     * Finds the start of the first line beginning at or after the given
+     * position.
+     */
+    private long findStartOfNextLine(FileChannel channel, long position, long fileSize) throws IOException {
+        if (isLineTerminator(byteAt(channel, position - 1))) {
+            if (byteAt(channel, position - 1) == CARRIAGE_RETURN && byteAt(channel, position) == LINE_FEED) {
+                return position + 1;
+            }
+
+            return position;
+        }
+
+        while (position < fileSize) {
+            long size = Math.min(BUFFER_SIZE, fileSize - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            for (int i = 0; i < size; i++) {
+                byte currChar = buffer.get(i);
+                if (isLineTerminator(currChar)) {
+                    long end = position + i + 1;
+                    if (currChar == CARRIAGE_RETURN && end < fileSize && byteAt(channel, end) == LINE_FEED) {
+                        end++;
+                    }
+
+                    return end;
+                }
+            }
+            position += size;
+        }
+
+        return fileSize;
+    }
+
+    private static boolean isLineTerminator(byte b) {
+        return b == CARRIAGE_RETURN || b == LINE_FEED;
+    }
+
+    private static byte byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        channel.read(buffer, position);
+
+        return buffer.get(0);
+    }
+
+    /**
+     * A parse error, with the line counted from the start of the chunk. The
+     * message format takes the line number, then the other arguments.
+     */
+    private static final class ParseException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int line;
+        private final String format;
+        private final Object[] args;
+
+        private ParseException(int line, String format, Object... args) {
+            super(null, null, false, false);
+            this.line = line;
+            this.format = format;
+            this.args = args;
+        }
+
+        private String getMessage(int lineNum) {
+            Object[] formatArgs = new Object[args.length + 1];
+            formatArgs[0] = lineNum;
+            System.arraycopy(args, 0, formatArgs, 1, args.length);
+
+            return String.format(format, formatArgs);
+        }
+
+    }
+
+    /**
+     * Counts, or reads in, the rows of one chunk. Row i of the matrix is on
+     * the i-th data line and has i + 1 values.
+     */
+    private final class ChunkParser implements Callable<ChunkParser> {
+
+        private final FileChannel channel;
+        private final double[][] data;
+        private final long start;
+        private final long end;
+        private final boolean lastChunk;
+
+        private boolean countOnly = true;
+        private int firstRow;
+        private int numOfRows;
+
+        private int lineNum;  // number of lines before the current one in this chunk
+        private int colNum;   // column number, counting from 1
+
+        // the current value
+        private byte[] value = new byte[64];
+        private int valueLength;
+
+        ChunkParser(FileChannel channel, double[][] data, long start, long end, boolean lastChunk) {
+            this.channel = channel;
+            this.data = data;
+            this.start = start;
+            this.end = end;
+            this.lastChunk = lastChunk;
+        }
+
+        @Override
+        public ChunkParser call() throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+            boolean skip = false;
+            boolean hasSeenNonblankChar = false;
+            boolean hasQuoteChar = false;
+
+            byte delimChar = delimiter.getByteValue();
+            boolean whitespace = delimiter == Delimiter.WHITESPACE;
+
+            // comment marker check
+            int cmntIndex = 0;
+            boolean checkForComment = comment.length > 0;
+
+            numOfRows = 0;
+            lineNum = 0;
+
+            int col = 0;
+            byte prevChar = -1;
+            int len = buffer.limit();
+            for (int i = 0; i < len; i++) {
+                byte currChar = buffer.get(i);
+
+                if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
+                    if (currChar == LINE_FEED && prevChar == CARRIAGE_RETURN) {
+                        prevChar = currChar;
+                        continue;
+                    }
+
+                    if (hasSeenNonblankChar && !skip) {
+                        endLine(col);
+                    }
+
+                    lineNum++;
+
+                    // reset states
+                    valueLength = 0;
+                    skip = false;
+                    hasSeenNonblankChar = false;
+                    cmntIndex = 0;
+                    checkForComment = comment.length > 0;
+                    col = 0;
+                    colNum = 0;
+
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                } else if (!skip) {
+                    if (currChar > SPACE_CHAR) {
+                        hasSeenNonblankChar = true;
+                    }
+
+                    // skip blank chars at the begining of the line
+                    if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
+                        continue;
+                    }
+
+                    // check for comment marker to skip line
+                    if (checkForComment) {
+                        if (currChar == comment[cmntIndex]) {
+                            cmntIndex++;
+                            if (cmntIndex == comment.length) {
+                                skip = true;
+                                prevChar = currChar;
+                                continue;
+                            }
+                        } else {
+                            checkForComment = false;
+                        }
+                    }
+
+                    if (countOnly) {
+                        prevChar = currChar;
+                        continue;
+                    }
+
+                    if (currChar == quoteCharacter) {
+                        hasQuoteChar = !hasQuoteChar;
+                    } else if (hasQuoteChar) {
+                        append(currChar);
+                    } else {
+                        boolean isDelimiter = whitespace
+                                ? (currChar <= SPACE_CHAR) && (prevChar > SPACE_CHAR)
+                                : (currChar == delimChar);
+
+                        if (isDelimiter) {
+                            int row = firstRow + numOfRows;
+                            if (row >= data.length) {
+                                throw new ParseException(lineNum, "Excess data on line %d.  Expected %d line(s) of covariances.", data.length);
+                            } else if (col > row) {
+                                throw new ParseException(lineNum, "Excess data on line %d.  Extracted %d value(s) but expected %d.", col + 1, row + 1);
+                            }
+
+                            takeValue(row, col);
+                            col++;
+                            valueLength = 0;
+                        } else {
+                            append(currChar);
+                        }
+                    }
+                }
+
+                prevChar = currChar;
+            }
+
+            // case when no newline char at end of file
+            if (lastChunk && hasSeenNonblankChar && !skip) {
+                endLine(col);
+            }
+
+            return this;
+        }
+
+        private void endLine(int col) {
+            if (!countOnly) {
+                int row = firstRow + numOfRows;
+                if (row >= data.length) {
+                    throw new ParseException(lineNum, "Excess data on line %d.  Expected %d line(s) of covariances.", data.length);
+                } else if (col > row) {
+                    throw new ParseException(lineNum, "Excess data on line %d.  Extracted %d value(s) but expected %d.", col + 1, row + 1);
+                } else if (col < row) {
+                    throw new ParseException(lineNum, "Insufficent data on line %d.  Extracted %d value(s) but expected %d.", col + 1, row + 1);
+                }
+
+                takeValue(row, col);
+            }
+
+            numOfRows++;
+        }
+
+        private void append(byte b) {
+            if (valueLength == value.length) {
+                value = Arrays.copyOf(value, 2 * value.length);
+            }
+
+            value[valueLength++] = b;
+        }
+
+        // trims the value as String.trim() would and stores it
+        private void takeValue(int row, int col) {
+            colNum++;
+
+            int from = 0;
+            int to = valueLength;
+            while (from < to && isTrimmed(value[from])) {
+                from++;
+            }
+            while (to > from && isTrimmed(value[to - 1])) {
+                to--;
+            }
+
+            if (from == to) {
+                throw new ParseException(lineNum, "Missing value on line %d at column %d.", colNum);
+            }
+
+            double covariance = NumberParser.parseDecimal(value, from, to);
+            if (Double.isNaN(covariance)) {
+                String text = toString(from, to);
+                try {
+                    covariance = Double.parseDouble(text);
+                } catch (NumberFormatException exception) {
+                    throw new ParseException(lineNum, "Invalid number %2$s on line %1$d at column %3$d.", text, colNum);
+                }
+            }
+
+            data[row][col] = covariance;
+            data[col][row] = covariance;
+        }
+
+        private boolean isTrimmed(byte b) {
+            return b >= 0 && b <= SPACE_CHAR;
+        }
+
+        private String toString(int from, int to) {
+            char[] chars = new char[to - from];
+            for (int i = from; i < to; i++) {
+                chars[i - from] = (char) value[i];
+            }
+
+            return new String(chars);
+        }
+
+    }
+
+}
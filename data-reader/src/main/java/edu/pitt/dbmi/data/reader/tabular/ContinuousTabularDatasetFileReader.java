@@ -87,6 +87,26 @@ public class ContinuousTabularDatasetFileReader extends DatasetFileReader implem
         return dataReader.read(dataColumns, hasHeader);
     }
 
+    @Override
+    public Data readInData(TabularDataSelection selection) throws IOException {
+        TabularColumnReader columnReader = new TabularColumnFileReader(dataFile, delimiter);
+        columnReader.setCommentMarker(commentMarker);
+        columnReader.setQuoteCharacter(quoteChar);
+
+        boolean isDiscrete = false;
+        DataColumn[] dataColumns = hasHeader
+                ? columnReader.readInDataColumns(isDiscrete)
+                : columnReader.generateColumns(new int[0], isDiscrete);
+        dataColumns = selection.selectColumns(dataColumns);
+
+        TabularDataReader dataReader = new TabularDataFileReader(dataFile, delimiter);
+        dataReader.setCommentMarker(commentMarker);
+        dataReader.setQuoteCharacter(quoteChar);
+        dataReader.setMissingDataMarker(missingDataMarker);
+
+        return dataReader.read(dataColumns, hasHeader, null, selection);
+    }
+
     @Override
     public void setHasHeader(boolean hasHeader) {
         this.hasHeader = hasHeader;
@@ -97,6 +97,28 @@ public class MixedTabularDatasetFileReader extends DatasetFileReader implements
         return toMixedData(dataReader.read(dataColumns, hasHeader));
     }
 
+    @Override
+    public Data readInData(TabularDataSelection selection) throws IOException {
+        TabularColumnReader columnReader = new TabularColumnFileReader(dataFile, delimiter);
+        columnReader.setCommentMarker(commentMarker);
+        columnReader.setQuoteCharacter(quoteChar);
+
+        boolean isDiscrete = false;
+        DataColumn[] dataColumns = hasHeader
+                ? columnReader.readInDataColumns(isDiscrete)
+                : columnReader.generateColumns(new int[0], isDiscrete);
+        dataColumns = selection.selectColumns(dataColumns);
+
+        TabularDataReader dataReader = new TabularDataFileReader(dataFile, delimiter);
+        dataReader.setCommentMarker(commentMarker);
+        dataReader.setQuoteCharacter(quoteChar);
+        dataReader.setMissingDataMarker(missingDataMarker);
+
+        dataReader.determineDiscreteDataColumns(dataColumns, numberOfDiscreteCategories, hasHeader);
+
+        return toMixedData(dataReader.read(dataColumns, hasHeader, null, selection));
+    }
+
     private Data toMixedData(Data data) {
         if (data instanceof ContinuousData) {
             ContinuousData continuousData = (ContinuousData) data;
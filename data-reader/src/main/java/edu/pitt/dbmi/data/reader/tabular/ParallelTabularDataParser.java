@@ -0,0 +1,1017 @@
+/*
+ * Copyright (C) 2026 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.tabular;
+
+import edu.pitt.dbmi.data.reader.DataColumn;
+import edu.pitt.dbmi.data.reader.DataReaderException;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.DiscreteDataColumn;
+import edu.pitt.dbmi.data.reader.util.NumberParser;
+import static edu.pitt.dbmi.data.reader.DatasetReader.CONTINUOUS_MISSING_VALUE;
+import static edu.pitt.dbmi.data.reader.DatasetReader.DISCRETE_MISSING_VALUE;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads continuous and mixed tabular data in a single pass over the file.
+ * The data section is memory-mapped and split on line boundaries into
+ * chunks, which are parsed in parallel straight into primitive arrays and
+ * then joined in file order. Numbers are converted from the bytes without
+ * making strings, except for the few the fast path cannot convert exactly,
+ * which are handed to Double.parseDouble.
+ *
+ * Lines are parsed the way TabularDataFileReader has always parsed them,
+ * except that an unmatched quote character is not carried past the end of
+ * its chunk.
+ *
+ * Rows may be selected as they are parsed. A row left out is parsed into
+ * the same space as the next one, and a row read in more than once is
+ * copied, so only the selected rows take up memory. When rows are selected
+ * by number, the rows of each chunk are first counted, without converting
+ * any values, so that each chunk knows the number of its first row.
+ *
+ * @author agent
+ */
+final class ParallelTabularDataParser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelTabularDataParser.class);
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte SPACE_CHAR = Delimiter.SPACE.getByteValue();
+
+    // chunks are never made larger than this, so that each can be mapped
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+
+    // bytes mapped at a time when looking for the end of a line
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path dataFile;
+    private final Delimiter delimiter;
+    private final byte quoteCharacter;
+    private final byte[] comment;
+    private final char[] missingDataMarker;
+    private final long chunkSize;
+
+    ParallelTabularDataParser(Path dataFile, Delimiter delimiter, byte quoteCharacter, String commentMarker, String missingDataMarker, long chunkSize) {
+        this.dataFile = dataFile;
+        this.delimiter = delimiter;
+        this.quoteCharacter = quoteCharacter;
+        this.comment = commentMarker.getBytes();
+        this.missingDataMarker = missingDataMarker.toCharArray();
+        this.chunkSize = Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+    }
+
+    /**
+     * Read in continuous data, by row.
+     *
+     * @param dataColumns columns to read in
+     * @param hasHeader true if the first line is a header
+     * @param numOfColsInDataFile number of columns not generated
+     * @param selection rows to read in, or null for all rows
+     * @return data[row][column]
+     * @throws IOException
+     */
+    double[][] readInContinuousData(DataColumn[] dataColumns, boolean hasHeader, int numOfColsInDataFile, TabularDataSelection selection) throws IOException {
+        SelectedRows selectedRows = selectRows(dataColumns, hasHeader, numOfColsInDataFile, selection);
+        List<ChunkParser> chunks = parse(hasHeader, (start, end) -> new ContinuousChunkParser(dataColumns, numOfColsInDataFile, start, end), selectedRows);
+
+        int numOfRows = 0;
+        for (ChunkParser chunk : chunks) {
+            numOfRows += chunk.numOfRows;
+        }
+
+        double[][] data = new double[numOfRows][];
+        int row = 0;
+        for (ChunkParser chunk : chunks) {
+            for (double[] rowData : ((ContinuousChunkParser) chunk).rows) {
+                data[row++] = rowData;
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Read in mixed data, by column. Categories are added to the discrete
+     * columns, which are recategorized.
+     *
+     * @param dataColumns columns to read in
+     * @param hasHeader true if the first line is a header
+     * @param continuousData filled with continuous data[column][row]
+     * @param discreteData filled with encoded discrete data[column][row]
+     * @param numOfColsInDataFile number of columns not generated
+     * @param selection rows to read in, or null for all rows
+     * @return the number of rows
+     * @throws IOException
+     */
+    int readInMixedData(DiscreteDataColumn[] dataColumns, boolean hasHeader, double[][] continuousData, int[][] discreteData, int numOfColsInDataFile, TabularDataSelection selection) throws IOException {
+        DataColumn[] columns = Arrays.stream(dataColumns).map(DiscreteDataColumn::getDataColumn).toArray(DataColumn[]::new);
+        SelectedRows selectedRows = selectRows(columns, hasHeader, numOfColsInDataFile, selection);
+        List<ChunkParser> chunks = parse(hasHeader, (start, end) -> new MixedChunkParser(dataColumns, numOfColsInDataFile, start, end), selectedRows);
+
+        int numOfRows = 0;
+        for (ChunkParser chunk : chunks) {
+            numOfRows += chunk.numOfRows;
+        }
+
+        // gather the categories from all chunks
+        for (int i = 0; i < dataColumns.length; i++) {
+            DiscreteDataColumn dataColumn = dataColumns[i];
+            if (dataColumn.getDataColumn().isGenerated()) {
+                dataColumn.setValue("0");
+                dataColumn.setValue("1");
+            } else if (dataColumn.getDataColumn().isDiscrete()) {
+                for (ChunkParser chunk : chunks) {
+                    Categories categories = ((MixedChunkParser) chunk).categories[i];
+                    for (int j = 0; j < categories.size; j++) {
+                        dataColumn.setValue(categories.values[j]);
+                    }
+                }
+            }
+
+            dataColumn.recategorize();
+        }
+
+        for (int i = 0; i < dataColumns.length; i++) {
+            DiscreteDataColumn dataColumn = dataColumns[i];
+            boolean discrete = dataColumn.getDataColumn().isDiscrete();
+            if (discrete) {
+                discreteData[i] = new int[numOfRows];
+            } else {
+                continuousData[i] = new double[numOfRows];
+            }
+
+            if (dataColumn.getDataColumn().isGenerated()) {
+                continue;
+            }
+
+            int row = 0;
+            for (ChunkParser chunk : chunks) {
+                MixedChunkParser mixedChunk = (MixedChunkParser) chunk;
+                if (discrete) {
+                    Categories categories = mixedChunk.categories[i];
+                    int[] encodings = new int[categories.size];
+                    for (int j = 0; j < categories.size; j++) {
+                        encodings[j] = dataColumn.getEncodeValue(categories.values[j]);
+                    }
+
+                    int[] values = mixedChunk.discreteValues[i];
+                    for (int j = 0; j < chunk.numOfRows; j++) {
+                        int value = values[j];
+                        discreteData[i][row++] = (value == DISCRETE_MISSING_VALUE) ? DISCRETE_MISSING_VALUE : encodings[value];
+                    }
+                } else {
+                    System.arraycopy(mixedChunk.continuousValues[i], 0, continuousData[i], row, chunk.numOfRows);
+                    row += chunk.numOfRows;
+                }
+            }
+        }
+
+        return numOfRows;
+    }
+
+    private interface ChunkParserFactory {
+
+        ChunkParser create(long start, long end);
+
+    }
+
+    /**
+     * The rows to read in: rows with missing values may be left out, and the
+     * remaining rows, numbered across the chunks, may each be read in any
+     * number of times.
+     */
+    private static final class SelectedRows {
+
+        private final boolean excludeRowsWithMissingValues;
+        private final int[] firstRows;  // number of the first row of each chunk
+        private final int[] copies;     // number of times each row is read in
+
+        private SelectedRows(boolean excludeRowsWithMissingValues, int[] firstRows, int[] copies) {
+            this.excludeRowsWithMissingValues = excludeRowsWithMissingValues;
+            this.firstRows = firstRows;
+            this.copies = copies;
+        }
+
+    }
+
+    /**
+     * Works out the rows to read in, counting the rows of each chunk if they
+     * are selected by number.
+     */
+    private SelectedRows selectRows(DataColumn[] dataColumns, boolean hasHeader, int numOfColsInDataFile, TabularDataSelection selection) throws IOException {
+        if (selection == null || !selection.isRowSelection()) {
+            return null;
+        }
+
+        boolean excludeRowsWithMissingValues = selection.isExcludeRowsWithMissingValues();
+        if (!selection.isRowNumberSelection()) {
+            return new SelectedRows(excludeRowsWithMissingValues, null, null);
+        }
+
+        List<ChunkParser> chunks = parse(hasHeader, (start, end) -> new RowCountingChunkParser(dataColumns, numOfColsInDataFile, start, end), new SelectedRows(excludeRowsWithMissingValues, null, null));
+
+        int[] firstRows = new int[chunks.size()];
+        int numOfRows = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            firstRows[i] = numOfRows;
+            numOfRows += chunks.get(i).numOfRows;
+        }
+
+        return new SelectedRows(excludeRowsWithMissingValues, firstRows, selection.getRowCopies(numOfRows));
+    }
+
+    /**
+     * Splits the data section of the file into chunks and parses them, in
+     * parallel if there is more than one.
+     */
+    private List<ChunkParser> parse(boolean hasHeader, ChunkParserFactory factory, SelectedRows selectedRows) throws IOException {
+        List<ChunkParser> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long start = hasHeader ? findEndOfHeader(channel, fileSize) : 0;
+            while (start < fileSize) {
+                long end = (fileSize - start <= chunkSize) ? fileSize : findStartOfNextLine(channel, start + chunkSize, fileSize);
+                if (end - start > Integer.MAX_VALUE) {
+                    String errMsg = String.format("Line starting at byte %d is too long.", start);
+                    LOGGER.error(errMsg);
+                    throw new DataReaderException(errMsg);
+                }
+
+                ChunkParser chunk = factory.create(start, end);
+                chunk.channel = channel;
+                chunk.lastChunk = (end == fileSize);
+                chunk.selectedRows = selectedRows;
+                chunk.firstRow = (selectedRows == null || selectedRows.firstRows == null) ? 0 : selectedRows.firstRows[chunks.size()];
+                chunks.add(chunk);
+
+                start = end;
+            }
+
+            if (chunks.size() == 1) {
+                try {
+                    chunks.get(0).call();
+                } catch (ParseException exception) {
+                    throw toDataReaderException(channel, chunks.get(0), exception);
+                }
+            } else if (!chunks.isEmpty()) {
+                List<Future<ChunkParser>> futures = ForkJoinPool.commonPool().invokeAll(chunks);
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        futures.get(i).get();
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        throw new DataReaderException("Interrupted while reading data.");
+                    } catch (ExecutionException exception) {
+                        Throwable cause = exception.getCause();
+                        if (cause instanceof ParseException) {
+                            throw toDataReaderException(channel, chunks.get(i), (ParseException) cause);
+                        } else if (cause instanceof IOException) {
+                            throw (IOException) cause;
+                        } else if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        } else {
+                            throw new DataReaderException(String.valueOf(cause));
+                        }
+                    }
+                }
+            }
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Makes the error message for a parse error, numbering lines from the
+     * start of the file.
+     */
+    private DataReaderException toDataReaderException(FileChannel channel, ChunkParser chunk, ParseException exception) throws IOException {
+        int lineNum = countLines(channel, chunk.start) + exception.line + 1;
+        String errMsg = exception.insufficientData
+                ? String.format("Insufficient data on line %d.  Extracted %d value(s) but expected %d.", lineNum, exception.extracted, exception.expected)
+                : String.format("%s %s on line %d at column %d.", exception.description, exception.value, lineNum, exception.colNum);
+        LOGGER.error(errMsg);
+
+        return new DataReaderException(errMsg);
+    }
+
+    /**
+     * Counts line terminators before the given position, a CR LF pair
+     * counting once.
+     */
+    private int countLines(FileChannel channel, long end) throws IOException {
+        int count = 0;
+        byte prevChar = -1;
+        for (long position = 0; position < end; position += MAX_CHUNK_SIZE) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_CHUNK_SIZE, end - position));
+            int len = buffer.limit();
+            for (int i = 0; i < len; i++) {
+                byte currChar = buffer.get(i);
+                if ((currChar == CARRIAGE_RETURN || currChar == LINE_FEED) && !(currChar == LINE_FEED && prevChar == CARRIAGE_RETURN)) {
+                    count++;
+                }
+                prevChar = currChar;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds the position just after the header, the first line that is
+     * neither blank nor a comment.
+     */
+    private long findEndOfHeader(FileChannel channel, long fileSize) throws IOException {
+        boolean skip = false;
+        boolean hasSeenNonblankChar = false;
+        int cmntIndex = 0;
+        boolean checkForComment = comment.length > 0;
+
+        for (long position = 0; position < fileSize; position += MAX_CHUNK_SIZE) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_CHUNK_SIZE, fileSize - position));
+            int len = buffer.limit();
+            for (int i = 0; i < len; i++) {
+                byte currChar = buffer.get(i);
+
+                if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
+                    if (hasSeenNonblankChar && !skip) {
+                        long end = position + i + 1;
+                        if (currChar == CARRIAGE_RETURN && end < fileSize && byteAt(channel, end) == LINE_FEED) {
+                            end++;
+                        }
+
+                        return end;
+                    }
+
+                    // reset states
+                    skip = false;
+                    hasSeenNonblankChar = false;
+                    cmntIndex = 0;
+                    checkForComment = comment.length > 0;
+                } else if (!skip) {
+                    if (currChar > SPACE_CHAR) {
+                        hasSeenNonblankChar = true;
+                    }
+
+                    // skip blank chars at the begining of the line
+                    if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
+                        continue;
+                    }
+
+                    // check for comment marker to skip line
+                    if (checkForComment) {
+                        if (currChar == comment[cmntIndex]) {
+                            cmntIndex++;
+                            if (cmntIndex == comment.length) {
+                                skip = true;
+                            }
+                        } else {
+                            checkForComment = false;
+                        }
+                    }
+                }
+            }
+        }
+
+        return fileSize;
+    }
+
+    /**
+     * Finds the start of the first line beginning at or after the given
+     * position.
+     */
+    private long findStartOfNextLine(FileChannel channel, long position, long fileSize) throws IOException {
+        if (isLineTerminator(byteAt(channel, position - 1))) {
+            if (byteAt(channel, position - 1) == CARRIAGE_RETURN && byteAt(channel, position) == LINE_FEED) {
+                return position + 1;
+            }
+
+            return position;
+        }
+
+        while (position < fileSize) {
+            long size = Math.min(BUFFER_SIZE, fileSize - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            for (int i = 0; i < size; i++) {
+                byte currChar = buffer.get(i);
+                if (isLineTerminator(currChar)) {
+                    long end = position + i + 1;
+                    if (currChar == CARRIAGE_RETURN && end < fileSize && byteAt(channel, end) == LINE_FEED) {
+                        end++;
+                    }
+
+                    return end;
+                }
+            }
+            position += size;
+        }
+
+        return fileSize;
+    }
+
+    private static boolean isLineTerminator(byte b) {
+        return b == CARRIAGE_RETURN || b == LINE_FEED;
+    }
+
+    private static byte byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        channel.read(buffer, position);
+
+        return buffer.get(0);
+    }
+
+    /**
+     * A parse error, with the line counted from the start of the chunk.
+     */
+    private static final class ParseException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int line;
+        private final boolean insufficientData;
+        private final String description;
+        private final String value;
+        private final int colNum;
+        private final int extracted;
+        private final int expected;
+
+        private ParseException(int line, String description, String value, int colNum) {
+            super(null, null, false, false);
+            this.line = line;
+            this.insufficientData = false;
+            this.description = description;
+            this.value = value;
+            this.colNum = colNum;
+            this.extracted = 0;
+            this.expected = 0;
+        }
+
+        private ParseException(int line, int extracted, int expected) {
+            super(null, null, false, false);
+            this.line = line;
+            this.insufficientData = true;
+            this.description = null;
+            this.value = null;
+            this.colNum = 0;
+            this.extracted = extracted;
+            this.expected = expected;
+        }
+
+    }
+
+    /**
+     * Parses the lines of one chunk, handing the values of the columns to be
+     * read in to the subclass.
+     */
+    private abstract class ChunkParser implements Callable<ChunkParser> {
+
+        protected final DataColumn[] dataColumns;
+        protected final int numOfColsInDataFile;
+        protected final long start;
+        protected final long end;
+
+        protected FileChannel channel;
+        protected boolean lastChunk;
+
+        // rows to read in, or null for all rows
+        protected SelectedRows selectedRows;
+        protected int firstRow;
+        private int numOfSelectableRows;  // rows seen that are not left out for missing values
+        private boolean hasMissingValue;
+
+        protected int numOfRows;  // rows read in
+        protected int lineNum;  // number of lines before the current one in this chunk
+        protected int colNum;   // column number, counting from 1
+
+        // the current value
+        protected byte[] value = new byte[64];
+        protected int valueLength;
+
+        ChunkParser(DataColumn[] dataColumns, int numOfColsInDataFile, long start, long end) {
+            this.dataColumns = dataColumns;
+            this.numOfColsInDataFile = numOfColsInDataFile;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Takes the value, from value[from] to value[to - 1], for the given
+         * column.
+         */
+        protected abstract void setValue(int columnIndex, int from, int to);
+
+        /**
+         * Called at the end of each row read in.
+         */
+        protected abstract void endRow();
+
+        /**
+         * Called after endRow to read in the row again.
+         */
+        protected abstract void repeatRow();
+
+        /**
+         * Called at the end of each row not read in, whose values may be
+         * overwritten.
+         */
+        protected abstract void discardRow();
+
+        @Override
+        public ChunkParser call() throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+            boolean skip = false;
+            boolean hasSeenNonblankChar = false;
+            boolean hasQuoteChar = false;
+
+            byte delimChar = delimiter.getByteValue();
+            boolean whitespace = delimiter == Delimiter.WHITESPACE;
+            int numOfCols = dataColumns.length;
+
+            // comment marker check
+            int cmntIndex = 0;
+            boolean checkForComment = comment.length > 0;
+
+            int columnIndex = 0;
+            byte prevChar = -1;
+            int len = buffer.limit();
+            for (int i = 0; i < len; i++) {
+                byte currChar = buffer.get(i);
+
+                if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
+                    if (currChar == LINE_FEED && prevChar == CARRIAGE_RETURN) {
+                        prevChar = currChar;
+                        continue;
+                    }
+
+                    if (hasSeenNonblankChar && !skip) {
+                        endLine(columnIndex);
+                    }
+
+                    lineNum++;
+
+                    // reset states
+                    valueLength = 0;
+                    skip = false;
+                    hasSeenNonblankChar = false;
+                    cmntIndex = 0;
+                    checkForComment = comment.length > 0;
+                    columnIndex = 0;
+                    colNum = 0;
+
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                } else if (!skip) {
+                    if (currChar > SPACE_CHAR) {
+                        hasSeenNonblankChar = true;
+                    }
+
+                    // skip blank chars at the begining of the line
+                    if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
+                        continue;
+                    }
+
+                    // check for comment marker to skip line
+                    if (checkForComment) {
+                        if (currChar == comment[cmntIndex]) {
+                            cmntIndex++;
+                            if (cmntIndex == comment.length) {
+                                skip = true;
+                                prevChar = currChar;
+                                continue;
+                            }
+                        } else {
+                            checkForComment = false;
+                        }
+                    }
+
+                    if (currChar == quoteCharacter) {
+                        hasQuoteChar = !hasQuoteChar;
+                    } else if (hasQuoteChar) {
+                        append(currChar);
+                    } else {
+                        boolean isDelimiter = whitespace
+                                ? (currChar <= SPACE_CHAR) && (prevChar > SPACE_CHAR)
+                                : (currChar == delimChar);
+
+                        if (isDelimiter) {
+                            colNum++;
+
+                            if (dataColumns[columnIndex].getColumnNumber() == colNum) {
+                                takeValue(columnIndex);
+
+                                columnIndex++;
+                                if (columnIndex == numOfCols) {
+                                    finishRow();
+                                    skip = true;
+                                }
+                            }
+
+                            valueLength = 0;
+                        } else {
+                            append(currChar);
+                        }
+                    }
+                }
+
+                prevChar = currChar;
+            }
+
+            // case when no newline char at end of file
+            if (lastChunk && hasSeenNonblankChar && !skip) {
+                endLine(columnIndex);
+            }
+
+            return this;
+        }
+
+        private void endLine(int columnIndex) {
+            colNum++;
+
+            if (dataColumns[columnIndex].getColumnNumber() == colNum) {
+                takeValue(columnIndex);
+                columnIndex++;
+            }
+
+            // ensure we have enough data
+            if (columnIndex < numOfColsInDataFile) {
+                throw new ParseException(lineNum, columnIndex, numOfColsInDataFile);
+            }
+
+            finishRow();
+        }
+
+        private void finishRow() {
+            int copies = 1;
+            if (selectedRows != null) {
+                if (selectedRows.excludeRowsWithMissingValues && hasMissingValue) {
+                    copies = 0;
+                } else {
+                    if (selectedRows.copies != null) {
+                        copies = selectedRows.copies[firstRow + numOfSelectableRows];
+                    }
+                    numOfSelectableRows++;
+                }
+
+                hasMissingValue = false;
+            }
+
+            if (copies == 0) {
+                discardRow();
+                return;
+            }
+
+            numOfRows++;
+            endRow();
+            for (int i = 1; i < copies; i++) {
+                numOfRows++;
+                repeatRow();
+            }
+        }
+
+        private void append(byte b) {
+            if (valueLength == value.length) {
+                value = Arrays.copyOf(value, 2 * value.length);
+            }
+
+            value[valueLength++] = b;
+        }
+
+        // trims the value as String.trim() would and hands it on
+        private void takeValue(int columnIndex) {
+            int from = 0;
+            int to = valueLength;
+            while (from < to && isTrimmed(value[from])) {
+                from++;
+            }
+            while (to > from && isTrimmed(value[to - 1])) {
+                to--;
+            }
+
+            if (selectedRows != null && selectedRows.excludeRowsWithMissingValues && isMissing(from, to)) {
+                hasMissingValue = true;
+            }
+
+            setValue(columnIndex, from, to);
+        }
+
+        private boolean isTrimmed(byte b) {
+            return b >= 0 && b <= SPACE_CHAR;
+        }
+
+        protected boolean isMissing(int from, int to) {
+            if (to == from) {
+                return true;
+            }
+
+            if (to - from != missingDataMarker.length) {
+                return false;
+            }
+
+            for (int i = from; i < to; i++) {
+                if ((char) value[i] != missingDataMarker[i - from]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        protected String toString(int from, int to) {
+            char[] chars = new char[to - from];
+            for (int i = from; i < to; i++) {
+                chars[i - from] = (char) value[i];
+            }
+
+            return new String(chars);
+        }
+
+        protected double parseDouble(int from, int to, String description) {
+            double number = NumberParser.parseDecimal(value, from, to);
+            if (Double.isNaN(number)) {
+                String text = toString(from, to);
+                try {
+                    number = Double.parseDouble(text);
+                } catch (NumberFormatException exception) {
+                    throw new ParseException(lineNum, description, text, colNum);
+                }
+            }
+
+            return number;
+        }
+
+    }
+
+    /**
+     * Reads continuous data into an array per row.
+     */
+    private final class ContinuousChunkParser extends ChunkParser {
+
+        private final List<double[]> rows = new ArrayList<>();
+        private double[] row;
+
+        ContinuousChunkParser(DataColumn[] dataColumns, int numOfColsInDataFile, long start, long end) {
+            super(dataColumns, numOfColsInDataFile, start, end);
+        }
+
+        @Override
+        protected void setValue(int columnIndex, int from, int to) {
+            if (row == null) {
+                row = new double[dataColumns.length];
+            }
+
+            row[columnIndex] = isMissing(from, to)
+                    ? CONTINUOUS_MISSING_VALUE
+                    : parseDouble(from, to, "Non-continuous number");
+        }
+
+        @Override
+        protected void endRow() {
+            rows.add((row == null) ? new double[dataColumns.length] : row);
+            row = null;
+        }
+
+        @Override
+        protected void repeatRow() {
+            rows.add(rows.get(rows.size() - 1).clone());
+        }
+
+        @Override
+        protected void discardRow() {
+            // the row array, if any, is kept for the next row
+        }
+
+    }
+
+    /**
+     * Counts the rows of a chunk without converting any values.
+     */
+    private final class RowCountingChunkParser extends ChunkParser {
+
+        RowCountingChunkParser(DataColumn[] dataColumns, int numOfColsInDataFile, long start, long end) {
+            super(dataColumns, numOfColsInDataFile, start, end);
+        }
+
+        @Override
+        protected void setValue(int columnIndex, int from, int to) {
+        }
+
+        @Override
+        protected void endRow() {
+        }
+
+        @Override
+        protected void repeatRow() {
+        }
+
+        @Override
+        protected void discardRow() {
+        }
+
+    }
+
+    /**
+     * Reads mixed data into an array per column. Discrete values are numbered
+     * in the order they are first seen in the chunk.
+     */
+    private final class MixedChunkParser extends ChunkParser {
+
+        private final double[][] continuousValues;
+        private final int[][] discreteValues;
+        private final Categories[] categories;
+        private int capacity = 1024;
+
+        MixedChunkParser(DiscreteDataColumn[] dataColumns, int numOfColsInDataFile, long start, long end) {
+            super(Arrays.stream(dataColumns).map(DiscreteDataColumn::getDataColumn).toArray(DataColumn[]::new), numOfColsInDataFile, start, end);
+
+            int numOfCols = dataColumns.length;
+            this.continuousValues = new double[numOfCols][];
+            this.discreteValues = new int[numOfCols][];
+            this.categories = new Categories[numOfCols];
+            for (int i = 0; i < numOfCols; i++) {
+                if (this.dataColumns[i].isDiscrete()) {
+                    discreteValues[i] = new int[capacity];
+                    categories[i] = new Categories();
+                } else {
+                    continuousValues[i] = new double[capacity];
+                }
+            }
+        }
+
+        @Override
+        protected void setValue(int columnIndex, int from, int to) {
+            if (numOfRows == capacity) {
+                grow();
+            }
+
+            if (dataColumns[columnIndex].isDiscrete()) {
+                discreteValues[columnIndex][numOfRows] = isMissing(from, to)
+                        ? DISCRETE_MISSING_VALUE
+                        : categories[columnIndex].indexOf(value, from, to);
+            } else {
+                continuousValues[columnIndex][numOfRows] = isMissing(from, to)
+                        ? CONTINUOUS_MISSING_VALUE
+                        : parseDouble(from, to, "Invalid number");
+            }
+        }
+
+        @Override
+        protected void endRow() {
+            if (numOfRows == capacity) {
+                grow();
+            }
+        }
+
+        @Override
+        protected void repeatRow() {
+            int from = numOfRows - 2;
+            int to = numOfRows - 1;
+            for (int i = 0; i < dataColumns.length; i++) {
+                if (discreteValues[i] != null) {
+                    discreteValues[i][to] = discreteValues[i][from];
+                } else {
+                    continuousValues[i][to] = continuousValues[i][from];
+                }
+            }
+
+            if (numOfRows == capacity) {
+                grow();
+            }
+        }
+
+        @Override
+        protected void discardRow() {
+            // the values of the row are overwritten by the next row
+        }
+
+        private void grow() {
+            capacity *= 2;
+            for (int i = 0; i < dataColumns.length; i++) {
+                if (discreteValues[i] != null) {
+                    discreteValues[i] = Arrays.copyOf(discreteValues[i], capacity);
+                } else {
+                    continuousValues[i] = Arrays.copyOf(continuousValues[i], capacity);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The distinct values of a discrete column in one chunk, numbered in the
+     * order they were first seen. Lookups do not allocate.
+     */
+    private static final class Categories {
+
+        private String[] values = new String[8];
+        private byte[][] bytes = new byte[8][];
+        private int size;
+
+        // open addressing table of indices + 1
+        private int[] table = new int[16];
+
+        int indexOf(byte[] value, int from, int to) {
+            int hash = hash(value, from, to);
+            int mask = table.length - 1;
+            for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+                int index = table[slot] - 1;
+                if (index < 0) {
+                    return add(value, from, to, slot);
+                }
+
+                byte[] candidate = bytes[index];
+                if (candidate.length == to - from && equals(candidate, value, from)) {
+                    return index;
+                }
+            }
+        }
+
+        private int add(byte[] value, int from, int to, int slot) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+                bytes = Arrays.copyOf(bytes, 2 * size);
+            }
+
+            byte[] b = Arrays.copyOfRange(value, from, to);
+            char[] chars = new char[b.length];
+            for (int i = 0; i < b.length; i++) {
+                chars[i] = (char) b[i];
+            }
+
+            bytes[size] = b;
+            values[size] = new String(chars);
+            table[slot] = size + 1;
+            size++;
+
+            if (2 * size > table.length) {
+                rehash();
+            }
+
+            return size - 1;
+        }
+
+        private void rehash() {
+            table = new int[2 * table.length];
+            int mask = table.length - 1;
+            for (int index = 0; index < size; index++) {
+                int slot = hash(bytes[index], 0, bytes[index].length) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = index + 1;
+            }
+        }
+
+        private static int hash(byte[] value, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + value[i];
+            }
+
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean equals(byte[] candidate, byte[] value, int from) {
+            for (int i = 0; i < candidate.length; i++) {
+                if (candidate[i] != value[from + i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+    }
+
+}
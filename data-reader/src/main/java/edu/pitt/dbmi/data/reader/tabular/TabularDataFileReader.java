@@ -49,8 +49,32 @@ public final class TabularDataFileReader extends DatasetFileReader implements Ta
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TabularDataFileReader.class);
 
+    /**
+     * Default number of bytes of continuous or mixed data parsed by each
+     * parallel task.
+     */
+    public static final long DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private long chunkSize;
+
     public TabularDataFileReader(Path dataFile, Delimiter delimiter) {
         super(dataFile, delimiter);
+
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+    }
+
+    /**
+     * Set the number of bytes of continuous or mixed data parsed by each
+     * parallel task. Chunks are extended to the end of a line.
+     *
+     * @param chunkSize number of bytes, at least 1
+     */
+    public void setChunkSize(long chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1.");
+        }
+
+        this.chunkSize = chunkSize;
     }
 
     @Override
@@ -294,6 +318,15 @@ public final class TabularDataFileReader extends DatasetFileReader implements Ta
 
     @Override
     public Data read(DataColumn[] dataColumns, boolean hasHeader) throws IOException {
+        return read(dataColumns, hasHeader, null, null);
+    }
+
+    @Override
+    public Data read(DataColumn[] dataColumns, boolean hasHeader, Metadata metadata) throws IOException {
+        return read(dataColumns, hasHeader, metadata, null);
+    }
+
+    private Data readInData(DataColumn[] dataColumns, boolean hasHeader, TabularDataSelection selection) throws IOException {
         if (dataColumns == null) {
             return null;
         }
@@ -314,19 +347,19 @@ public final class TabularDataFileReader extends DatasetFileReader implements Ta
         }
 
         if (isDiscrete && isContinuous) {
-            return readInMixedData(dataColumns, hasHeader, numOfColsInDataFile);
+            return readInMixedData(dataColumns, hasHeader, numOfColsInDataFile, selection);
         } else if (isContinuous) {
-            return readInContinuousData(dataColumns, hasHeader, numOfColsInDataFile);
+            return readInContinuousData(dataColumns, hasHeader, numOfColsInDataFile, selection);
         } else if (isDiscrete) {
-            return readInDiscreteData(dataColumns, hasHeader, numOfColsInDataFile);
+            return readInDiscreteData(dataColumns, hasHeader, numOfColsInDataFile, selection);
         } else {
             return null;
         }
     }
 
     @Override
-    public Data read(DataColumn[] dataColumns, boolean hasHeader, Metadata metadata) throws IOException {
-        Data data = read(dataColumns, hasHeader);
+    public Data read(DataColumn[] dataColumns, boolean hasHeader, Metadata metadata, TabularDataSelection selection) throws IOException {
+        Data data = readInData(dataColumns, hasHeader, selection);
 
         if (metadata != null) {
             if (data instanceof ContinuousData) {
@@ -430,555 +463,45 @@ public final class TabularDataFileReader extends DatasetFileReader implements Ta
         return data;
     }
 
-    private Data readInMixedData(DataColumn[] dataColumns, boolean hasHeader, int numOfColsInDataFile) throws IOException {
+    private Data readInMixedData(DataColumn[] dataColumns, boolean hasHeader, int numOfColsInDataFile, TabularDataSelection selection) throws IOException {
         int numOfCols = dataColumns.length;
-        int numOfRows = hasHeader ? countNumberOfLines() - 1 : countNumberOfLines();
 
         DiscreteDataColumn[] discreteDataColumns = new DiscreteDataColumn[numOfCols];
-        double[][] continuousData = new double[numOfCols][];
-        int[][] discreteData = new int[numOfCols][];
         for (int i = 0; i < numOfCols; i++) {
-            DataColumn dataColumn = dataColumns[i];
-
-            // initialize data
-            if (dataColumn.isDiscrete()) {
-                discreteData[i] = new int[numOfRows];
-            } else {
-                continuousData[i] = new double[numOfRows];
-            }
-
-            // initialize columns
-            discreteDataColumns[i] = new MixedTabularDataColumn(dataColumn);
+            discreteDataColumns[i] = new MixedTabularDataColumn(dataColumns[i]);
         }
 
-        readInDiscreteCategorizes(discreteDataColumns, hasHeader, numOfColsInDataFile);
-        readInMixedData(discreteDataColumns, hasHeader, continuousData, discreteData, numOfColsInDataFile);
+        double[][] continuousData = new double[numOfCols][];
+        int[][] discreteData = new int[numOfCols][];
+        int numOfRows = createParser().readInMixedData(discreteDataColumns, hasHeader, continuousData, discreteData, numOfColsInDataFile, selection);
 
         return new MixedTabularData(numOfRows, discreteDataColumns, continuousData, discreteData);
     }
 
-    private void readInMixedData(DiscreteDataColumn[] dataColumns, boolean hasHeader, double[][] continuousData, int[][] discreteData, int numOfColsInDataFile) throws IOException {
-        int numOfCols = dataColumns.length;
-        try (InputStream in = Files.newInputStream(dataFile, StandardOpenOption.READ)) {
-            boolean skipHeader = hasHeader;
-            boolean skip = false;
-            boolean hasSeenNonblankChar = false;
-            boolean hasQuoteChar = false;
-
-            byte delimChar = delimiter.getByteValue();
-
-            // comment marker check
-            byte[] comment = commentMarker.getBytes();
-            int cmntIndex = 0;
-            boolean checkForComment = comment.length > 0;
-
-            int colNum = 0;
-            int lineNum = 1;
-
-            int columnIndex = 0;
-
-            int row = 0;  // array row number
-            int col = 0;  // array column number
-
-            StringBuilder dataBuilder = new StringBuilder();
-            byte prevChar = -1;
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int len;
-            while ((len = in.read(buffer)) != -1 && !Thread.currentThread().isInterrupted()) {
-                int i = 0; // buffer array index
-
-                if (skipHeader) {
-                    boolean finished = false;
-                    for (; i < len && !finished && !Thread.currentThread().isInterrupted(); i++) {
-                        byte currChar = buffer[i];
-
-                        if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
-                            if (currChar == LINE_FEED && prevChar == CARRIAGE_RETURN) {
-                                prevChar = currChar;
-                                continue;
-                            }
-
-                            finished = hasSeenNonblankChar && !skip;
-                            if (finished) {
-                                skipHeader = false;
-                            }
-
-                            lineNum++;
-
-                            // reset states
-                            skip = false;
-                            hasSeenNonblankChar = false;
-                            cmntIndex = 0;
-                            checkForComment = comment.length > 0;
-                        } else if (!skip) {
-                            if (currChar > SPACE_CHAR) {
-                                hasSeenNonblankChar = true;
-                            }
-
-                            // skip blank chars at the begining of the line
-                            if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
-                                continue;
-                            }
-
-                            // check for comment marker to skip line
-                            if (checkForComment) {
-                                if (currChar == comment[cmntIndex]) {
-                                    cmntIndex++;
-                                    if (cmntIndex == comment.length) {
-                                        skip = true;
-                                        prevChar = currChar;
-                                        continue;
-                                    }
-                                } else {
-                                    checkForComment = false;
-                                }
-                            }
-                        }
-
-                        prevChar = currChar;
-                    }
-                }
-
-                for (; i < len && !Thread.currentThread().isInterrupted(); i++) {
-                    byte currChar = buffer[i];
-
-                    if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
-                        if (currChar == LINE_FEED && prevChar == CARRIAGE_RETURN) {
-                            prevChar = currChar;
-                            continue;
-                        }
-
-                        if (hasSeenNonblankChar && !skip) {
-                            colNum++;
-
-                            DiscreteDataColumn discreteDataColumn = dataColumns[columnIndex];
-                            DataColumn dataColumn = discreteDataColumn.getDataColumn();
-                            if (dataColumn.getColumnNumber() == colNum) {
-                                String value = dataBuilder.toString().trim();
-                                if (dataColumn.isDiscrete()) {
-                                    if (value.isEmpty() || value.equals(missingDataMarker)) {
-                                        discreteData[col++][row] = DISCRETE_MISSING_VALUE;
-                                    } else {
-                                        discreteData[col++][row] = discreteDataColumn.getEncodeValue(value);
-                                    }
-                                } else {
-                                    if (value.isEmpty() || value.equals(missingDataMarker)) {
-                                        continuousData[col++][row] = CONTINUOUS_MISSING_VALUE;
-                                    } else {
-                                        try {
-                                            continuousData[col++][row] = Double.parseDouble(value);
-                                        } catch (NumberFormatException exception) {
-                                            String errMsg = String.format("Invalid number %s on line %d at column %d.", value, lineNum, colNum);
-                                            LOGGER.error(errMsg, exception);
-                                            throw new DataReaderException(errMsg);
-                                        }
-                                    }
-                                }
-
-                                columnIndex++;
-                            }
-
-                            // ensure we have enough data
-                            if (columnIndex < numOfColsInDataFile) {
-                                String errMsg = String.format("Insufficient data on line %d.  Extracted %d value(s) but expected %d.", lineNum, columnIndex, numOfColsInDataFile);
-                                LOGGER.error(errMsg);
-                                throw new DataReaderException(errMsg);
-                            }
-
-                            row++;
-                        }
-
-                        lineNum++;
-
-                        // clear data
-                        dataBuilder.delete(0, dataBuilder.length());
-
-                        // reset states
-                        skip = false;
-                        hasSeenNonblankChar = false;
-                        cmntIndex = 0;
-                        checkForComment = comment.length > 0;
-                        columnIndex = 0;
-                        colNum = 0;
-                        col = 0;
-                    } else if (!skip) {
-                        if (currChar > SPACE_CHAR) {
-                            hasSeenNonblankChar = true;
-                        }
-
-                        // skip blank chars at the begining of the line
-                        if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
-                            continue;
-                        }
-
-                        // check for comment marker to skip line
-                        if (checkForComment) {
-                            if (currChar == comment[cmntIndex]) {
-                                cmntIndex++;
-                                if (cmntIndex == comment.length) {
-                                    skip = true;
-                                    prevChar = currChar;
-                                    continue;
-                                }
-                            } else {
-                                checkForComment = false;
-                            }
-                        }
-
-                        if (currChar == quoteCharacter) {
-                            hasQuoteChar = !hasQuoteChar;
-                        } else {
-                            if (hasQuoteChar) {
-                                dataBuilder.append((char) currChar);
-                            } else {
-                                boolean isDelimiter;
-                                switch (delimiter) {
-                                    case WHITESPACE:
-                                        isDelimiter = (currChar <= SPACE_CHAR) && (prevChar > SPACE_CHAR);
-                                        break;
-                                    default:
-                                        isDelimiter = (currChar == delimChar);
-                                }
-
-                                if (isDelimiter) {
-                                    colNum++;
-
-                                    DiscreteDataColumn discreteDataColumn = dataColumns[columnIndex];
-                                    DataColumn dataColumn = discreteDataColumn.getDataColumn();
-                                    if (dataColumn.getColumnNumber() == colNum) {
-                                        String value = dataBuilder.toString().trim();
-                                        if (dataColumn.isDiscrete()) {
-                                            if (value.isEmpty() || value.equals(missingDataMarker)) {
-                                                discreteData[col++][row] = DISCRETE_MISSING_VALUE;
-                                            } else {
-                                                discreteData[col++][row] = discreteDataColumn.getEncodeValue(value);
-                                            }
-                                        } else {
-                                            if (value.isEmpty() || value.equals(missingDataMarker)) {
-                                                continuousData[col++][row] = CONTINUOUS_MISSING_VALUE;
-                                            } else {
-                                                try {
-                                                    continuousData[col++][row] = Double.parseDouble(value);
-                                                } catch (NumberFormatException exception) {
-                                                    String errMsg = String.format("Invalid number %s on line %d at column %d.", value, lineNum, colNum);
-                                                    LOGGER.error(errMsg, exception);
-                                                    throw new DataReaderException(errMsg);
-                                                }
-                                            }
-                                        }
-
-                                        columnIndex++;
-                                        if (columnIndex == numOfCols) {
-                                            row++;
-                                            skip = true;
-                                        }
-                                    }
-
-                                    // clear data
-                                    dataBuilder.delete(0, dataBuilder.length());
-                                } else {
-                                    dataBuilder.append((char) currChar);
-                                }
-                            }
-                        }
-                    }
-
-                    prevChar = currChar;
-                }
-            }
-
-            if (!skipHeader && hasSeenNonblankChar && !skip) {
-                colNum++;
-
-                DiscreteDataColumn discreteDataColumn = dataColumns[columnIndex];
-                DataColumn dataColumn = discreteDataColumn.getDataColumn();
-                if (dataColumn.getColumnNumber() == colNum) {
-                    String value = dataBuilder.toString().trim();
-                    if (dataColumn.isDiscrete()) {
-                        if (value.isEmpty() || value.equals(missingDataMarker)) {
-                            discreteData[col++][row] = DISCRETE_MISSING_VALUE;
-                        } else {
-                            discreteData[col++][row] = discreteDataColumn.getEncodeValue(value);
-                        }
-                    } else {
-                        if (value.isEmpty() || value.equals(missingDataMarker)) {
-                            continuousData[col++][row] = CONTINUOUS_MISSING_VALUE;
-                        } else {
-                            try {
-                                continuousData[col++][row] = Double.parseDouble(value);
-                            } catch (NumberFormatException exception) {
-                                String errMsg = String.format("Invalid number %s on line %d at column %d.", value, lineNum, colNum);
-                                LOGGER.error(errMsg, exception);
-                                throw new DataReaderException(errMsg);
-                            }
-                        }
-                    }
-
-                    columnIndex++;
-                }
+    private Data readInContinuousData(DataColumn[] dataColumns, boolean hasHeader, int numOfColsInDataFile, TabularDataSelection selection) throws IOException {
+        double[][] data = createParser().readInContinuousData(dataColumns, hasHeader, numOfColsInDataFile, selection);
 
-                // ensure we have enough data
-                if (columnIndex < numOfColsInDataFile) {
-                    String errMsg = String.format("Insufficient data on line %d.  Extracted %d value(s) but expected %d.", lineNum, columnIndex, numOfColsInDataFile);
-                    LOGGER.error(errMsg);
-                    throw new DataReaderException(errMsg);
-                }
-            }
-        }
+        return new ContinuousTabularData(dataColumns, data);
     }
 
-    private Data readInContinuousData(DataColumn[] dataColumns, boolean hasHeader, int numOfColsInDataFile) throws IOException {
-        int numOfCols = dataColumns.length;
-        int numOfRows = hasHeader ? countNumberOfLines() - 1 : countNumberOfLines();
-        double[][] data = new double[numOfRows][numOfCols];
-
-        try (InputStream in = Files.newInputStream(dataFile, StandardOpenOption.READ)) {
-            boolean skipHeader = hasHeader;
-            boolean skip = false;
-            boolean hasSeenNonblankChar = false;
-            boolean hasQuoteChar = false;
-
-            byte delimChar = delimiter.getByteValue();
-
-            // comment marker check
-            byte[] comment = commentMarker.getBytes();
-            int cmntIndex = 0;
-            boolean checkForComment = comment.length > 0;
-
-            int colNum = 0;
-            int lineNum = 1;
-
-            int columnIndex = 0;
-
-            int row = 0;  // array row number
-            int col = 0;  // array column number
-
-            StringBuilder dataBuilder = new StringBuilder();
-            byte prevChar = -1;
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int len;
-            while ((len = in.read(buffer)) != -1 && !Thread.currentThread().isInterrupted()) {
-                int i = 0; // buffer array index
-
-                if (skipHeader) {
-                    boolean finished = false;
-                    for (; i < len && !finished && !Thread.currentThread().isInterrupted(); i++) {
-                        byte currChar = buffer[i];
-
-                        if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
-                            if (currChar == LINE_FEED && prevChar == CARRIAGE_RETURN) {
-                                prevChar = currChar;
-                                continue;
-                            }
-
-                            finished = hasSeenNonblankChar && !skip;
-                            if (finished) {
-                                skipHeader = false;
-                            }
-
-                            lineNum++;
-
-                            // reset states
-                            skip = false;
-                            hasSeenNonblankChar = false;
-                            cmntIndex = 0;
-                            checkForComment = comment.length > 0;
-                        } else if (!skip) {
-                            if (currChar > SPACE_CHAR) {
-                                hasSeenNonblankChar = true;
-                            }
-
-                            // skip blank chars at the begining of the line
-                            if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
-                                continue;
-                            }
-
-                            // check for comment marker to skip line
-                            if (checkForComment) {
-                                if (currChar == comment[cmntIndex]) {
-                                    cmntIndex++;
-                                    if (cmntIndex == comment.length) {
-                                        skip = true;
-                                        prevChar = currChar;
-                                        continue;
-                                    }
-                                } else {
-                                    checkForComment = false;
-                                }
-                            }
-                        }
-
-                        prevChar = currChar;
-                    }
-                }
-
-                for (; i < len && !Thread.currentThread().isInterrupted(); i++) {
-                    byte currChar = buffer[i];
-
-                    if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
-                        if (currChar == LINE_FEED && prevChar == CARRIAGE_RETURN) {
-                            prevChar = currChar;
-                            continue;
-                        }
-
-                        if (hasSeenNonblankChar && !skip) {
-                            colNum++;
-
-                            DataColumn dataColumn = dataColumns[columnIndex];
-                            if (dataColumn.getColumnNumber() == colNum) {
-                                String value = dataBuilder.toString().trim();
-                                if (value.isEmpty() || value.equals(missingDataMarker)) {
-                                    data[row][col++] = CONTINUOUS_MISSING_VALUE;
-                                } else {
-                                    try {
-                                        data[row][col++] = Double.parseDouble(value);
-                                    } catch (NumberFormatException exception) {
-                                        String errMsg = String.format("Non-continuous number %s on line %d at column %d.", value, lineNum, colNum);
-                                        LOGGER.error(errMsg, exception);
-                                        throw new DataReaderException(errMsg);
-                                    }
-                                }
-
-                                columnIndex++;
-                            }
-
-                            // ensure we have enough data
-                            if (columnIndex < numOfColsInDataFile) {
-                                String errMsg = String.format("Insufficient data on line %d.  Extracted %d value(s) but expected %d.", lineNum, columnIndex, numOfColsInDataFile);
-                                LOGGER.error(errMsg);
-                                throw new DataReaderException(errMsg);
-                            }
-
-                            row++;
-                        }
-
-                        lineNum++;
-
-                        // clear data
-                        dataBuilder.delete(0, dataBuilder.length());
-
-                        // reset states
-                        skip = false;
-                        hasSeenNonblankChar = false;
-                        cmntIndex = 0;
-                        checkForComment = comment.length > 0;
-                        columnIndex = 0;
-                        colNum = 0;
-                        col = 0;
-                    } else if (!skip) {
-                        if (currChar > SPACE_CHAR) {
-                            hasSeenNonblankChar = true;
-                        }
-
-                        // skip blank chars at the begining of the line
-                        if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
-                            continue;
-                        }
-
-                        // check for comment marker to skip line
-                        if (checkForComment) {
-                            if (currChar == comment[cmntIndex]) {
-                                cmntIndex++;
-                                if (cmntIndex == comment.length) {
-                                    skip = true;
-                                    prevChar = currChar;
-                                    continue;
-                                }
-                            } else {
-                                checkForComment = false;
-                            }
-                        }
-
-                        if (currChar == quoteCharacter) {
-                            hasQuoteChar = !hasQuoteChar;
-                        } else {
-                            if (hasQuoteChar) {
-                                dataBuilder.append((char) currChar);
-                            } else {
-                                boolean isDelimiter;
-                                switch (delimiter) {
-                                    case WHITESPACE:
-                                        isDelimiter = (currChar <= SPACE_CHAR) && (prevChar > SPACE_CHAR);
-                                        break;
-                                    default:
-                                        isDelimiter = (currChar == delimChar);
-                                }
-
-                                if (isDelimiter) {
-                                    colNum++;
-
-                                    DataColumn dataColumn = dataColumns[columnIndex];
-                                    if (dataColumn.getColumnNumber() == colNum) {
-                                        String value = dataBuilder.toString().trim();
-                                        if (value.isEmpty() || value.equals(missingDataMarker)) {
-                                            data[row][col++] = CONTINUOUS_MISSING_VALUE;
-                                        } else {
-                                            try {
-                                                data[row][col++] = Double.parseDouble(value);
-                                            } catch (NumberFormatException exception) {
-                                                String errMsg = String.format("Non-continuous number %s on line %d at column %d.", value, lineNum, colNum);
-                                                LOGGER.error(errMsg, exception);
-                                                throw new DataReaderException(errMsg);
-                                            }
-                                        }
-
-                                        columnIndex++;
-                                        if (columnIndex == numOfCols) {
-                                            row++;
-                                            skip = true;
-                                        }
-                                    }
-
-                                    // clear data
-                                    dataBuilder.delete(0, dataBuilder.length());
-                                } else {
-                                    dataBuilder.append((char) currChar);
-                                }
-                            }
-                        }
-                    }
-
-                    prevChar = currChar;
-                }
-            }
-
-            if (!skipHeader && hasSeenNonblankChar && !skip) {
-                colNum++;
-
-                DataColumn dataColumn = dataColumns[columnIndex];
-                if (dataColumn.getColumnNumber() == colNum) {
-                    String value = dataBuilder.toString().trim();
-                    if (value.isEmpty() || value.equals(missingDataMarker)) {
-                        data[row][col++] = CONTINUOUS_MISSING_VALUE;
-                    } else {
-                        try {
-                            data[row][col++] = Double.parseDouble(value);
-                        } catch (NumberFormatException exception) {
-                            String errMsg = String.format("Non-continuous number %s on line %d at column %d.", value, lineNum, colNum);
-                            LOGGER.error(errMsg, exception);
-                            throw new DataReaderException(errMsg);
-                        }
-                    }
-
-                    columnIndex++;
-                }
-
-                // ensure we have enough data
-                if (columnIndex < numOfColsInDataFile) {
-                    String errMsg = String.format("Insufficient data on line %d.  Extracted %d value(s) but expected %d.", lineNum, columnIndex, numOfColsInDataFile);
-                    LOGGER.error(errMsg);
-                    throw new DataReaderException(errMsg);
-                }
-            }
-        }
-
-        return new ContinuousTabularData(dataColumns, data);
+    private ParallelTabularDataParser createParser() {
+        return new ParallelTabularDataParser(dataFile, delimiter, quoteCharacter, commentMarker, missingDataMarker, chunkSize);
     }
 
-    private Data readInDiscreteData(DataColumn[] dataColumns, boolean hasHeader, int numOfColsInDataFile) throws IOException {
+    private Data readInDiscreteData(DataColumn[] dataColumns, boolean hasHeader, int numOfColsInDataFile, TabularDataSelection selection) throws IOException {
         DiscreteDataColumn[] discreteDataColumns = Arrays.stream(dataColumns)
                 .map(DiscreteTabularDataColumn::new)
                 .toArray(DiscreteDataColumn[]::new);
+
+        if (selection != null && selection.isRowSelection()) {
+            // the parallel parser selects rows as it goes, and encodes categories the same way
+            int numOfCols = dataColumns.length;
+            int[][] data = new int[numOfCols][];
+            createParser().readInMixedData(discreteDataColumns, hasHeader, new double[numOfCols][], data, numOfColsInDataFile, selection);
+
+            return new VerticalDiscreteTabularData(discreteDataColumns, data);
+        }
+
         readInDiscreteCategorizes(discreteDataColumns, hasHeader, numOfColsInDataFile);
 
         int[][] data = readInDiscreteData(discreteDataColumns, hasHeader, numOfColsInDataFile);
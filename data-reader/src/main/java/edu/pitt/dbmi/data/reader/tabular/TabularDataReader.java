@@ -51,4 +51,16 @@ public interface TabularDataReader extends DatasetReader {
 
     public Data read(DataColumn[] dataColumns, boolean hasHeader, Metadata metadata) throws IOException;
 
+    /**
+     * Read in the data, selecting rows as they are parsed.
+     *
+     * @param dataColumns columns to read in
+     * @param hasHeader
+     * @param metadata interventional columns, or null
+     * @param selection rows to read in, or null for all rows
+     * @return
+     * @throws IOException
+     */
+    public Data read(DataColumn[] dataColumns, boolean hasHeader, Metadata metadata, TabularDataSelection selection) throws IOException;
+
 }
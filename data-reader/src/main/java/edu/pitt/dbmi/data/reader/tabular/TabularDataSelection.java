@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2026 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.tabular;
+
+import edu.pitt.dbmi.data.reader.DataColumn;
+import edu.pitt.dbmi.data.reader.DataReaderException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Says which columns and rows of tabular data to read in, so that they can
+ * be selected while the file is parsed instead of after the whole file has
+ * been read in.
+ *
+ * Rows are numbered from 0 in the order of the data lines of the file,
+ * leaving out the header, blank lines and comments, and, if rows with
+ * missing values are excluded, those rows. The rows read in are the given
+ * rows (all rows, if none are given) that pass the row filter, if there is
+ * one; if a sample is asked for, it is drawn from those rows. A row listed
+ * or drawn more than once is read in that many times. The rows read in are
+ * in file order, whatever the order of the given rows or of the draws.
+ *
+ * @author agent
+ */
+public final class TabularDataSelection {
+
+    private Set<String> namesOfColumnsToInclude;
+    private int[] rows;
+    private IntPredicate rowFilter;
+    private boolean excludeRowsWithMissingValues;
+
+    // a negative sample size means no sampling
+    private int sampleSize = -1;
+    private boolean sampleWithReplacement;
+    private long seed;
+
+    public TabularDataSelection() {
+    }
+
+    public Set<String> getNamesOfColumnsToInclude() {
+        return (namesOfColumnsToInclude == null)
+                ? null
+                : Collections.unmodifiableSet(namesOfColumnsToInclude);
+    }
+
+    /**
+     * Set the names of the columns to read in.
+     *
+     * @param namesOfColumnsToInclude column names, or null for all columns
+     */
+    public void setNamesOfColumnsToInclude(Set<String> namesOfColumnsToInclude) {
+        this.namesOfColumnsToInclude = (namesOfColumnsToInclude == null)
+                ? null
+                : new HashSet<>(namesOfColumnsToInclude);
+    }
+
+    public int[] getRows() {
+        return (rows == null) ? null : rows.clone();
+    }
+
+    /**
+     * Set the rows to read in.
+     *
+     * @param rows row numbers, counting from 0, or null for all rows
+     */
+    public void setRows(int[] rows) {
+        if (rows != null) {
+            for (int row : rows) {
+                if (row < 0) {
+                    throw new IllegalArgumentException("Row numbers must be nonnegative: " + row);
+                }
+            }
+        }
+
+        this.rows = (rows == null) ? null : rows.clone();
+    }
+
+    public IntPredicate getRowFilter() {
+        return rowFilter;
+    }
+
+    /**
+     * Set a test of the row number that a row must pass to be read in.
+     *
+     * @param rowFilter a test of the row number, or null to read in all rows
+     */
+    public void setRowFilter(IntPredicate rowFilter) {
+        this.rowFilter = rowFilter;
+    }
+
+    public boolean isExcludeRowsWithMissingValues() {
+        return excludeRowsWithMissingValues;
+    }
+
+    /**
+     * Set true to leave out rows with a missing value in any of the columns
+     * read in.
+     *
+     * @param excludeRowsWithMissingValues
+     */
+    public void setExcludeRowsWithMissingValues(boolean excludeRowsWithMissingValues) {
+        this.excludeRowsWithMissingValues = excludeRowsWithMissingValues;
+    }
+
+    /**
+     * Read in a bootstrap sample, drawn with replacement from the selected
+     * rows.
+     *
+     * @param sampleSize number of rows to draw
+     * @param seed seed of the random number generator
+     */
+    public void setBootstrapSample(int sampleSize, long seed) {
+        setSample(sampleSize, true, seed);
+    }
+
+    /**
+     * Read in a random subsample, drawn without replacement from the
+     * selected rows.
+     *
+     * @param sampleSize number of rows to draw
+     * @param seed seed of the random number generator
+     */
+    public void setRandomSample(int sampleSize, long seed) {
+        setSample(sampleSize, false, seed);
+    }
+
+    /**
+     * Do not sample the selected rows.
+     */
+    public void clearSample() {
+        this.sampleSize = -1;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public boolean isSampleWithReplacement() {
+        return sampleWithReplacement;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    private void setSample(int sampleSize, boolean withReplacement, long seed) {
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("Sample size must be nonnegative: " + sampleSize);
+        }
+
+        this.sampleSize = sampleSize;
+        this.sampleWithReplacement = withReplacement;
+        this.seed = seed;
+    }
+
+    /**
+     * True if rows are to be left out or repeated.
+     */
+    boolean isRowSelection() {
+        return excludeRowsWithMissingValues || isRowNumberSelection();
+    }
+
+    /**
+     * True if rows are selected by row number, so that the rows must be
+     * counted before they can be read in.
+     */
+    boolean isRowNumberSelection() {
+        return rows != null || rowFilter != null || sampleSize >= 0;
+    }
+
+    /**
+     * Leaves out the columns not to be read in.
+     */
+    DataColumn[] selectColumns(DataColumn[] dataColumns) {
+        if (namesOfColumnsToInclude == null) {
+            return dataColumns;
+        }
+
+        Set<String> names = new HashSet<>();
+        for (DataColumn dataColumn : dataColumns) {
+            names.add(dataColumn.getName());
+        }
+
+        for (String name : namesOfColumnsToInclude) {
+            if (!names.contains(name)) {
+                throw new DataReaderException(String.format("There is no column named %s.", name));
+            }
+        }
+
+        return Arrays.stream(dataColumns)
+                .filter(e -> e.isGenerated() || namesOfColumnsToInclude.contains(e.getName()))
+                .toArray(DataColumn[]::new);
+    }
+
+    /**
+     * Gives the number of times each row is to be read in.
+     *
+     * @param numOfRows number of rows that can be selected
+     * @return the number of copies of each row
+     */
+    int[] getRowCopies(int numOfRows) {
+        IntStream selected;
+        if (rows == null) {
+            selected = IntStream.range(0, numOfRows);
+        } else {
+            for (int row : rows) {
+                if (row >= numOfRows) {
+                    throw new DataReaderException(String.format("Row %d is out of range; there are %d rows.", row, numOfRows));
+                }
+            }
+
+            selected = Arrays.stream(rows);
+        }
+
+        int[] population = (rowFilter == null)
+                ? selected.toArray()
+                : selected.filter(rowFilter).toArray();
+
+        int[] copies = new int[numOfRows];
+        if (sampleSize < 0) {
+            for (int row : population) {
+                copies[row]++;
+            }
+
+            return copies;
+        }
+
+        int size = population.length;
+        Random random = new Random(seed);
+        if (sampleWithReplacement) {
+            if (size == 0 && sampleSize > 0) {
+                throw new DataReaderException("Cannot draw a sample; no rows are selected.");
+            }
+
+            for (int i = 0; i < sampleSize; i++) {
+                copies[population[random.nextInt(size)]]++;
+            }
+        } else {
+            if (sampleSize > size) {
+                throw new DataReaderException(String.format("Cannot draw %d rows without replacement from %d rows.", sampleSize, size));
+            }
+
+            // partial Fisher-Yates shuffle
+            for (int i = 0; i < sampleSize; i++) {
+                int j = i + random.nextInt(size - i);
+                int row = population[j];
+                population[j] = population[i];
+                population[i] = row;
+                copies[row]++;
+            }
+        }
+
+        return copies;
+    }
+
+}
@@ -37,6 +37,16 @@ public interface TabularDatasetReader extends DatasetReader {
 
     public Data readInData(int[] columnsToExclude) throws IOException;
 
+    /**
+     * Read in the columns and rows given by the selection, selecting them as
+     * the file is parsed.
+     *
+     * @param selection columns and rows to read in
+     * @return
+     * @throws IOException
+     */
+    public Data readInData(TabularDataSelection selection) throws IOException;
+
     public void setHasHeader(boolean hasHeader);
 
 }
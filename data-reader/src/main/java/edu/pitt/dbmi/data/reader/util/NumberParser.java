@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2026 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.util;
+
+/**
+ * Converts numbers from the bytes of a file without making strings.
+ *
+ * @author agent
+ */
+public final class NumberParser {
+
+    // powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private NumberParser() {
+    }
+
+    /**
+     * Converts a plain decimal number, [sign] digits [. digits] [e [sign]
+     * digits], whose value is exactly the product or quotient of a double
+     * and an exactly representable power of ten, so that the result is
+     * correctly rounded. Returns NaN for anything else, which should be
+     * passed to Double.parseDouble.
+     */
+    public static double parseDecimal(byte[] value, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (value[i] == '-' || value[i] == '+')) {
+            negative = value[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int numOfDigits = 0;      // significant digits in the mantissa
+        int exponent = 0;
+        boolean hasDigits = false;
+
+        for (; i < to && value[i] >= '0' && value[i] <= '9'; i++) {
+            hasDigits = true;
+            if (mantissa == 0 && value[i] == '0') {
+                continue;
+            }
+            if (++numOfDigits > 18) {
+                return Double.NaN;
+            }
+            mantissa = 10 * mantissa + (value[i] - '0');
+        }
+
+        if (i < to && value[i] == '.') {
+            i++;
+            for (; i < to && value[i] >= '0' && value[i] <= '9'; i++) {
+                hasDigits = true;
+                exponent--;
+                if (mantissa == 0 && value[i] == '0') {
+                    continue;
+                }
+                if (++numOfDigits > 18) {
+                    return Double.NaN;
+                }
+                mantissa = 10 * mantissa + (value[i] - '0');
+            }
+        }
+
+        if (!hasDigits) {
+            return Double.NaN;
+        }
+
+        if (i < to && (value[i] == 'e' || value[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (value[i] == '-' || value[i] == '+')) {
+                negativeExponent = value[i] == '-';
+                i++;
+            }
+
+            if (i == to) {
+                return Double.NaN;
+            }
+
+            int exp = 0;
+            for (; i < to && value[i] >= '0' && value[i] <= '9'; i++) {
+                if (exp > 100000) {
+                    return Double.NaN;
+                }
+                exp = 10 * exp + (value[i] - '0');
+            }
+
+            exponent += negativeExponent ? -exp : exp;
+        }
+
+        if (i != to || mantissa >= (1L << 53)) {
+            return Double.NaN;
+        }
+
+        double number;
+        if (mantissa == 0) {
+            number = 0.0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            number = (double) mantissa * POWERS_OF_TEN[exponent];
+            if (number >= (double) (1L << 53) && exponent > 0) {
+                // the product may have been rounded; let Double.parseDouble decide
+                return Double.NaN;
+            }
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            number = (double) mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.NaN;
+        }
+
+        return negative ? -number : number;
+    }
+
+}
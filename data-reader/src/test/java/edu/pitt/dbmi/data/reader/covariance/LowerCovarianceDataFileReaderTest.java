@@ -81,4 +81,26 @@ public class LowerCovarianceDataFileReaderTest {
         }
     }
 
+    /**
+     * Test of readInData method, of class LowerCovarianceDataFileReader, when
+     * the file is parsed in many small chunks.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testReadInDataInChunks() throws IOException {
+        for (Path dataFile : dataFiles) {
+            LowerCovarianceDataFileReader dataFileReader = new LowerCovarianceDataFileReader(dataFile, delimiter);
+            dataFileReader.setCommentMarker(commentMarker);
+            dataFileReader.setQuoteCharacter(quoteCharacter);
+
+            double[][] expected = dataFileReader.readInData().getData();
+
+            dataFileReader.setChunkSize(37);
+            double[][] actual = dataFileReader.readInData().getData();
+
+            Assert.assertArrayEquals(expected, actual);
+        }
+    }
+
 }
@@ -55,6 +55,62 @@ public class ContinuousTabularDatasetFileReaderTest {
     public ContinuousTabularDatasetFileReaderTest() {
     }
 
+    /**
+     * Test of readInData method, of class ContinuousTabularDataReader.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testReadInDataWithSelection() throws IOException {
+        for (Path dataFile : dataFiles) {
+            ContinuousTabularDatasetReader dataReader = new ContinuousTabularDatasetFileReader(dataFile, delimiter);
+            dataReader.setCommentMarker(commentMarker);
+            dataReader.setQuoteCharacter(quoteCharacter);
+            dataReader.setMissingDataMarker(missingValueMarker);
+            dataReader.setHasHeader(hasHeader);
+
+            double[][] allData = ((ContinuousData) dataReader.readInData()).getData();
+
+            TabularDataSelection selection = new TabularDataSelection();
+            selection.setNamesOfColumnsToInclude(new HashSet<>(Arrays.asList("X2", "X5")));
+            selection.setRows(new int[]{7, 1, 3, 1});
+
+            ContinuousData continuousData = (ContinuousData) dataReader.readInData(selection);
+            DataColumn[] dataColumns = continuousData.getDataColumns();
+            double[][] contData = continuousData.getData();
+
+            long expected = 2;
+            long actual = dataColumns.length;
+            Assert.assertEquals(expected, actual);
+
+            // rows are read in in file order
+            int[] rows = {1, 1, 3, 7};
+            expected = rows.length;
+            actual = contData.length;
+            Assert.assertEquals(expected, actual);
+            for (int i = 0; i < rows.length; i++) {
+                Assert.assertEquals(allData[rows[i]][1], contData[i][0], 0);
+                Assert.assertEquals(allData[rows[i]][4], contData[i][1], 0);
+            }
+
+            selection = new TabularDataSelection();
+            selection.setBootstrapSample(50, 2019);
+
+            contData = ((ContinuousData) dataReader.readInData(selection)).getData();
+            expected = 50;
+            actual = contData.length;
+            Assert.assertEquals(expected, actual);
+
+            selection = new TabularDataSelection();
+            selection.setRandomSample(5, 2019);
+
+            contData = ((ContinuousData) dataReader.readInData(selection)).getData();
+            expected = 5;
+            actual = contData.length;
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
     /**
      * Test of readInData method, of class ContinuousTabularDataReader.
      *
@@ -759,6 +759,47 @@ public class TabularDataFileReaderTest {
         }
     }
 
+    /**
+     * Test of reading data in many small chunks, of class
+     * TabularDataFileReader.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testReadInDataInChunks() throws IOException {
+        for (Path dataFile : continuousDataFiles) {
+            double[][] expected = ((ContinuousData) readInData(dataFile, false, TabularDataFileReader.DEFAULT_CHUNK_SIZE)).getData();
+            double[][] actual = ((ContinuousData) readInData(dataFile, false, 16)).getData();
+            Assert.assertArrayEquals(expected, actual);
+        }
+
+        for (Path dataFile : mixedDataFiles) {
+            MixedTabularData expected = (MixedTabularData) readInData(dataFile, true, TabularDataFileReader.DEFAULT_CHUNK_SIZE);
+            MixedTabularData actual = (MixedTabularData) readInData(dataFile, true, 16);
+            Assert.assertEquals(expected.getNumOfRows(), actual.getNumOfRows());
+            Assert.assertArrayEquals(expected.getContinuousData(), actual.getContinuousData());
+            Assert.assertArrayEquals(expected.getDiscreteData(), actual.getDiscreteData());
+        }
+    }
+
+    private Data readInData(Path dataFile, boolean isMixed, long chunkSize) throws IOException {
+        TabularColumnReader columnReader = new TabularColumnFileReader(dataFile, delimiter);
+        columnReader.setCommentMarker(commentMarker);
+        columnReader.setQuoteCharacter(quoteCharacter);
+        DataColumn[] dataColumns = columnReader.readInDataColumns(isMixed);
+
+        TabularDataFileReader dataReader = new TabularDataFileReader(dataFile, delimiter);
+        dataReader.setCommentMarker(commentMarker);
+        dataReader.setQuoteCharacter(quoteCharacter);
+        dataReader.setMissingDataMarker(missingValueMarker);
+        dataReader.setChunkSize(chunkSize);
+        if (isMixed) {
+            dataReader.determineDiscreteDataColumns(dataColumns, 4, hasHeader);
+        }
+
+        return dataReader.read(dataColumns, hasHeader);
+    }
+
     /**
      * Test of determineDiscreteDataColumns method, of class
      * TabularColumnFileReader.
@@ -21,6 +21,8 @@
 package edu.cmu.tetrad.data;
 
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.stat.correlation.ColumnVectors;
+import edu.cmu.tetrad.stat.correlation.StreamingCovariance;
 import edu.cmu.tetrad.util.NumberFormatUtil;
 import edu.cmu.tetrad.util.TetradAlgebra;
 import edu.cmu.tetrad.util.Matrix;
@@ -102,12 +104,36 @@ public class CovarianceMatrix implements ICovarianceMatrix {
             throw new IllegalArgumentException("Not a continuous data set.");
         }
 
-        CovariancesDoubleForkJoin covariances = new CovariancesDoubleForkJoin(dataSet.getDoubleData().toArray(), biasCorrected);
+        CovariancesDoubleForkJoin covariances;
+
+        // Data boxes that can hand out columns are read without making a copy of the data.
+        if (dataSet instanceof BoxDataSet && ((BoxDataSet) dataSet).getDataBox() instanceof ColumnVectors) {
+            covariances = new CovariancesDoubleForkJoin((ColumnVectors) ((BoxDataSet) dataSet).getDataBox(), biasCorrected);
+        } else {
+            covariances = new CovariancesDoubleForkJoin(dataSet.getDoubleData().toArray(), biasCorrected);
+        }
+
         this.variables = Collections.unmodifiableList(dataSet.getVariables());
         this.sampleSize = dataSet.getNumRows();
         this._covariancesMatrix = new Matrix(covariances.getMatrix());
     }
 
+    /**
+     * Constructs a covariance matrix from rows of continuous data read one at a
+     * time, for data that need not be held in memory. The values in each row
+     * are in the order of the variables.
+     */
+    public static CovarianceMatrix fromRows(List<Node> variables, Iterator<double[]> rows, boolean biasCorrected) {
+        StreamingCovariance covariance = new StreamingCovariance(variables.size());
+        covariance.addAll(rows);
+
+        if (covariance.getNumOfRows() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many rows for the sample size: " + covariance.getNumOfRows());
+        }
+
+        return new CovarianceMatrix(variables, covariance.getCovariance(biasCorrected), (int) covariance.getNumOfRows());
+    }
+
     /**
      * Protected constructor to construct a new covariance matrix using the
      * supplied continuous variables and the the given symmetric, positive
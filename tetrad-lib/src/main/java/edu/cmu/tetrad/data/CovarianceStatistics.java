@@ -0,0 +1,287 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.stat.correlation.StreamingCovariance;
+import edu.cmu.tetrad.util.TetradSerializable;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.*;
+
+/**
+ * Sufficient statistics for the covariance matrix of continuous data--the number of rows, the means and the
+ * sums of products of deviations from the means--over a fixed list of variables. Rows or whole data sets may
+ * be added as they arrive, and the statistics for different data sets over the same variables (batches
+ * arriving over time, shards, or data sets to be pooled) may be merged, without the data being kept or
+ * concatenated. A covariance matrix for all of the rows added may be had at any time for the cost of a copy
+ * of the p x p matrix, so a search may be rerun after new data arrive without the covariances being
+ * calculated from scratch.
+ * <p>
+ * Data sets and statistics are matched to these variables by name, so their columns may be in any order.
+ * Missing values are not allowed.
+ *
+ * @author agent
+ * @see StreamingCovariance
+ */
+public class CovarianceStatistics implements TetradSerializable {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The variables, in order.
+     *
+     * @serial Cannot be null.
+     */
+    private final List<Node> variables;
+
+    /**
+     * The running totals.
+     *
+     * @serial Cannot be null.
+     */
+    private final StreamingCovariance covariance;
+
+    //=============================CONSTRUCTORS=========================//
+
+    /**
+     * Constructs statistics for the given variables with no rows added.
+     */
+    public CovarianceStatistics(List<Node> variables) {
+        if (variables.isEmpty()) {
+            throw new IllegalArgumentException("There must be at least one variable.");
+        }
+
+        this.variables = Collections.unmodifiableList(new ArrayList<>(variables));
+        this.covariance = new StreamingCovariance(variables.size());
+    }
+
+    /**
+     * Constructs statistics for the variables of the given continuous data set, with its rows added.
+     */
+    public CovarianceStatistics(DataSet dataSet) {
+        this(dataSet.getVariables());
+        add(dataSet);
+    }
+
+    private CovarianceStatistics(List<Node> variables, StreamingCovariance covariance) {
+        this.variables = variables;
+        this.covariance = covariance;
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static CovarianceStatistics serializableInstance() {
+        return new CovarianceStatistics(Collections.singletonList(new ContinuousVariable("X")));
+    }
+
+    //============================PUBLIC METHODS=========================//
+
+    /**
+     * Adds a row of values of the variables, in order.
+     */
+    public void add(double[] row) {
+        covariance.add(row);
+    }
+
+    /**
+     * Adds the rows of the given continuous data set, which must contain variables with the names of these
+     * variables.
+     *
+     * @throws IllegalArgumentException if the data set is not continuous, is missing one of the variables, or
+     *                                  has a missing value in one of their columns.
+     */
+    public void add(DataSet dataSet) {
+        if (!dataSet.isContinuous()) {
+            throw new IllegalArgumentException("Not a continuous data set.");
+        }
+
+        int[] columns = columns(dataSet.getVariableNames());
+        double[] row = new double[columns.length];
+
+        for (int i = 0; i < dataSet.getNumRows(); i++) {
+            for (int j = 0; j < columns.length; j++) {
+                row[j] = dataSet.getDouble(i, columns[j]);
+
+                if (Double.isNaN(row[j])) {
+                    throw new IllegalArgumentException("Missing value for " + variables.get(j) + " in row "
+                            + (i + 1) + "; please remove or impute missing values.");
+                }
+            }
+
+            covariance.add(row);
+        }
+    }
+
+    /**
+     * Adds the rows counted by the given statistics, as if they had been added to these. The other statistics
+     * must be over variables with the names of these variables and are not changed.
+     */
+    public void merge(CovarianceStatistics statistics) {
+        if (statistics.variables.size() != variables.size()) {
+            throw new IllegalArgumentException("Expected the variables " + names(variables) + " but found "
+                    + names(statistics.variables));
+        }
+
+        int[] columns = columns(names(statistics.variables));
+        StreamingCovariance other = statistics.covariance;
+
+        if (isIdentity(columns)) {
+            covariance.merge(other);
+            return;
+        }
+
+        // Puts the other totals in the order of these variables.
+        double[] otherMeans = other.getMeans();
+        double[][] otherCoMoments = other.getCoMoments();
+        double[] means = new double[columns.length];
+        double[][] coMoments = new double[columns.length][columns.length];
+
+        for (int i = 0; i < columns.length; i++) {
+            means[i] = otherMeans[columns[i]];
+
+            for (int j = 0; j < columns.length; j++) {
+                coMoments[i][j] = otherCoMoments[columns[i]][columns[j]];
+            }
+        }
+
+        covariance.merge(new StreamingCovariance(other.getNumOfRows(), means, coMoments));
+    }
+
+    /**
+     * @return statistics with the same totals, which may be added to separately.
+     */
+    public CovarianceStatistics copy() {
+        return new CovarianceStatistics(variables, covariance.copy());
+    }
+
+    /**
+     * @return the variables (unmodifiable).
+     */
+    public List<Node> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return the number of rows added.
+     */
+    public long getSampleSize() {
+        return covariance.getNumOfRows();
+    }
+
+    /**
+     * @return the means of the variables over the rows added.
+     */
+    public double[] getMeans() {
+        return covariance.getMeans();
+    }
+
+    /**
+     * @return the bias-corrected covariance matrix of the rows added.
+     */
+    public ICovarianceMatrix getCovarianceMatrix() {
+        return getCovarianceMatrix(true);
+    }
+
+    /**
+     * @param biasCorrected true to divide by N - 1 rather than N, as CovarianceMatrix(DataSet, boolean) does.
+     * @return the covariance matrix of the rows added.
+     * @throws IllegalStateException if fewer than two rows have been added or there are too many rows for an
+     *                               int sample size.
+     */
+    public ICovarianceMatrix getCovarianceMatrix(boolean biasCorrected) {
+        long sampleSize = getSampleSize();
+
+        if (sampleSize < 2) {
+            throw new IllegalStateException("At least two rows are needed for a covariance matrix: " + sampleSize);
+        }
+
+        if (sampleSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many rows for the sample size: " + sampleSize);
+        }
+
+        return new CovarianceMatrix(variables, covariance.getCovariance(biasCorrected), (int) sampleSize);
+    }
+
+    public String toString() {
+        return "Covariance statistics, N = " + getSampleSize() + ", variables = " + names(variables);
+    }
+
+    //========================PRIVATE METHODS============================//
+
+    // For each of these variables, the index of its name in the given names.
+    private int[] columns(List<String> names) {
+        int[] columns = new int[variables.size()];
+
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = names.indexOf(variables.get(j).getName());
+
+            if (columns[j] == -1) {
+                throw new IllegalArgumentException("Variable " + variables.get(j) + " is missing.");
+            }
+        }
+
+        return columns;
+    }
+
+    private static List<String> names(List<Node> variables) {
+        List<String> names = new ArrayList<>();
+
+        for (Node variable : variables) {
+            names.add(variable.getName());
+        }
+
+        return names;
+    }
+
+    private static boolean isIdentity(int[] columns) {
+        for (int j = 0; j < columns.length; j++) {
+            if (columns[j] != j) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds semantic checks to the default deserialization method. This method
+     * must have the standard signature for a readObject method, and the body of
+     * the method must begin with "s.defaultReadObject();". Other than that, any
+     * semantic checks can be specified and do not need to stay the same from
+     * version to version. A readObject method of this form may be added to any
+     * class, even if Tetrad sessions were previously saved out using a version
+     * of the class that didn't include it. (That's what the
+     * "s.defaultReadObject();" is for. See J. Bloch, Effective Java, for help.
+     */
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (variables == null) {
+            throw new NullPointerException();
+        }
+
+        if (covariance == null) {
+            throw new NullPointerException();
+        }
+    }
+}
@@ -18,10 +18,13 @@
  */
 package edu.cmu.tetrad.data;
 
+import edu.cmu.tetrad.stat.correlation.BlockedCovariance;
+import edu.cmu.tetrad.stat.correlation.ColumnVectors;
 import edu.cmu.tetrad.stat.correlation.RealCovarianceMatrixForkJoin;
 
 /**
- * Computes covariances using the standard calculation.
+ * Computes covariances using the standard calculation. Data given by rows is
+ * computed by tiles with BlockedCovariance.
  *
  * @author Kevin V. Bui (kvb2@pitt.edu)
  * @author Joseph D. Ramsey
@@ -34,6 +37,14 @@ public class CovariancesDoubleForkJoin {
 
     public CovariancesDoubleForkJoin(double[][] data, boolean biasCorrected) {
         this.numOfCols = data[0].length;
+        this.covariances = new BlockedCovariance(data).compute(biasCorrected);
+    }
+
+    /**
+     * Computes covariances reading the data a column at a time.
+     */
+    public CovariancesDoubleForkJoin(ColumnVectors data, boolean biasCorrected) {
+        this.numOfCols = data.getNumOfCols();
         RealCovarianceMatrixForkJoin cov = new RealCovarianceMatrixForkJoin(data, 10 * Runtime.getRuntime().availableProcessors());
         this.covariances = cov.compute(biasCorrected);
     }
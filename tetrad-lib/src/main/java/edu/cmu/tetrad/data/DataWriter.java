@@ -22,14 +22,19 @@
 package edu.cmu.tetrad.data;
 
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
 import edu.cmu.tetrad.util.NumberFormatUtil;
 
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.Writer;
+import java.io.*;
+import java.text.FieldPosition;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -39,6 +44,9 @@ import java.util.stream.Collectors;
  */
 public final class DataWriter {
 
+    // The number of entries of a covariance matrix formatted by one task when writing the matrix as text.
+    private static final int COV_BLOCK_ENTRIES = 1 << 16;
+
     /**
      * Writes a dataset to file. The dataset may have continuous and/or discrete
      * columns. Note that <code>out</code> is not closed by this method, so
@@ -181,9 +189,10 @@ public final class DataWriter {
 
 
     /**
-     * Writes the lower triangle of a covariance matrix to file.  Note that
-     * <code>out</code> is not closed by this method, so the close method on
-     * <code>out</code> will need to be called externally.
+     * Writes the lower triangle of a covariance matrix to file, in the format read by
+     * LowerCovarianceDataFileReader. Blocks of rows are formatted in parallel, each with its own copy of
+     * <code>nf</code>, and written in order, so the output is the same as if the entries were formatted one
+     * at a time. <code>out</code> is closed by this method.
      *
      * @param out The writer to write the output to.
      */
@@ -206,22 +215,170 @@ public final class DataWriter {
             }
         }
 
-        for (int j = 0; j < numVars; j++) {
-            for (int i = 0; i <= j; i++) {
-                double value = covMatrix.getValue(i, j);
-                if (Double.isNaN(value)) {
-                    out.print("*");
-                } else {
-                    out.print(nf.format(value));
+        ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        int batchSize = 4 * pool.getParallelism();
+        int row = 0;
+
+        while (row < numVars) {
+            List<Callable<String>> tasks = new ArrayList<>();
+
+            while (row < numVars && tasks.size() < batchSize) {
+                int from = row;
+
+                // Row j has j + 1 entries.
+                long entries = 0;
+                while (row < numVars && entries < COV_BLOCK_ENTRIES) entries += ++row;
+
+                int to = row;
+
+                // NumberFormat is not thread-safe, so each task gets its own copy, made here.
+                NumberFormat taskNf = (NumberFormat) nf.clone();
+                tasks.add(() -> formatCovRows(covMatrix, from, to, taskNf));
+            }
+
+            for (Future<String> rows : pool.invokeAll(tasks)) {
+                try {
+                    out.print(rows.get());
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new RuntimeException("Could not format the covariance matrix.", e);
                 }
-                
-                out.print((i < j)  ? "\t" : "\n");
             }
         }
+
         out.flush();
         out.close();
     }
 
+    /**
+     * Writes the lower triangle of a covariance matrix to file in the binary format mapped by
+     * MappedCovarianceMatrix. After a header giving the sample size and the variable names, rows 0 through
+     * n - 1 of the lower triangle follow as doubles, row i holding the entries (i, 0) through (i, i).
+     *
+     * @param covMatrix The covariance matrix to save.
+     * @param file      The file to write to.
+     * @throws IOException If there is some problem writing the file.
+     */
+    public static void writeCovMatrixBinary(ICovarianceMatrix covMatrix, File file) throws IOException {
+        List<String> variables = covMatrix.getVariableNames();
+        int numVars = variables.size();
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(covMatrix.getSampleSize());
+        header.writeInt(numVars);
+        for (String variable : variables) header.writeUTF(variable);
+        header.flush();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeLong(MappedCovarianceMatrix.MAGIC);
+            out.writeInt(MappedCovarianceMatrix.VERSION);
+            out.writeInt(headerBytes.size());
+            headerBytes.writeTo(out);
+
+            long position = 16 + headerBytes.size();
+
+            for (long aligned = MappedColumnDataBox.align(position); position < aligned; position++) {
+                out.writeByte(0);
+            }
+
+            for (int i = 0; i < numVars; i++) {
+                for (int j = 0; j <= i; j++) {
+                    out.writeDouble(covMatrix.getValue(i, j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a dataset to file in the columnar binary format read by MappedColumnDataBox, with continuous
+     * columns stored as doubles.
+     *
+     * @param dataSet The data set to save.
+     * @param file    The file to write to.
+     * @throws IOException If there is some problem writing the file.
+     */
+    public static void writeColumnarData(DataSet dataSet, File file) throws IOException {
+        writeColumnarData(dataSet, file, false);
+    }
+
+    /**
+     * Writes a dataset to file in the columnar binary format read by MappedColumnDataBox. Discrete columns are
+     * stored as byte codes if they have at most 128 categories, otherwise as ints.
+     *
+     * @param dataSet The data set to save.
+     * @param file    The file to write to.
+     * @param floats  True if continuous columns should be stored as floats, halving their size.
+     * @throws IOException If there is some problem writing the file.
+     */
+    public static void writeColumnarData(DataSet dataSet, File file, boolean floats) throws IOException {
+        int numRows = dataSet.getNumRows();
+        int numCols = dataSet.getNumColumns();
+        byte[] types = new byte[numCols];
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(numRows);
+        header.writeInt(numCols);
+
+        for (int j = 0; j < numCols; j++) {
+            Node variable = dataSet.getVariable(j);
+
+            if (variable instanceof DiscreteVariable) {
+                List<String> categories = ((DiscreteVariable) variable).getCategories();
+                types[j] = categories.size() <= 128 ? MappedColumnDataBox.BYTE : MappedColumnDataBox.INT;
+
+                header.writeByte(MappedColumnDataBox.DISCRETE);
+                header.writeByte(types[j]);
+                header.writeUTF(variable.getName());
+                header.writeInt(categories.size());
+                for (String category : categories) header.writeUTF(category);
+            } else if (variable instanceof ContinuousVariable) {
+                types[j] = floats ? MappedColumnDataBox.FLOAT : MappedColumnDataBox.DOUBLE;
+
+                header.writeByte(MappedColumnDataBox.CONTINUOUS);
+                header.writeByte(types[j]);
+                header.writeUTF(variable.getName());
+            } else {
+                throw new IllegalArgumentException("Only continuous and discrete variables can be written: " + variable);
+            }
+        }
+
+        header.flush();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeLong(MappedColumnDataBox.MAGIC);
+            out.writeInt(MappedColumnDataBox.VERSION);
+            out.writeInt(headerBytes.size());
+            headerBytes.writeTo(out);
+
+            long position = 16 + headerBytes.size();
+
+            for (int j = 0; j < numCols; j++) {
+                for (long aligned = MappedColumnDataBox.align(position); position < aligned; position++) {
+                    out.writeByte(0);
+                }
+
+                for (int i = 0; i < numRows; i++) {
+                    switch (types[j]) {
+                        case MappedColumnDataBox.DOUBLE:
+                            out.writeDouble(dataSet.getDouble(i, j));
+                            break;
+                        case MappedColumnDataBox.FLOAT:
+                            out.writeFloat((float) dataSet.getDouble(i, j));
+                            break;
+                        case MappedColumnDataBox.INT:
+                            out.writeInt(dataSet.getInt(i, j));
+                            break;
+                        default:
+                            out.writeByte(dataSet.getInt(i, j));
+                    }
+                }
+
+                position += (long) numRows * MappedColumnDataBox.width(types[j]);
+            }
+        }
+    }
+
     public static void saveKnowledge(IKnowledge knowledge, Writer out) throws IOException {
         StringBuilder buf = new StringBuilder();
         buf.append("/knowledge");
@@ -270,9 +427,26 @@ public final class DataWriter {
         out.write(buf.toString());
         out.flush();
     }
-}
 
+    // Formats rows from through to - 1 of the lower triangle, one line per row.
+    private static String formatCovRows(ICovarianceMatrix covMatrix, int from, int to, NumberFormat nf) {
+        StringBuffer buf = new StringBuffer();
+        FieldPosition position = new FieldPosition(0);
 
+        for (int j = from; j < to; j++) {
+            for (int i = 0; i <= j; i++) {
+                double value = covMatrix.getValue(i, j);
 
+                if (Double.isNaN(value)) {
+                    buf.append('*');
+                } else {
+                    nf.format(value, buf, position);
+                }
 
+                buf.append((i < j) ? '\t' : '\n');
+            }
+        }
 
+        return buf.toString();
+    }
+}
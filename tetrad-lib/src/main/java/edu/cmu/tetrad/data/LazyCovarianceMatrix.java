@@ -0,0 +1,809 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.stat.correlation.BlockedCovariance;
+import edu.cmu.tetrad.stat.correlation.ColumnVectors;
+import edu.cmu.tetrad.util.Matrix;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A covariance matrix for data with too many variables for the whole matrix to be stored. Entries are
+ * calculated from the data as they are asked for. A variable that has been asked about often enough
+ * ("hot") has its whole column of covariances calculated, in parallel, and kept in a cache holding a
+ * bounded number of columns, from which the least recently used column is dropped first. A call to
+ * getSelection or getSubmatrix first calculates together the columns of its hot variables that are not
+ * cached, reading the data once for all of them; the remaining entries are calculated directly, each at the
+ * cost of one pass over two columns of data.
+ * <p>
+ * The data are mean-centered once, on construction. If the data set is a BoxDataSet whose box can hand out
+ * columns (an OffHeapDataBox or a MappedColumnDataBox, say), columns are read from the box and centered
+ * when needed, so no copy of the data is made; otherwise a centered copy of the data is kept by columns.
+ * Covariances are bias-corrected (divided by N - 1), and an entry has the same value whether it is read
+ * from a cached column or calculated directly. The matrix may be read by several threads at once but may
+ * not be modified.
+ *
+ * @author agent
+ * @see CovarianceMatrix
+ */
+public class LazyCovarianceMatrix implements ICovarianceMatrix {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The default number of times a variable is asked about before its column is cached.
+     */
+    public static final int DEFAULT_HOT_THRESHOLD = 4;
+
+    // The least number of columns of data read by one task when columns are calculated in parallel.
+    private static final int MIN_COLUMNS_PER_TASK = 64;
+
+    // The number of columns calculated at a time when the whole matrix is asked for.
+    private static final int MATRIX_BATCH_SIZE = 256;
+
+    /**
+     * The name of the covariance matrix.
+     *
+     * @serial May be null.
+     */
+    private String name;
+
+    /**
+     * The variables (in order) for this covariance matrix.
+     *
+     * @serial Cannot be null.
+     */
+    private List<Node> variables;
+
+    /**
+     * The sample size reported for this covariance matrix.
+     *
+     * @serial Range > 0.
+     */
+    private int sampleSize;
+
+    /**
+     * The list of selected variables.
+     *
+     * @serial Cannot be null.
+     */
+    private Set<Node> selectedVariables = new HashSet<>();
+
+    /**
+     * The knowledge for this data.
+     *
+     * @serial Cannot be null.
+     */
+    private IKnowledge knowledge = new Knowledge2();
+
+    // The number of rows of data.
+    private final int numRows;
+
+    // The mean-centered data, centered[column][row], or null if columns are read from the source.
+    private final double[][] centered;
+
+    // The data, by columns, if not copied into centered.
+    private final ColumnVectors source;
+
+    // The means of the columns of the data.
+    private final double[] means;
+
+    // The diagonal of the matrix.
+    private final double[] variances;
+
+    // The maximum number of columns kept in the cache.
+    private final int maxColumns;
+
+    // The number of times a variable is asked about before its column is cached.
+    private int hotThreshold = DEFAULT_HOT_THRESHOLD;
+
+    // Calculated columns, by variable, in access order.
+    private transient Map<Integer, double[]> cache;
+
+    // The number of times each variable has been asked about, up to the hot threshold.
+    private transient AtomicIntegerArray touches;
+
+    // Two buffers of length numRows per thread, for columns read from the source.
+    private transient ThreadLocal<double[][]> buffers;
+
+    private transient LongAdder columnsCalculated;
+    private transient LongAdder entriesCalculated;
+    private transient LongAdder hits;
+
+    //=============================CONSTRUCTORS=========================//
+
+    /**
+     * Constructs a lazy covariance matrix for the given continuous data set, with a cache taking up about a
+     * quarter of the maximum heap size.
+     *
+     * @throws IllegalArgumentException if this is not a continuous data set.
+     */
+    public LazyCovarianceMatrix(DataSet dataSet) {
+        this(dataSet, defaultMaxColumns(dataSet.getNumColumns()));
+    }
+
+    /**
+     * Constructs a lazy covariance matrix for the given continuous data set, with a cache holding at most
+     * the given number of columns. If this is zero, no columns are cached and every entry is calculated
+     * when asked for.
+     *
+     * @throws IllegalArgumentException if this is not a continuous data set.
+     */
+    public LazyCovarianceMatrix(DataSet dataSet, int maxColumns) {
+        if (!dataSet.isContinuous()) {
+            throw new IllegalArgumentException("Not a continuous data set.");
+        }
+
+        if (dataSet.getNumRows() < 2) {
+            throw new IllegalArgumentException("At least two rows of data are needed: " + dataSet.getNumRows());
+        }
+
+        if (maxColumns < 0) {
+            throw new IllegalArgumentException("Max columns must be at least 0: " + maxColumns);
+        }
+
+        int numColumns = dataSet.getNumColumns();
+        int numRows = dataSet.getNumRows();
+
+        this.variables = Collections.unmodifiableList(dataSet.getVariables());
+        this.sampleSize = numRows;
+        this.numRows = numRows;
+        this.maxColumns = maxColumns;
+        this.means = new double[numColumns];
+        this.variances = new double[numColumns];
+
+        DataBox box = dataSet instanceof BoxDataSet ? ((BoxDataSet) dataSet).getDataBox() : null;
+
+        if (box instanceof ColumnVectors) {
+            this.source = (ColumnVectors) box;
+            this.centered = null;
+        } else {
+            this.source = null;
+            this.centered = new double[numColumns][numRows];
+
+            for (int i = 0; i < numRows; i++) {
+                for (int j = 0; j < numColumns; j++) {
+                    centered[j][i] = dataSet.getDouble(i, j);
+                }
+            }
+        }
+
+        init();
+
+        inParallel(numColumns, (from, to) -> {
+            double[] buffer = buffers.get()[0];
+
+            for (int j = from; j < to; j++) {
+                double[] column = centered != null ? centered[j] : buffer;
+                if (centered == null) source.getColumn(j, column);
+
+                double sum = 0;
+                for (int i = 0; i < numRows; i++) sum += column[i];
+                means[j] = sum / numRows;
+
+                for (int i = 0; i < numRows; i++) column[i] -= means[j];
+                variances[j] = BlockedCovariance.dot(column, column, numRows) / (numRows - 1);
+            }
+        });
+    }
+
+    // Shares the data of the given matrix, with a cache of its own.
+    private LazyCovarianceMatrix(LazyCovarianceMatrix matrix) {
+        this.name = matrix.name;
+        this.variables = matrix.variables;
+        this.sampleSize = matrix.sampleSize;
+        this.selectedVariables = new HashSet<>(matrix.selectedVariables);
+        this.knowledge = matrix.knowledge.copy();
+        this.numRows = matrix.numRows;
+        this.centered = matrix.centered;
+        this.source = matrix.source;
+        this.means = matrix.means;
+        this.variances = matrix.variances;
+        this.maxColumns = matrix.maxColumns;
+        this.hotThreshold = matrix.hotThreshold;
+        init();
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static LazyCovarianceMatrix serializableInstance() {
+        return new LazyCovarianceMatrix(BoxDataSet.serializableInstance(), 2);
+    }
+
+    //============================PUBLIC METHODS=========================//
+
+    /**
+     * @return the list of variables (unmodifiable).
+     */
+    public final List<Node> getVariables() {
+        return this.variables;
+    }
+
+    /**
+     * @return the variable names, in order.
+     */
+    public final List<String> getVariableNames() {
+        List<String> names = new ArrayList<>();
+
+        for (Node variable : variables) {
+            names.add(variable.getName());
+        }
+
+        return names;
+    }
+
+    /**
+     * @return the variable name at the given index.
+     */
+    public final String getVariableName(int index) {
+        if (index >= variables.size()) {
+            throw new IllegalArgumentException("Index out of range: " + index);
+        }
+
+        return variables.get(index).getName();
+    }
+
+    /**
+     * @return the dimension of the covariance matrix.
+     */
+    public final int getDimension() {
+        return variables.size();
+    }
+
+    /**
+     * The size of the sample used to calculated this covariance matrix.
+     *
+     * @return The sample size (> 0).
+     */
+    public final int getSampleSize() {
+        return this.sampleSize;
+    }
+
+    public final String getName() {
+        return this.name;
+    }
+
+    public final void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the knowledge associated with this data.
+     */
+    public final IKnowledge getKnowledge() {
+        return this.knowledge.copy();
+    }
+
+    /**
+     * Associates knowledge with this data.
+     */
+    public final void setKnowledge(IKnowledge knowledge) {
+        if (knowledge == null) {
+            throw new NullPointerException();
+        }
+
+        this.knowledge = knowledge.copy();
+    }
+
+    /**
+     * @return a submatrix of the covariance matrix with variables in the given order, as a CovarianceMatrix.
+     */
+    public final ICovarianceMatrix getSubmatrix(int[] indices) {
+        List<Node> submatrixVars = new ArrayList<>();
+
+        for (int index : indices) {
+            submatrixVars.add(variables.get(index));
+        }
+
+        return new CovarianceMatrix(submatrixVars, getSelection(indices, indices), getSampleSize());
+    }
+
+    public final ICovarianceMatrix getSubmatrix(List<String> submatrixVarNames) {
+        return getSubmatrix(submatrixVarNames.toArray(new String[0]));
+    }
+
+    /**
+     * @return a submatrix of this matrix, with variables in the given order, as a CovarianceMatrix.
+     */
+    public final ICovarianceMatrix getSubmatrix(String[] submatrixVarNames) {
+        int[] indices = new int[submatrixVarNames.length];
+
+        for (int i = 0; i < indices.length; i++) {
+            Node variable = getVariable(submatrixVarNames[i]);
+
+            if (variable == null) {
+                throw new IllegalArgumentException("The variables in the submatrix must be in the original "
+                        + "matrix: " + submatrixVarNames[i]);
+            }
+
+            indices[i] = variables.indexOf(variable);
+        }
+
+        return getSubmatrix(indices);
+    }
+
+    /**
+     * @return the value of element (i,j) in the matrix, from the cache if a column of either variable is there.
+     */
+    public final double getValue(int i, int j) {
+        double[] column = cache.get(i);
+
+        if (column != null) {
+            hits.increment();
+            return column[j];
+        }
+
+        column = cache.get(j);
+
+        if (column != null) {
+            hits.increment();
+            return column[i];
+        }
+
+        if (i == j) {
+            return variances[i];
+        }
+
+        if (touch(i)) {
+            return column(i)[j];
+        }
+
+        if (touch(j)) {
+            return column(j)[i];
+        }
+
+        return entry(i, j);
+    }
+
+    /**
+     * @return the submatrix with the given rows and columns. The columns of the hot variables among them that
+     * are not cached are calculated together first.
+     */
+    @Override
+    public Matrix getSelection(int[] rows, int[] cols) {
+        boolean square = Arrays.equals(rows, cols);
+        Map<Integer, double[]> columns = columns(square ? distinct(rows) : distinct(rows, cols));
+
+        double[][] rowColumns = new double[rows.length][];
+        double[][] colColumns = new double[cols.length][];
+
+        for (int r = 0; r < rows.length; r++) rowColumns[r] = columns.get(rows[r]);
+        for (int c = 0; c < cols.length; c++) colColumns[c] = columns.get(cols[c]);
+
+        Matrix m = new Matrix(rows.length, cols.length);
+
+        for (int r = 0; r < rows.length; r++) {
+            for (int c = square ? r : 0; c < cols.length; c++) {
+                double v;
+
+                if (rowColumns[r] != null) {
+                    v = rowColumns[r][cols[c]];
+                } else if (colColumns[c] != null) {
+                    v = colColumns[c][rows[r]];
+                } else if (rows[r] == cols[c]) {
+                    v = variances[rows[r]];
+                } else {
+                    v = entry(rows[r], cols[c]);
+                }
+
+                m.set(r, c, v);
+                if (square) m.set(c, r, v);
+            }
+        }
+
+        return m;
+    }
+
+    public void setMatrix(Matrix matrix) {
+        throw new UnsupportedOperationException("A lazy covariance matrix cannot be modified.");
+    }
+
+    public final void setSampleSize(int sampleSize) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("Sample size must be > 0.");
+        }
+
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @return the size of the square matrix.
+     */
+    public final int getSize() {
+        return variables.size();
+    }
+
+    /**
+     * @return the whole matrix, calculated a block of columns at a time without using the cache. This takes
+     * memory for all of the entries and a pass over the data per block of columns, so it should be avoided
+     * for the large numbers of variables for which this class is meant.
+     */
+    public final Matrix getMatrix() {
+        int dimension = getDimension();
+        Matrix matrix = new Matrix(dimension, dimension);
+
+        for (int from = 0; from < dimension; from += MATRIX_BATCH_SIZE) {
+            int[] targets = new int[Math.min(MATRIX_BATCH_SIZE, dimension - from)];
+            for (int t = 0; t < targets.length; t++) targets[t] = from + t;
+
+            double[][] columns = calculateColumns(targets);
+
+            for (int t = 0; t < targets.length; t++) {
+                for (int i = 0; i < dimension; i++) {
+                    matrix.set(i, targets[t], columns[t][i]);
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    public final void select(Node variable) {
+        if (variables.contains(variable)) {
+            selectedVariables.add(variable);
+        }
+    }
+
+    public final void clearSelection() {
+        selectedVariables.clear();
+    }
+
+    public final boolean isSelected(Node variable) {
+        if (variable == null) {
+            throw new NullPointerException("Null variable. Try again.");
+        }
+
+        return selectedVariables.contains(variable);
+    }
+
+    public final List<String> getSelectedVariableNames() {
+        List<String> selectedVariableNames = new LinkedList<>();
+
+        for (Node variable : selectedVariables) {
+            selectedVariableNames.add(variable.getName());
+        }
+
+        return selectedVariableNames;
+    }
+
+    /**
+     * Describes the matrix; the entries are not printed, there being too many of them.
+     */
+    public final String toString() {
+        return "Lazy covariance matrix, N = " + sampleSize + ", " + getDimension() + " variables, "
+                + getNumCachedColumns() + " columns cached";
+    }
+
+    @Override
+    public boolean isContinuous() {
+        return true;
+    }
+
+    @Override
+    public boolean isDiscrete() {
+        return false;
+    }
+
+    @Override
+    public boolean isMixed() {
+        return false;
+    }
+
+    public void setVariables(List<Node> variables) {
+        if (variables.size() != this.variables.size()) {
+            throw new IllegalArgumentException("Wrong # of variables.");
+        }
+
+        for (int i = 0; i < variables.size(); i++) {
+            if (!variables.get(i).getName().equals(this.variables.get(i).getName())) {
+                throw new IllegalArgumentException("Variable in index " + (i + 1) + " does not have the same name "
+                        + "as the variable being substituted for it.");
+            }
+        }
+
+        this.variables = Collections.unmodifiableList(new ArrayList<>(variables));
+    }
+
+    public Node getVariable(String name) {
+        for (Node variable : variables) {
+            if (name.equals(variable.getName())) {
+                return variable;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return a copy sharing the data of this matrix, with an empty cache of its own.
+     */
+    @Override
+    public DataModel copy() {
+        return new LazyCovarianceMatrix(this);
+    }
+
+    @Override
+    public void setValue(int i, int j, double v) {
+        throw new UnsupportedOperationException("A lazy covariance matrix cannot be modified.");
+    }
+
+    @Override
+    public void removeVariables(List<String> remaining) {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * @return the number of times a variable must be asked about before its column is cached.
+     */
+    public int getHotThreshold() {
+        return hotThreshold;
+    }
+
+    /**
+     * Sets the number of times a variable must be asked about before its column is cached; 1 caches the
+     * column of every variable asked about. The default is DEFAULT_HOT_THRESHOLD.
+     */
+    public void setHotThreshold(int hotThreshold) {
+        if (hotThreshold < 1) {
+            throw new IllegalArgumentException("Hot threshold must be at least 1: " + hotThreshold);
+        }
+
+        this.hotThreshold = hotThreshold;
+    }
+
+    public int getMaxColumns() {
+        return maxColumns;
+    }
+
+    public int getNumCachedColumns() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of columns calculated, including ones calculated again after being dropped.
+     */
+    public long getNumColumnsCalculated() {
+        return columnsCalculated.sum();
+    }
+
+    /**
+     * @return the number of entries calculated directly, without calculating a column.
+     */
+    public long getNumEntriesCalculated() {
+        return entriesCalculated.sum();
+    }
+
+    /**
+     * @return the number of lookups answered from the cache.
+     */
+    public long getNumHits() {
+        return hits.sum();
+    }
+
+    //========================PRIVATE METHODS============================//
+
+    private void init() {
+        int dimension = variances.length;
+        int maxColumns = this.maxColumns;
+
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest) {
+                return size() > maxColumns;
+            }
+        });
+
+        this.touches = new AtomicIntegerArray(dimension);
+        this.buffers = ThreadLocal.withInitial(() -> new double[2][numRows]);
+        this.columnsCalculated = new LongAdder();
+        this.entriesCalculated = new LongAdder();
+        this.hits = new LongAdder();
+    }
+
+    // About a quarter of the maximum heap, in columns.
+    private static int defaultMaxColumns(int dimension) {
+        long columnBytes = 8L * Math.max(1, dimension);
+        long maxColumns = Runtime.getRuntime().maxMemory() / 4 / columnBytes;
+        return (int) Math.max(1, Math.min(dimension, maxColumns));
+    }
+
+    // Counts a request for the variable; true if the variable is hot.
+    private boolean touch(int i) {
+        return maxColumns > 0 && (touches.get(i) >= hotThreshold || touches.incrementAndGet(i) >= hotThreshold);
+    }
+
+    // Calculates the column for the variable and caches it.
+    private double[] column(int i) {
+        double[] column = calculateColumns(new int[]{i})[0];
+        cache.put(i, column);
+        return column;
+    }
+
+    // The columns for those of the given variables that are cached or hot; hot variables beyond the size of
+    // the cache are left out.
+    private Map<Integer, double[]> columns(int[] indices) {
+        Map<Integer, double[]> columns = new HashMap<>();
+        List<Integer> hot = new ArrayList<>();
+
+        for (int i : indices) {
+            double[] column = cache.get(i);
+
+            if (column != null) {
+                hits.increment();
+                columns.put(i, column);
+            } else if (touch(i) && hot.size() < maxColumns) {
+                hot.add(i);
+            }
+        }
+
+        if (!hot.isEmpty()) {
+            int[] targets = new int[hot.size()];
+            for (int t = 0; t < targets.length; t++) targets[t] = hot.get(t);
+
+            double[][] calculated = calculateColumns(targets);
+
+            for (int t = 0; t < targets.length; t++) {
+                cache.put(targets[t], calculated[t]);
+                columns.put(targets[t], calculated[t]);
+            }
+        }
+
+        return columns;
+    }
+
+    // Calculates the columns of the given variables in one pass over the data, split over ranges of the
+    // other variables.
+    private double[][] calculateColumns(int[] targets) {
+        int dimension = variances.length;
+        int numRows = this.numRows;
+        double divisor = numRows - 1;
+
+        double[][] x = new double[targets.length][];
+
+        for (int t = 0; t < targets.length; t++) {
+            x[t] = centered != null ? centered[targets[t]] : centered(targets[t], new double[numRows]);
+        }
+
+        double[][] columns = new double[targets.length][dimension];
+
+        inParallel(dimension, (from, to) -> {
+            double[] buffer = buffers.get()[0];
+
+            for (int k = from; k < to; k++) {
+                double[] y = centered(k, buffer);
+
+                for (int t = 0; t < targets.length; t++) {
+                    columns[t][k] = BlockedCovariance.dot(x[t], y, numRows) / divisor;
+                }
+            }
+        });
+
+        columnsCalculated.add(targets.length);
+        return columns;
+    }
+
+    // Calculates a single entry from the data.
+    private double entry(int i, int j) {
+        double[][] buffers = this.buffers.get();
+        entriesCalculated.increment();
+        return BlockedCovariance.dot(centered(i, buffers[0]), centered(j, buffers[1]), numRows) / (numRows - 1);
+    }
+
+    // The centered data for the variable, in the given buffer if it has to be read from the source.
+    private double[] centered(int j, double[] buffer) {
+        if (centered != null) {
+            return centered[j];
+        }
+
+        source.getColumn(j, buffer);
+        double mean = means[j];
+
+        for (int i = 0; i < numRows; i++) {
+            buffer[i] -= mean;
+        }
+
+        return buffer;
+    }
+
+    private static int[] distinct(int[]... indices) {
+        Set<Integer> distinct = new LinkedHashSet<>();
+
+        for (int[] _indices : indices) {
+            for (int i : _indices) distinct.add(i);
+        }
+
+        int[] _distinct = new int[distinct.size()];
+        int t = 0;
+        for (int i : distinct) _distinct[t++] = i;
+        return _distinct;
+    }
+
+    private static void inParallel(int size, RangeTask task) {
+        ForkJoinPool.commonPool().invoke(new RangeAction(task, 0, size));
+    }
+
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    // Runs the task over subranges of at least MIN_COLUMNS_PER_TASK columns.
+    private static class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 23L;
+
+        private final RangeTask task;
+        private final int from;
+        private final int to;
+
+        RangeAction(RangeTask task, int from, int to) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_COLUMNS_PER_TASK) {
+                task.run(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeAction(task, from, mid), new RangeAction(task, mid, to));
+            }
+        }
+    }
+
+    /**
+     * Adds semantic checks to the default deserialization method. This method
+     * must have the standard signature for a readObject method, and the body of
+     * the method must begin with "s.defaultReadObject();". Other than that, any
+     * semantic checks can be specified and do not need to stay the same from
+     * version to version. A readObject method of this form may be added to any
+     * class, even if Tetrad sessions were previously saved out using a version
+     * of the class that didn't include it. (That's what the
+     * "s.defaultReadObject();" is for. See J. Bloch, Effective Java, for help.
+     */
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (variables == null) {
+            throw new NullPointerException();
+        }
+
+        if (knowledge == null) {
+            throw new NullPointerException();
+        }
+
+        if (selectedVariables == null) {
+            selectedVariables = new HashSet<>();
+        }
+
+        init();
+    }
+}
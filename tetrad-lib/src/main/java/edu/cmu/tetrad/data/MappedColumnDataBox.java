@@ -0,0 +1,383 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.stat.correlation.ColumnVectors;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores a 2D array of data in a columnar binary file, written by DataWriter.writeColumnarData, which is
+ * memory-mapped and read in place. Each column is a block of doubles, floats, ints or (discrete) byte codes, so
+ * opening a data set takes time proportional to the number of variables, not the size of the data; data sets
+ * larger than the heap may be used, and several JVMs on the same machine share one copy of the file through the
+ * page cache.
+ * <p>
+ * The file has a header giving the number of rows, and for each column its name, type and (for discrete
+ * variables) categories. The column blocks follow, each aligned to 8 bytes. Missing values are NaN for doubles
+ * and floats and -99 for ints and byte codes.
+ * <p>
+ * Columns may be read a column at a time through ColumnVectors, which CovarianceMatrix uses to avoid copying
+ * the data into the heap.
+ * <p>
+ * The box is read-only: set() throws UnsupportedOperationException, as do the methods of a data set backed by it
+ * that change values. Use copy() to obtain an in-memory MixedDataBox that may be changed. It is serialized as the
+ * path to its file.
+ *
+ * @author agent
+ */
+public class MappedColumnDataBox implements DataBox, ColumnVectors {
+    static final long serialVersionUID = 23L;
+
+    // Identifies the file format, "TETCOLDB" in ASCII.
+    static final long MAGIC = 0x544554434f4c4442L;
+    static final int VERSION = 1;
+
+    // Column types.
+    static final byte DOUBLE = 1;
+    static final byte FLOAT = 2;
+    static final byte INT = 3;
+    static final byte BYTE = 4;
+
+    // Column kinds.
+    static final byte CONTINUOUS = 0;
+    static final byte DISCRETE = 1;
+
+    /**
+     * The file the data is mapped from.
+     *
+     * @serial
+     */
+    private final File file;
+
+    private transient List<Node> variables;
+    private transient int numRows;
+    private transient byte[] types;
+    private transient Buffer[] columns;
+
+    private MappedColumnDataBox(File file) throws IOException {
+        this.file = file;
+        open();
+    }
+
+    /**
+     * Maps the given file, which must have been written by DataWriter.writeColumnarData.
+     *
+     * @throws IOException if the file cannot be read or is not in the columnar format.
+     */
+    public static MappedColumnDataBox open(File file) throws IOException {
+        return new MappedColumnDataBox(file);
+    }
+
+    /**
+     * @return a data set backed by the mapped data in the given file, with the variables stored in it.
+     */
+    public static BoxDataSet loadDataSet(File file) throws IOException {
+        MappedColumnDataBox dataBox = open(file);
+        BoxDataSet dataSet = new BoxDataSet(dataBox, dataBox.getVariables());
+        dataSet.setName(file.getName());
+        return dataSet;
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization, mapped from a temporary file that is deleted
+     * when the JVM exits.
+     */
+    public static MappedColumnDataBox serializableInstance() {
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < 4; i++) vars.add(new ContinuousVariable("X" + i));
+
+        try {
+            File file = File.createTempFile("mapped", ".tcd");
+            file.deleteOnExit();
+            DataWriter.writeColumnarData(new BoxDataSet(new DoubleDataBox(4, 4), vars), file);
+            return open(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write a columnar data file.", e);
+        }
+    }
+
+    /**
+     * @return the number of rows in this data box.
+     */
+    public int numRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the number of columns in this data box.
+     */
+    public int numCols() {
+        return variables.size();
+    }
+
+    /**
+     * Not supported; the box is read-only.
+     */
+    public void set(int row, int col, Number value) {
+        throw new UnsupportedOperationException("Mapped data is read-only; copy the data box to change it.");
+    }
+
+    /**
+     * @return the Number value at the given row and column, or null if the value is missing.
+     */
+    public Number get(int row, int col) {
+        switch (types[col]) {
+            case DOUBLE:
+            case FLOAT: {
+                double value = getDouble(row, col);
+                return Double.isNaN(value) ? null : value;
+            }
+            default: {
+                int value = getInt(row, col);
+                return value == DiscreteVariable.MISSING_VALUE ? null : value;
+            }
+        }
+    }
+
+    /**
+     * @return the value at the given row and column as a double, NaN if it is missing. Discrete values are
+     * returned as their codes, -99 if missing.
+     */
+    public double getDouble(int row, int col) {
+        switch (types[col]) {
+            case DOUBLE:
+                return ((DoubleBuffer) columns[col]).get(row);
+            case FLOAT:
+                return ((FloatBuffer) columns[col]).get(row);
+            default:
+                return getInt(row, col);
+        }
+    }
+
+    /**
+     * @return the value of a discrete column at the given row, -99 if it is missing.
+     */
+    public int getInt(int row, int col) {
+        switch (types[col]) {
+            case INT:
+                return ((IntBuffer) columns[col]).get(row);
+            case BYTE:
+                return ((ByteBuffer) columns[col]).get(row);
+            default:
+                return (int) getDouble(row, col);
+        }
+    }
+
+    @Override
+    public int getNumOfRows() {
+        return numRows;
+    }
+
+    @Override
+    public int getNumOfCols() {
+        return numCols();
+    }
+
+    /**
+     * Copies the given column into vector[0], ..., vector[numRows() - 1], as by getDouble.
+     */
+    @Override
+    public void getColumn(int col, double[] vector) {
+        if (types[col] == DOUBLE) {
+            // A duplicate has its own position, so that columns may be read by several threads at once.
+            ((DoubleBuffer) columns[col]).duplicate().get(vector, 0, numRows);
+        } else {
+            for (int i = 0; i < numRows; i++) {
+                vector[i] = getDouble(i, col);
+            }
+        }
+    }
+
+    /**
+     * @return the variables stored in the file.
+     */
+    public List<Node> getVariables() {
+        return new ArrayList<>(variables);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return an in-memory copy of this data box.
+     */
+    public DataBox copy() {
+        int[] rows = new int[numRows()];
+        int[] cols = new int[numCols()];
+
+        for (int i = 0; i < numRows(); i++) rows[i] = i;
+        for (int j = 0; j < numCols(); j++) cols[j] = j;
+
+        return viewSelection(rows, cols);
+    }
+
+    /**
+     * @return an in-memory copy of this data box.
+     */
+    public DataBox like() {
+        return copy();
+    }
+
+    /**
+     * @return an in-memory MixedDataBox holding the given rows and columns.
+     */
+    @Override
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        List<Node> _variables = new ArrayList<>();
+        double[][] continuousData = new double[cols.length][];
+        int[][] discreteData = new int[cols.length][];
+
+        for (int j = 0; j < cols.length; j++) {
+            int col = cols[j];
+            _variables.add(variables.get(col));
+
+            if (types[col] == DOUBLE || types[col] == FLOAT) {
+                continuousData[j] = new double[rows.length];
+                for (int i = 0; i < rows.length; i++) continuousData[j][i] = getDouble(rows[i], col);
+            } else {
+                discreteData[j] = new int[rows.length];
+                for (int i = 0; i < rows.length; i++) discreteData[j][i] = getInt(rows[i], col);
+            }
+        }
+
+        return new MixedDataBox(_variables, rows.length, continuousData, discreteData);
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    // Reads the header and maps each column.
+    private void open() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(16);
+            readFully(channel, prefix, 0);
+
+            if (prefix.getLong(0) != MAGIC) {
+                throw new IOException("Not a columnar data file: " + file);
+            }
+
+            if (prefix.getInt(8) != VERSION) {
+                throw new IOException("Unsupported columnar data file version " + prefix.getInt(8) + ": " + file);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(prefix.getInt(12));
+            readFully(channel, header, 16);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array()));
+            this.numRows = in.readInt();
+            int numCols = in.readInt();
+
+            this.variables = new ArrayList<>(numCols);
+            this.types = new byte[numCols];
+            this.columns = new Buffer[numCols];
+
+            long position = align(16 + header.capacity());
+
+            for (int j = 0; j < numCols; j++) {
+                byte kind = in.readByte();
+                types[j] = in.readByte();
+                String name = in.readUTF();
+
+                if (kind == DISCRETE) {
+                    List<String> categories = new ArrayList<>();
+                    int numCategories = in.readInt();
+                    for (int c = 0; c < numCategories; c++) categories.add(in.readUTF());
+                    variables.add(new DiscreteVariable(name, categories));
+                } else {
+                    variables.add(new ContinuousVariable(name));
+                }
+
+                long size = (long) numRows * width(types[j]);
+
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Column " + name + " is too large to map: " + size + " bytes.");
+                }
+
+                if (position + size > channel.size()) {
+                    throw new IOException("Columnar data file is truncated: " + file);
+                }
+
+                ByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+
+                switch (types[j]) {
+                    case DOUBLE:
+                        columns[j] = block.asDoubleBuffer();
+                        break;
+                    case FLOAT:
+                        columns[j] = block.asFloatBuffer();
+                        break;
+                    case INT:
+                        columns[j] = block.asIntBuffer();
+                        break;
+                    default:
+                        columns[j] = block;
+                }
+
+                position = align(position + size);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        open();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Columnar data file is truncated.");
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes taken by one value of the given column type.
+     */
+    static int width(byte type) {
+        switch (type) {
+            case DOUBLE:
+                return 8;
+            case FLOAT:
+            case INT:
+                return 4;
+            case BYTE:
+                return 1;
+            default:
+                throw new IllegalArgumentException("Unknown column type: " + type);
+        }
+    }
+
+    /**
+     * @return the position rounded up to a multiple of 8, where each column block begins.
+     */
+    static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
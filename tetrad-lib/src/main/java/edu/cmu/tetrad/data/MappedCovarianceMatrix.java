@@ -0,0 +1,522 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.Matrix;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A covariance matrix whose lower triangle is memory-mapped from a binary file written by
+ * DataWriter.writeCovMatrixBinary and read in place. Opening the matrix takes time proportional to the number of
+ * variables, not the number of entries, so a matrix for tens of thousands of variables is ready at once and may
+ * be larger than the heap; several JVMs on the same machine share one copy of it through the page cache.
+ * <p>
+ * The file has a header giving the sample size and the variable names, followed by the rows of the lower
+ * triangle as doubles, aligned to 8 bytes. The triangle is mapped in blocks of whole rows, since a single
+ * mapping may not exceed 2 GB.
+ * <p>
+ * The matrix may be read by several threads at once but may not be modified; getSubmatrix returns an in-memory
+ * CovarianceMatrix. It is serialized as the path to its file, together with its variables, name, sample size and
+ * knowledge.
+ *
+ * @author agent
+ * @see MappedColumnDataBox
+ */
+public class MappedCovarianceMatrix implements ICovarianceMatrix {
+    static final long serialVersionUID = 23L;
+
+    // Identifies the file format, "TETCOVLT" in ASCII.
+    static final long MAGIC = 0x544554434f564c54L;
+    static final int VERSION = 1;
+
+    // The largest number of bytes mapped at once.
+    private static final long MAX_BLOCK_SIZE = 1L << 30;
+
+    /**
+     * The file the matrix is mapped from.
+     *
+     * @serial Cannot be null.
+     */
+    private final File file;
+
+    /**
+     * The name of the covariance matrix.
+     *
+     * @serial May be null.
+     */
+    private String name;
+
+    /**
+     * The variables (in order) for this covariance matrix.
+     *
+     * @serial Cannot be null.
+     */
+    private List<Node> variables;
+
+    /**
+     * The sample size reported for this covariance matrix.
+     *
+     * @serial Range > 0.
+     */
+    private int sampleSize;
+
+    /**
+     * The list of selected variables.
+     *
+     * @serial Cannot be null.
+     */
+    private Set<Node> selectedVariables = new HashSet<>();
+
+    /**
+     * The knowledge for this data.
+     *
+     * @serial Cannot be null.
+     */
+    private IKnowledge knowledge = new Knowledge2();
+
+    // The mapped blocks of rows of the lower triangle.
+    private transient DoubleBuffer[] blocks;
+
+    // The block holding each row.
+    private transient int[] blockOfRow;
+
+    // The index in its block of the first entry of each row.
+    private transient int[] rowStart;
+
+    //=============================CONSTRUCTORS=========================//
+
+    private MappedCovarianceMatrix(File file) throws IOException {
+        this.file = file;
+        open(true);
+    }
+
+    // Shares the mapped file of the given matrix.
+    private MappedCovarianceMatrix(MappedCovarianceMatrix matrix) {
+        this.file = matrix.file;
+        this.name = matrix.name;
+        this.variables = matrix.variables;
+        this.sampleSize = matrix.sampleSize;
+        this.selectedVariables = new HashSet<>(matrix.selectedVariables);
+        this.knowledge = matrix.knowledge.copy();
+        this.blocks = matrix.blocks;
+        this.blockOfRow = matrix.blockOfRow;
+        this.rowStart = matrix.rowStart;
+    }
+
+    /**
+     * Maps the given file, which must have been written by DataWriter.writeCovMatrixBinary.
+     *
+     * @throws IOException if the file cannot be read or is not in the binary covariance format.
+     */
+    public static MappedCovarianceMatrix open(File file) throws IOException {
+        MappedCovarianceMatrix matrix = new MappedCovarianceMatrix(file);
+        matrix.setName(file.getName());
+        return matrix;
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization. Since a mapped matrix needs a file, this
+     * is an in-memory covariance matrix.
+     */
+    public static ICovarianceMatrix serializableInstance() {
+        return CovarianceMatrix.serializableInstance();
+    }
+
+    //============================PUBLIC METHODS=========================//
+
+    /**
+     * @return the list of variables (unmodifiable).
+     */
+    public final List<Node> getVariables() {
+        return this.variables;
+    }
+
+    /**
+     * @return the variable names, in order.
+     */
+    public final List<String> getVariableNames() {
+        List<String> names = new ArrayList<>();
+
+        for (Node variable : variables) {
+            names.add(variable.getName());
+        }
+
+        return names;
+    }
+
+    /**
+     * @return the variable name at the given index.
+     */
+    public final String getVariableName(int index) {
+        if (index >= variables.size()) {
+            throw new IllegalArgumentException("Index out of range: " + index);
+        }
+
+        return variables.get(index).getName();
+    }
+
+    /**
+     * @return the dimension of the covariance matrix.
+     */
+    public final int getDimension() {
+        return variables.size();
+    }
+
+    /**
+     * The size of the sample used to calculated this covariance matrix.
+     *
+     * @return The sample size (> 0).
+     */
+    public final int getSampleSize() {
+        return this.sampleSize;
+    }
+
+    public final String getName() {
+        return this.name;
+    }
+
+    public final void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the knowledge associated with this data.
+     */
+    public final IKnowledge getKnowledge() {
+        return this.knowledge.copy();
+    }
+
+    /**
+     * Associates knowledge with this data.
+     */
+    public final void setKnowledge(IKnowledge knowledge) {
+        if (knowledge == null) {
+            throw new NullPointerException();
+        }
+
+        this.knowledge = knowledge.copy();
+    }
+
+    /**
+     * @return a submatrix of the covariance matrix with variables in the given order, as a CovarianceMatrix.
+     */
+    public final ICovarianceMatrix getSubmatrix(int[] indices) {
+        List<Node> submatrixVars = new ArrayList<>();
+
+        for (int index : indices) {
+            submatrixVars.add(variables.get(index));
+        }
+
+        return new CovarianceMatrix(submatrixVars, getSelection(indices, indices), getSampleSize());
+    }
+
+    public final ICovarianceMatrix getSubmatrix(List<String> submatrixVarNames) {
+        return getSubmatrix(submatrixVarNames.toArray(new String[0]));
+    }
+
+    /**
+     * @return a submatrix of this matrix, with variables in the given order, as a CovarianceMatrix.
+     */
+    public final ICovarianceMatrix getSubmatrix(String[] submatrixVarNames) {
+        int[] indices = new int[submatrixVarNames.length];
+
+        for (int i = 0; i < indices.length; i++) {
+            Node variable = getVariable(submatrixVarNames[i]);
+
+            if (variable == null) {
+                throw new IllegalArgumentException("The variables in the submatrix must be in the original "
+                        + "matrix: " + submatrixVarNames[i]);
+            }
+
+            indices[i] = variables.indexOf(variable);
+        }
+
+        return getSubmatrix(indices);
+    }
+
+    /**
+     * @return the value of element (i,j) in the matrix, read from the lower triangle.
+     */
+    public final double getValue(int i, int j) {
+        if (i < j) {
+            int k = i;
+            i = j;
+            j = k;
+        }
+
+        return blocks[blockOfRow[i]].get(rowStart[i] + j);
+    }
+
+    @Override
+    public Matrix getSelection(int[] rows, int[] cols) {
+        Matrix m = new Matrix(rows.length, cols.length);
+
+        for (int r = 0; r < rows.length; r++) {
+            for (int c = 0; c < cols.length; c++) {
+                m.set(r, c, getValue(rows[r], cols[c]));
+            }
+        }
+
+        return m;
+    }
+
+    public void setMatrix(Matrix matrix) {
+        throw new UnsupportedOperationException("A mapped covariance matrix cannot be modified.");
+    }
+
+    public final void setSampleSize(int sampleSize) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("Sample size must be > 0.");
+        }
+
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @return the size of the square matrix.
+     */
+    public final int getSize() {
+        return variables.size();
+    }
+
+    /**
+     * @return the whole matrix, copied into the heap. This should be avoided for the large numbers of variables
+     * for which this class is meant.
+     */
+    public final Matrix getMatrix() {
+        int dimension = getDimension();
+        Matrix matrix = new Matrix(dimension, dimension);
+
+        for (int i = 0; i < dimension; i++) {
+            for (int j = 0; j <= i; j++) {
+                double v = getValue(i, j);
+                matrix.set(i, j, v);
+                matrix.set(j, i, v);
+            }
+        }
+
+        return matrix;
+    }
+
+    public final void select(Node variable) {
+        if (variables.contains(variable)) {
+            selectedVariables.add(variable);
+        }
+    }
+
+    public final void clearSelection() {
+        selectedVariables.clear();
+    }
+
+    public final boolean isSelected(Node variable) {
+        if (variable == null) {
+            throw new NullPointerException("Null variable. Try again.");
+        }
+
+        return selectedVariables.contains(variable);
+    }
+
+    public final List<String> getSelectedVariableNames() {
+        List<String> selectedVariableNames = new LinkedList<>();
+
+        for (Node variable : selectedVariables) {
+            selectedVariableNames.add(variable.getName());
+        }
+
+        return selectedVariableNames;
+    }
+
+    /**
+     * Describes the matrix; the entries are not printed, there being too many of them.
+     */
+    public final String toString() {
+        return "Mapped covariance matrix, N = " + sampleSize + ", " + getDimension() + " variables, from "
+                + file;
+    }
+
+    @Override
+    public boolean isContinuous() {
+        return true;
+    }
+
+    @Override
+    public boolean isDiscrete() {
+        return false;
+    }
+
+    @Override
+    public boolean isMixed() {
+        return false;
+    }
+
+    public void setVariables(List<Node> variables) {
+        if (variables.size() != this.variables.size()) {
+            throw new IllegalArgumentException("Wrong # of variables.");
+        }
+
+        for (int i = 0; i < variables.size(); i++) {
+            if (!variables.get(i).getName().equals(this.variables.get(i).getName())) {
+                throw new IllegalArgumentException("Variable in index " + (i + 1) + " does not have the same name "
+                        + "as the variable being substituted for it.");
+            }
+        }
+
+        this.variables = Collections.unmodifiableList(new ArrayList<>(variables));
+    }
+
+    public Node getVariable(String name) {
+        for (Node variable : variables) {
+            if (name.equals(variable.getName())) {
+                return variable;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return a copy sharing the mapped file of this matrix.
+     */
+    @Override
+    public DataModel copy() {
+        return new MappedCovarianceMatrix(this);
+    }
+
+    @Override
+    public void setValue(int i, int j, double v) {
+        throw new UnsupportedOperationException("A mapped covariance matrix cannot be modified.");
+    }
+
+    @Override
+    public void removeVariables(List<String> remaining) {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * @return the file the matrix is mapped from.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    //========================PRIVATE METHODS============================//
+
+    // Reads the header and maps the lower triangle; the variables and sample size are taken from the header
+    // only if asked, since a deserialized matrix has its own.
+    private void open(boolean readHeader) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(16);
+            readFully(channel, prefix, 0);
+
+            if (prefix.getLong(0) != MAGIC) {
+                throw new IOException("Not a binary covariance file: " + file);
+            }
+
+            if (prefix.getInt(8) != VERSION) {
+                throw new IOException("Unsupported binary covariance file version " + prefix.getInt(8) + ": " + file);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(prefix.getInt(12));
+            readFully(channel, header, 16);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array()));
+            int sampleSize = in.readInt();
+            int dimension = in.readInt();
+
+            if (readHeader) {
+                List<Node> variables = new ArrayList<>(dimension);
+                for (int i = 0; i < dimension; i++) variables.add(new ContinuousVariable(in.readUTF()));
+
+                this.variables = Collections.unmodifiableList(variables);
+                this.sampleSize = sampleSize;
+            } else if (dimension != variables.size()) {
+                throw new IOException("Binary covariance file has changed: " + file);
+            }
+
+            long position = MappedColumnDataBox.align(16 + header.capacity());
+
+            if (position + (long) dimension * (dimension + 1) / 2 * 8 > channel.size()) {
+                throw new IOException("Binary covariance file is truncated: " + file);
+            }
+
+            List<DoubleBuffer> blocks = new ArrayList<>();
+            this.blockOfRow = new int[dimension];
+            this.rowStart = new int[dimension];
+
+            for (int row = 0; row < dimension; ) {
+                long size = 0;
+
+                for (; row < dimension && (size == 0 || size + (row + 1) * 8L <= MAX_BLOCK_SIZE); row++) {
+                    blockOfRow[row] = blocks.size();
+                    rowStart[row] = (int) (size / 8);
+                    size += (row + 1) * 8L;
+                }
+
+                blocks.add(channel.map(FileChannel.MapMode.READ_ONLY, position, size).asDoubleBuffer());
+                position += size;
+            }
+
+            this.blocks = blocks.toArray(new DoubleBuffer[0]);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Binary covariance file is truncated.");
+            }
+        }
+    }
+
+    /**
+     * Adds semantic checks to the default deserialization method and maps the file again.
+     */
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (file == null) {
+            throw new NullPointerException();
+        }
+
+        if (variables == null) {
+            throw new NullPointerException();
+        }
+
+        if (knowledge == null) {
+            throw new NullPointerException();
+        }
+
+        if (sampleSize < 0) {
+            throw new IllegalStateException();
+        }
+
+        open(false);
+    }
+}
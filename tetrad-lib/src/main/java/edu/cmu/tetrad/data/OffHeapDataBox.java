@@ -0,0 +1,287 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.stat.correlation.ColumnVectors;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores a 2D array of continuous data outside of the heap, in a direct buffer per column, as doubles or (to halve
+ * the memory used) as floats. Very wide data sets may be held this way without adding to garbage collection
+ * pauses; the amount that may be allocated is limited by -XX:MaxDirectMemorySize rather than -Xmx.
+ * <p>
+ * Columns may be read a column at a time through ColumnVectors, so that covariance matrices may be computed
+ * from the data without copying it into a double[][] array. Missing values are stored as NaN.
+ *
+ * @author agent
+ */
+public class OffHeapDataBox implements DataBox, ColumnVectors {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The number of rows (tracked because it may be zero).
+     */
+    private int numRows;
+
+    /**
+     * The number of columns (tracked because it may be zero).
+     */
+    private int numCols;
+
+    /**
+     * True if values are stored as floats.
+     */
+    private boolean floats;
+
+    /**
+     * The stored data, one buffer per column, in doubleColumns or floatColumns depending on the storage type.
+     */
+    private transient DoubleBuffer[] doubleColumns;
+    private transient FloatBuffer[] floatColumns;
+
+    /**
+     * Constructs a box of doubles consisting entirely of missing values (Double.NaN).
+     */
+    public OffHeapDataBox(int rows, int cols) {
+        this(rows, cols, false);
+    }
+
+    /**
+     * Constructs a box of doubles, or of floats if <code>floats</code> is true, consisting entirely of missing
+     * values (Double.NaN).
+     */
+    public OffHeapDataBox(int rows, int cols, boolean floats) {
+        this.numRows = rows;
+        this.numCols = cols;
+        this.floats = floats;
+
+        allocate();
+
+        for (int j = 0; j < cols; j++) {
+            for (int i = 0; i < rows; i++) {
+                setDouble(i, j, Double.NaN);
+            }
+        }
+    }
+
+    /**
+     * Copies the data from the given data box into a box of doubles, or of floats if <code>floats</code> is true.
+     */
+    public OffHeapDataBox(DataBox dataBox, boolean floats) {
+        this.numRows = dataBox.numRows();
+        this.numCols = dataBox.numCols();
+        this.floats = floats;
+
+        allocate();
+
+        for (int j = 0; j < numCols; j++) {
+            for (int i = 0; i < numRows; i++) {
+                Number value = dataBox.get(i, j);
+                setDouble(i, j, value == null ? Double.NaN : value.doubleValue());
+            }
+        }
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static BoxDataSet serializableInstance() {
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < 4; i++) vars.add(new ContinuousVariable("X" + i));
+        return new BoxDataSet(new OffHeapDataBox(4, 4, true), vars);
+    }
+
+    /**
+     * @return the number of rows in this data box.
+     */
+    public int numRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the number of columns in this data box.
+     */
+    public int numCols() {
+        return numCols;
+    }
+
+    /**
+     * Sets the value at the given row/column to the given Number value. The value used is number.doubleValue(),
+     * rounded to a float if values are stored as floats.
+     */
+    public void set(int row, int col, Number value) {
+        setDouble(row, col, value == null ? Double.NaN : value.doubleValue());
+    }
+
+    /**
+     * @return the Number value at the given row and column. If the value is missing (NaN), null is returned.
+     */
+    public Number get(int row, int col) {
+        double value = getDouble(row, col);
+        return Double.isNaN(value) ? null : value;
+    }
+
+    public double getDouble(int row, int col) {
+        return floats ? floatColumns[col].get(row) : doubleColumns[col].get(row);
+    }
+
+    public void setDouble(int row, int col, double value) {
+        if (floats) {
+            floatColumns[col].put(row, (float) value);
+        } else {
+            doubleColumns[col].put(row, value);
+        }
+    }
+
+    /**
+     * @return true if values are stored as floats.
+     */
+    public boolean isFloats() {
+        return floats;
+    }
+
+    @Override
+    public int getNumOfRows() {
+        return numRows;
+    }
+
+    @Override
+    public int getNumOfCols() {
+        return numCols;
+    }
+
+    /**
+     * Copies the given column into vector[0], ..., vector[numRows() - 1].
+     */
+    @Override
+    public void getColumn(int col, double[] vector) {
+        if (floats) {
+            FloatBuffer column = floatColumns[col];
+            for (int i = 0; i < numRows; i++) {
+                vector[i] = column.get(i);
+            }
+        } else {
+            // A duplicate has its own position, so that columns may be read by several threads at once.
+            doubleColumns[col].duplicate().get(vector, 0, numRows);
+        }
+    }
+
+    /**
+     * @return a copy of this data box, also off the heap.
+     */
+    public DataBox copy() {
+        OffHeapDataBox copy = new OffHeapDataBox(numRows, numCols, floats);
+
+        for (int j = 0; j < numCols; j++) {
+            if (floats) {
+                copy.floatColumns[j].duplicate().put(floatColumns[j].duplicate());
+            } else {
+                copy.doubleColumns[j].duplicate().put(doubleColumns[j].duplicate());
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return a DataBox of type OffHeapDataBox, with the same dimensions and values.
+     */
+    public DataBox like() {
+        int[] rows = new int[numRows()];
+        int[] cols = new int[numCols()];
+
+        for (int i = 0; i < numRows(); i++) rows[i] = i;
+        for (int j = 0; j < numCols(); j++) cols[j] = j;
+
+        return viewSelection(rows, cols);
+    }
+
+    @Override
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        OffHeapDataBox _dataBox = new OffHeapDataBox(rows.length, cols.length, floats);
+
+        for (int j = 0; j < cols.length; j++) {
+            for (int i = 0; i < rows.length; i++) {
+                _dataBox.setDouble(i, j, getDouble(rows[i], cols[j]));
+            }
+        }
+
+        return _dataBox;
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private void allocate() {
+        int width = floats ? 4 : 8;
+
+        if ((long) numRows * width > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many rows for a column buffer: " + numRows);
+        }
+
+        if (floats) {
+            floatColumns = new FloatBuffer[numCols];
+        } else {
+            doubleColumns = new DoubleBuffer[numCols];
+        }
+
+        for (int j = 0; j < numCols; j++) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(numRows * width).order(ByteOrder.nativeOrder());
+
+            if (floats) {
+                floatColumns[j] = buffer.asFloatBuffer();
+            } else {
+                doubleColumns[j] = buffer.asDoubleBuffer();
+            }
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        for (int j = 0; j < numCols; j++) {
+            for (int i = 0; i < numRows; i++) {
+                out.writeDouble(getDouble(i, j));
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        allocate();
+
+        for (int j = 0; j < numCols; j++) {
+            for (int i = 0; i < numRows; i++) {
+                setDouble(i, j, in.readDouble());
+            }
+        }
+    }
+}
@@ -0,0 +1,1616 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.*;
+
+/**
+ * <p>An immutable graph for searches and statistics that query a graph many times without changing it. Nodes are
+ * numbered 0 to n - 1 in the order of getNodes(), and the edges at each node are stored in compressed sparse rows:
+ * for each node, the indices of its neighbors in increasing order, with the endpoint at each end of each edge kept
+ * as a byte code. A hash table from node pairs to rows answers isAdjacentTo, getEdge and getEndpoint in constant
+ * time without allocating, and parents, children, ancestors and paths are found over the int indices. The int
+ * indices may also be used directly, through getIndex(Node) and the methods taking indices.</p>
+ * <p>A CompactGraph is made by copying another graph or with a Builder, which collects nodes and edges cheaply and
+ * lays out the rows once, in build(). Like EdgeListGraph, the graph holds the Edge objects it is given, and an
+ * edge added more than once is kept once. Methods that would change the nodes or edges throw
+ * UnsupportedOperationException; to change the graph, copy it into an EdgeListGraph or a new Builder. The triples,
+ * highlighted edges, attributes and pattern and PAG flags may be set as in any graph. The graph may be read by
+ * several threads at once.</p>
+ *
+ * @author agent
+ * @see EdgeListGraph
+ */
+public final class CompactGraph implements Graph, TripleClassifier {
+    static final long serialVersionUID = 23L;
+
+    // An empty slot in the pair table.
+    private static final long EMPTY = -1L;
+
+    // Endpoint codes.
+    private static final byte TAIL = code(Endpoint.TAIL);
+    private static final byte ARROW = code(Endpoint.ARROW);
+    private static final byte CIRCLE = code(Endpoint.CIRCLE);
+
+    /**
+     * The nodes of the graph, in index order.
+     *
+     * @serial
+     */
+    private final List<Node> nodes;
+
+    /**
+     * The distinct edges of the graph, in the order in which they were added.
+     *
+     * @serial
+     */
+    private final Edge[] edges;
+
+    /**
+     * @serial
+     */
+    private Set<Triple> ambiguousTriples = new HashSet<>();
+
+    /**
+     * @serial
+     */
+    private Set<Triple> underLineTriples = new HashSet<>();
+
+    /**
+     * @serial
+     */
+    private Set<Triple> dottedUnderLineTriples = new HashSet<>();
+
+    /**
+     * The set of highlighted edges.
+     */
+    private Set<Edge> highlightedEdges = new HashSet<>();
+
+    private boolean pattern = false;
+
+    private boolean pag = false;
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    // The index of each node.
+    private transient Map<Node, Integer> indices;
+
+    // A hash from node names to nodes.
+    private transient Map<String, Node> namesHash;
+
+    // Row i of the adjacency holds positions offsets[i] through offsets[i + 1] - 1 of the arrays below.
+    private transient int[] offsets;
+
+    // The neighbor at each position, increasing within a row.
+    private transient int[] neighbors;
+
+    // The endpoints, as indices into Endpoint.TYPES, at the row's node and at the neighbor.
+    private transient byte[] proximal;
+    private transient byte[] distal;
+
+    // The edge at each position.
+    private transient Edge[] edgeAt;
+
+    // Open addressing from the pair key i * n + j to the first position of j in row i.
+    private transient long[] pairKeys;
+    private transient int[] pairPositions;
+
+    //==============================CONSTUCTORS===========================//
+
+    /**
+     * Constructs a CompactGraph with the nodes, edges, triples, highlighting, attributes and pattern and PAG flags of
+     * the given graph.
+     */
+    public CompactGraph(Graph graph) {
+        this(graph.getNodes(), graph.getEdges());
+
+        this.ambiguousTriples = graph.getAmbiguousTriples();
+        this.underLineTriples = graph.getUnderLines();
+        this.dottedUnderLineTriples = graph.getDottedUnderlines();
+
+        for (Edge edge : graph.getEdges()) {
+            if (graph.isHighlighted(edge)) {
+                setHighlighted(edge, true);
+            }
+        }
+
+        transferAttributes(graph);
+        this.pag = graph.isPag();
+        this.pattern = graph.isPattern();
+    }
+
+    private CompactGraph(List<Node> nodes, Collection<Edge> edges) {
+        this.nodes = new ArrayList<>(nodes);
+        this.indices = indexNodes(this.nodes);
+
+        for (Edge edge : edges) {
+            if (!indices.containsKey(edge.getNode1()) || !indices.containsKey(edge.getNode2())) {
+                throw new IllegalArgumentException("Edge " + edge + " has a node that is not in the graph.");
+            }
+        }
+
+        this.edges = layOut(edges.toArray(new Edge[0]));
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static CompactGraph serializableInstance() {
+        return new Builder().build();
+    }
+
+    //===============================BUILDER==============================//
+
+    /**
+     * Collects nodes and edges for a CompactGraph. Adding a node or an edge takes constant time; the rows are laid
+     * out once, by build(). A builder may be reused after building.
+     */
+    public static final class Builder {
+        private final List<Node> nodes = new ArrayList<>();
+        private final Map<Node, Integer> indices = new HashMap<>();
+        private final List<Edge> edges = new ArrayList<>();
+
+        /**
+         * Constructs an empty builder.
+         */
+        public Builder() {
+        }
+
+        /**
+         * Constructs a builder holding the nodes and edges of the given graph.
+         */
+        public Builder(Graph graph) {
+            for (Node node : graph.getNodes()) addNode(node);
+            for (Edge edge : graph.getEdges()) addEdge(edge);
+        }
+
+        /**
+         * Adds a node, if it is not already in the graph.
+         */
+        public Builder addNode(Node node) {
+            if (node == null) {
+                throw new NullPointerException();
+            }
+
+            if (!indices.containsKey(node)) {
+                indices.put(node, nodes.size());
+                nodes.add(node);
+            }
+
+            return this;
+        }
+
+        /**
+         * Adds the given nodes, skipping any already in the graph.
+         */
+        public Builder addNodes(List<Node> nodes) {
+            for (Node node : nodes) addNode(node);
+            return this;
+        }
+
+        /**
+         * Adds an edge between nodes already in the graph.
+         *
+         * @throws IllegalArgumentException if either node is not in the graph.
+         */
+        public Builder addEdge(Edge edge) {
+            if (edge == null) {
+                throw new NullPointerException();
+            }
+
+            if (!indices.containsKey(edge.getNode1()) || !indices.containsKey(edge.getNode2())) {
+                throw new IllegalArgumentException("Edge " + edge + " has a node that is not in the graph.");
+            }
+
+            edges.add(edge);
+            return this;
+        }
+
+        /**
+         * Adds a directed edge node1 --> node2.
+         */
+        public Builder addDirectedEdge(Node node1, Node node2) {
+            return addEdge(Edges.directedEdge(node1, node2));
+        }
+
+        /**
+         * Adds an undirected edge node1 --- node2.
+         */
+        public Builder addUndirectedEdge(Node node1, Node node2) {
+            return addEdge(Edges.undirectedEdge(node1, node2));
+        }
+
+        /**
+         * Adds a bidirected edge node1 <-> node2.
+         */
+        public Builder addBidirectedEdge(Node node1, Node node2) {
+            return addEdge(Edges.bidirectedEdge(node1, node2));
+        }
+
+        /**
+         * Adds a nondirected edge node1 o-o node2.
+         */
+        public Builder addNondirectedEdge(Node node1, Node node2) {
+            return addEdge(Edges.nondirectedEdge(node1, node2));
+        }
+
+        /**
+         * Adds a partially oriented edge node1 o-> node2.
+         */
+        public Builder addPartiallyOrientedEdge(Node node1, Node node2) {
+            return addEdge(Edges.partiallyOrientedEdge(node1, node2));
+        }
+
+        public int getNumNodes() {
+            return nodes.size();
+        }
+
+        /**
+         * @return the number of edges added, counting an edge added more than once each time.
+         */
+        public int getNumEdges() {
+            return edges.size();
+        }
+
+        /**
+         * @return the graph of the nodes and edges added so far.
+         */
+        public CompactGraph build() {
+            return new CompactGraph(nodes, edges);
+        }
+    }
+
+    //===============================INDEXED ACCESS========================//
+
+    /**
+     * @return the index of the given node, or -1 if it is not in the graph.
+     */
+    public int getIndex(Node node) {
+        Integer index = indices.get(node);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return the node with the given index.
+     */
+    public Node getNode(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * @return the number of edge ends at the node with the given index.
+     */
+    public int getNumEdges(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * @return the index of the node at the other end of the k'th edge at the given node. Neighbors are in
+     * increasing order of index.
+     */
+    public int getNeighbor(int index, int k) {
+        return neighbors[offsets[index] + k];
+    }
+
+    /**
+     * @return the endpoint at the given node of its k'th edge.
+     */
+    public Endpoint getProximalEndpoint(int index, int k) {
+        return Endpoint.TYPES[proximal[offsets[index] + k]];
+    }
+
+    /**
+     * @return the endpoint at the neighbor of the k'th edge of the given node.
+     */
+    public Endpoint getDistalEndpoint(int index, int k) {
+        return Endpoint.TYPES[distal[offsets[index] + k]];
+    }
+
+    /**
+     * @return true iff the nodes with the given indices are adjacent.
+     */
+    public boolean isAdjacentTo(int i, int j) {
+        return position(i, j) >= 0;
+    }
+
+    /**
+     * @return the endpoint at j of the edge between i and j, or null if they are not adjacent.
+     */
+    public Endpoint getEndpoint(int i, int j) {
+        int p = position(i, j);
+        return p < 0 ? null : Endpoint.TYPES[distal[p]];
+    }
+
+    /**
+     * @return the indices of the parents of the given node, in increasing order.
+     */
+    public int[] getParents(int index) {
+        return select(index, ARROW, TAIL);
+    }
+
+    /**
+     * @return the indices of the children of the given node, in increasing order.
+     */
+    public int[] getChildren(int index) {
+        return select(index, TAIL, ARROW);
+    }
+
+    //===============================PUBLIC METHODS========================//
+
+    @Override
+    public boolean addBidirectedEdge(Node node1, Node node2) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean addDirectedEdge(Node node1, Node node2) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean addUndirectedEdge(Node node1, Node node2) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean addNondirectedEdge(Node node1, Node node2) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean addPartiallyOrientedEdge(Node node1, Node node2) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean addEdge(Edge edge) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean addNode(Node node) {
+        throw immutable();
+    }
+
+    /**
+     * Does nothing, since the graph does not change.
+     */
+    @Override
+    public void addPropertyChangeListener(PropertyChangeListener e) {
+    }
+
+    @Override
+    public void clear() {
+        throw immutable();
+    }
+
+    @Override
+    public boolean containsEdge(Edge edge) {
+        int i = getIndex(edge.getNode1());
+        int j = getIndex(edge.getNode2());
+        int p = i < 0 || j < 0 ? -1 : position(i, j);
+
+        if (p < 0) {
+            return false;
+        }
+
+        for (int end = offsets[i + 1]; p < end && neighbors[p] == j; p++) {
+            if (edgeAt[p].equals(edge)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean containsNode(Node node) {
+        return indices.containsKey(node);
+    }
+
+    /**
+     * @return true iff there is a directed cycle in the graph, found by removing nodes with no parents until none
+     * are left.
+     */
+    @Override
+    public boolean existsDirectedCycle() {
+        return topologicalOrder().length < nodes.size();
+    }
+
+    /**
+     * @return true iff there is a directed path of at least one edge from node1 to node2.
+     */
+    @Override
+    public boolean existsDirectedPathFromTo(Node node1, Node node2) {
+        int from = getIndex(node1);
+        int to = getIndex(node2);
+        return from >= 0 && to >= 0 && reachable(new int[]{from}, DIRECTED, true)[to];
+    }
+
+    @Override
+    public List<Node> findCycle() {
+        if (!existsDirectedCycle()) {
+            return new LinkedList<>();
+        }
+
+        for (int a = 0; a < nodes.size(); a++) {
+            List<Node> path = directedPath(a, a);
+
+            if (!path.isEmpty()) {
+                return path;
+            }
+        }
+
+        return new LinkedList<>();
+    }
+
+    @Override
+    public boolean existsUndirectedPathFromTo(Node node1, Node node2) {
+        int from = getIndex(node1);
+        int to = getIndex(node2);
+        return from >= 0 && to >= 0 && reachable(new int[]{from}, ANY, true)[to];
+    }
+
+    @Override
+    public boolean existsSemiDirectedPathFromTo(Node node1, Set<Node> nodes) {
+        int from = getIndex(node1);
+
+        if (from < 0) {
+            return false;
+        }
+
+        boolean[] reached = reachable(new int[]{from}, SEMIDIRECTED, true);
+
+        for (Node node : nodes) {
+            int j = getIndex(node);
+
+            if (j >= 0 && reached[j]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean existsInducingPath(Node node1, Node node2) {
+        return node1 == node2 || existsDirectedPathFromTo(node2, node1);
+    }
+
+    /**
+     * @return true iff the two nodes have a common ancestor; false if either is not in the graph.
+     */
+    @Override
+    public boolean existsTrek(Node node1, Node node2) {
+        int from1 = getIndex(node1);
+        int from2 = getIndex(node2);
+
+        if (from1 < 0 || from2 < 0) {
+            return false;
+        }
+
+        boolean[] ancestors1 = reachable(new int[]{from1}, PARENTS, false);
+        boolean[] ancestors2 = reachable(new int[]{from2}, PARENTS, false);
+
+        for (int i = 0; i < ancestors1.length; i++) {
+            if (ancestors1[i] && ancestors2[i]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public void fullyConnect(Endpoint endpoint) {
+        throw immutable();
+    }
+
+    @Override
+    public void reorientAllWith(Endpoint endpoint) {
+        throw immutable();
+    }
+
+    /**
+     * @return the nodes adjacent to the given node, each once, in index order.
+     */
+    @Override
+    public List<Node> getAdjacentNodes(Node node) {
+        int i = getIndex(node);
+        List<Node> adj = new ArrayList<>(getNumEdges(i));
+
+        for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+            if (p == offsets[i] || neighbors[p] != neighbors[p - 1]) {
+                adj.add(nodes.get(neighbors[p]));
+            }
+        }
+
+        return adj;
+    }
+
+    /**
+     * @return the given nodes and their ancestors, in index order.
+     */
+    @Override
+    public List<Node> getAncestors(List<Node> nodes) {
+        return toNodes(reachable(toIndices(nodes), PARENTS, false));
+    }
+
+    @Override
+    public List<Node> getChildren(Node node) {
+        return toNodes(getChildren(getIndex(node)));
+    }
+
+    @Override
+    public int getConnectivity() {
+        int connectivity = 0;
+
+        for (int i = 0; i < nodes.size(); i++) {
+            connectivity = Math.max(connectivity, getNumEdges(i));
+        }
+
+        return connectivity;
+    }
+
+    /**
+     * @return the given nodes and their descendants, in index order.
+     */
+    @Override
+    public List<Node> getDescendants(List<Node> nodes) {
+        return toNodes(reachable(toIndices(nodes), DIRECTED, false));
+    }
+
+    @Override
+    public Edge getEdge(Node node1, Node node2) {
+        int p = position(node1, node2);
+        return p < 0 ? null : edgeAt[p];
+    }
+
+    @Override
+    public Edge getDirectedEdge(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        int p = i < 0 || j < 0 ? -1 : position(i, j);
+
+        if (p < 0) {
+            return null;
+        }
+
+        for (int end = offsets[i + 1]; p < end && neighbors[p] == j; p++) {
+            if (isDirected(p) && distal[p] == ARROW) {
+                return edgeAt[p];
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public List<Edge> getEdges(Node node) {
+        int i = getIndex(node);
+
+        if (i < 0) {
+            return new ArrayList<>();
+        }
+
+        return new ArrayList<>(Arrays.asList(edgeAt).subList(offsets[i], offsets[i + 1]));
+    }
+
+    @Override
+    public List<Edge> getEdges(Node node1, Node node2) {
+        List<Edge> edges = new ArrayList<>();
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        int p = i < 0 || j < 0 ? -1 : position(i, j);
+
+        if (p >= 0) {
+            for (int end = offsets[i + 1]; p < end && neighbors[p] == j; p++) {
+                edges.add(edgeAt[p]);
+            }
+        }
+
+        return edges;
+    }
+
+    @Override
+    public Set<Edge> getEdges() {
+        return new LinkedHashSet<>(Arrays.asList(edges));
+    }
+
+    @Override
+    public Endpoint getEndpoint(Node node1, Node node2) {
+        int p = position(node1, node2);
+        return p < 0 ? null : Endpoint.TYPES[distal[p]];
+    }
+
+    @Override
+    public Endpoint[][] getEndpointMatrix() {
+        int size = nodes.size();
+        Endpoint[][] endpoints = new Endpoint[size][size];
+
+        for (int i = 0; i < size; i++) {
+            for (int p = offsets[i + 1] - 1; p >= offsets[i]; p--) {
+                if (neighbors[p] != i) {
+                    endpoints[i][neighbors[p]] = Endpoint.TYPES[distal[p]];
+                }
+            }
+        }
+
+        return endpoints;
+    }
+
+    @Override
+    public int getIndegree(Node node) {
+        return getParents(getIndex(node)).length;
+    }
+
+    @Override
+    public int getDegree(Node node) {
+        return getNumEdges(getIndex(node));
+    }
+
+    @Override
+    public Node getNode(String name) {
+        return namesHash.get(name);
+    }
+
+    @Override
+    public List<Node> getNodes() {
+        return new ArrayList<>(nodes);
+    }
+
+    @Override
+    public List<String> getNodeNames() {
+        List<String> names = new ArrayList<>();
+
+        for (Node node : nodes) {
+            names.add(node.getName());
+        }
+
+        return names;
+    }
+
+    @Override
+    public int getNumEdges() {
+        return edges.length;
+    }
+
+    @Override
+    public int getNumEdges(Node node) {
+        int i = getIndex(node);
+        return i < 0 ? 0 : getNumEdges(i);
+    }
+
+    @Override
+    public int getNumNodes() {
+        return nodes.size();
+    }
+
+    @Override
+    public int getOutdegree(Node node) {
+        return getChildren(getIndex(node)).length;
+    }
+
+    @Override
+    public List<Node> getParents(Node node) {
+        return toNodes(getParents(getIndex(node)));
+    }
+
+    @Override
+    public boolean isAdjacentTo(Node node1, Node node2) {
+        return position(node1, node2) >= 0;
+    }
+
+    @Override
+    public boolean isAncestorOf(Node node1, Node node2) {
+        return node1 == node2 || existsDirectedPathFromTo(node1, node2);
+    }
+
+    @Override
+    public boolean possibleAncestor(Node node1, Node node2) {
+        return existsSemiDirectedPathFromTo(node1, Collections.singleton(node2));
+    }
+
+    @Override
+    public boolean isChildOf(Node node1, Node node2) {
+        return isParentOf(node2, node1);
+    }
+
+    @Override
+    public boolean isParentOf(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        int p = i < 0 || j < 0 ? -1 : position(i, j);
+
+        if (p < 0) {
+            return false;
+        }
+
+        for (int end = offsets[i + 1]; p < end && neighbors[p] == j; p++) {
+            if (proximal[p] == TAIL && distal[p] == ARROW) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean isProperAncestorOf(Node node1, Node node2) {
+        return node1 != node2 && isAncestorOf(node1, node2);
+    }
+
+    @Override
+    public boolean isProperDescendentOf(Node node1, Node node2) {
+        return node1 != node2 && isDescendentOf(node1, node2);
+    }
+
+    @Override
+    public boolean isDescendentOf(Node node1, Node node2) {
+        return node1 == node2 || existsDirectedPathFromTo(node2, node1);
+    }
+
+    @Override
+    public boolean defNonDescendent(Node node1, Node node2) {
+        return !possibleAncestor(node1, node2);
+    }
+
+    @Override
+    public boolean isDefNoncollider(Node node1, Node node2, Node node3) {
+        boolean circle12 = false;
+        boolean circle32 = false;
+
+        for (Edge edge : getEdges(node2)) {
+            boolean _node1 = edge.getDistalNode(node2) == node1;
+            boolean _node3 = edge.getDistalNode(node2) == node3;
+
+            if (_node1 && edge.pointsTowards(node1)) {
+                return true;
+            }
+            if (_node3 && edge.pointsTowards(node3)) {
+                return true;
+            }
+
+            if (_node1 && edge.getProximalEndpoint(node2) == Endpoint.CIRCLE) {
+                circle12 = true;
+            }
+            if (_node3 && edge.getProximalEndpoint(node2) == Endpoint.CIRCLE) {
+                circle32 = true;
+            }
+            if (circle12 && circle32 && !isAdjacentTo(node1, node2)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean isDefCollider(Node node1, Node node2, Node node3) {
+        int p = position(node1, node2);
+        int q = position(node3, node2);
+        return p >= 0 && q >= 0 && distal[p] == ARROW && distal[q] == ARROW;
+    }
+
+    @Override
+    public boolean isDConnectedTo(Node node1, Node node2, List<Node> z) {
+        return GraphUtils.isDConnectedTo(node1, node2, z, this);
+    }
+
+    @Override
+    public boolean isDSeparatedFrom(Node node1, Node node2, List<Node> z) {
+        return !isDConnectedTo(node1, node2, z);
+    }
+
+    @Override
+    public boolean isPattern() {
+        return pattern;
+    }
+
+    @Override
+    public void setPattern(boolean pattern) {
+        this.pattern = pattern;
+    }
+
+    @Override
+    public boolean isPag() {
+        return pag;
+    }
+
+    @Override
+    public void setPag(boolean pag) {
+        this.pag = pag;
+    }
+
+    /**
+     * The possible d-connection search of EdgeListGraph, over node indices.
+     */
+    @Override
+    public boolean possDConnectedTo(Node node1, Node node2, List<Node> condNodes) {
+        int n1x = getIndex(node1);
+        int n2x = getIndex(node2);
+        int n = nodes.size();
+
+        Set<Long> visited = new HashSet<>();
+        visited.add((long) n1x * n + n1x);
+        visited.add((long) n2x * n + n2x);
+
+        List<int[]> currEdges;
+        List<int[]> nextEdges = new ArrayList<>();
+        nextEdges.add(new int[]{n1x, n1x});
+        nextEdges.add(new int[]{n2x, n2x});
+
+        Map<Node, Boolean> possibleAncestors = new HashMap<>();
+
+        while (!nextEdges.isEmpty()) {
+            currEdges = nextEdges;
+            nextEdges = new ArrayList<>();
+
+            for (int[] edge : currEdges) {
+                int center = edge[1];
+
+                for (int p = offsets[center]; p < offsets[center + 1]; p++) {
+                    int test = neighbors[p];
+
+                    if (visited.contains((long) center * n + test)) {
+                        continue;
+                    }
+
+                    Node X = nodes.get(edge[0]);
+                    Node Y = nodes.get(center);
+                    Node Z = nodes.get(test);
+
+                    if (!((isDefNoncollider(X, Y, Z) && !condNodes.contains(Y))
+                            || (isDefCollider(X, Y, Z) && possibleAncestors.computeIfAbsent(Y,
+                            y -> possibleAncestorSet(y, condNodes))))) {
+                        continue;
+                    }
+
+                    if (Z.equals(node2)) {
+                        return true;
+                    }
+
+                    nextEdges.add(new int[]{center, test});
+                    visited.add((long) center * n + test);
+                    visited.add((long) test * n + center);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean isDirectedFromTo(Node node1, Node node2) {
+        List<Edge> edges = getEdges(node1, node2);
+        return edges.size() == 1 && edges.get(0).pointsTowards(node2);
+    }
+
+    @Override
+    public boolean isUndirectedFromTo(Node node1, Node node2) {
+        int p = position(node1, node2);
+        return p >= 0 && proximal[p] == TAIL && distal[p] == TAIL;
+    }
+
+    /**
+     * @return true if the given edge is definitely visible (Jiji, pg 25)
+     * @throws IllegalArgumentException if the given edge is not a directed edge in the graph
+     */
+    @Override
+    public boolean defVisible(Edge edge) {
+        if (!containsEdge(edge)) {
+            throw new IllegalArgumentException("Given edge is not in the graph.");
+        }
+
+        Node A = Edges.getDirectedEdgeTail(edge);
+        Node B = Edges.getDirectedEdgeHead(edge);
+
+        for (Node C : getAdjacentNodes(A)) {
+            if (C != B && !isAdjacentTo(C, B) && getEndpoint(C, A) == Endpoint.ARROW) {
+                return true;
+            }
+        }
+
+        return EdgeListGraph.visibleEdgeHelper(A, B, this);
+    }
+
+    @Override
+    public boolean isExogenous(Node node) {
+        return getIndegree(node) == 0;
+    }
+
+    @Override
+    public List<Node> getNodesInTo(Node node, Endpoint endpoint) {
+        return endpointNeighbors(getIndex(node), proximal, endpoint);
+    }
+
+    @Override
+    public List<Node> getNodesOutTo(Node node, Endpoint endpoint) {
+        return endpointNeighbors(getIndex(node), distal, endpoint);
+    }
+
+    @Override
+    public boolean removeEdge(Edge edge) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean removeEdge(Node node1, Node node2) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean removeEdges(Node node1, Node node2) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean removeEdges(Collection<Edge> edges) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean removeNode(Node node) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean removeNodes(List<Node> nodes) {
+        throw immutable();
+    }
+
+    @Override
+    public boolean setEndpoint(Node from, Node to, Endpoint endPoint) {
+        throw immutable();
+    }
+
+    /**
+     * @return the subgraph over the given nodes, as a CompactGraph.
+     */
+    @Override
+    public Graph subgraph(List<Node> nodes) {
+        Builder builder = new Builder().addNodes(nodes);
+
+        for (Edge edge : edges) {
+            if (builder.indices.containsKey(edge.getNode1()) && builder.indices.containsKey(edge.getNode2())) {
+                builder.addEdge(edge);
+            }
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public void transferNodesAndEdges(Graph graph) throws IllegalArgumentException {
+        throw immutable();
+    }
+
+    @Override
+    public void transferAttributes(Graph graph) throws IllegalArgumentException {
+        if (graph == null) {
+            throw new NullPointerException("No graph was provided.");
+        }
+
+        this.attributes.putAll(graph.getAllAttributes());
+    }
+
+    @Override
+    public Set<Triple> getAmbiguousTriples() {
+        return new HashSet<>(ambiguousTriples);
+    }
+
+    @Override
+    public Set<Triple> getUnderLines() {
+        return new HashSet<>(underLineTriples);
+    }
+
+    @Override
+    public Set<Triple> getDottedUnderlines() {
+        return new HashSet<>(dottedUnderLineTriples);
+    }
+
+    @Override
+    public boolean isAmbiguousTriple(Node x, Node y, Node z) {
+        return ambiguousTriples.contains(new Triple(x, y, z));
+    }
+
+    @Override
+    public boolean isUnderlineTriple(Node x, Node y, Node z) {
+        return underLineTriples.contains(new Triple(x, y, z));
+    }
+
+    @Override
+    public boolean isDottedUnderlineTriple(Node x, Node y, Node z) {
+        return dottedUnderLineTriples.contains(new Triple(x, y, z));
+    }
+
+    @Override
+    public void addAmbiguousTriple(Node x, Node y, Node z) {
+        ambiguousTriples.add(new Triple(x, y, z));
+    }
+
+    @Override
+    public void addUnderlineTriple(Node x, Node y, Node z) {
+        Triple triple = new Triple(x, y, z);
+
+        if (triple.alongPathIn(this)) {
+            underLineTriples.add(triple);
+        }
+    }
+
+    @Override
+    public void addDottedUnderlineTriple(Node x, Node y, Node z) {
+        Triple triple = new Triple(x, y, z);
+
+        if (triple.alongPathIn(this)) {
+            dottedUnderLineTriples.add(triple);
+        }
+    }
+
+    @Override
+    public void removeAmbiguousTriple(Node x, Node y, Node z) {
+        ambiguousTriples.remove(new Triple(x, y, z));
+    }
+
+    @Override
+    public void removeUnderlineTriple(Node x, Node y, Node z) {
+        underLineTriples.remove(new Triple(x, y, z));
+    }
+
+    @Override
+    public void removeDottedUnderlineTriple(Node x, Node y, Node z) {
+        dottedUnderLineTriples.remove(new Triple(x, y, z));
+    }
+
+    @Override
+    public void setAmbiguousTriples(Set<Triple> triples) {
+        ambiguousTriples.clear();
+
+        for (Triple triple : triples) {
+            addAmbiguousTriple(triple.getX(), triple.getY(), triple.getZ());
+        }
+    }
+
+    @Override
+    public void setUnderLineTriples(Set<Triple> triples) {
+        underLineTriples.clear();
+
+        for (Triple triple : triples) {
+            addUnderlineTriple(triple.getX(), triple.getY(), triple.getZ());
+        }
+    }
+
+    @Override
+    public void setDottedUnderLineTriples(Set<Triple> triples) {
+        dottedUnderLineTriples.clear();
+
+        for (Triple triple : triples) {
+            addDottedUnderlineTriple(triple.getX(), triple.getY(), triple.getZ());
+        }
+    }
+
+    @Override
+    public void removeTriplesNotInGraph() {
+        for (Set<Triple> triples : Arrays.asList(ambiguousTriples, underLineTriples, dottedUnderLineTriples)) {
+            triples.removeIf(triple -> !containsNode(triple.getX()) || !containsNode(triple.getY())
+                    || !containsNode(triple.getZ()) || !isAdjacentTo(triple.getX(), triple.getY())
+                    || !isAdjacentTo(triple.getY(), triple.getZ()));
+        }
+    }
+
+    @Override
+    public List<Node> getCausalOrdering() {
+        return GraphUtils.getCausalOrdering(this);
+    }
+
+    @Override
+    public void setHighlighted(Edge edge, boolean highlighted) {
+        highlightedEdges.add(edge);
+    }
+
+    @Override
+    public boolean isHighlighted(Edge edge) {
+        return highlightedEdges.contains(edge);
+    }
+
+    @Override
+    public boolean isParameterizable(Node node) {
+        return true;
+    }
+
+    @Override
+    public boolean isTimeLagModel() {
+        return false;
+    }
+
+    @Override
+    public TimeLagGraph getTimeLagGraph() {
+        return null;
+    }
+
+    @Override
+    public List<Node> getSepset(Node n1, Node n2) {
+        return GraphUtils.getSepset(n1, n2, this);
+    }
+
+    @Override
+    public void setNodes(List<Node> nodes) {
+        throw immutable();
+    }
+
+    @Override
+    public Map<String, Object> getAllAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Object getAttribute(String key) {
+        return attributes.get(key);
+    }
+
+    @Override
+    public void removeAttribute(String key) {
+        attributes.remove(key);
+    }
+
+    @Override
+    public void addAttribute(String key, Object value) {
+        attributes.put(key, value);
+    }
+
+    @Override
+    public List<String> getTriplesClassificationTypes() {
+        List<String> names = new ArrayList<>();
+        names.add("Underlines");
+        names.add("Dotted Underlines");
+        names.add("Ambiguous Triples");
+        return names;
+    }
+
+    @Override
+    public List<List<Triple>> getTriplesLists(Node node) {
+        List<List<Triple>> triplesList = new ArrayList<>();
+        triplesList.add(GraphUtils.getUnderlinedTriplesFromGraph(node, this));
+        triplesList.add(GraphUtils.getDottedUnderlinedTriplesFromGraph(node, this));
+        triplesList.add(GraphUtils.getAmbiguousTriplesFromGraph(node, this));
+        return triplesList;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        int sum = 0;
+
+        for (Node node : nodes) {
+            sum += node.hashCode();
+        }
+
+        hashCode += 23 * sum;
+        sum = 0;
+
+        for (Edge edge : edges) {
+            sum += edge.hashCode();
+        }
+
+        hashCode += 41 * sum;
+
+        return hashCode;
+    }
+
+    /**
+     * @return true iff the given object is a graph with nodes of the same names and the same edges.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Graph)) {
+            return false;
+        }
+
+        Graph graph = (Graph) o;
+        return new HashSet<>(graph.getNodeNames()).equals(new HashSet<>(getNodeNames()))
+                && new HashSet<>(graph.getEdges()).equals(new HashSet<>(getEdges()));
+    }
+
+    @Override
+    public String toString() {
+        return GraphUtils.graphToText(this);
+    }
+
+    //===============================PRIVATE METHODS======================//
+
+    // Edges followed by reachable().
+    private static final int DIRECTED = 0;
+    private static final int PARENTS = 1;
+    private static final int SEMIDIRECTED = 2;
+    private static final int ANY = 3;
+
+    private static UnsupportedOperationException immutable() {
+        return new UnsupportedOperationException("A CompactGraph cannot be modified; copy it into an "
+                + "EdgeListGraph or a CompactGraph.Builder to change it.");
+    }
+
+    private static byte code(Endpoint endpoint) {
+        for (byte c = 0; c < Endpoint.TYPES.length; c++) {
+            if (Endpoint.TYPES[c] == endpoint) {
+                return c;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown endpoint: " + endpoint);
+    }
+
+    private static Map<Node, Integer> indexNodes(List<Node> nodes) {
+        Map<Node, Integer> indices = new HashMap<>();
+
+        for (int i = 0; i < nodes.size(); i++) {
+            if (indices.put(nodes.get(i), i) != null) {
+                throw new IllegalArgumentException("Duplicate node: " + nodes.get(i));
+            }
+        }
+
+        return indices;
+    }
+
+    // Lays out the rows and the pair table from the given edges, returning the distinct edges. Within a row,
+    // positions are sorted by neighbor and then by the order in which the edges were given, so an edge equal to
+    // an earlier one with the same nodes is found, and dropped, at both of its ends.
+    private Edge[] layOut(Edge[] given) {
+        int n = nodes.size();
+        int[] ends1 = new int[given.length];
+        int[] ends2 = new int[given.length];
+        int[] counts = new int[n + 1];
+
+        for (int e = 0; e < given.length; e++) {
+            ends1[e] = indices.get(given[e].getNode1());
+            ends2[e] = indices.get(given[e].getNode2());
+            counts[ends1[e] + 1]++;
+            if (ends2[e] != ends1[e]) counts[ends2[e] + 1]++;
+        }
+
+        for (int i = 0; i < n; i++) counts[i + 1] += counts[i];
+
+        // Neighbor in the high half, edge in the low half.
+        long[] slots = new long[counts[n]];
+        int[] fill = Arrays.copyOf(counts, n);
+
+        for (int e = 0; e < given.length; e++) {
+            slots[fill[ends1[e]]++] = (long) ends2[e] << 32 | e;
+            if (ends2[e] != ends1[e]) slots[fill[ends2[e]]++] = (long) ends1[e] << 32 | e;
+        }
+
+        boolean[] duplicate = new boolean[given.length];
+
+        for (int i = 0; i < n; i++) {
+            Arrays.sort(slots, counts[i], counts[i + 1]);
+
+            for (int p = counts[i]; p < counts[i + 1]; p++) {
+                for (int q = p - 1; q >= counts[i] && slots[q] >>> 32 == slots[p] >>> 32; q--) {
+                    int e = (int) slots[p];
+                    int f = (int) slots[q];
+
+                    if (!duplicate[f] && given[e].equals(given[f])) {
+                        duplicate[e] = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        this.offsets = new int[n + 1];
+        List<Edge> distinct = new ArrayList<>();
+
+        for (int e = 0; e < given.length; e++) {
+            if (!duplicate[e]) distinct.add(given[e]);
+        }
+
+        int size = 0;
+
+        for (long slot : slots) {
+            if (!duplicate[(int) slot]) size++;
+        }
+
+        this.neighbors = new int[size];
+        this.proximal = new byte[size];
+        this.distal = new byte[size];
+        this.edgeAt = new Edge[size];
+
+        int p = 0;
+
+        for (int i = 0; i < n; i++) {
+            offsets[i] = p;
+
+            for (int s = counts[i]; s < counts[i + 1]; s++) {
+                int e = (int) slots[s];
+                if (duplicate[e]) continue;
+
+                Edge edge = given[e];
+                Node node = nodes.get(i);
+                neighbors[p] = (int) (slots[s] >>> 32);
+                proximal[p] = code(edge.getProximalEndpoint(node));
+                distal[p] = code(edge.getDistalEndpoint(node));
+                edgeAt[p] = edge;
+                p++;
+            }
+        }
+
+        offsets[n] = p;
+
+        this.namesHash = new HashMap<>();
+        for (Node node : nodes) namesHash.putIfAbsent(node.getName(), node);
+
+        hashPairs();
+        return distinct.toArray(new Edge[0]);
+    }
+
+    // Fills the pair table, at most half full.
+    private void hashPairs() {
+        int capacity = Integer.highestOneBit(Math.max(2, 2 * neighbors.length - 1)) << 1;
+        this.pairKeys = new long[capacity];
+        this.pairPositions = new int[capacity];
+        Arrays.fill(pairKeys, EMPTY);
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+                if (p == offsets[i] || neighbors[p] != neighbors[p - 1]) {
+                    long key = pairKey(i, neighbors[p]);
+                    int slot = slot(key);
+
+                    while (pairKeys[slot] != EMPTY) slot = (slot + 1) & (capacity - 1);
+
+                    pairKeys[slot] = key;
+                    pairPositions[slot] = p;
+                }
+            }
+        }
+    }
+
+    private long pairKey(int i, int j) {
+        return (long) i * nodes.size() + j;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (pairKeys.length - 1);
+    }
+
+    // The first position of j in row i, or -1 if they are not adjacent.
+    private int position(int i, int j) {
+        long key = pairKey(i, j);
+
+        for (int slot = slot(key); pairKeys[slot] != EMPTY; slot = (slot + 1) & (pairKeys.length - 1)) {
+            if (pairKeys[slot] == key) {
+                return pairPositions[slot];
+            }
+        }
+
+        return -1;
+    }
+
+    private int position(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        return i < 0 || j < 0 ? -1 : position(i, j);
+    }
+
+    private boolean isDirected(int p) {
+        return (proximal[p] == TAIL && distal[p] == ARROW) || (proximal[p] == ARROW && distal[p] == TAIL);
+    }
+
+    // The neighbors of i with the given endpoints at i and at the neighbor.
+    private int[] select(int i, byte atNode, byte atNeighbor) {
+        int[] selected = new int[getNumEdges(i)];
+        int count = 0;
+
+        for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+            if (proximal[p] == atNode && distal[p] == atNeighbor) {
+                selected[count++] = neighbors[p];
+            }
+        }
+
+        return Arrays.copyOf(selected, count);
+    }
+
+    private List<Node> endpointNeighbors(int i, byte[] endpoints, Endpoint endpoint) {
+        List<Node> selected = new ArrayList<>(4);
+        byte c = code(endpoint);
+
+        for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+            if (endpoints[p] == c) {
+                selected.add(nodes.get(neighbors[p]));
+            }
+        }
+
+        return selected;
+    }
+
+    // The nodes reached from the starts along edges of the given kind. If strict, a start is reached only if it
+    // is on a cycle of such edges.
+    private boolean[] reachable(int[] starts, int kind, boolean strict) {
+        boolean[] reached = new boolean[nodes.size()];
+        int[] queue = new int[nodes.size() + starts.length];
+        int head = 0;
+        int tail = 0;
+
+        for (int start : starts) {
+            if (strict || !reached[start]) {
+                reached[start] = !strict;
+                queue[tail++] = start;
+            }
+        }
+
+        while (head < tail) {
+            int i = queue[head++];
+
+            for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+                int j = neighbors[p];
+                if (reached[j]) continue;
+
+                boolean follow;
+
+                switch (kind) {
+                    case DIRECTED:
+                        follow = proximal[p] == TAIL && distal[p] == ARROW;
+                        break;
+                    case PARENTS:
+                        follow = proximal[p] == ARROW && distal[p] == TAIL;
+                        break;
+                    case SEMIDIRECTED:
+                        follow = proximal[p] == TAIL || proximal[p] == CIRCLE;
+                        break;
+                    default:
+                        follow = true;
+                }
+
+                if (follow) {
+                    reached[j] = true;
+                    queue[tail++] = j;
+                }
+            }
+        }
+
+        return reached;
+    }
+
+    // The nodes in an order in which parents come before children, leaving out the nodes on or after a cycle.
+    private int[] topologicalOrder() {
+        int n = nodes.size();
+        int[] inDegree = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            for (int child : getChildren(i)) inDegree[child]++;
+        }
+
+        int[] order = new int[n];
+        int count = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) order[count++] = i;
+        }
+
+        for (int k = 0; k < count; k++) {
+            for (int child : getChildren(order[k])) {
+                if (--inDegree[child] == 0) order[count++] = child;
+            }
+        }
+
+        return Arrays.copyOf(order, count);
+    }
+
+    // A shortest directed path of at least one edge from a to b, or an empty list if there is none.
+    private List<Node> directedPath(int a, int b) {
+        int[] previous = new int[nodes.size()];
+        Arrays.fill(previous, -1);
+        int[] queue = new int[nodes.size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = a;
+
+        while (head < tail) {
+            int i = queue[head++];
+
+            for (int child : getChildren(i)) {
+                if (previous[child] != -1) continue;
+                previous[child] = i;
+
+                if (child == b) {
+                    LinkedList<Node> path = new LinkedList<>();
+                    path.addFirst(nodes.get(b));
+
+                    for (int k = i; k != a; k = previous[k]) {
+                        path.addFirst(nodes.get(k));
+                    }
+
+                    path.addFirst(nodes.get(a));
+                    return path;
+                }
+
+                queue[tail++] = child;
+            }
+        }
+
+        return new LinkedList<>();
+    }
+
+    private boolean possibleAncestorSet(Node node1, List<Node> nodes2) {
+        return existsSemiDirectedPathFromTo(node1, new HashSet<>(nodes2));
+    }
+
+    private int[] toIndices(List<Node> nodes) {
+        int[] indices = new int[nodes.size()];
+        for (int k = 0; k < indices.length; k++) indices[k] = getIndex(nodes.get(k));
+        return indices;
+    }
+
+    private List<Node> toNodes(boolean[] selected) {
+        List<Node> selectedNodes = new ArrayList<>();
+
+        for (int i = 0; i < selected.length; i++) {
+            if (selected[i]) selectedNodes.add(nodes.get(i));
+        }
+
+        return selectedNodes;
+    }
+
+    private List<Node> toNodes(int[] indices) {
+        List<Node> selectedNodes = new ArrayList<>(indices.length);
+        for (int i : indices) selectedNodes.add(nodes.get(i));
+        return selectedNodes;
+    }
+
+    /**
+     * Adds semantic checks to the default deserialization method and lays out the rows again.
+     */
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (nodes == null) {
+            throw new NullPointerException();
+        }
+
+        if (edges == null) {
+            throw new NullPointerException();
+        }
+
+        if (ambiguousTriples == null) {
+            ambiguousTriples = new HashSet<>();
+        }
+
+        if (highlightedEdges == null) {
+            highlightedEdges = new HashSet<>();
+        }
+
+        if (underLineTriples == null) {
+            underLineTriples = new HashSet<>();
+        }
+
+        if (dottedUnderLineTriples == null) {
+            dottedUnderLineTriples = new HashSet<>();
+        }
+
+        this.indices = indexNodes(nodes);
+        layOut(edges);
+    }
+}
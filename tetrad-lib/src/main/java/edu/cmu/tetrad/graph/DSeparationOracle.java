@@ -0,0 +1,456 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import edu.cmu.tetrad.util.DepthChoiceGenerator;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Answers d-separation questions for a graph that does not change, for oracle independence tests and other
+ * callers that ask many questions of the same graph. The graph is copied into a CompactGraph, and the search is the
+ * breadth-first search of GraphUtils.isDConnectedTo, run over the int positions of the edges instead of over Edge
+ * objects in hash sets, so the two give the same answers, including for graphs with cycles, latent nodes or
+ * underlined triples.</p>
+ * <p>The ancestors of every node are found once, as bit sets, when the graph is not too large; the ancestors of a
+ * conditioning set are then the union of the ancestors of its members. For each conditioning set asked about, the
+ * oracle keeps these ancestors, and for each node x asked about under that set, the set of nodes d-connected to x,
+ * so later questions about x and the same conditioning set are answered by looking up a bit. The cache holds a
+ * bounded number of conditioning sets and is cleared when it fills. The oracle may be used by several threads at
+ * once.</p>
+ *
+ * @author agent
+ * @see GraphUtils#isDConnectedTo(Node, Node, List, Graph)
+ */
+public final class DSeparationOracle {
+
+    // The largest graph for which the ancestors of every node are kept, about 32 MB of bits.
+    private static final int MAX_CLOSURE_NODES = 1 << 14;
+
+    private final CompactGraph graph;
+    private final int numNodes;
+
+    // Row i holds positions offsets[i] through offsets[i + 1] - 1; each position is one edge seen from node i.
+    private final int[] offsets;
+
+    // The row node and the neighbor at each position.
+    private final int[] nodeAt;
+    private final int[] neighbors;
+
+    // Whether the edge at a position has an arrow at the row's node and at the neighbor.
+    private final boolean[] arrowAtNode;
+    private final boolean[] arrowAtNeighbor;
+
+    // The parents of each node.
+    private final int[][] parents;
+
+    // The ancestors of each node, including the node itself, or null if the graph is too large to keep them.
+    private final BitSet[] ancestors;
+
+    private final boolean hasUnderlines;
+
+    private final int maxCachedSets;
+    private final Map<Key, Conditioning> cache = new ConcurrentHashMap<>();
+
+    //==============================CONSTUCTORS===========================//
+
+    /**
+     * Constructs an oracle for the given graph, caching up to 256 conditioning sets.
+     */
+    public DSeparationOracle(Graph graph) {
+        this(graph, 256);
+    }
+
+    /**
+     * Constructs an oracle for the given graph, caching up to maxCachedSets conditioning sets. Later changes to the
+     * graph are not seen by the oracle.
+     */
+    public DSeparationOracle(Graph graph, int maxCachedSets) {
+        if (graph == null) {
+            throw new NullPointerException("Graph must not be null.");
+        }
+
+        if (maxCachedSets < 0) {
+            throw new IllegalArgumentException("Max cached sets must be >= 0: " + maxCachedSets);
+        }
+
+        this.graph = graph instanceof CompactGraph ? (CompactGraph) graph : new CompactGraph(graph);
+        this.numNodes = this.graph.getNumNodes();
+        this.maxCachedSets = maxCachedSets;
+        this.hasUnderlines = !this.graph.getUnderLines().isEmpty();
+
+        this.offsets = new int[numNodes + 1];
+
+        for (int i = 0; i < numNodes; i++) {
+            offsets[i + 1] = offsets[i] + this.graph.getNumEdges(i);
+        }
+
+        this.nodeAt = new int[offsets[numNodes]];
+        this.neighbors = new int[offsets[numNodes]];
+        this.arrowAtNode = new boolean[offsets[numNodes]];
+        this.arrowAtNeighbor = new boolean[offsets[numNodes]];
+        this.parents = new int[numNodes][];
+
+        for (int i = 0; i < numNodes; i++) {
+            for (int k = 0; k < this.graph.getNumEdges(i); k++) {
+                int p = offsets[i] + k;
+                nodeAt[p] = i;
+                neighbors[p] = this.graph.getNeighbor(i, k);
+                arrowAtNode[p] = this.graph.getProximalEndpoint(i, k) == Endpoint.ARROW;
+                arrowAtNeighbor[p] = this.graph.getDistalEndpoint(i, k) == Endpoint.ARROW;
+            }
+
+            parents[i] = this.graph.getParents(i);
+        }
+
+        this.ancestors = numNodes <= MAX_CLOSURE_NODES ? ancestorClosure() : null;
+    }
+
+    //===============================PUBLIC METHODS========================//
+
+    /**
+     * @return true iff x is d-connected to y given z.
+     */
+    public boolean isDConnectedTo(Node x, Node y, List<Node> z) {
+        int _x = index(x);
+        int _y = index(y);
+
+        if (_x == _y) {
+            return true;
+        }
+
+        return conditioning(z).dConnectedFrom(_x).get(_y);
+    }
+
+    /**
+     * @return true iff x is d-separated from y given z.
+     */
+    public boolean isDSeparatedFrom(Node x, Node y, List<Node> z) {
+        return !isDConnectedTo(x, y, z);
+    }
+
+    /**
+     * @return every node y other than x that is d-connected to x given z, in the order of the graph's nodes. One
+     * search answers all of these, and its result is cached with the other questions about x and z.
+     */
+    public List<Node> getDConnectedNodes(Node x, List<Node> z) {
+        int _x = index(x);
+        BitSet reached = conditioning(z).dConnectedFrom(_x);
+        List<Node> connected = new ArrayList<>();
+
+        for (int i = reached.nextSetBit(0); i >= 0; i = reached.nextSetBit(i + 1)) {
+            if (i != _x) connected.add(graph.getNode(i));
+        }
+
+        return connected;
+    }
+
+    /**
+     * Returns the independence model of the graph over the given nodes, up to the given depth: every fact x _||_ y
+     * | z with x before y in the list, z a subset of the other nodes of size at most depth, and x d-separated from y
+     * given z. For each z one search is run from each x, and the ancestors of z are taken from the closure kept by
+     * the oracle, so the number of searches is the number of conditioning sets times the number of nodes, not times
+     * the number of pairs.
+     *
+     * @param depth The largest conditioning set considered, or -1 for no limit.
+     */
+    public List<IndependenceFact> getIndependenceFacts(List<Node> nodes, int depth) {
+        if (depth < -1) {
+            throw new IllegalArgumentException("Depth must be -1 or >= 0: " + depth);
+        }
+
+        int[] _nodes = new int[nodes.size()];
+
+        for (int i = 0; i < _nodes.length; i++) {
+            _nodes[i] = index(nodes.get(i));
+        }
+
+        List<IndependenceFact> facts = new ArrayList<>();
+        DepthChoiceGenerator gen = new DepthChoiceGenerator(_nodes.length, depth == -1 ? _nodes.length : depth);
+        int[] choice;
+
+        while ((choice = gen.next()) != null) {
+            List<Node> z = GraphUtils.asList(choice, nodes);
+            Conditioning conditioning = new Conditioning(indices(z));
+            boolean[] inZ = new boolean[_nodes.length];
+
+            for (int k : choice) {
+                inZ[k] = true;
+            }
+
+            for (int i = 0; i < _nodes.length; i++) {
+                if (inZ[i]) continue;
+                BitSet reached = conditioning.dConnectedFrom(_nodes[i]);
+
+                for (int j = i + 1; j < _nodes.length; j++) {
+                    if (inZ[j] || _nodes[i] == _nodes[j]) continue;
+
+                    if (!reached.get(_nodes[j])) {
+                        facts.add(new IndependenceFact(nodes.get(i), nodes.get(j), z));
+                    }
+                }
+            }
+        }
+
+        return facts;
+    }
+
+    /**
+     * @return the graph the oracle answers for.
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    //===============================PRIVATE METHODS=======================//
+
+    private int index(Node node) {
+        int index = graph.getIndex(node);
+
+        if (index == -1) {
+            throw new IllegalArgumentException("Not a node in the graph: " + node);
+        }
+
+        return index;
+    }
+
+    private int[] indices(List<Node> z) {
+        int[] _z = new int[z.size()];
+
+        for (int i = 0; i < _z.length; i++) {
+            _z[i] = index(z.get(i));
+        }
+
+        Arrays.sort(_z);
+        return _z;
+    }
+
+    private Conditioning conditioning(List<Node> z) {
+        int[] _z = indices(z);
+        Key key = new Key(_z);
+        Conditioning conditioning = cache.get(key);
+
+        if (conditioning == null) {
+            conditioning = new Conditioning(_z);
+
+            if (cache.size() >= maxCachedSets) {
+                cache.clear();
+            }
+
+            if (maxCachedSets > 0) {
+                Conditioning existing = cache.putIfAbsent(key, conditioning);
+                if (existing != null) conditioning = existing;
+            }
+        }
+
+        return conditioning;
+    }
+
+    // The ancestors of each node, in topological order when the graph has no directed cycle.
+    private BitSet[] ancestorClosure() {
+        BitSet[] closure = new BitSet[numNodes];
+        int[] numChildren = new int[numNodes];
+
+        for (int i = 0; i < numNodes; i++) {
+            for (int parent : parents[i]) {
+                numChildren[parent]++;
+            }
+        }
+
+        int[][] children = new int[numNodes][];
+
+        for (int i = 0; i < numNodes; i++) {
+            children[i] = new int[numChildren[i]];
+        }
+
+        int[] numParents = new int[numNodes];
+
+        for (int i = 0; i < numNodes; i++) {
+            numParents[i] = parents[i].length;
+
+            for (int parent : parents[i]) {
+                children[parent][--numChildren[parent]] = i;
+            }
+        }
+
+        int[] queue = new int[numNodes];
+        int head = 0;
+        int tail = 0;
+
+        for (int i = 0; i < numNodes; i++) {
+            if (numParents[i] == 0) queue[tail++] = i;
+        }
+
+        while (head < tail) {
+            int i = queue[head++];
+            BitSet set = new BitSet(numNodes);
+            set.set(i);
+
+            for (int parent : parents[i]) {
+                set.or(closure[parent]);
+            }
+
+            closure[i] = set;
+
+            for (int child : children[i]) {
+                if (--numParents[child] == 0) queue[tail++] = child;
+            }
+        }
+
+        // Nodes on or downstream of a directed cycle.
+        for (int i = 0; i < numNodes; i++) {
+            if (closure[i] == null) {
+                closure[i] = ancestorsOf(new int[]{i});
+            }
+        }
+
+        return closure;
+    }
+
+    private BitSet ancestorsOf(int[] z) {
+        BitSet visited = new BitSet(numNodes);
+        int[] queue = new int[numNodes];
+        int tail = 0;
+
+        for (int i : z) {
+            if (!visited.get(i)) {
+                visited.set(i);
+                queue[tail++] = i;
+            }
+        }
+
+        for (int head = 0; head < tail; head++) {
+            for (int parent : parents[queue[head]]) {
+                if (!visited.get(parent)) {
+                    visited.set(parent);
+                    queue[tail++] = parent;
+                }
+            }
+        }
+
+        return visited;
+    }
+
+    // What the oracle knows for one conditioning set.
+    private final class Conditioning {
+        private final BitSet inZ = new BitSet(numNodes);
+        private final BitSet zAncestors;
+        private final Map<Integer, BitSet> dConnected = new ConcurrentHashMap<>();
+
+        private Conditioning(int[] z) {
+            for (int i : z) {
+                inZ.set(i);
+            }
+
+            if (ancestors == null) {
+                zAncestors = ancestorsOf(z);
+            } else {
+                zAncestors = new BitSet(numNodes);
+
+                for (int i : z) {
+                    zAncestors.or(ancestors[i]);
+                }
+            }
+        }
+
+        private BitSet dConnectedFrom(int x) {
+            BitSet reached = dConnected.get(x);
+
+            if (reached == null) {
+                reached = search(x);
+                BitSet existing = dConnected.putIfAbsent(x, reached);
+                if (existing != null) reached = existing;
+            }
+
+            return reached;
+        }
+
+        // The search of GraphUtils.isDConnectedTo1, over positions; a position stands for its edge entered from
+        // the position's row node.
+        private BitSet search(int x) {
+            BitSet reached = new BitSet(numNodes);
+            boolean[] visited = new boolean[neighbors.length];
+            int[] queue = new int[neighbors.length];
+            int tail = 0;
+
+            reached.set(x);
+
+            for (int p = offsets[x]; p < offsets[x + 1]; p++) {
+                visited[p] = true;
+                queue[tail++] = p;
+                reached.set(neighbors[p]);
+            }
+
+            for (int head = 0; head < tail; head++) {
+                int p = queue[head];
+                int a = nodeAt[p];
+                int b = neighbors[p];
+
+                for (int q = offsets[b]; q < offsets[b + 1]; q++) {
+                    int c = neighbors[q];
+
+                    if (c == a || visited[q] || !passes(a, b, c, arrowAtNeighbor[p] && arrowAtNode[q])) {
+                        continue;
+                    }
+
+                    visited[q] = true;
+                    queue[tail++] = q;
+                    reached.set(c);
+                }
+            }
+
+            return reached;
+        }
+
+        private boolean passes(int a, int b, int c, boolean collider) {
+            if ((!collider || isUnderline(a, b, c)) && !inZ.get(b)) {
+                return true;
+            }
+
+            return collider && zAncestors.get(b);
+        }
+    }
+
+    private boolean isUnderline(int a, int b, int c) {
+        return hasUnderlines && graph.isUnderlineTriple(graph.getNode(a), graph.getNode(b), graph.getNode(c));
+    }
+
+    // A sorted conditioning set, as a map key.
+    private static final class Key {
+        private final int[] z;
+        private final int hash;
+
+        private Key(int[] z) {
+            this.z = z;
+            this.hash = Arrays.hashCode(z);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(z, ((Key) o).z);
+        }
+    }
+}
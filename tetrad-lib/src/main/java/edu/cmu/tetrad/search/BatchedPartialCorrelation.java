@@ -0,0 +1,141 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.Math.*;
+
+/**
+ * Calculates the partial correlations of many pairs of variables given the same conditioning set Z from a
+ * covariance matrix. The covariance matrix of Z is factored once, as L L' = S(Z, Z); the covariances of the other
+ * variables W with Z are then solved against L all at once, B = inv(L) S(Z, W), so that the covariance of w1 and
+ * w2 given Z is S(w1, w2) - B(w1) . B(w2). For m pairs this takes O(|Z|^3 + |W| |Z|^2 + m |Z|) time, where
+ * testing the pairs one at a time takes O(m |Z|^3).
+ *
+ * @author agent
+ */
+final class BatchedPartialCorrelation {
+
+    // Pivots of the Cholesky decomposition smaller than this fraction of the variance are taken as zero.
+    private static final double SINGULARITY_TOLERANCE = 1e-12;
+
+    private BatchedPartialCorrelation() {
+    }
+
+    /**
+     * @param cov the covariance (or correlation) matrix.
+     * @param z   the indices of the conditioning variables.
+     * @param xs  the indices of the first variable of each pair; none may be in z.
+     * @param ys  the indices of the second variable of each pair; none may be in z.
+     * @return the partial correlation of xs[p] and ys[p] given z for each p, NaN where a variance given z is not
+     * positive; or null if the covariance matrix of z is (numerically) singular.
+     */
+    static double[] partialCorrelations(ICovarianceMatrix cov, int[] z, int[] xs, int[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("Expected as many y's as x's: " + xs.length + " != " + ys.length);
+        }
+
+        int k = z.length;
+
+        // The distinct variables of the pairs, and the position of each among them.
+        Map<Integer, Integer> positions = new HashMap<>();
+        int[] w = new int[2 * xs.length];
+        int m = 0;
+
+        for (int p = 0; p < xs.length; p++) {
+            if (positions.putIfAbsent(xs[p], m) == null) w[m++] = xs[p];
+            if (positions.putIfAbsent(ys[p], m) == null) w[m++] = ys[p];
+        }
+
+        int[] all = new int[k + m];
+        System.arraycopy(z, 0, all, 0, k);
+        System.arraycopy(w, 0, all, k, m);
+
+        // Rows 0 to k - 1 are S(Z, Z); rows k to k + m - 1 are S(W, Z).
+        double[][] a = cov.getSelection(all, z).toArray();
+
+        // The lower Cholesky factor of S(Z, Z), in place.
+        for (int j = 0; j < k; j++) {
+            double d = a[j][j];
+            double scale = d;
+
+            for (int t = 0; t < j; t++) d -= a[j][t] * a[j][t];
+
+            if (!(d > SINGULARITY_TOLERANCE * scale)) return null;
+
+            double ljj = sqrt(d);
+            a[j][j] = ljj;
+
+            for (int i = j + 1; i < k; i++) {
+                double s = a[i][j];
+                for (int t = 0; t < j; t++) s -= a[i][t] * a[j][t];
+                a[i][j] = s / ljj;
+            }
+        }
+
+        // Forward substitution for all of the rows of S(W, Z) together, giving the rows of B', in place.
+        for (int i = k; i < k + m; i++) {
+            double[] row = a[i];
+
+            for (int j = 0; j < k; j++) {
+                double[] lj = a[j];
+                double s = row[j];
+                for (int t = 0; t < j; t++) s -= row[t] * lj[t];
+                row[j] = s / lj[j];
+            }
+        }
+
+        // The variances given Z.
+        double[] v = new double[m];
+
+        for (int q = 0; q < m; q++) {
+            v[q] = cov.getValue(w[q], w[q]) - dot(a[k + q], a[k + q], k);
+        }
+
+        double[] r = new double[xs.length];
+
+        for (int p = 0; p < xs.length; p++) {
+            int qx = positions.get(xs[p]);
+            int qy = positions.get(ys[p]);
+
+            if (!(v[qx] > 0 && v[qy] > 0)) {
+                r[p] = Double.NaN;
+                continue;
+            }
+
+            double c = cov.getValue(xs[p], ys[p]) - dot(a[k + qx], a[k + qy], k);
+            r[p] = max(-1.0, min(1.0, c / sqrt(v[qx] * v[qy])));
+        }
+
+        return r;
+    }
+
+    private static double dot(double[] a, double[] b, int length) {
+        double sum = 0.0;
+        for (int t = 0; t < length; t++) sum += a[t] * b[t];
+        return sum;
+    }
+}
@@ -0,0 +1,215 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stores the adjacencies of an undirected graph over nodes 0, ..., n - 1 as one bitset per node, packed into
+ * a single array of words. This takes n^2 / 8 bytes in all and creates no objects per edge, in place of the
+ * map from each node to a hash set of its neighbors used by the adjacency searches.
+ * <p>
+ * Words are updated by compare-and-set, so edges may be added and removed by several threads at once; each
+ * direction of an edge is updated atomically. A snapshot is a copy of the word array.
+ *
+ * @author agent
+ */
+public final class BitSetAdjacencies {
+
+    private final int numNodes;
+    private final int wordsPerNode;
+    private final AtomicLongArray words;
+
+    /**
+     * Constructs an empty graph over the given number of nodes.
+     */
+    public BitSetAdjacencies(int numNodes) {
+        if (numNodes < 0) {
+            throw new IllegalArgumentException("Number of nodes must be non-negative: " + numNodes);
+        }
+
+        int wordsPerNode = (numNodes + 63) >>> 6;
+
+        if ((long) numNodes * wordsPerNode > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many nodes for a bitset adjacency matrix: " + numNodes);
+        }
+
+        this.numNodes = numNodes;
+        this.wordsPerNode = wordsPerNode;
+        this.words = new AtomicLongArray(numNodes * wordsPerNode);
+    }
+
+    private BitSetAdjacencies(BitSetAdjacencies adjacencies) {
+        this.numNodes = adjacencies.numNodes;
+        this.wordsPerNode = adjacencies.wordsPerNode;
+
+        long[] words = new long[adjacencies.words.length()];
+
+        for (int i = 0; i < words.length; i++) {
+            words[i] = adjacencies.words.get(i);
+        }
+
+        this.words = new AtomicLongArray(words);
+    }
+
+    /**
+     * @return a copy of the current adjacencies, unaffected by later changes to this one.
+     */
+    public BitSetAdjacencies snapshot() {
+        return new BitSetAdjacencies(this);
+    }
+
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    public boolean isAdjacent(int x, int y) {
+        return (words.get(index(x, y)) & bit(y)) != 0;
+    }
+
+    public void addEdge(int x, int y) {
+        if (x == y) {
+            throw new IllegalArgumentException("Self loops are not allowed: " + x);
+        }
+
+        set(x, y);
+        set(y, x);
+    }
+
+    /**
+     * Removes the edge x--y.
+     *
+     * @return true if this call removed it, false if it was not there. If several threads remove the same edge
+     * at once, exactly one of them gets true.
+     */
+    public boolean removeEdge(int x, int y) {
+        boolean removed = clear(Math.min(x, y), Math.max(x, y));
+        clear(Math.max(x, y), Math.min(x, y));
+        return removed;
+    }
+
+    public int getDegree(int x) {
+        int offset = x * wordsPerNode;
+        int degree = 0;
+
+        for (int w = 0; w < wordsPerNode; w++) {
+            degree += Long.bitCount(words.get(offset + w));
+        }
+
+        return degree;
+    }
+
+    /**
+     * @return the nodes adjacent to x, in increasing order.
+     */
+    public int[] getAdjacents(int x) {
+        return getAdjacents(x, -1);
+    }
+
+    /**
+     * @return the nodes adjacent to x other than the excluded one, in increasing order.
+     */
+    public int[] getAdjacents(int x, int excluded) {
+        int offset = x * wordsPerNode;
+        long[] _words = new long[wordsPerNode];
+        int count = 0;
+
+        for (int w = 0; w < wordsPerNode; w++) {
+            _words[w] = words.get(offset + w);
+
+            if (excluded >> 6 == w) {
+                _words[w] &= ~bit(excluded);
+            }
+
+            count += Long.bitCount(_words[w]);
+        }
+
+        int[] adjacents = new int[count];
+        int k = 0;
+
+        for (int w = 0; w < wordsPerNode; w++) {
+            for (long word = _words[w]; word != 0; word &= word - 1) {
+                adjacents[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+
+        return adjacents;
+    }
+
+    /**
+     * @return the largest degree of any node.
+     */
+    public int getMaxDegree() {
+        int max = 0;
+
+        for (int x = 0; x < numNodes; x++) {
+            max = Math.max(max, getDegree(x));
+        }
+
+        return max;
+    }
+
+    public int getNumEdges() {
+        long sum = 0;
+
+        for (int i = 0; i < words.length(); i++) {
+            sum += Long.bitCount(words.get(i));
+        }
+
+        return (int) (sum / 2);
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private int index(int x, int y) {
+        if (x < 0 || x >= numNodes || y < 0 || y >= numNodes) {
+            throw new IndexOutOfBoundsException("Node index out of range: " + x + ", " + y);
+        }
+
+        return x * wordsPerNode + (y >> 6);
+    }
+
+    private static long bit(int y) {
+        return 1L << (y & 63);
+    }
+
+    private void set(int x, int y) {
+        int i = index(x, y);
+        long bit = bit(y);
+
+        while (true) {
+            long word = words.get(i);
+            if ((word & bit) != 0 || words.compareAndSet(i, word, word | bit)) return;
+        }
+    }
+
+    private boolean clear(int x, int y) {
+        int i = index(x, y);
+        long bit = bit(y);
+
+        while (true) {
+            long word = words.get(i);
+            if ((word & bit) == 0) return false;
+            if (words.compareAndSet(i, word, word & ~bit)) return true;
+        }
+    }
+}
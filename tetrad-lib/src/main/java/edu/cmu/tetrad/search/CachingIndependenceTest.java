@@ -0,0 +1,339 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.IndependenceFact;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.Matrix;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps an independence test so that the result of each distinct test is remembered and not recomputed. PC-style
+ * searches ask the same question more than once--for instance x _||_ y | Z during adjacency search and again
+ * while orienting colliders (Fas, FasConcurrent, SepsetsMaxPValue, SepsetsConservative, FciOrient); with this
+ * wrapper the second one is free.
+ * <p>
+ * Tests are keyed canonically: x and y are unordered and the conditioning set is taken as a set. The number of
+ * remembered results is bounded, least recently used ones being dropped first. The wrapper may be used by
+ * several threads at once; the p value reported by getPValue() is that of the calling thread's most recent
+ * test. If the wrapped test is not itself thread safe, calls to it are synchronized on it.
+ *
+ * @author agent
+ */
+public final class CachingIndependenceTest implements IndependenceTest {
+
+    // The default maximum number of results kept.
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 20;
+
+    // The wrapped test.
+    private final IndependenceTest test;
+
+    // Column indices of the variables of the test.
+    private final Map<Node, Integer> indices = new HashMap<>();
+
+    private final List<Map<Key, Result>> segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final ThreadLocal<Double> lastPValue = new ThreadLocal<>();
+
+    public CachingIndependenceTest(IndependenceTest test) {
+        this(test, DEFAULT_MAX_ENTRIES);
+    }
+
+    public CachingIndependenceTest(IndependenceTest test, int maxEntries) {
+        if (test == null) {
+            throw new NullPointerException("Test must not be null.");
+        }
+
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries must be at least 1: " + maxEntries);
+        }
+
+        this.test = test;
+
+        List<Node> variables = test.getVariables();
+
+        for (int i = 0; i < variables.size(); i++) {
+            indices.put(variables.get(i), i);
+        }
+
+        int numSegments = Math.min(Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors()),
+                Integer.highestOneBit(maxEntries));
+        final int perSegment = Math.max(1, maxEntries / numSegments);
+
+        this.segments = new ArrayList<>(numSegments);
+
+        for (int i = 0; i < numSegments; i++) {
+            segments.add(Collections.synchronizedMap(new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                    return size() > perSegment;
+                }
+            }));
+        }
+    }
+
+    /**
+     * Tests x _||_ y | z, using a remembered result if the same test has been done before.
+     */
+    public IndependenceResult checkIndependence(Node x, Node y, List<Node> z) {
+        Key key = key(x, y, z);
+        Map<Key, Result> segment = segments.get((key.hash & 0x7fffffff) % segments.size());
+        Result result = segment.get(key);
+
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            result = compute(x, y, z);
+            segment.put(key, result);
+        }
+
+        lastPValue.set(result.pValue);
+        return new IndependenceResult(new IndependenceFact(x, y, z), result.independent, result.pValue);
+    }
+
+    public boolean isIndependent(Node x, Node y, List<Node> z) {
+        return checkIndependence(x, y, z).isIndependent();
+    }
+
+    public boolean isIndependent(Node x, Node y, Node... z) {
+        return isIndependent(x, y, Arrays.asList(z));
+    }
+
+    public boolean isDependent(Node x, Node y, List<Node> z) {
+        return !isIndependent(x, y, z);
+    }
+
+    public boolean isDependent(Node x, Node y, Node... z) {
+        return isDependent(x, y, Arrays.asList(z));
+    }
+
+    /**
+     * @return the p value of the most recent test done by the calling thread.
+     */
+    public double getPValue() {
+        Double p = lastPValue.get();
+        return p == null ? Double.NaN : p;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the fraction of tests answered from the cache, or NaN if there have been none.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? Double.NaN : hits / (double) total;
+    }
+
+    /**
+     * @return the number of results currently remembered.
+     */
+    public int size() {
+        int size = 0;
+
+        for (Map<Key, Result> segment : segments) {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Forgets all remembered results and resets the statistics.
+     */
+    public void clear() {
+        for (Map<Key, Result> segment : segments) {
+            segment.clear();
+        }
+
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * @return the wrapped test.
+     */
+    public IndependenceTest getTest() {
+        return test;
+    }
+
+    public IndependenceTest indTestSubset(List<Node> vars) {
+        return new CachingIndependenceTest(test.indTestSubset(vars));
+    }
+
+    public List<Node> getVariables() {
+        return test.getVariables();
+    }
+
+    public Node getVariable(String name) {
+        return test.getVariable(name);
+    }
+
+    public List<String> getVariableNames() {
+        return test.getVariableNames();
+    }
+
+    public boolean determines(List<Node> z, Node y) {
+        return test.determines(z, y);
+    }
+
+    public double getAlpha() {
+        return test.getAlpha();
+    }
+
+    /**
+     * Sets the significance level of the wrapped test; remembered results are forgotten, since the judgments
+     * depend on it.
+     */
+    public void setAlpha(double alpha) {
+        test.setAlpha(alpha);
+        clear();
+    }
+
+    public DataModel getData() {
+        return test.getData();
+    }
+
+    public ICovarianceMatrix getCov() {
+        return test.getCov();
+    }
+
+    public List<DataSet> getDataSets() {
+        return test.getDataSets();
+    }
+
+    public int getSampleSize() {
+        return test.getSampleSize();
+    }
+
+    public List<Matrix> getCovMatrices() {
+        return test.getCovMatrices();
+    }
+
+    /**
+     * @return alpha minus the p value of the calling thread's most recent test.
+     */
+    public double getScore() {
+        return getAlpha() - getPValue();
+    }
+
+    public void setVerbose(boolean verbose) {
+        test.setVerbose(verbose);
+    }
+
+    public boolean isVerbose() {
+        return test.isVerbose();
+    }
+
+    public String toString() {
+        return test.toString() + " (cached)";
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private Result compute(Node x, Node y, List<Node> z) {
+        if (test instanceof IndTestFisherZConcurrent) {
+            IndependenceResult result = ((IndTestFisherZConcurrent) test).checkIndependence(x, y, z);
+            return new Result(result.isIndependent(), result.getPValue());
+        }
+
+        // The p value of other tests is that of the most recent test, so the two calls must not interleave
+        // with those of other threads.
+        synchronized (test) {
+            boolean independent = test.isIndependent(x, y, z);
+            return new Result(independent, test.getPValue());
+        }
+    }
+
+    private Key key(Node x, Node y, List<Node> z) {
+        int a = index(x);
+        int b = index(y);
+        int[] key = new int[z.size() + 2];
+
+        key[0] = Math.min(a, b);
+        key[1] = Math.max(a, b);
+
+        for (int i = 0; i < z.size(); i++) {
+            key[i + 2] = index(z.get(i));
+        }
+
+        Arrays.sort(key, 2, key.length);
+        return new Key(key);
+    }
+
+    private int index(Node node) {
+        Integer index = indices.get(node);
+
+        if (index == null) {
+            throw new IllegalArgumentException("Not a variable of this test: " + node);
+        }
+
+        return index;
+    }
+
+    // The indices of x and y, smaller first, then those of z, sorted.
+    private static final class Key {
+        private final int[] key;
+        private final int hash;
+
+        Key(int[] key) {
+            this.key = key;
+            this.hash = Arrays.hashCode(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(key, ((Key) o).key);
+        }
+    }
+
+    private static final class Result {
+        private final boolean independent;
+        private final double pValue;
+
+        Result(boolean independent, double pValue) {
+            this.independent = independent;
+            this.pValue = pValue;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Wraps a decomposable score so that local scores are remembered in a LocalScoreCache and not recomputed.
+ * By default score differences are passed through to the wrapped score, since not every score defines
+ * them as differences of local scores (SemBicScore with the NANDY rule type does not, and GraphScore has no
+ * local scores at all). For a score that does, such as SemBicScore with the default rule type, BDeuScore,
+ * ConditionalGaussianScore or DegenerateGaussianScore, set scoreDiffsCached to true so that differences are
+ * taken from cached local scores.
+ * <p>
+ * The cache is thread safe, so one CachingScore may be handed to a parallel search such as Fges.
+ *
+ * @author agent
+ */
+public class CachingScore implements Score {
+
+    // The wrapped score.
+    private final Score score;
+
+    // The cache of local scores.
+    private final LocalScoreCache cache;
+
+    // True if localScoreDiff should be calculated from cached local scores.
+    private boolean scoreDiffsCached = false;
+
+    /**
+     * Wraps the given score with a cache of the default size.
+     */
+    public CachingScore(Score score) {
+        this(score, new LocalScoreCache());
+    }
+
+    /**
+     * Wraps the given score with the given cache. The cache must not be shared with a different score.
+     */
+    public CachingScore(Score score, LocalScoreCache cache) {
+        if (score == null) {
+            throw new NullPointerException("Score must not be null.");
+        }
+
+        if (cache == null) {
+            throw new NullPointerException("Cache must not be null.");
+        }
+
+        this.score = score;
+        this.cache = cache;
+    }
+
+    @Override
+    public double localScore(int node, int... parents) {
+        double s = cache.get(node, parents);
+
+        if (Double.isNaN(s)) {
+            s = score.localScore(node, parents);
+            cache.add(node, parents, s);
+        }
+
+        return s;
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y, int[] z) {
+        if (!scoreDiffsCached) {
+            return score.localScoreDiff(x, y, z);
+        }
+
+        return localScore(y, append(z, x)) - localScore(y, z);
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y) {
+        if (!scoreDiffsCached) {
+            return score.localScoreDiff(x, y);
+        }
+
+        return localScore(y, x) - localScore(y);
+    }
+
+    @Override
+    public double localScore(int node, int parent) {
+        return localScore(node, new int[]{parent});
+    }
+
+    @Override
+    public double localScore(int node) {
+        return localScore(node, new int[0]);
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return score.getVariables();
+    }
+
+    @Override
+    public boolean isEffectEdge(double bump) {
+        return score.isEffectEdge(bump);
+    }
+
+    @Override
+    public int getSampleSize() {
+        return score.getSampleSize();
+    }
+
+    @Override
+    public Node getVariable(String targetName) {
+        return score.getVariable(targetName);
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return score.getMaxDegree();
+    }
+
+    @Override
+    public boolean determines(List<Node> z, Node y) {
+        return score.determines(z, y);
+    }
+
+    @Override
+    public Score defaultScore() {
+        return score.defaultScore();
+    }
+
+    /**
+     * @return the wrapped score.
+     */
+    public Score getScore() {
+        return score;
+    }
+
+    /**
+     * @return the cache, from which hit and miss counts may be read.
+     */
+    public LocalScoreCache getCache() {
+        return cache;
+    }
+
+    public boolean isScoreDiffsCached() {
+        return scoreDiffsCached;
+    }
+
+    /**
+     * True if localScoreDiff(x, y, z) should be calculated as localScore(y, z + x) - localScore(y, z) using
+     * the cache; false (the default) if it should be passed through to the wrapped score. Should be set to true
+     * only if the wrapped score defines its differences that way.
+     */
+    public void setScoreDiffsCached(boolean scoreDiffsCached) {
+        this.scoreDiffsCached = scoreDiffsCached;
+    }
+
+    /**
+     * Forgets all cached scores. Should be called if the wrapped score's parameters (for example, the penalty
+     * discount) are changed.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "Cached " + score.toString();
+    }
+
+    private static int[] append(int[] z, int x) {
+        int[] _z = Arrays.copyOf(z, z.length + 1);
+        _z[z.length] = x;
+        return _z;
+    }
+}
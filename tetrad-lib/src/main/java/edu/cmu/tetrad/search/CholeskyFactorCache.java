@@ -0,0 +1,407 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calculates residual variances of a child regressed on a set of parents from a covariance matrix by
+ * keeping Cholesky factors of the covariance matrix of (parents, child), with the child last. The residual
+ * variance is the square of the last diagonal element of the factor.
+ * <p>
+ * Factors are cached by (child, parent set). A factor for a new parent set is obtained from a cached one
+ * that differs from it by a few variables: a parent is added by appending a row to the factor (bordering,
+ * O(k^2)) and removed by deleting its row and restoring triangularity with Givens rotations (O(k^2)),
+ * rather than extracting and inverting the covariance submatrix again (O(k^3)). This matches the access
+ * pattern of FGES, which scores parent sets differing from ones already scored by a single variable.
+ * <p>
+ * Factors are immutable once made, so the cache may be used by several threads at once. The number of
+ * cached factors is bounded; least recently used factors are dropped first.
+ *
+ * @author agent
+ */
+public class CholeskyFactorCache {
+
+    // The default maximum number of factors kept.
+    public static final int DEFAULT_MAX_FACTORS = 1 << 16;
+
+    // Pivots smaller than this fraction of the variance being factored are taken to signal singularity.
+    private static final double SINGULARITY_TOLERANCE = 1e-10;
+
+    private final ICovarianceMatrix covariances;
+    private final List<Map<Key, Factor>> segments;
+
+    // The most recently made factor for each child, as a starting point for the next request.
+    private final AtomicReferenceArray<Factor> recent;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public CholeskyFactorCache(ICovarianceMatrix covariances) {
+        this(covariances, DEFAULT_MAX_FACTORS);
+    }
+
+    public CholeskyFactorCache(ICovarianceMatrix covariances, int maxFactors) {
+        if (covariances == null) {
+            throw new NullPointerException("Covariance matrix must not be null.");
+        }
+
+        if (maxFactors < 1) {
+            throw new IllegalArgumentException("Max factors must be at least 1: " + maxFactors);
+        }
+
+        this.covariances = covariances;
+        this.recent = new AtomicReferenceArray<>(covariances.getDimension());
+
+        int numSegments = Math.min(Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors()),
+                Integer.highestOneBit(maxFactors));
+        final int perSegment = Math.max(1, maxFactors / numSegments);
+
+        this.segments = new ArrayList<>(numSegments);
+
+        for (int i = 0; i < numSegments; i++) {
+            segments.add(Collections.synchronizedMap(new LinkedHashMap<Key, Factor>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Factor> eldest) {
+                    return size() > perSegment;
+                }
+            }));
+        }
+    }
+
+    /**
+     * @return the variance of the residual of child regressed on the parents, or NaN if the covariance
+     * matrix of the parents is (numerically) singular, in which case the caller should fall back to a
+     * direct calculation.
+     */
+    public double getResidualVariance(int child, int[] parents) {
+        Key key = Key.of(child, parents);
+        Factor factor = get(key);
+
+        if (factor != null) {
+            hits.increment();
+            return factor.residualVariance();
+        }
+
+        factor = update(nearestFactor(child, key), key.parents);
+
+        if (factor == null) {
+            failures.increment();
+            return Double.NaN;
+        }
+
+        updates.increment();
+        put(key, factor);
+        recent.set(child, factor);
+        return factor.residualVariance();
+    }
+
+    public void clear() {
+        for (Map<Key, Factor> segment : segments) {
+            segment.clear();
+        }
+
+        for (int i = 0; i < recent.length(); i++) {
+            recent.set(i, null);
+        }
+
+        hits.reset();
+        updates.reset();
+        failures.reset();
+    }
+
+    /**
+     * @return the number of requests answered by a cached factor.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of requests answered by updating a factor.
+     */
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    /**
+     * @return the number of requests for which a factor could not be made because of singularity.
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private Factor get(Key key) {
+        return segmentFor(key).get(key);
+    }
+
+    private void put(Key key, Factor factor) {
+        segmentFor(key).put(key, factor);
+    }
+
+    private Map<Key, Factor> segmentFor(Key key) {
+        return segments.get((key.hashCode() & 0x7fffffff) % segments.size());
+    }
+
+    // Finds the known factor for the child needing the fewest edits to reach the target, falling back on the
+    // factor for the child with no parents.
+    private Factor nearestFactor(int child, Key target) {
+        Factor best = Factor.empty(child, covariances.getValue(child, child));
+        int bestEdits = target.parents.length;
+
+        Factor last = recent.get(child);
+
+        if (last != null) {
+            int edits = numEdits(last.sortedParents, target.parents);
+
+            if (edits < bestEdits) {
+                best = last;
+                bestEdits = edits;
+            }
+        }
+
+        if (bestEdits <= 1) return best;
+
+        // The usual FGES case: the parent set less one variable has just been scored.
+        for (int j = 0; j < target.parents.length; j++) {
+            Factor factor = get(target.without(j));
+
+            if (factor != null) {
+                return factor;
+            }
+        }
+
+        return best;
+    }
+
+    // Turns the factor into one for the target parents by deleting, then appending, variables.
+    private Factor update(Factor factor, int[] target) {
+        for (int p : factor.sortedParents) {
+            if (Arrays.binarySearch(target, p) < 0) {
+                factor = factor.remove(p);
+                if (factor == null) return null;
+            }
+        }
+
+        for (int p : target) {
+            if (Arrays.binarySearch(factor.sortedParents, p) < 0) {
+                factor = factor.append(p, covariances);
+                if (factor == null) return null;
+            }
+        }
+
+        return factor;
+    }
+
+    // The size of the symmetric difference of two sorted arrays.
+    private static int numEdits(int[] a, int[] b) {
+        int i = 0, j = 0, edits = 0;
+
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+                edits++;
+            } else {
+                j++;
+                edits++;
+            }
+        }
+
+        return edits + (a.length - i) + (b.length - j);
+    }
+
+    // A child with a parent set, the parents sorted.
+    private static final class Key {
+        private final int child;
+        private final int[] parents;
+        private final int hash;
+
+        private Key(int child, int[] sortedParents) {
+            this.child = child;
+            this.parents = sortedParents;
+            this.hash = 31 * child + Arrays.hashCode(sortedParents);
+        }
+
+        Key without(int j) {
+            int[] _parents = new int[parents.length - 1];
+            System.arraycopy(parents, 0, _parents, 0, j);
+            System.arraycopy(parents, j + 1, _parents, j, parents.length - j - 1);
+            return new Key(child, _parents);
+        }
+
+        static Key of(int child, int[] parents) {
+            return new Key(child, sorted(parents));
+        }
+
+        private static int[] sorted(int[] parents) {
+            int[] _parents = Arrays.copyOf(parents, parents.length);
+            Arrays.sort(_parents);
+            return _parents;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return child == key.child && Arrays.equals(parents, key.parents);
+        }
+    }
+
+    // The lower triangular Cholesky factor of the covariance matrix of (order[0], ..., order[k - 1], child),
+    // stored by rows.
+    private static final class Factor {
+        private final int child;
+        private final int[] order;
+        private final int[] sortedParents;
+        private final double[][] l;
+
+        private Factor(int child, int[] order, double[][] l) {
+            this.child = child;
+            this.order = order;
+            this.sortedParents = Key.sorted(order);
+            this.l = l;
+        }
+
+        static Factor empty(int child, double variance) {
+            return new Factor(child, new int[0], new double[][]{{Math.sqrt(variance)}});
+        }
+
+        double residualVariance() {
+            int k = order.length;
+            return l[k][k] * l[k][k];
+        }
+
+        // Borders the factor with a row for x, placed just before the child.
+        Factor append(int x, ICovarianceMatrix cov) {
+            int k = order.length;
+            double[][] m = new double[k + 2][];
+
+            for (int i = 0; i < k; i++) {
+                m[i] = l[i];
+            }
+
+            double[] row = new double[k + 1];
+            double sxx = cov.getValue(x, x);
+            double d = sxx;
+
+            for (int j = 0; j < k; j++) {
+                double s = cov.getValue(x, order[j]);
+                for (int t = 0; t < j; t++) s -= row[t] * l[j][t];
+                row[j] = s / l[j][j];
+                d -= row[j] * row[j];
+            }
+
+            if (!(d > SINGULARITY_TOLERANCE * sxx)) return null;
+
+            row[k] = Math.sqrt(d);
+            m[k] = row;
+
+            double[] childRow = new double[k + 2];
+            System.arraycopy(l[k], 0, childRow, 0, k);
+
+            double s = cov.getValue(child, x);
+            for (int t = 0; t < k; t++) s -= childRow[t] * row[t];
+            childRow[k] = s / row[k];
+
+            double r = l[k][k] * l[k][k] - childRow[k] * childRow[k];
+
+            if (!(r > SINGULARITY_TOLERANCE * cov.getValue(child, child))) return null;
+
+            childRow[k + 1] = Math.sqrt(r);
+            m[k + 1] = childRow;
+
+            int[] _order = Arrays.copyOf(order, k + 1);
+            _order[k] = x;
+
+            return new Factor(child, _order, m);
+        }
+
+        // Deletes the row for x and zeroes the resulting superdiagonal with Givens rotations on the columns.
+        Factor remove(int x) {
+            int k = order.length;
+            int j = -1;
+
+            for (int i = 0; i < k; i++) {
+                if (order[i] == x) {
+                    j = i;
+                    break;
+                }
+            }
+
+            if (j == -1) throw new IllegalArgumentException("Not a parent: " + x);
+
+            double[][] m = new double[k][];
+
+            for (int i = 0; i < j; i++) {
+                m[i] = l[i];
+            }
+
+            for (int i = j; i < k; i++) {
+                m[i] = Arrays.copyOf(l[i + 1], i + 2);
+            }
+
+            for (int i = j; i < k; i++) {
+                double a = m[i][i];
+                double b = m[i][i + 1];
+                double r = Math.hypot(a, b);
+
+                if (r == 0) return null;
+
+                double c = a / r;
+                double s = b / r;
+
+                for (int t = i; t < k; t++) {
+                    double u = m[t][i];
+                    double v = m[t][i + 1];
+                    m[t][i] = c * u + s * v;
+                    m[t][i + 1] = -s * u + c * v;
+                }
+            }
+
+            for (int i = j; i < k; i++) {
+                m[i] = Arrays.copyOf(m[i], i + 1);
+            }
+
+            int[] _order = new int[k - 1];
+            System.arraycopy(order, 0, _order, 0, j);
+            System.arraycopy(order, j + 1, _order, j, k - j - 1);
+
+            return new Factor(child, _order, m);
+        }
+    }
+}
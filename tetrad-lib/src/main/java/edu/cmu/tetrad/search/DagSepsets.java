@@ -21,6 +21,7 @@
 
 package edu.cmu.tetrad.search;
 
+import edu.cmu.tetrad.graph.DSeparationOracle;
 import edu.cmu.tetrad.graph.EdgeListGraphSingleConnections;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.Node;
@@ -35,6 +36,7 @@ import java.util.List;
  */
 public class DagSepsets implements SepsetProducer {
     private EdgeListGraphSingleConnections dag;
+    private DSeparationOracle oracle;
     private boolean verbose = false;
 
     public DagSepsets(Graph dag) {
@@ -71,7 +73,11 @@ public class DagSepsets implements SepsetProducer {
 
     @Override
     public boolean isIndependent(Node a, Node b, List<Node> c) {
-        return dag.isDSeparatedFrom(a, b, c);
+        if (oracle == null) {
+            oracle = new DSeparationOracle(dag);
+        }
+
+        return oracle.isDSeparatedFrom(a, b, c);
     }
 
     @Override
@@ -0,0 +1,212 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A score whose differences are calculated by ScoreWorkers, usually in other JVMs, each of which holds the
+ * data and the same score. Each batch of differences goes to whichever transport is free; when none is, the
+ * caller waits. Since Fges reevaluates arrows in parallel tasks, several batches are in flight at once, so
+ * the work spreads over the workers.
+ * <p>
+ * The local score supplies the variables, sample size, effect-edge threshold and so on, and calculates
+ * local scores (which Fges uses only to score the final model); only score differences are sent out.
+ *
+ * @author agent
+ */
+public class DistributedScore implements BatchScore, Closeable {
+
+    private final Score score;
+    private final List<ScoreTransport> transports;
+    private final BlockingQueue<ScoreTransport> idle;
+
+    private final LongAdder numBatches = new LongAdder();
+    private final LongAdder numDiffs = new LongAdder();
+
+    /**
+     * @param score      The local copy of the score.
+     * @param transports Connections to the workers. A worker may have more than one.
+     * @throws IllegalArgumentException if a worker's variables differ from those of the local score.
+     */
+    public DistributedScore(Score score, List<? extends ScoreTransport> transports) {
+        if (score == null) {
+            throw new NullPointerException("Score must not be null.");
+        }
+
+        if (transports == null) {
+            throw new NullPointerException("Transports must not be null.");
+        }
+
+        if (transports.isEmpty()) {
+            throw new IllegalArgumentException("At least one transport is needed.");
+        }
+
+        List<String> names = new ArrayList<>();
+
+        for (Node node : score.getVariables()) {
+            names.add(node.getName());
+        }
+
+        for (ScoreTransport transport : transports) {
+            List<String> workerNames;
+
+            try {
+                workerNames = transport.getVariableNames();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not reach " + transport, e);
+            }
+
+            if (!names.equals(workerNames)) {
+                throw new IllegalArgumentException("The variables of " + transport
+                        + " are not those of the local score.");
+            }
+        }
+
+        this.score = score;
+        this.transports = new ArrayList<>(transports);
+        this.idle = new LinkedBlockingQueue<>(transports);
+    }
+
+    @Override
+    public double[] localScoreDiffs(int[] x, int[] y, int[][] z) {
+        ScoreTransport transport;
+
+        try {
+            transport = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a score worker.", e);
+        }
+
+        try {
+            double[] diffs = transport.localScoreDiffs(x, y, z);
+            numBatches.increment();
+            numDiffs.add(x.length);
+            return diffs;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not calculate score differences using " + transport, e);
+        } finally {
+            idle.add(transport);
+        }
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y, int[] z) {
+        return localScoreDiffs(new int[]{x}, new int[]{y}, new int[][]{z})[0];
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y) {
+        return localScoreDiff(x, y, new int[0]);
+    }
+
+    @Override
+    public double localScore(int node, int... parents) {
+        return score.localScore(node, parents);
+    }
+
+    @Override
+    public double localScore(int node, int parent) {
+        return score.localScore(node, parent);
+    }
+
+    @Override
+    public double localScore(int node) {
+        return score.localScore(node);
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return score.getVariables();
+    }
+
+    @Override
+    public boolean isEffectEdge(double bump) {
+        return score.isEffectEdge(bump);
+    }
+
+    @Override
+    public int getSampleSize() {
+        return score.getSampleSize();
+    }
+
+    @Override
+    public Node getVariable(String targetName) {
+        return score.getVariable(targetName);
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return score.getMaxDegree();
+    }
+
+    @Override
+    public boolean determines(List<Node> z, Node y) {
+        return score.determines(z, y);
+    }
+
+    /**
+     * @return the number of batches sent to workers.
+     */
+    public long getNumBatches() {
+        return numBatches.sum();
+    }
+
+    /**
+     * @return the number of score differences calculated by workers.
+     */
+    public long getNumDiffs() {
+        return numDiffs.sum();
+    }
+
+    /**
+     * Closes the transports to the workers.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+
+        for (ScoreTransport transport : transports) {
+            try {
+                transport.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+
+        if (exception != null) throw exception;
+    }
+
+    @Override
+    public String toString() {
+        return "Distributed " + score.toString() + " (" + transports.size() + " transports)";
+    }
+}
@@ -146,68 +146,72 @@ public class Fas implements IFas {
 
         sepset = new SepsetMap();
 
-        List<Edge> edges = new ArrayList<>();
         List<Node> nodes = new ArrayList<>(test.getVariables());
-        Map<Edge, Double> scores = new HashMap<>();
 
         if (heuristic == 1) {
             Collections.sort(nodes);
         }
 
-        for (int i = 0; i < nodes.size(); i++) {
-            for (int j = i + 1; j < nodes.size(); j++) {
-                edges.add(Edges.undirectedEdge(nodes.get(i), nodes.get(j)));
-            }
-        }
+        int n = nodes.size();
 
-        for (Edge edge : edges) {
-            test.isIndependent(edge.getNode1(), edge.getNode2(), new ArrayList<>());
-            scores.put(edge, test.getScore());
-        }
+        // Nodes are referred to by their index in the node list, edges by an (i, j) pair with i < j.
+        BitSetAdjacencies adjacencies = new BitSetAdjacencies(n);
+        double[] scores = null;
 
         if (heuristic == 2 || heuristic == 3) {
-            edges.sort(Comparator.comparing(scores::get));
+            long numPairs = (long) n * (n - 1) / 2;
+
+            if (numPairs > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Too many variables for heuristic " + heuristic + ": " + n);
+            }
+
+            scores = new double[(int) numPairs];
         }
 
-        Map<Node, Set<Node>> adjacencies = new HashMap<>();
+        List<int[]> edges = new ArrayList<>();
+        final List<Node> empty = Collections.emptyList();
 
-        for (Node node : nodes) {
-            Set<Node> set = new LinkedHashSet<>();
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                Node x = nodes.get(i);
+                Node y = nodes.get(j);
 
-            for (Node _node : nodes) {
-                if (_node == node) continue;
-                set.add(_node);
-            }
+                test.isIndependent(x, y, empty);
+                double score = test.getScore();
 
-            adjacencies.put(node, set);
-        }
+                if (scores != null) {
+                    scores[pairIndex(i, j)] = score;
+                }
 
-        for (Edge edge : new ArrayList<>(edges)) {
-            if (scores.get(edge) < 0
-                    || (knowledge.isForbidden(edge.getNode1().getName(), edge.getNode2().getName())
-                    && (knowledge.isForbidden(edge.getNode2().getName(), edge.getNode1().getName())))) {
-                edges.remove(edge);
-                adjacencies.get(edge.getNode1()).remove(edge.getNode2());
-                adjacencies.get(edge.getNode2()).remove(edge.getNode1());
-                sepset.set(edge.getNode1(), edge.getNode2(), new ArrayList<>());
+                if (score < 0
+                        || (knowledge.isForbidden(x.getName(), y.getName())
+                        && (knowledge.isForbidden(y.getName(), x.getName())))) {
+                    sepset.set(x, y, new ArrayList<>());
+                } else {
+                    adjacencies.addEdge(i, j);
+                    edges.add(new int[]{i, j});
+                }
             }
         }
 
+        if (scores != null) {
+            final double[] _scores = scores;
+            edges.sort(Comparator.comparingDouble(e -> _scores[pairIndex(e[0], e[1])]));
+        }
+
         for (int d = 1; d <= _depth; d++) {
             boolean more;
 
-            if (stable) {
-                final Map<Node, Set<Node>> adjacenciesCopy = new HashMap<>();
-
-                for (Node node : adjacencies.keySet()) {
-                    adjacenciesCopy.put(node, new LinkedHashSet<>(adjacencies.get(node)));
-                }
+            // For FAS-Stable, conditioning sets are drawn from the adjacencies as they were at the start of the
+            // depth, while removals are made to the current adjacencies.
+            BitSetAdjacencies conditioning = stable ? adjacencies.snapshot() : adjacencies;
 
-                adjacencies = adjacenciesCopy;
+            if (stable) {
+                more = searchAtDepthByConditioningSet(nodes, scores, test, adjacencies, conditioning, d);
+            } else {
+                more = searchAtDepth(nodes, scores, edges, test, adjacencies, conditioning, d);
             }
 
-            more = searchAtDepth(scores, edges, test, adjacencies, d);
-
             if (!more) {
                 break;
             }
@@ -217,13 +221,10 @@ public class Fas implements IFas {
         // x. It is hoped (i.e. true in the large sample limit) that true adjacencies are never removed.
         Graph graph = new EdgeListGraph(nodes);
 
-        for (int i = 0; i < nodes.size(); i++) {
-            for (int j = i + 1; j < nodes.size(); j++) {
-                Node x = nodes.get(i);
-                Node y = nodes.get(j);
-
-                if (adjacencies.get(x).contains(y)) {
-                    graph.addUndirectedEdge(x, y);
+        for (int i = 0; i < n; i++) {
+            for (int j : adjacencies.getAdjacents(i)) {
+                if (j > i) {
+                    graph.addUndirectedEdge(nodes.get(i), nodes.get(j));
                 }
             }
         }
@@ -259,77 +260,56 @@ public class Fas implements IFas {
 
     //==============================PRIVATE METHODS======================/
 
-    private int freeDegree(Map<Node, Set<Node>> adjacencies) {
-        int max = 0;
-
-        for (Node x : adjacencies.keySet()) {
-            Set<Node> opposites = adjacencies.get(x);
-
-            for (Node y : opposites) {
-                Set<Node> adjx = new LinkedHashSet<>(opposites);
-                adjx.remove(y);
-
-                if (adjx.size() > max) {
-                    max = adjx.size();
-                }
-            }
+    // The index of the unordered pair {i, j} in a packed triangular array.
+    private static int pairIndex(int i, int j) {
+        if (i > j) {
+            int t = i;
+            i = j;
+            j = t;
         }
 
-        return max;
+        return (int) ((long) j * (j - 1) / 2) + i;
     }
 
-    private boolean searchAtDepth(Map<Edge, Double> scores, List<Edge> edges, final IndependenceTest test, Map<Node, Set<Node>> adjacencies, int depth) {
+    private int freeDegree(BitSetAdjacencies adjacencies) {
+        return Math.max(0, adjacencies.getMaxDegree() - 1);
+    }
 
-        for (Edge edge : edges) {
-            Node x = edge.getNode1();
-            Node y = edge.getNode2();
+    private boolean searchAtDepth(List<Node> nodes, double[] scores, List<int[]> edges, final IndependenceTest test,
+                                  BitSetAdjacencies adjacencies, BitSetAdjacencies conditioning, int depth) {
 
+        for (int[] edge : edges) {
             if (Thread.currentThread().isInterrupted()) {
                 break;
             }
 
             if (depth == 0 && initialGraph != null) {
-                Node x2 = initialGraph.getNode(x.getName());
-                Node y2 = initialGraph.getNode(y.getName());
+                Node x2 = initialGraph.getNode(nodes.get(edge[0]).getName());
+                Node y2 = initialGraph.getNode(nodes.get(edge[1]).getName());
 
                 if (!initialGraph.isAdjacentTo(x2, y2)) {
                     continue;
                 }
             }
 
-            checkSide(scores, test, adjacencies, depth, x, y);
-            checkSide(scores, test, adjacencies, depth, y, x);
+            checkSide(nodes, scores, test, adjacencies, conditioning, depth, edge[0], edge[1]);
+            checkSide(nodes, scores, test, adjacencies, conditioning, depth, edge[1], edge[0]);
         }
 
         return freeDegree(adjacencies) > depth;
     }
 
-    private void checkSide(Map<Edge, Double> scores, IndependenceTest test, Map<Node, Set<Node>> adjacencies, int depth, Node x, Node y) {
-        if (!adjacencies.get(x).contains(y)) return;
-
-        List<Node> _adjx = new ArrayList<>(adjacencies.get(x));
-        _adjx.remove(y);
+    private void checkSide(List<Node> nodes, double[] scores, IndependenceTest test, BitSetAdjacencies adjacencies,
+                           BitSetAdjacencies conditioning, int depth, int i, int j) {
+        if (!adjacencies.isAdjacent(i, j)) return;
 
-        if (heuristic == 1 || heuristic == 2) {
-            Collections.sort(_adjx);
-        }
-
-        List<Node> ppx = possibleParents(x, _adjx, knowledge, y);
-
-        Map<Node, Double> scores2 = new HashMap<>();
-
-        for (Node node : ppx) {
-            double _score = scores.get(Edges.undirectedEdge(node, x));
-            scores2.put(node, _score);
-        }
+        Node x = nodes.get(i);
+        Node y = nodes.get(j);
 
-        if (heuristic == 3) {
-            ppx.sort(Comparator.comparing(scores2::get));
-            Collections.reverse(ppx);
-        }
+        int[] ppx = orderedPossibleParents(i, conditioning.getAdjacents(i, j), nodes, scores);
 
-        if (ppx.size() >= depth) {
-            ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
+        if (ppx.length >= depth) {
+            ChoiceGenerator cg = new ChoiceGenerator(ppx.length, depth);
             int[] choice;
 
             while ((choice = cg.next()) != null) {
@@ -337,7 +317,11 @@ public class Fas implements IFas {
                     break;
                 }
 
-                List<Node> Z = GraphUtils.asList(choice, ppx);
+                List<Node> Z = new ArrayList<>(depth);
+
+                for (int k : choice) {
+                    Z.add(nodes.get(ppx[k]));
+                }
 
                 numIndependenceTests++;
                 boolean independent = test.isIndependent(x, y, Z);
@@ -350,8 +334,7 @@ public class Fas implements IFas {
                         knowledge.noEdgeRequired(x.getName(), y.getName());
 
                 if (independent && noEdgeRequired) {
-                    adjacencies.get(x).remove(y);
-                    adjacencies.get(y).remove(x);
+                    adjacencies.removeEdge(i, j);
 
                     getSepsets().set(x, y, Z);
 
@@ -365,21 +348,124 @@ public class Fas implements IFas {
         }
     }
 
-    private List<Node> possibleParents(Node x, List<Node> adjx,
-                                       IKnowledge knowledge, Node y) {
-        List<Node> possibleParents = new LinkedList<>();
-        String _x = x.getName();
+    // For FAS-Stable. Conditioning sets for x are drawn from the adjacencies of x at the start of the depth, so
+    // whether an edge is removed does not depend on the order of the tests, and the tests of x against each of its
+    // adjacents given the same conditioning set can be done together, with IndependenceTest.checkIndependence.
+    // Once an edge is removed it is not tested again; its sepset is the first conditioning set found.
+    private boolean searchAtDepthByConditioningSet(List<Node> nodes, double[] scores, IndependenceTest test,
+                                                   BitSetAdjacencies adjacencies, BitSetAdjacencies conditioning,
+                                                   int depth) {
+        for (int i = 0; i < nodes.size(); i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            int[] adjx = conditioning.getAdjacents(i);
+            int[] ppx = orderedPossibleParents(i, adjx, nodes, scores);
+
+            if (ppx.length < depth) continue;
+
+            Node x = nodes.get(i);
+            ChoiceGenerator cg = new ChoiceGenerator(ppx.length, depth);
+            int[] choice;
+
+            while ((choice = cg.next()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+
+                List<Node> Z = new ArrayList<>(depth);
+                Set<Integer> z = new HashSet<>();
+
+                for (int k : choice) {
+                    Z.add(nodes.get(ppx[k]));
+                    z.add(ppx[k]);
+                }
+
+                List<Node> xs = new ArrayList<>();
+                List<Node> ys = new ArrayList<>();
+                List<Integer> js = new ArrayList<>();
+
+                for (int j : adjx) {
+                    if (!z.contains(j) && adjacencies.isAdjacent(i, j)) {
+                        xs.add(x);
+                        ys.add(nodes.get(j));
+                        js.add(j);
+                    }
+                }
+
+                if (ys.isEmpty()) {
+                    if (adjacencies.getDegree(i) == 0) break;
+                    continue;
+                }
+
+                List<IndependenceResult> results = test.checkIndependence(xs, ys, Z);
+                numIndependenceTests += results.size();
+
+                for (int k = 0; k < results.size(); k++) {
+                    IndependenceResult result = results.get(k);
+                    Node y = ys.get(k);
+
+                    if (!result.isIndependent()) {
+                        numDependenceJudgement++;
+                        continue;
+                    }
+
+                    if (knowledge.noEdgeRequired(x.getName(), y.getName())) {
+                        adjacencies.removeEdge(i, js.get(k));
+                        getSepsets().set(x, y, Z);
+
+                        if (verbose) {
+                            TetradLogger.getInstance().forceLogMessage(SearchLogUtils.independenceFact(x, y, Z) +
+                                    " p = " + nf.format(result.getPValue()));
+                            out.println(SearchLogUtils.independenceFactMsg(x, y, Z, result.getPValue()));
+                        }
+                    }
+                }
+            }
+        }
+
+        return freeDegree(adjacencies) > depth;
+    }
+
+    // The possible parents of x among the given adjacents, in the order in which they are to be tried as members of
+    // conditioning sets: by index into the node list (sorted, for heuristic 1), by node (heuristic 2), or by
+    // decreasing score with x (heuristic 3).
+    private int[] orderedPossibleParents(int i, int[] adjx, List<Node> nodes, double[] scores) {
+        int[] ppx = possibleParents(i, adjx, nodes, knowledge);
+
+        if (heuristic == 2) {
+            Integer[] _ppx = new Integer[ppx.length];
+            for (int k = 0; k < ppx.length; k++) _ppx[k] = ppx[k];
+            Arrays.sort(_ppx, Comparator.comparing(nodes::get));
+            for (int k = 0; k < ppx.length; k++) ppx[k] = _ppx[k];
+        } else if (heuristic == 3) {
+            Integer[] _ppx = new Integer[ppx.length];
+            for (int k = 0; k < ppx.length; k++) _ppx[k] = ppx[k];
+            Arrays.sort(_ppx, Comparator.comparingDouble(k -> scores[pairIndex(k, i)]));
+
+            for (int k = 0; k < ppx.length; k++) {
+                ppx[k] = _ppx[ppx.length - 1 - k];
+            }
+        }
+
+        return ppx;
+    }
+
+    private int[] possibleParents(int x, int[] adjx, List<Node> nodes, IKnowledge knowledge) {
+        int[] possibleParents = new int[adjx.length];
+        String _x = nodes.get(x).getName();
+        int count = 0;
 
-        for (Node z : adjx) {
-            if (z == y) continue;
-            String _z = z.getName();
+        for (int z : adjx) {
+            String _z = nodes.get(z).getName();
 
             if (possibleParentOf(_z, _x, knowledge)) {
-                possibleParents.add(z);
+                possibleParents[count++] = z;
             }
         }
 
-        return possibleParents;
+        return Arrays.copyOf(possibleParents, count);
     }
 
     private boolean possibleParentOf(String z, String x, IKnowledge knowledge) {
@@ -24,7 +24,6 @@ package edu.cmu.tetrad.search;
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.graph.*;
-import edu.cmu.tetrad.util.ChoiceGenerator;
 import edu.cmu.tetrad.util.ForkJoinPoolInstance;
 import edu.cmu.tetrad.util.TetradLogger;
 
@@ -33,6 +32,7 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Implements the "fast adjacency search" used in several causal algorithm in this package. In the fast adjacency
@@ -45,6 +45,15 @@ import java.util.concurrent.*;
  * </p>
  * This variant uses the PC-Stable modification, calculating independencies in parallel within each depth.
  * It uses a slightly different algorithm from FasStableConcurrent, probably better.
+ * </p>
+ * Within a depth, the unit of work is an edge seen from one side together with a batch of its candidate
+ * conditioning sets, so that the many conditioning sets of a high-degree node are spread over the pool by work
+ * stealing. The sepset kept for a removed edge x *-* y, x coming before y in the node list, is the first one
+ * found in the order of the sequential search: subsets of adj(x) before subsets of adj(y), each in the order
+ * in which ChoiceGenerator lists them. Once a sepset is found, the batches after it for the same edge are
+ * skipped, but those before it still run, so that with the stable adjustment the sepsets do not depend on how
+ * the tasks are scheduled. Per-depth statistics, including a measure of load balance, are available from
+ * getDepthStats().
  *
  * @author Joseph Ramsey.
  */
@@ -100,7 +109,15 @@ public class FasConcurrent implements IFas {
      */
     private PrintStream out = System.out;
 
-    private int chunk = 100;
+    /**
+     * The largest number of conditioning sets for one edge tested by a single task.
+     */
+    private int batchSize = 32;
+
+    /**
+     * Statistics for each depth of the last search.
+     */
+    private List<DepthStats> depthStats = new ArrayList<>();
 
     /**
      * True if the "stable" adjustment should be made.
@@ -144,6 +161,7 @@ public class FasConcurrent implements IFas {
         Graph graph = new EdgeListGraphSingleConnections(test.getVariables());
 
         sepsets = new SepsetMap();
+        depthStats = new ArrayList<>();
 
         int _depth = depth;
 
@@ -152,12 +170,9 @@ public class FasConcurrent implements IFas {
         }
 
 
-        Map<Node, Set<Node>> adjacencies = new ConcurrentHashMap<>();
+        // Nodes are referred to by their index in the node list.
         List<Node> nodes = graph.getNodes();
-
-        for (Node node : nodes) {
-            adjacencies.put(node, new HashSet<Node>());
-        }
+        BitSetAdjacencies adjacencies = new BitSetAdjacencies(nodes.size());
 
         for (int d = 0; d <= _depth; d++) {
             boolean more;
@@ -178,12 +193,9 @@ public class FasConcurrent implements IFas {
         }
 
         for (int i = 0; i < nodes.size(); i++) {
-            for (int j = i + 1; j < nodes.size(); j++) {
-                Node x = nodes.get(i);
-                Node y = nodes.get(j);
-
-                if (adjacencies.get(x).contains(y)) {
-                    graph.addUndirectedEdge(x, y);
+            for (int j : adjacencies.getAdjacents(i)) {
+                if (j > i) {
+                    graph.addUndirectedEdge(nodes.get(i), nodes.get(j));
                 }
             }
         }
@@ -199,103 +211,158 @@ public class FasConcurrent implements IFas {
         return graph;
     }
 
-    private boolean searchAtDepth0(final List<Node> nodes, final Map<Node, Set<Node>> adjacencies) {
+    private boolean searchAtDepth0(final List<Node> nodes, final BitSetAdjacencies adjacencies) {
         if (verbose) {
             System.out.println("Searching at depth 0.");
         }
 
         final List<Node> empty = Collections.emptyList();
+        final DepthRun run = new DepthRun();
 
-        class Depth0Task implements Callable<Boolean> {
-            private int i;
+        // One task per node x tests x against the nodes after it.
+        class Depth0Task extends RecursiveTask<Boolean> {
+            private final int from;
+            private final int to;
 
-            private Depth0Task(int i) {
-                this.i = i;
+            private Depth0Task(int from, int to) {
+                this.from = from;
+                this.to = to;
             }
 
-            public Boolean call() {
-                doNodeDepth0(i, nodes, test, empty, adjacencies);
+            @Override
+            protected Boolean compute() {
+                if (to - from == 1) {
+                    long start = System.nanoTime();
+                    doNodeDepth0(from, nodes, test, empty, adjacencies, run);
+                    run.finishTask(start);
+                } else {
+                    int mid = (from + to) >>> 1;
+                    invokeAll(new Depth0Task(from, mid), new Depth0Task(mid, to));
+                }
+
                 return true;
             }
         }
 
-        List<Callable<Boolean>> tasks = new ArrayList<>();
-
-        for (int i = 0; i < nodes.size(); i++) {
-            tasks.add(new Depth0Task(i));
+        if (!nodes.isEmpty()) {
+            pool.invoke(new Depth0Task(0, nodes.size()));
         }
 
-        ExecutorService pool = Executors.newWorkStealingPool(Runtime.getRuntime().availableProcessors());
+        long numPairs = (long) nodes.size() * (nodes.size() - 1) / 2;
+        addDepthStats(run.stats(0, numPairs, adjacencies.getNumEdges()));
 
-        try {
-            List<Future<Boolean>> futures = pool.invokeAll(tasks);
-        } catch (InterruptedException exception) {
-            this.out.print("Task has been interrupted");
-            Thread.currentThread().interrupt();
-        }
-
-        shutdownAndAwaitTermination(pool);
-
-        return freeDegree(nodes, adjacencies) > depth;
+        return freeDegree(adjacencies) > 0;
     }
 
-    private boolean searchAtDepth(int depth, final List<Node> nodes,
-                                  final Map<Node, Set<Node>> adjacencies) {
+    private boolean searchAtDepth(final int depth, final List<Node> nodes,
+                                  final BitSetAdjacencies adjacencies) {
         if (verbose) {
             System.out.println("Searching at depth " + depth);
         }
 
-        final Map<Node, Set<Node>> adjacenciesCopy;
+        // For the stable variant, conditioning sets are drawn from the adjacencies as they were at the start of
+        // the depth, so that the result does not depend on the order in which the tasks run.
+        final BitSetAdjacencies adjacenciesCopy = stable ? adjacencies.snapshot() : adjacencies;
 
-        if (stable) {
-            adjacenciesCopy = new ConcurrentHashMap<>();
+        // Each edge x--y is checked from both sides, conditioning on subsets of adj(x) and then of adj(y).
+        int numEdges = adjacencies.getNumEdges();
+        final int[] sideX = new int[2 * numEdges];
+        final int[] sideY = new int[2 * numEdges];
+        int numSides = 0;
 
-            for (Node node : adjacencies.keySet()) {
-                adjacenciesCopy.put(node, new HashSet<>(adjacencies.get(node)));
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j : adjacencies.getAdjacents(i)) {
+                sideX[numSides] = i;
+                sideY[numSides] = j;
+                numSides++;
             }
-        } else {
-            adjacenciesCopy = adjacencies;
         }
 
-        new ConcurrentHashMap<>();
+        final DepthRun run = new DepthRun();
+
+        // The first sepset found for each edge removed at this depth.
+        final Map<Long, Sepset> found = new ConcurrentHashMap<>();
+
+        // Tests x _||_ y | S for the conditioning sets S of the given rank range, stopping as soon as a sepset
+        // for the edge that comes before the next set is found, here or by another task.
+        class SubsetTask extends RecursiveTask<Boolean> {
+            private final int x;
+            private final int y;
+            private final int[] ppx;
+            private final long from;
+            private final long to;
+
+            private SubsetTask(int x, int y, int[] ppx, long from, long to) {
+                this.x = x;
+                this.y = y;
+                this.ppx = ppx;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected Boolean compute() {
+                if (foundBefore(found, x, y, from, nodes.size(), adjacencies)) {
+                    run.cancelled.increment();
+                } else if (to - from <= batchSize) {
+                    long start = System.nanoTime();
+                    testSubsets(x, y, ppx, depth, from, to, nodes, adjacencies, found, run);
+                    run.finishTask(start);
+                } else {
+                    long mid = from + (to - from) / 2;
+                    invokeAll(new SubsetTask(x, y, ppx, from, mid), new SubsetTask(x, y, ppx, mid, to));
+                }
 
-        for (Node node : adjacencies.keySet()) {
-            adjacenciesCopy.put(node, new HashSet<>(adjacencies.get(node)));
+                return true;
+            }
         }
 
-        class DepthTask implements Callable {
-            private int i;
-            private int depth;
+        class SideTask extends RecursiveTask<Boolean> {
+            private final int from;
+            private final int to;
 
-            public DepthTask(int i, int depth) {
-                this.i = i;
-                this.depth = depth;
+            private SideTask(int from, int to) {
+                this.from = from;
+                this.to = to;
             }
 
-            public Boolean call() {
-                doNodeAtDepth(i, nodes, adjacenciesCopy, depth, test, adjacencies);
+            @Override
+            protected Boolean compute() {
+                if (to - from == 1) {
+                    int x = sideX[from];
+                    int y = sideY[from];
+
+                    if (foundBefore(found, x, y, 0, nodes.size(), adjacencies)) {
+                        run.cancelled.increment();
+                        return true;
+                    }
+
+                    int[] ppx = possibleParents(x, adjacenciesCopy.getAdjacents(x, y), nodes, knowledge);
+                    long numSubsets = choose(ppx.length, depth);
+
+                    if (numSubsets > 0) {
+                        new SubsetTask(x, y, ppx, 0, numSubsets).compute();
+                    }
+                } else {
+                    int mid = (from + to) >>> 1;
+                    invokeAll(new SideTask(from, mid), new SideTask(mid, to));
+                }
+
                 return true;
             }
         }
 
-        List<Callable<Boolean>> tasks = new ArrayList<>();
-
-        for (int i = 0; i < nodes.size(); i++) {
-            tasks.add(new DepthTask(i, depth));
+        if (numSides > 0) {
+            pool.invoke(new SideTask(0, numSides));
         }
 
-        ExecutorService pool = Executors.newWorkStealingPool(Runtime.getRuntime().availableProcessors());
-
-        try {
-            List<Future<Boolean>> futures = pool.invokeAll(tasks);
-        } catch (InterruptedException exception) {
-            this.out.printf("Task has been interrupted");//, dateTimeNow(), task.run.index + 1);
-            Thread.currentThread().interrupt();
+        for (Sepset sepset : found.values()) {
+            getSepsets().set(nodes.get(sepset.x), nodes.get(sepset.y), sepset.condSet);
         }
 
-        shutdownAndAwaitTermination(pool);
+        addDepthStats(run.stats(depth, numEdges, adjacencies.getNumEdges()));
 
-        return freeDegree(nodes, adjacencies) > depth;
+        return freeDegree(adjacencies) > depth;
     }
 
     @Override
@@ -350,7 +417,8 @@ public class FasConcurrent implements IFas {
     //==============================PRIVATE METHODS======================/
 
 
-    private void doNodeDepth0(int i, List<Node> nodes, IndependenceTest test, List<Node> empty, Map<Node, Set<Node>> adjacencies) {
+    private void doNodeDepth0(int i, List<Node> nodes, IndependenceTest test, List<Node> empty,
+                              BitSetAdjacencies adjacencies, DepthRun run) {
         if (verbose) {
             if ((i + 1) % 1000 == 0) System.out.println("i = " + (i + 1));
         }
@@ -378,15 +446,8 @@ public class FasConcurrent implements IFas {
                 }
             }
 
-            boolean independent;
-
-            try {
-                numIndependenceTests++;
-                independent = test.isIndependent(x, y, empty);
-            } catch (Exception e) {
-                e.printStackTrace();
-                independent = false;
-            }
+            run.tests.increment();
+            boolean independent = test.isIndependent(x, y, empty);
 
             boolean noEdgeRequired =
                     knowledge.noEdgeRequired(x.getName(), y.getName());
@@ -395,65 +456,111 @@ public class FasConcurrent implements IFas {
             if (independent && noEdgeRequired) {
                 getSepsets().set(x, y, empty);
             } else if (!forbiddenEdge(x, y)) {
-                adjacencies.get(x).add(y);
-                adjacencies.get(y).add(x);
+                adjacencies.addEdge(i, j);
             }
         }
-//        }
     }
 
-    private void doNodeAtDepth(int i, List<Node> nodes, Map<Node, Set<Node>> adjacenciesCopy, int depth, IndependenceTest test, Map<Node, Set<Node>> adjacencies) {
-        if (verbose) {
-            if ((i + 1) % 1000 == 0) System.out.println("i = " + (i + 1));
-        }
-
+    // Tests x _||_ y | S for the subsets S of ppx of the given size with lexicographic rank in [from, to).
+    private void testSubsets(int i, int j, int[] ppx, int depth, long from, long to, List<Node> nodes,
+                             BitSetAdjacencies adjacencies, Map<Long, Sepset> found, DepthRun run) {
         Node x = nodes.get(i);
+        Node y = nodes.get(j);
 
-        if (Thread.currentThread().isInterrupted()) {
-            return;
+        boolean noEdgeRequired =
+                knowledge.noEdgeRequired(x.getName(), y.getName());
+
+        int[] choice = unrankChoice(ppx.length, depth, from);
+
+        for (long rank = from; rank < to; rank++) {
+            if (Thread.currentThread().isInterrupted() || foundBefore(found, i, j, rank, nodes.size(), adjacencies)) {
+                return;
+            }
+
+            List<Node> condSet = new ArrayList<>(depth);
+
+            for (int k : choice) {
+                condSet.add(nodes.get(ppx[k]));
+            }
+
+            run.tests.increment();
+            boolean independent = test.isIndependent(x, y, condSet);
+
+            if (independent && noEdgeRequired) {
+                adjacencies.removeEdge(i, j);
+
+                // If sepsets have been found from both sides, or from several batches, the first is kept.
+                Sepset sepset = new Sepset(i, j, rank, condSet);
+                found.merge(edgeKey(i, j, nodes.size()), sepset, (s1, s2) -> s1.before(s2) ? s1 : s2);
+                return;
+            }
+
+            nextChoice(ppx.length, choice);
         }
+    }
 
-        List<Node> adjx = new ArrayList<>(adjacencies.get(x));
+    // True if a sepset has been found for the edge i *-* j that comes before the subset of adj(i) of the given
+    // rank. The adjacency, which is cheaper to check, is false whenever such a sepset has been found.
+    private static boolean foundBefore(Map<Long, Sepset> found, int i, int j, long rank, int numNodes,
+                                       BitSetAdjacencies adjacencies) {
+        if (adjacencies.isAdjacent(i, j)) return false;
+        Sepset sepset = found.get(edgeKey(i, j, numNodes));
+        return sepset != null && sepset.before(i, rank);
+    }
 
-        EDGE:
-        for (Node y : adjx) {
-            List<Node> _adjx = new ArrayList<>(adjacencies.get(x));
-            _adjx.remove(y);
-            List<Node> ppx = possibleParents(x, _adjx, knowledge);
+    private static long edgeKey(int i, int j, int numNodes) {
+        return (long) Math.min(i, j) * numNodes + Math.max(i, j);
+    }
 
-            if (ppx.size() >= depth) {
-                ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
-                int[] choice;
+    // The number of subsets of size k of a set of size n, or Long.MAX_VALUE if that is too many to count.
+    private static long choose(int n, int k) {
+        if (k < 0 || k > n) return 0;
 
-                while ((choice = cg.next()) != null) {
-                    if (Thread.currentThread().isInterrupted()) {
-                        return;
-                    }
+        long c = 1;
 
-                    List<Node> condSet = GraphUtils.asList(choice, ppx);
+        for (int i = 0; i < k; i++) {
+            long numerator = c * (n - i);
 
-                    boolean independent;
+            if (numerator / (n - i) != c) return Long.MAX_VALUE;
 
-                    try {
-                        numIndependenceTests++;
-                        independent = test.isIndependent(x, y, condSet);
-                    } catch (Exception e) {
-                        independent = false;
-                    }
+            c = numerator / (i + 1);
+        }
 
-                    boolean noEdgeRequired =
-                            knowledge.noEdgeRequired(x.getName(), y.getName());
+        return c;
+    }
 
-                    if (independent && noEdgeRequired) {
-                        adjacencies.get(x).remove(y);
-                        adjacencies.get(y).remove(x);
+    // The choice of k of n elements with the given rank in the order in which ChoiceGenerator lists them.
+    private static int[] unrankChoice(int n, int k, long rank) {
+        int[] choice = new int[k];
+        int x = 0;
 
-                        getSepsets().set(x, y, condSet);
+        for (int t = 0; t < k; t++) {
+            long c;
 
-                        continue EDGE;
-                    }
-                }
+            while (rank >= (c = choose(n - x - 1, k - t - 1))) {
+                rank -= c;
+                x++;
             }
+
+            choice[t] = x++;
+        }
+
+        return choice;
+    }
+
+    // Advances the choice to the next one in lexicographic order, if there is one.
+    private static void nextChoice(int n, int[] choice) {
+        int k = choice.length;
+        int t = k - 1;
+
+        while (t >= 0 && choice[t] == n - k + t) t--;
+
+        if (t < 0) return;
+
+        choice[t]++;
+
+        for (int u = t + 1; u < k; u++) {
+            choice[u] = choice[u - 1] + 1;
         }
     }
 
@@ -474,40 +581,25 @@ public class FasConcurrent implements IFas {
         return false;
     }
 
-    private int freeDegree(List<Node> nodes, Map<Node, Set<Node>> adjacencies) {
-        int max = 0;
-
-        for (Node x : nodes) {
-            Set<Node> opposites = adjacencies.get(x);
-
-            for (Node y : opposites) {
-                Set<Node> adjx = new HashSet<>(opposites);
-                adjx.remove(y);
-
-                if (adjx.size() > max) {
-                    max = adjx.size();
-                }
-            }
-        }
-
-        return max;
+    private int freeDegree(BitSetAdjacencies adjacencies) {
+        return Math.max(0, adjacencies.getMaxDegree() - 1);
     }
 
 
-    private List<Node> possibleParents(Node x, List<Node> adjx,
-                                       IKnowledge knowledge) {
-        List<Node> possibleParents = new LinkedList<>();
-        String _x = x.getName();
+    private int[] possibleParents(int x, int[] adjx, List<Node> nodes, IKnowledge knowledge) {
+        int[] possibleParents = new int[adjx.length];
+        String _x = nodes.get(x).getName();
+        int count = 0;
 
-        for (Node z : adjx) {
-            String _z = z.getName();
+        for (int z : adjx) {
+            String _z = nodes.get(z).getName();
 
             if (possibleParentOf(_z, _x, knowledge)) {
-                possibleParents.add(z);
+                possibleParents[count++] = z;
             }
         }
 
-        return possibleParents;
+        return Arrays.copyOf(possibleParents, count);
     }
 
     private boolean possibleParentOf(String z, String x, IKnowledge knowledge) {
@@ -574,27 +666,189 @@ public class FasConcurrent implements IFas {
         return out;
     }
 
-    private void shutdownAndAwaitTermination(ExecutorService pool) {
-        pool.shutdown(); // Disable new tasks from being submitted
-        try {
-            // Wait a while for existing tasks to terminate
-            if (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
-                pool.shutdownNow(); // Cancel currently executing tasks
-                // Wait a while for tasks to respond to being cancelled
-                if (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
-                    System.err.println("Pool did not terminate");
-                }
-            }
-        } catch (InterruptedException ie) {
-            // (Re-)Cancel if current thread also interrupted
-            pool.shutdownNow();
-            // Preserve interrupt status
-            Thread.currentThread().interrupt();
+    public void setStable(boolean stable) {
+        this.stable = stable;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the largest number of conditioning sets for one edge tested by a single task. Smaller batches spread
+     * the tests for an edge with many candidate conditioning sets over more threads, at some cost in overhead.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
         }
+
+        this.batchSize = batchSize;
     }
 
-    public void setStable(boolean stable) {
-        this.stable = stable;
+    /**
+     * @return statistics for each depth of the last search, including how evenly the tests were spread over
+     * the threads.
+     */
+    public List<DepthStats> getDepthStats() {
+        return Collections.unmodifiableList(depthStats);
     }
-}
 
+    private void addDepthStats(DepthStats stats) {
+        depthStats.add(stats);
+        numIndependenceTests += stats.getNumTests();
+
+        if (verbose) {
+            out.println(stats);
+        }
+    }
+
+    /**
+     * Statistics for one depth of the search, for judging how evenly the work was spread over the threads of the
+     * pool. For depth 0, the number of edges is the number of pairs of variables.
+     */
+    public static final class DepthStats {
+        private final int depth;
+        private final long numEdges;
+        private final long numEdgesRemoved;
+        private final long numTests;
+        private final long numTasks;
+        private final long numCancelledTasks;
+        private final long elapsedNanos;
+        private final int numThreads;
+        private final long maxBusyNanos;
+        private final long totalBusyNanos;
+
+        private DepthStats(int depth, long numEdges, long numEdgesRemoved, long numTests, long numTasks,
+                           long numCancelledTasks, long elapsedNanos, int numThreads, long maxBusyNanos,
+                           long totalBusyNanos) {
+            this.depth = depth;
+            this.numEdges = numEdges;
+            this.numEdgesRemoved = numEdgesRemoved;
+            this.numTests = numTests;
+            this.numTasks = numTasks;
+            this.numCancelledTasks = numCancelledTasks;
+            this.elapsedNanos = elapsedNanos;
+            this.numThreads = numThreads;
+            this.maxBusyNanos = maxBusyNanos;
+            this.totalBusyNanos = totalBusyNanos;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return the number of edges at the start of the depth.
+         */
+        public long getNumEdges() {
+            return numEdges;
+        }
+
+        public long getNumEdgesRemoved() {
+            return numEdgesRemoved;
+        }
+
+        public long getNumTests() {
+            return numTests;
+        }
+
+        /**
+         * @return the number of batches of tests run.
+         */
+        public long getNumTasks() {
+            return numTasks;
+        }
+
+        /**
+         * @return the number of edges or batches skipped because the edge had already been removed.
+         */
+        public long getNumCancelledTasks() {
+            return numCancelledTasks;
+        }
+
+        public double getElapsedMillis() {
+            return elapsedNanos / 1e6;
+        }
+
+        /**
+         * @return the number of threads that ran at least one task.
+         */
+        public int getNumThreads() {
+            return numThreads;
+        }
+
+        /**
+         * @return the mean time spent running tasks by the threads that ran any, divided by the largest such
+         * time; 1 if the work was spread evenly. NaN if no tasks were run.
+         */
+        public double getLoadBalance() {
+            if (numThreads == 0 || maxBusyNanos == 0) return Double.NaN;
+            return totalBusyNanos / (double) numThreads / maxBusyNanos;
+        }
+
+        public String toString() {
+            NumberFormat nf = new DecimalFormat("0.00");
+
+            return "Depth " + depth + ": " + numEdges + " edges, " + numEdgesRemoved + " removed, "
+                    + numTests + " tests in " + numTasks + " tasks (" + numCancelledTasks + " cancelled), "
+                    + nf.format(getElapsedMillis()) + " ms, " + numThreads + " threads, load balance "
+                    + nf.format(getLoadBalance());
+        }
+    }
+
+    // A sepset for the edge x *-* y, found among the subsets of adj(x) as the one with the given rank.
+    private static final class Sepset {
+        private final int x;
+        private final int y;
+        private final long rank;
+        private final List<Node> condSet;
+
+        private Sepset(int x, int y, long rank, List<Node> condSet) {
+            this.x = x;
+            this.y = y;
+            this.rank = rank;
+            this.condSet = condSet;
+        }
+
+        // True if this comes before the subset of adj(side) with the given rank in the order of the sequential
+        // search, where the side of the node that comes first in the node list is searched first.
+        boolean before(int side, long rank) {
+            if (x != side) return x < side;
+            return this.rank < rank;
+        }
+
+        boolean before(Sepset sepset) {
+            return before(sepset.x, sepset.rank);
+        }
+    }
+
+    // Counters for the tasks run at one depth.
+    private static class DepthRun {
+        private final long start = System.nanoTime();
+        private final LongAdder tests = new LongAdder();
+        private final LongAdder tasks = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final Map<Long, LongAdder> busy = new ConcurrentHashMap<>();
+
+        void finishTask(long taskStart) {
+            tasks.increment();
+            busy.computeIfAbsent(Thread.currentThread().getId(), id -> new LongAdder())
+                    .add(System.nanoTime() - taskStart);
+        }
+
+        DepthStats stats(int depth, long numEdgesBefore, long numEdgesAfter) {
+            long max = 0;
+            long total = 0;
+
+            for (LongAdder adder : busy.values()) {
+                long b = adder.sum();
+                max = Math.max(max, b);
+                total += b;
+            }
+
+            return new DepthStats(depth, numEdgesBefore, numEdgesBefore - numEdgesAfter, tests.sum(), tasks.sum(),
+                    cancelled.sum(), System.nanoTime() - start, busy.size(), max, total);
+        }
+    }
+}
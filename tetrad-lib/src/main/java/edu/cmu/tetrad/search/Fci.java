@@ -116,6 +116,11 @@ public final class Fci implements GraphSearch {
      */
     private boolean stable = false;
 
+    /**
+     * True iff the possible dsep step should be done by PossibleDsepConcurrent.
+     */
+    private boolean possibleDsepConcurrent = false;
+
     //============================CONSTRUCTORS============================//
 
     /**
@@ -209,22 +214,31 @@ public final class Fci implements GraphSearch {
         if (isPossibleDsepSearchDone()) {
             new FciOrient(new SepsetsSet(this.sepsets, independenceTest)).ruleR0(graph);
 
-            for (Edge edge : new ArrayList<>(graph.getEdges())) {
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
+            if (possibleDsepConcurrent) {
+                PossibleDsepConcurrent possibleDsep = new PossibleDsepConcurrent(independenceTest);
+                possibleDsep.setKnowledge(knowledge);
+                possibleDsep.setDepth(depth);
+                possibleDsep.setMaxPathLength(maxPathLength);
+                possibleDsep.setVerbose(verbose);
+                sepsets.addAll(possibleDsep.search(graph));
+            } else {
+                for (Edge edge : new ArrayList<>(graph.getEdges())) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
 
-                Node x = edge.getNode1();
-                Node y = edge.getNode2();
+                    Node x = edge.getNode1();
+                    Node y = edge.getNode2();
 
-                List<Node> sepset = sp.getSepset(x, y);
+                    List<Node> sepset = sp.getSepset(x, y);
 
-                if (sepset != null) {
-                    graph.removeEdge(x, y);
-                    sepsets.set(x, y, sepset);
+                    if (sepset != null) {
+                        graph.removeEdge(x, y);
+                        sepsets.set(x, y, sepset);
 
-                    if (verbose) {
-                        System.out.println("Possible DSEP Removed " + x + "--- " + y + " sepset = " + sepset);
+                        if (verbose) {
+                            System.out.println("Possible DSEP Removed " + x + "--- " + y + " sepset = " + sepset);
+                        }
                     }
                 }
             }
@@ -365,6 +379,15 @@ public final class Fci implements GraphSearch {
     public void setStable(boolean stable) {
         this.stable = stable;
     }
+
+    /**
+     * True iff the possible dsep step should examine the edges in parallel, using PossibleDsepConcurrent. The edges
+     * removed and the sepsets recorded are those of the default sequential step. The independence test should be
+     * safe to call from several threads.
+     */
+    public void setPossibleDsepConcurrent(boolean possibleDsepConcurrent) {
+        this.possibleDsepConcurrent = possibleDsepConcurrent;
+    }
 }
 
 
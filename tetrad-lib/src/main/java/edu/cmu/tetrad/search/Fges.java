@@ -26,13 +26,18 @@ import edu.cmu.tetrad.data.KnowledgeEdge;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.DepthChoiceGenerator;
 import edu.cmu.tetrad.util.TetradLogger;
-import org.jetbrains.annotations.NotNull;
 
-import java.io.PrintStream;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static edu.cmu.tetrad.graph.Edges.directedEdge;
 import static java.lang.Math.max;
@@ -89,6 +94,12 @@ public final class Fges implements GraphSearch, GraphScorer {
         allowUnfaithfulness, heuristicSpeedup, coverNoncolliders
     }
 
+    // The most score differences a task collects before passing them to a BatchScore.
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    // The modes of the search, in order. Each is a phase of FES followed by a phase of BES.
+    private static final Mode[] MODES = {Mode.heuristicSpeedup, Mode.coverNoncolliders, Mode.allowUnfaithfulness};
+
     /**
      * Specification of forbidden and required edges.
      */
@@ -136,17 +147,26 @@ public final class Fges implements GraphSearch, GraphScorer {
     private boolean meekVerbose = false;
 
     // Potential arrows sorted by bump high to low. The first one is a candidate for adding to the graph.
-    private final SortedSet<Arrow> sortedArrows = new ConcurrentSkipListSet<>();
-    private final SortedSet<Arrow> sortedArrowsBack = new ConcurrentSkipListSet<>();
+    private final ArrowQueue sortedArrows = new ArrowQueue();
+    private final ArrowQueue sortedArrowsBack = new ArrowQueue();
 
-    private final Map<Edge, ArrowConfig> arrowsMap = new ConcurrentHashMap<>();
-    private final Map<Edge, ArrowConfigBackward> arrowsMapBackward = new ConcurrentHashMap<>();
+    // The sets each arrow a->b was last calculated from, keyed by pairKey(a, b).
+    private final Map<Long, ArrowConfig> arrowsMap = new ConcurrentHashMap<>();
+    private final Map<Long, ArrowConfigBackward> arrowsMapBackward = new ConcurrentHashMap<>();
 
     final Set<Node> emptySet = new HashSet<>();
 
     // Map from variables to their column indices in the data set.
     private ConcurrentMap<Node, Integer> hashIndices;
 
+    // The variables by column index; the inverse of hashIndices.
+    private Node[] indexedNodes;
+
+    // For each variable, by column index, a count of the changes made to edges into or out of it. The sets an arrow
+    // a->b depends on (naYX, T neighbors, parents of b) are determined by the edges at a and b, so if neither count
+    // has moved since the arrow was calculated, it is still current.
+    private int[] versions;
+
     // The static ForkJoinPool instance.
     private final ForkJoinPool pool;
 
@@ -162,10 +182,6 @@ public final class Fges implements GraphSearch, GraphScorer {
     // The graph being constructed.
     private Graph graph;
 
-    // Arrows with the same totalScore are stored in this list to distinguish their order in sortedArrows.
-    // The ordering doesn't matter; it just have to be transitive.
-    private int arrowIndex = 0;
-
     // The BIC score of the model.
     private double modelScore;
 
@@ -182,6 +198,44 @@ public final class Fges implements GraphSearch, GraphScorer {
     // The maximum number of threads to use.
     private final int maxThreads;
 
+    // If non-null, checkpoints of the search are written to this file.
+    private File checkpointFile = null;
+
+    // The number of insertions and deletions between checkpoints.
+    private int checkpointInterval = 100;
+
+    // If non-null, the search is resumed from the checkpoint in this file.
+    private File resumeFile = null;
+
+    // The number of insertions and deletions made so far in the search.
+    private volatile long numChanges = 0;
+
+    // The value of numChanges when the last checkpoint was written.
+    private long numChangesAtCheckpoint = 0;
+
+    // True once the whole graph has been oriented; after that only the components of changed nodes are reoriented.
+    private boolean patternOriented = false;
+
+    // Listeners notified of the progress of the search.
+    private final List<FgesListener> listeners = new CopyOnWriteArrayList<>();
+
+    // The minimum time between progress notifications, in milliseconds.
+    private long progressInterval = 1000;
+
+    // Instrumentation of the current search, read by getProgress(), possibly from another thread.
+    private final LongAdder numInsertEvals = new LongAdder();
+    private final LongAdder numDeleteEvals = new LongAdder();
+    private final LongAdder taskNanos = new LongAdder();
+    private volatile long reevaluationNanos = 0;
+    private volatile long numEdgesAdded = 0;
+    private volatile long numEdgesRemoved = 0;
+    private volatile long numChangesAtPhaseStart = 0;
+    private volatile int phase = 0;
+    private volatile int numPhases = 0;
+    private volatile long searchStart = 0;
+    private volatile long phaseStart = 0;
+    private long lastProgress = 0;
+
     //===========================CONSTRUCTORS=============================//
 
     /**
@@ -237,22 +291,63 @@ public final class Fges implements GraphSearch, GraphScorer {
             graph = GraphUtils.replaceNodes(graph, getVariables());
         }
 
-        addRequiredEdges(graph);
+        sortedArrows.clear();
+        sortedArrowsBack.clear();
+        arrowsMap.clear();
+        arrowsMapBackward.clear();
+        versions = new int[indexedNodes.length];
+        numChanges = 0;
+        numChangesAtCheckpoint = 0;
+        patternOriented = false;
+        numInsertEvals.reset();
+        numDeleteEvals.reset();
+        taskNanos.reset();
+        reevaluationNanos = 0;
+        numEdgesAdded = 0;
+        numEdgesRemoved = 0;
+        searchStart = start;
+
+        int startPhase = 0;
+        boolean startPhaseBegun = false;
+
+        if (resumeFile != null) {
+            int[] resumed = readCheckpoint();
+            startPhase = resumed[0];
+            startPhaseBegun = resumed[1] == 1;
+        } else {
+            addRequiredEdges(graph);
+            initializeEffectEdges(getVariables());
+        }
+
+        // Phases 2k and 2k + 1 are FES and BES for MODES[k].
+        numPhases = faithfulnessAssumed ? 4 : 6;
+
+        for (int phase = startPhase; phase < numPhases; phase++) {
+            this.mode = MODES[phase / 2];
+            boolean resumed = phase == startPhase && startPhaseBegun;
+
+            this.phase = phase;
+            this.phaseStart = System.currentTimeMillis();
+            this.lastProgress = phaseStart;
+            this.numChangesAtPhaseStart = numChanges;
 
-        initializeEffectEdges(getVariables());
+            for (FgesListener listener : listeners) {
+                listener.phaseStarted(getProgress());
+            }
 
-        this.mode = Mode.heuristicSpeedup;
-        fes();
-        bes();
+            if (phase % 2 == 0) {
+                fes(phase, resumed);
+            } else {
+                bes(phase, resumed);
+            }
 
-        this.mode = Mode.coverNoncolliders;
-        fes();
-        bes();
+            if (checkpointFile != null) {
+                writeCheckpoint(phase + 1, false);
+            }
 
-        if (!faithfulnessAssumed) {
-            this.mode = Mode.allowUnfaithfulness;
-            fes();
-            bes();
+            for (FgesListener listener : listeners) {
+                listener.phaseFinished(getProgress());
+            }
         }
 
         long endTime = System.currentTimeMillis();
@@ -455,6 +550,110 @@ public final class Fges implements GraphSearch, GraphScorer {
         this.symmetricFirstStep = symmetricFirstStep;
     }
 
+    /**
+     * If non-null, the state of the search (the graph, the queue of candidate arrows, the phase, the number of
+     * changes made and, if the score is a CachingScore, the cached local scores) is written to this file every
+     * checkpointInterval insertions or deletions and at the end of each phase, so that the search can be resumed
+     * with setResumeFile if it is interrupted. Null (the default) for no checkpoints.
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * The number of insertions and deletions between checkpoints. By default 100.
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1: " + checkpointInterval);
+        }
+
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * If non-null, search() continues the search recorded in this checkpoint file rather than starting a new
+     * one; the initial graph and required edges are then taken from the checkpoint. The score and other settings
+     * should be as they were for the interrupted search. Null (the default) to start afresh.
+     */
+    public void setResumeFile(File resumeFile) {
+        this.resumeFile = resumeFile;
+    }
+
+    public File getResumeFile() {
+        return resumeFile;
+    }
+
+    /**
+     * @return the number of insertions and deletions made by the most recent search, counting those made before
+     * a checkpoint it was resumed from.
+     */
+    public long getNumChanges() {
+        return numChanges;
+    }
+
+    /**
+     * Adds a listener to be told of the progress of subsequent searches.
+     *
+     * @see FgesProgressWriter
+     */
+    public void addListener(FgesListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("Listener must not be null.");
+        }
+
+        listeners.add(listener);
+    }
+
+    public void removeListener(FgesListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * The minimum time between calls to FgesListener.progress, in milliseconds; 0 to report every change to the
+     * graph. By default 1000.
+     */
+    public void setProgressInterval(long progressInterval) {
+        if (progressInterval < 0) {
+            throw new IllegalArgumentException("Progress interval must be >= 0: " + progressInterval);
+        }
+
+        this.progressInterval = progressInterval;
+    }
+
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    /**
+     * @return a snapshot of the progress of the current (or most recent) search. May be called from another
+     * thread while the search is running.
+     */
+    public FgesProgress getProgress() {
+        long now = System.currentTimeMillis();
+        long reevaluationNanos = this.reevaluationNanos;
+        int parallelism = pool.getParallelism();
+
+        double cacheHitRate = score instanceof CachingScore
+                ? ((CachingScore) score).getCache().getHitRate() : Double.NaN;
+
+        double poolUtilization = reevaluationNanos == 0 ? Double.NaN
+                : min(1.0, taskNanos.sum() / ((double) reevaluationNanos * parallelism));
+
+        return new FgesProgress(phase, numPhases, MODES[phase / 2].toString(), now - searchStart,
+                now - phaseStart, numInsertEvals.sum(), numDeleteEvals.sum(), numEdgesAdded, numEdgesRemoved,
+                numChanges - numChangesAtPhaseStart, sortedArrows.size(), sortedArrowsBack.size(),
+                cacheHitRate, poolUtilization, parallelism, pool.getActiveThreadCount());
+    }
+
     public String logEdgeBayesFactorsString(Graph dag) {
         Map<Edge, Double> factors = logEdgeBayesFactors(dag);
         return logBayesPosteriorFactorsString(factors);
@@ -507,6 +706,8 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         @Override
         public Boolean call() {
+            EffectEdgeBatch batch = new EffectEdgeBatch();
+
             for (int i = from; i < to; i++) {
                 if ((i + 1) % 1000 == 0) {
                     count[0] += 1000;
@@ -532,35 +733,87 @@ public final class Fges implements GraphSearch, GraphScorer {
                         continue;
                     }
 
-                    int child = hashIndices.get(y);
-                    int parent = hashIndices.get(x);
-                    double bump = score.localScoreDiff(parent, child);
-
-                    if (symmetricFirstStep) {
-                        double bump2 = score.localScoreDiff(child, parent);
-                        bump = max(bump, bump2);
-                    }
-
                     if (boundGraph != null && !boundGraph.isAdjacentTo(x, y)) {
                         continue;
                     }
 
-                    if (bump > 0) {
-                        effectEdgesGraph.addEdge(Edges.undirectedEdge(x, y));
-//                        addArrowForward(x, y, emptySet, emptySet, emptySet, emptySet, bump);
-//                        addArrowForward(y, x, emptySet, emptySet, emptySet, emptySet, bump);
-//
-//                        arrowsMap.put(directedEdge(x, y), new ArrowConfig(emptySet, emptySet, emptySet));
-//                        arrowsMap.put(directedEdge(y, x), new ArrowConfig(emptySet, emptySet, emptySet));
-
-                    }
+                    batch.add(hashIndices.get(x), hashIndices.get(y));
                 }
             }
 
+            batch.flush();
             return true;
         }
     }
 
+    // Collects the pairs (parent, child) of the first step from the empty graph, scoring them together for a
+    // BatchScore and one at a time for other scores. An undirected edge is added to the effect edges graph for
+    // each pair with a positive score difference.
+    private class EffectEdgeBatch {
+        private final int[] parents = new int[MAX_BATCH_SIZE];
+        private final int[] children = new int[MAX_BATCH_SIZE];
+        private int size = 0;
+
+        void add(int parent, int child) {
+            if (!(score instanceof BatchScore)) {
+                double bump = score.localScoreDiff(parent, child);
+
+                if (symmetricFirstStep) {
+                    double bump2 = score.localScoreDiff(child, parent);
+                    bump = max(bump, bump2);
+                }
+
+                addEffectEdge(parent, child, bump);
+                return;
+            }
+
+            parents[size] = parent;
+            children[size] = child;
+            size++;
+
+            if (size == MAX_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (size == 0) return;
+
+            // With a symmetric first step, the difference for child -> parent follows that for parent -> child.
+            int m = symmetricFirstStep ? 2 : 1;
+            int[] x = new int[m * size];
+            int[] y = new int[m * size];
+            int[][] z = new int[m * size][];
+
+            for (int k = 0; k < size; k++) {
+                x[m * k] = parents[k];
+                y[m * k] = children[k];
+                z[m * k] = new int[0];
+
+                if (symmetricFirstStep) {
+                    x[m * k + 1] = children[k];
+                    y[m * k + 1] = parents[k];
+                    z[m * k + 1] = new int[0];
+                }
+            }
+
+            double[] diffs = ((BatchScore) score).localScoreDiffs(x, y, z);
+
+            for (int k = 0; k < size; k++) {
+                double bump = symmetricFirstStep ? max(diffs[2 * k], diffs[2 * k + 1]) : diffs[k];
+                addEffectEdge(parents[k], children[k], bump);
+            }
+
+            size = 0;
+        }
+
+        private void addEffectEdge(int parent, int child, double bump) {
+            if (bump > 0) {
+                effectEdgesGraph.addEdge(Edges.undirectedEdge(indexedNodes[parent], indexedNodes[child]));
+            }
+        }
+    }
+
     private void initializeEffectEdges(final List<Node> nodes) {
         long start = System.currentTimeMillis();
         this.effectEdgesGraph = new EdgeListGraph(nodes);
@@ -592,17 +845,19 @@ public final class Fges implements GraphSearch, GraphScorer {
         }
     }
 
-    private void fes() {
+    // If resumed, the queue of arrows has been restored from a checkpoint.
+    private void fes(int phase, boolean resumed) {
         int maxDegree = this.maxDegree == -1 ? 1000 : this.maxDegree;
 
-        reevaluateForward(new HashSet<>(variables));
+        if (!resumed) {
+            reevaluateForward(new HashSet<>(variables));
+        }
 
         while (!sortedArrows.isEmpty()) {
-            Arrow arrow = sortedArrows.first();
-            sortedArrows.remove(arrow);
+            Arrow arrow = sortedArrows.poll();
 
-            Node x = arrow.getA();
-            Node y = arrow.getB();
+            Node x = indexedNodes[arrow.getA()];
+            Node y = indexedNodes[arrow.getB()];
 
             if (graph.isAdjacentTo(x, y)) {
                 continue;
@@ -616,28 +871,31 @@ public final class Fges implements GraphSearch, GraphScorer {
                 continue;
             }
 
-            if (!getNaYX(x, y).equals(arrow.getNaYX())) {
-                continue;
-            }
+            if (!arrow.isCurrent(versions)) {
+                if (!Arrays.equals(getNaYX(x, y), arrow.getNaYX())) {
+                    continue;
+                }
 
-            if (!new HashSet<>(getTNeighbors(x, y)).equals(arrow.getTNeighbors())) {
-                continue;
-            }
+                if (!Arrays.equals(getTNeighbors(x, y), arrow.getTNeighbors())) {
+                    continue;
+                }
 
-            if (!new HashSet<>(graph.getParents(y)).equals(new HashSet<>(arrow.getParents()))) {
-                continue;
+                if (!Arrays.equals(getParents(y), arrow.getParents())) {
+                    continue;
+                }
             }
 
-            if (!validInsert(x, y, arrow.getHOrT(), getNaYX(x, y))) {
+            if (!validInsert(x, y, asNodeSet(arrow.getHOrT()), asNodeSet(arrow.getNaYX()))) {
                 continue;
             }
 
 //            double _bump = insertEval(x, y, arrow.getHOrT(), arrow.naYX,
 //                    arrow.parents, hashIndices, true);
 
-            insert(x, y, arrow.getHOrT(), arrow.getBump());
+            Set<Node> T = asNodeSet(arrow.getHOrT());
+            insert(x, y, T, arrow.getBump());
 
-            Set<Node> process = revertToPattern();
+            Set<Node> process = revertToPattern(x, y, T);
 
 //            System.out.println("Graph after insert " + graph);
 
@@ -649,18 +907,24 @@ public final class Fges implements GraphSearch, GraphScorer {
 
 
             reevaluateForward(new HashSet<>(process));
+
+            numEdgesAdded++;
+            numChanges++;
+            checkpointIfDue(phase);
+            reportProgressIfDue();
         }
     }
 
-    private void bes() {
-        reevaluateBackward(new HashSet<>(variables));
+    private void bes(int phase, boolean resumed) {
+        if (!resumed) {
+            reevaluateBackward(new HashSet<>(variables));
+        }
 
         while (!sortedArrowsBack.isEmpty()) {
-            Arrow arrow = sortedArrowsBack.first();
-            sortedArrowsBack.remove(arrow);
+            Arrow arrow = sortedArrowsBack.poll();
 
-            Node x = arrow.getA();
-            Node y = arrow.getB();
+            Node x = indexedNodes[arrow.getA()];
+            Node y = indexedNodes[arrow.getB()];
 
             if (!graph.isAdjacentTo(x, y)) {
                 continue;
@@ -672,33 +936,57 @@ public final class Fges implements GraphSearch, GraphScorer {
                 continue;
             }
 
-            if (!getNaYX(x, y).equals(arrow.getNaYX())) {
-                continue;
-            }
+            if (!arrow.isCurrent(versions)) {
+                if (!Arrays.equals(getNaYX(x, y), arrow.getNaYX())) {
+                    continue;
+                }
 
-            if (!new HashSet<>(graph.getParents(y)).equals(new HashSet<>(arrow.getParents()))) {
-                continue;
+                if (!Arrays.equals(getParents(y), arrow.getParents())) {
+                    continue;
+                }
             }
 
-            if (!validDelete(x, y, arrow.getHOrT(), arrow.getNaYX())) {
+            Set<Node> H = asNodeSet(arrow.getHOrT());
+            Set<Node> naYX = asNodeSet(arrow.getNaYX());
+
+            if (!validDelete(x, y, H, naYX)) {
                 continue;
             }
 
-            Set<Node> complement = new HashSet<>(arrow.getNaYX());
-            complement.removeAll(arrow.getHOrT());
+            int[] complement = minus(arrow.getNaYX(), arrow.getHOrT());
 
-            double _bump = deleteEval(x, y, complement,
-                    arrow.parents, hashIndices, true);
+            double _bump = deleteEval(arrow.getA(), arrow.getB(), complement,
+                    arrow.getParents(), true);
 
-            delete(x, y, arrow.getHOrT(), _bump, arrow.getNaYX());
+            delete(x, y, H, _bump, naYX);
 
-            Set<Node> process = revertToPattern();
+            Set<Node> process = revertToPattern(x, y, H);
             process.add(x);
             process.add(y);
             process.addAll(graph.getAdjacentNodes(x));
             process.addAll(graph.getAdjacentNodes(y));
 
             reevaluateBackward(new HashSet<>(process));
+
+            numEdgesRemoved++;
+            numChanges++;
+            checkpointIfDue(phase);
+            reportProgressIfDue();
+        }
+    }
+
+    private void reportProgressIfDue() {
+        if (listeners.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+
+        if (now - lastProgress >= progressInterval) {
+            lastProgress = now;
+            FgesProgress progress = getProgress();
+
+            for (FgesListener listener : listeners) {
+                listener.progress(progress);
+            }
         }
     }
 
@@ -732,6 +1020,8 @@ public final class Fges implements GraphSearch, GraphScorer {
 
     // Calcuates new arrows based on changes in the graph for the forward search.
     private void reevaluateForward(final Set<Node> nodes) {
+        long start = System.nanoTime();
+
         class AdjTask implements Callable<Boolean> {
 
             private final List<Node> nodes;
@@ -746,6 +1036,9 @@ public final class Fges implements GraphSearch, GraphScorer {
 
             @Override
             public Boolean call() {
+                long start = System.nanoTime();
+                CandidateBatch batch = new CandidateBatch();
+
                 for (int _y = from; _y < to; _y++) {
                     Node y = nodes.get(_y);
 
@@ -782,10 +1075,12 @@ public final class Fges implements GraphSearch, GraphScorer {
                             continue;
                         }
 
-                        calculateArrowsForward(x, y);
+                        batch.add(candidatesForward(x, y));
                     }
                 }
 
+                batch.flush();
+                taskNanos.add(System.nanoTime() - start);
                 return true;
             }
         }
@@ -800,160 +1095,272 @@ public final class Fges implements GraphSearch, GraphScorer {
         }
 
         pool.invokeAll(tasks);
+        reevaluationNanos += System.nanoTime() - start;
     }
 
-    // Calculates the new arrows for an a->b edge.
-    private void calculateArrowsForward(Node a, Node b) {
+    // The subsets of T neighbors to be scored to calculate the arrow a->b, or null if the arrow need not be
+    // recalculated.
+    private Candidates candidatesForward(Node a, Node b) {
 //        if (mode == Mode.heuristicSpeedup && !effectEdgesGraph.isAdjacentTo(a, b)) {
 //            return;
 //        }
 
         if (adjacencies != null && !adjacencies.isAdjacentTo(a, b)) {
-            return;
+            return null;
         }
 
-        if (a == b) return;
+        if (a == b) return null;
 
-        if (graph.isAdjacentTo(a, b)) return;
+        if (graph.isAdjacentTo(a, b)) return null;
 
         if (existsKnowledge()) {
             if (getKnowledge().isForbidden(a.getName(), b.getName())) {
-                return;
+                return null;
             }
         }
 
-        Set<Node> naYX = getNaYX(a, b);
-        List<Node> TNeighbors = getTNeighbors(a, b);
-        Set<Node> parents = new HashSet<>(graph.getParents(b));
+        int _a = hashIndices.get(a);
+        int _b = hashIndices.get(b);
+        long key = pairKey(_a, _b);
 
-        HashSet<Node> TNeighborsSet = new HashSet<>(TNeighbors);
-        ArrowConfig config = new ArrowConfig(TNeighborsSet, naYX, parents);
-        ArrowConfig storedConfig = arrowsMap.get(directedEdge(a, b));
-        if (storedConfig != null && storedConfig.equals(config)) return;
-        arrowsMap.put(directedEdge(a, b), new ArrowConfig(TNeighborsSet, naYX, parents));
+        ArrowConfig storedConfig = arrowsMap.get(key);
+        if (storedConfig != null && storedConfig.isCurrent(versions, _a, _b)) return null;
 
-        int _depth = min(depth, TNeighbors.size());
+        int[] naYX = getNaYX(a, b);
+        int[] TNeighbors = getTNeighbors(a, b);
+        int[] parents = getParents(b);
 
-        final DepthChoiceGenerator gen = new DepthChoiceGenerator(TNeighbors.size(), _depth);// TNeighbors.size());
-        int[] choice;
+        ArrowConfig config = new ArrowConfig(TNeighbors, naYX, parents, versions[_a], versions[_b]);
+        arrowsMap.put(key, config);
+        if (storedConfig != null && storedConfig.hasSameSets(config)) return null;
+
+        int _depth = min(depth, TNeighbors.length);
 
-        Set<Node> maxT = null;
-        double maxBump = Double.NEGATIVE_INFINITY;
+        final DepthChoiceGenerator gen = new DepthChoiceGenerator(TNeighbors.length, _depth);// TNeighbors.size());
+        List<int[]> subsets = new ArrayList<>();
+        int[] choice;
 
         while ((choice = gen.next()) != null) {
-            Set<Node> _T = GraphUtils.asSet(choice, TNeighbors);
+            subsets.add(select(choice, TNeighbors));
+        }
 
-            double _bump = insertEval(a, b, _T, naYX, parents, hashIndices, false);
+        return new Candidates(_a, _b, config, null, naYX, parents, subsets);
+    }
 
-            if (_bump > maxBump) {
-                maxT = _T;
-                maxBump = _bump;
-            }
+    // The subsets to be scored to calculate an arrow a->b: subsets of T neighbors in the forward direction, and
+    // complements of H in the backward direction. The best subset becomes the arrow, if its bump is positive.
+    private static class Candidates {
+        private final int a;
+        private final int b;
+        private final ArrowConfig config;
+        private final ArrowConfigBackward configBackward;
+        private final int[] naYX;
+        private final int[] parents;
+        private final List<int[]> subsets;
+
+        Candidates(int a, int b, ArrowConfig config, ArrowConfigBackward configBackward, int[] naYX,
+                   int[] parents, List<int[]> subsets) {
+            this.a = a;
+            this.b = b;
+            this.config = config;
+            this.configBackward = configBackward;
+            this.naYX = naYX;
+            this.parents = parents;
+            this.subsets = subsets;
         }
 
-        if (maxBump > 0) {
-            addArrowForward(a, b, maxT, TNeighborsSet, naYX, parents, maxBump);
+        boolean isForward() {
+            return config != null;
         }
     }
 
-    private class ArrowConfig {
-        private Set<Node> T;
-        private Set<Node> nayx;
-        private Set<Node> parents;
+    // Scores the candidate subsets and adds the resulting arrows. A BatchScore is given all of the differences
+    // at once.
+    private void scoreCandidates(List<Candidates> batch) {
+        if (batch.isEmpty()) return;
 
-        public ArrowConfig(Set<Node> T, Set<Node> nayx, Set<Node> parents) {
-            this.setT(T);
-            this.setNayx(nayx);
-            this.setParents(parents);
-        }
+        double[][] bumps = new double[batch.size()][];
 
-        public Set<Node> getT() {
-            return T;
-        }
+        if (score instanceof BatchScore) {
+            int n = 0;
+
+            for (Candidates candidates : batch) {
+                n += candidates.subsets.size();
+            }
+
+            int[] x = new int[n];
+            int[] y = new int[n];
+            int[][] z = new int[n][];
+            int k = 0;
+
+            for (Candidates candidates : batch) {
+                for (int[] subset : candidates.subsets) {
+                    x[k] = candidates.a;
+                    y[k] = candidates.b;
+                    z[k] = candidates.isForward()
+                            ? insertSet(subset, candidates.naYX, candidates.parents)
+                            : deleteSet(candidates.a, subset, candidates.parents);
+                    k++;
+                }
+            }
+
+            double[] diffs = ((BatchScore) score).localScoreDiffs(x, y, z);
+            k = 0;
+
+            for (int c = 0; c < batch.size(); c++) {
+                Candidates candidates = batch.get(c);
+                bumps[c] = new double[candidates.subsets.size()];
 
-        public void setT(Set<Node> t) {
-            T = t;
+                for (int i = 0; i < bumps[c].length; i++) {
+                    bumps[c][i] = candidates.isForward() ? diffs[k++] : -diffs[k++];
+                }
+
+                if (candidates.isForward()) {
+                    numInsertEvals.add(bumps[c].length);
+                } else {
+                    numDeleteEvals.add(bumps[c].length);
+                }
+            }
+        } else {
+            for (int c = 0; c < batch.size(); c++) {
+                Candidates candidates = batch.get(c);
+                bumps[c] = new double[candidates.subsets.size()];
+
+                for (int i = 0; i < bumps[c].length; i++) {
+                    int[] subset = candidates.subsets.get(i);
+                    bumps[c][i] = candidates.isForward()
+                            ? insertEval(candidates.a, candidates.b, subset, candidates.naYX, candidates.parents, false)
+                            : deleteEval(candidates.a, candidates.b, subset, candidates.parents, false);
+                }
+            }
         }
 
-        public Set<Node> getNayx() {
-            return nayx;
+        for (int c = 0; c < batch.size(); c++) {
+            Candidates candidates = batch.get(c);
+            int[] max = null;
+            double maxBump = Double.NEGATIVE_INFINITY;
+
+            for (int i = 0; i < bumps[c].length; i++) {
+                if (bumps[c][i] > maxBump) {
+                    max = candidates.subsets.get(i);
+                    maxBump = bumps[c][i];
+                }
+            }
+
+            if (maxBump > 0) {
+                if (candidates.isForward()) {
+                    addArrowForward(candidates.config, candidates.a, candidates.b, max, maxBump);
+                } else {
+                    int[] _H = minus(candidates.naYX, max);
+                    addArrowBackward(candidates.configBackward, candidates.a, candidates.b, _H, maxBump);
+                }
+            }
         }
+    }
 
-        public void setNayx(Set<Node> nayx) {
-            this.nayx = nayx;
+    // Collects candidates to be scored together, for a BatchScore, scoring them once enough have been collected.
+    // For other scores candidates are scored as they come.
+    private class CandidateBatch {
+        private final List<Candidates> batch = new ArrayList<>();
+        private int size = 0;
+
+        void add(Candidates candidates) {
+            if (candidates == null) return;
+
+            batch.add(candidates);
+            size += candidates.subsets.size();
+
+            if (!(score instanceof BatchScore) || size >= MAX_BATCH_SIZE) {
+                flush();
+            }
         }
 
-        public Set<Node> getParents() {
-            return parents;
+        void flush() {
+            scoreCandidates(batch);
+            batch.clear();
+            size = 0;
         }
+    }
 
-        public void setParents(Set<Node> parents) {
+    // The sets, as sorted column indices, from which the arrow a->b was last calculated in the forward direction,
+    // with the versions of a and b at the time.
+    private static class ArrowConfig {
+        private final int[] T;
+        private final int[] nayx;
+        private final int[] parents;
+        private final int versionA;
+        private final int versionB;
+
+        public ArrowConfig(int[] T, int[] nayx, int[] parents, int versionA, int versionB) {
+            this.T = T;
+            this.nayx = nayx;
             this.parents = parents;
+            this.versionA = versionA;
+            this.versionB = versionB;
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            ArrowConfig that = (ArrowConfig) o;
-            return T.equals(that.T) && nayx.equals(that.nayx) && parents.equals(that.parents);
+        public int[] getT() {
+            return T;
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(T, nayx, parents);
+        public int[] getNayx() {
+            return nayx;
         }
-    }
 
-    private class ArrowConfigBackward {
-        private Set<Node> nayx;
-        private Set<Node> parents;
+        public int[] getParents() {
+            return parents;
+        }
 
-        public ArrowConfigBackward(Set<Node> nayx, Set<Node> parents) {
-            this.setNayx(nayx);
-            this.setParents(parents);
+        boolean isCurrent(int[] versions, int a, int b) {
+            return versions[a] == versionA && versions[b] == versionB;
         }
 
-        public Set<Node> getNayx() {
-            return nayx;
+        boolean hasSameSets(ArrowConfig that) {
+            return Arrays.equals(T, that.T) && Arrays.equals(nayx, that.nayx) && Arrays.equals(parents, that.parents);
         }
+    }
+
+    // The sets from which the arrow a->b was last calculated in the backward direction.
+    private static class ArrowConfigBackward {
+        private final int[] nayx;
+        private final int[] parents;
+        private final int versionA;
+        private final int versionB;
 
-        public void setNayx(Set<Node> nayx) {
+        public ArrowConfigBackward(int[] nayx, int[] parents, int versionA, int versionB) {
             this.nayx = nayx;
+            this.parents = parents;
+            this.versionA = versionA;
+            this.versionB = versionB;
         }
 
-        public Set<Node> getParents() {
-            return parents;
+        public int[] getNayx() {
+            return nayx;
         }
 
-        public void setParents(Set<Node> parents) {
-            this.parents = parents;
+        public int[] getParents() {
+            return parents;
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            ArrowConfigBackward that = (ArrowConfigBackward) o;
-            return nayx.equals(that.nayx) && parents.equals(that.parents);
+        boolean isCurrent(int[] versions, int a, int b) {
+            return versions[a] == versionA && versions[b] == versionB;
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(nayx, parents);
+        boolean hasSameSets(ArrowConfigBackward that) {
+            return Arrays.equals(nayx, that.nayx) && Arrays.equals(parents, that.parents);
         }
     }
 
-    private void addArrowForward(Node a, Node b, Set<Node> hOrT, Set<Node> TNeighbors, Set<Node> naYX,
-                                 Set<Node> parents, double bump) {
-        Arrow arrow = new Arrow(bump, a, b, hOrT, TNeighbors, naYX, parents, arrowIndex++);
+    private void addArrowForward(ArrowConfig config, int a, int b, int[] hOrT, double bump) {
+        Arrow arrow = new Arrow(bump, a, b, hOrT, config.getT(), config.getNayx(), config.getParents(),
+                config.versionA, config.versionB);
         sortedArrows.add(arrow);
 //        System.out.println(arrow);
     }
 
-    private void addArrowBackward(Node a, Node b, Set<Node> hOrT, Set<Node> naYX,
-                                  Set<Node> parents, double bump) {
-        Arrow arrow = new Arrow(bump, a, b, hOrT, null, naYX, parents, arrowIndex++);
+    private void addArrowBackward(ArrowConfigBackward config, int a, int b, int[] hOrT, double bump) {
+        Arrow arrow = new Arrow(bump, a, b, hOrT, null, config.getNayx(), config.getParents(),
+                config.versionA, config.versionB);
         sortedArrowsBack.add(arrow);
     }
 
@@ -980,22 +1387,27 @@ public final class Fges implements GraphSearch, GraphScorer {
             @Override
             protected Boolean compute() {
                 if (to - from <= chunk) {
+                    long start = System.nanoTime();
+                    CandidateBatch batch = new CandidateBatch();
+
                     for (int _w = from; _w < to; _w++) {
                         final Node w = adj.get(_w);
                         Edge e = graph.getEdge(w, r);
 
                         if (e != null) {
                             if (e.pointsTowards(r)) {
-                                calculateArrowsBackward(w, r);
+                                batch.add(candidatesBackward(w, r));
                             } else if (e.pointsTowards(w)) {
-                                calculateArrowsBackward(r, w);
+                                batch.add(candidatesBackward(r, w));
                             } else {
-                                calculateArrowsBackward(w, r);
-                                calculateArrowsBackward(r, w);
+                                batch.add(candidatesBackward(w, r));
+                                batch.add(candidatesBackward(r, w));
                             }
                         }
                     }
 
+                    batch.flush();
+                    taskNanos.add(System.nanoTime() - start);
                 } else {
                     int mid = (to - from) / 2;
 
@@ -1011,147 +1423,237 @@ public final class Fges implements GraphSearch, GraphScorer {
             }
         }
 
+        long start = System.nanoTime();
+
         for (Node r : toProcess) {
             List<Node> adjacentNodes = graph.getAdjacentNodes(r);
             adjacentNodes.retainAll(toProcess);
             pool.invoke(new BackwardTask(r, adjacentNodes, getChunkSize(adjacentNodes.size()), 0,
                     adjacentNodes.size(), hashIndices));
         }
+
+        reevaluationNanos += System.nanoTime() - start;
     }
 
     // Calculates the arrows for the removal in the backward direction.
     private void calculateArrowsBackward(Node a, Node b) {
+        Candidates candidates = candidatesBackward(a, b);
+
+        if (candidates != null) {
+            scoreCandidates(Collections.singletonList(candidates));
+        }
+    }
+
+    // The complements of H to be scored to calculate the arrow a->b in the backward direction, or null if the
+    // arrow need not be recalculated.
+    private Candidates candidatesBackward(Node a, Node b) {
         if (existsKnowledge()) {
             if (!getKnowledge().noEdgeRequired(a.getName(), b.getName())) {
-                return;
+                return null;
             }
         }
 
-        Set<Node> naYX = getNaYX(a, b);
-        Set<Node> parents = new HashSet<>(graph.getParents(b));
+        int _a = hashIndices.get(a);
+        int _b = hashIndices.get(b);
+        long key = pairKey(_a, _b);
+
+        ArrowConfigBackward storedConfig = arrowsMapBackward.get(key);
+        if (storedConfig != null && storedConfig.isCurrent(versions, _a, _b)) return null;
 
-        List<Node> _naYX = new ArrayList<>(naYX);
+        int[] naYX = getNaYX(a, b);
+        int[] parents = getParents(b);
 
-        ArrowConfigBackward config = new ArrowConfigBackward(naYX, parents);
-        ArrowConfigBackward storedConfig = arrowsMapBackward.get(directedEdge(a, b));
-        if (storedConfig != null && storedConfig.equals(config)) return;
-        arrowsMapBackward.put(directedEdge(a, b), new ArrowConfigBackward(naYX, parents));
+        ArrowConfigBackward config = new ArrowConfigBackward(naYX, parents, versions[_a], versions[_b]);
+        arrowsMapBackward.put(key, config);
+        if (storedConfig != null && storedConfig.hasSameSets(config)) return null;
 
-        int _depth = min(depth, _naYX.size());
+        int _depth = min(depth, naYX.length);
 
-        final DepthChoiceGenerator gen = new DepthChoiceGenerator(_naYX.size(), _depth);//_naYX.size());
+        final DepthChoiceGenerator gen = new DepthChoiceGenerator(naYX.length, _depth);//_naYX.size());
+        List<int[]> complements = new ArrayList<>();
         int[] choice;
-        Set<Node> maxComplement = null;
-        double maxBump = Double.NEGATIVE_INFINITY;
 
         while ((choice = gen.next()) != null) {
-            Set<Node> complement = GraphUtils.asSet(choice, _naYX);
-
-            Set<Node> h = new HashSet<>(naYX);
-            h.removeAll(complement);
-
-            double _bump = deleteEval(a, b, complement, parents, hashIndices, false);
-
-            if (_bump > maxBump) {
-                maxBump = _bump;
-                maxComplement = complement;
-            }
+            complements.add(select(choice, naYX));
         }
 
-        if (maxBump > 0) {
-            Set<Node> _H = new HashSet<>(naYX);
-            _H.removeAll(maxComplement);
-            addArrowBackward(a, b, _H, naYX, parents, maxBump);
-        }
+        return new Candidates(_a, _b, null, config, naYX, parents, complements);
     }
 
     // Basic data structure for an arrow a->b considered for addition or removal from the graph, together with
     // associated sets needed to make this determination. For both forward and backward direction, NaYX is needed.
     // For the forward direction, TNeighbors neighbors are needed; for the backward direction, H neighbors are needed.
     // See Chickering (2002). The totalScore difference resulting from added in the edge (hypothetically) is recorded
-    // as the "bump".
-    private static class Arrow implements Comparable<Arrow> {
+    // as the "bump". Variables are given by column index and sets as sorted arrays of column indices.
+    private static class Arrow {
 
         private final double bump;
-        private final Node a;
-        private final Node b;
-        private final Set<Node> hOrT;
-        private Set<Node> TNeighbors;
-        private final Set<Node> naYX;
-        private final Set<Node> parents;
-        private final int index;
-
-        Arrow(double bump, Node a, Node b, Set<Node> hOrT, Set<Node> capTorH, Set<Node> naYX,
-              Set<Node> parents, int index) {
+        private final int a;
+        private final int b;
+        private final int[] hOrT;
+        private final int[] TNeighbors;
+        private final int[] naYX;
+        private final int[] parents;
+        private final int versionA;
+        private final int versionB;
+
+        Arrow(double bump, int a, int b, int[] hOrT, int[] capTorH, int[] naYX,
+              int[] parents, int versionA, int versionB) {
             this.bump = bump;
             this.a = a;
             this.b = b;
-            this.setTNeighbors(capTorH);
+            this.TNeighbors = capTorH;
             this.hOrT = hOrT;
             this.naYX = naYX;
-            this.index = index;
             this.parents = parents;
+            this.versionA = versionA;
+            this.versionB = versionB;
         }
 
         public double getBump() {
             return bump;
         }
 
-        public Node getA() {
+        public int getA() {
             return a;
         }
 
-        public Node getB() {
+        public int getB() {
             return b;
         }
 
-        Set<Node> getHOrT() {
+        int[] getHOrT() {
             return hOrT;
         }
 
-        Set<Node> getNaYX() {
+        int[] getNaYX() {
             return naYX;
         }
 
-        // Sorting by bump, high to low. The problem is the SortedSet contains won't add a new element if it compares
-        // to zero with an existing element, so for the cases where the comparison is to zero (i.e. have the same
-        // bump, we need to determine as quickly as possible a determinate ordering (fixed) ordering for two variables.
-        // The fastest way to do this is using a hash code, though it's still possible for two Arrows to have the
-        // same hash code but not be equal. If we're paranoid, in this case we calculate a determinate comparison
-        // not equal to zero by keeping a list. This last part is commened out by default.
-        public int compareTo(@NotNull Arrow arrow) {
-
-            final int compare = Double.compare(arrow.getBump(), getBump());
+        public int[] getTNeighbors() {
+            return TNeighbors;
+        }
 
-            if (compare == 0) {
-                return Integer.compare(getIndex(), arrow.getIndex());
-            }
+        public int[] getParents() {
+            return parents;
+        }
 
-            return compare;
+        // True if no edge into or out of a or b has changed since the arrow was calculated, in which case
+        // its sets are still those of the graph.
+        boolean isCurrent(int[] versions) {
+            return versions[a] == versionA && versions[b] == versionB;
         }
 
         public String toString() {
             return "Arrow<" + a + "->" + b + " bump = " + bump
-                    + " t/h = " + hOrT
-                    + " TNeighbors = " + getTNeighbors()
-                    + " parents = " + parents
-                    + " naYX = " + naYX + ">";
+                    + " t/h = " + Arrays.toString(hOrT)
+                    + " TNeighbors = " + Arrays.toString(TNeighbors)
+                    + " parents = " + Arrays.toString(parents)
+                    + " naYX = " + Arrays.toString(naYX) + ">";
+        }
+    }
+
+    // A binary heap of arrows by bump, high to low, arrows with the same bump being taken in the order they were
+    // added. Bumps and insertion counts are kept in primitive arrays alongside the arrows. Arrows that have become
+    // stale are not removed when the graph changes but are checked against the graph when they are polled.
+    // Arrows may be added by several threads at once.
+    private static class ArrowQueue {
+        private Arrow[] arrows = new Arrow[64];
+        private double[] bumps = new double[64];
+        private long[] order = new long[64];
+        private int size = 0;
+        private long count = 0;
+
+        synchronized void add(Arrow arrow) {
+            if (size == arrows.length) {
+                int capacity = 2 * size;
+                arrows = Arrays.copyOf(arrows, capacity);
+                bumps = Arrays.copyOf(bumps, capacity);
+                order = Arrays.copyOf(order, capacity);
+            }
+
+            int i = size++;
+            set(i, arrow, arrow.getBump(), count++);
+
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(i, parent)) break;
+                swap(i, parent);
+                i = parent;
+            }
         }
 
-        public int getIndex() {
-            return index;
+        // Removes and returns the arrow with the highest bump, or null if there is none.
+        synchronized Arrow poll() {
+            if (size == 0) return null;
+
+            Arrow first = arrows[0];
+            size--;
+            set(0, arrows[size], bumps[size], order[size]);
+            arrows[size] = null;
+
+            int i = 0;
+
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) break;
+                int child = left + 1 < size && before(left + 1, left) ? left + 1 : left;
+                if (!before(child, i)) break;
+                swap(i, child);
+                i = child;
+            }
+
+            return first;
         }
 
-        public Set<Node> getTNeighbors() {
-            return TNeighbors;
+        synchronized boolean isEmpty() {
+            return size == 0;
         }
 
-        public void setTNeighbors(Set<Node> TNeighbors) {
-            this.TNeighbors = TNeighbors;
+        synchronized int size() {
+            return size;
         }
 
-        public Set<Node> getParents() {
-            return parents;
+        // The arrows in the order in which they would be polled.
+        synchronized List<Arrow> toSortedList() {
+            Integer[] positions = new Integer[size];
+
+            for (int i = 0; i < size; i++) {
+                positions[i] = i;
+            }
+
+            Arrays.sort(positions, (i, j) -> before(i, j) ? -1 : before(j, i) ? 1 : 0);
+
+            List<Arrow> sorted = new ArrayList<>(size);
+
+            for (int i : positions) {
+                sorted.add(arrows[i]);
+            }
+
+            return sorted;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(arrows, 0, size, null);
+            size = 0;
+        }
+
+        private boolean before(int i, int j) {
+            return bumps[i] > bumps[j] || (bumps[i] == bumps[j] && order[i] < order[j]);
+        }
+
+        private void set(int i, Arrow arrow, double bump, long n) {
+            arrows[i] = arrow;
+            bumps[i] = bump;
+            order[i] = n;
+        }
+
+        private void swap(int i, int j) {
+            Arrow arrow = arrows[i];
+            double bump = bumps[i];
+            long n = order[i];
+            set(i, arrows[j], bumps[j], order[j]);
+            set(j, arrow, bump, n);
         }
     }
 
@@ -1162,10 +1664,12 @@ public final class Fges implements GraphSearch, GraphScorer {
     }
 
 
-    // Get all adj that are connected to Y by an undirected edge and not adjacent to X.
-    private List<Node> getTNeighbors(Node x, Node y) {
+    // Get all adj that are connected to Y by an undirected edge and not adjacent to X. Returned as sorted column
+    // indices.
+    private int[] getTNeighbors(Node x, Node y) {
         List<Edge> yEdges = graph.getEdges(y);
-        List<Node> tNeighbors = new ArrayList<>();
+        int[] tNeighbors = new int[yEdges.size()];
+        int count = 0;
 
         for (Edge edge : yEdges) {
             if (!Edges.isUndirectedEdge(edge)) {
@@ -1178,35 +1682,39 @@ public final class Fges implements GraphSearch, GraphScorer {
                 continue;
             }
 
-            tNeighbors.add(z);
+            tNeighbors[count++] = hashIndices.get(z);
         }
 
-        return tNeighbors;
+        return sorted(tNeighbors, count);
     }
 
     // Evaluate the Insert(X, Y, TNeighbors) operator (Definition 12 from Chickering, 2002).
-    private double insertEval(Node x, Node y, Set<Node> T, Set<Node> naYX, Set<Node> parents,
-                              Map<Node, Integer> hashIndices, boolean blathering) {
-        Set<Node> set = new HashSet<>(naYX);
-        set.addAll(T);
-        set.addAll(parents);
+    private double insertEval(int x, int y, int[] T, int[] naYX, int[] parents, boolean blathering) {
+        numInsertEvals.increment();
+        return scoreGraphChange(x, y, insertSet(T, naYX, parents), blathering);
+    }
 
-        return scoreGraphChange(x, y, set, hashIndices, blathering);
+    // The parents of Y scored against for Insert(X, Y, T).
+    private static int[] insertSet(int[] T, int[] naYX, int[] parents) {
+        return union(naYX, T, parents);
     }
 
     // Evaluate the Delete(X, Y, TNeighbors) operator (Definition 12 from Chickering, 2002).
-    private double deleteEval(Node x, Node y, Set<Node> complement, Set<Node> parents,
-                              Map<Node, Integer> hashIndices, boolean blathering) {
-        Set<Node> set = new HashSet<>(complement);
-        set.addAll(parents);
-        set.remove(x);
+    private double deleteEval(int x, int y, int[] complement, int[] parents, boolean blathering) {
+        numDeleteEvals.increment();
+        return -scoreGraphChange(x, y, deleteSet(x, complement, parents), blathering);
+    }
 
-        return -scoreGraphChange(x, y, set, hashIndices, blathering);
+    // The parents of Y scored against for Delete(X, Y, H), given the complement of H in naYX.
+    private static int[] deleteSet(int x, int[] complement, int[] parents) {
+        return minus(union(complement, parents), new int[]{x});
     }
 
     // Do an actual insertion. (Definition 12 from Chickering, 2002).
     private void insert(Node x, Node y, Set<Node> T, double bump) {
         graph.addDirectedEdge(x, y);
+        touch(x);
+        touch(y);
 
         int numEdges = graph.getNumEdges();
 
@@ -1215,7 +1723,7 @@ public final class Fges implements GraphSearch, GraphScorer {
         }
 
         if (verbose) {
-            int cond = T.size() + getNaYX(x, y).size() + graph.getParents(y).size();
+            int cond = T.size() + getNaYX(x, y).length + graph.getParents(y).size();
 
             final String message = graph.getNumEdges() + ". INSERT " + graph.getEdge(x, y)
                     + " " + T + " " + bump
@@ -1227,6 +1735,7 @@ public final class Fges implements GraphSearch, GraphScorer {
         for (Node _t : T) {
             graph.removeEdge(_t, y);
             graph.addDirectedEdge(_t, y);
+            touch(_t);
 
             if (verbose) {
                 String message = "--- Directing " + graph.getEdge(_t, y);
@@ -1243,6 +1752,8 @@ public final class Fges implements GraphSearch, GraphScorer {
         diff.removeAll(H);
 
         graph.removeEdge(oldxy);
+        touch(x);
+        touch(y);
 
         int numEdges = graph.getNumEdges();
         if (numEdges % 1000 == 0) {
@@ -1269,6 +1780,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             Edge oldyh = graph.getEdge(y, h);
 
             graph.removeEdge(oldyh);
+            touch(h);
 
             graph.addEdge(directedEdge(y, h));
 
@@ -1432,10 +1944,11 @@ public final class Fges implements GraphSearch, GraphScorer {
     }
 
     // Find all adj that are connected to Y by an undirected edge that are adjacent to X (that is, by undirected or
-    // directed edge).
-    private Set<Node> getNaYX(Node x, Node y) {
+    // directed edge). Returned as sorted column indices.
+    private int[] getNaYX(Node x, Node y) {
         List<Node> adj = graph.getAdjacentNodes(y);
-        Set<Node> nayx = new HashSet<>();
+        int[] nayx = new int[adj.size()];
+        int count = 0;
 
         for (Node z : adj) {
             if (z == x) {
@@ -1448,10 +1961,10 @@ public final class Fges implements GraphSearch, GraphScorer {
             if (!graph.isAdjacentTo(z, x)) {
                 continue;
             }
-            nayx.add(z);
+            nayx[count++] = hashIndices.get(z);
         }
 
-        return nayx;
+        return sorted(nayx, count);
     }
 
     // Returns true iif the given set forms a clique in the given graph.
@@ -1522,25 +2035,349 @@ public final class Fges implements GraphSearch, GraphScorer {
         return null;
     }
 
-    // Runs Meek rules on just the changed adj.
-    private Set<Node> revertToPattern() {
-        MeekRules rules = new MeekRules();
+    // Runs Meek rules on just the components of the changed nodes x, y and those in other. The nodes returned are the
+    // endpoints of every edge reoriented.
+    private Set<Node> revertToPattern(Node x, Node y, Set<Node> other) {
+        MeekRulesConcurrent rules = new MeekRulesConcurrent();
         rules.setKnowledge(getKnowledge());
         rules.setVerbose(meekVerbose);
-        return rules.orientImplied(graph);
+
+        Set<Node> visited;
+
+        if (patternOriented) {
+            List<Node> changed = new ArrayList<>(other);
+            changed.add(x);
+            changed.add(y);
+            visited = rules.orientImplied(graph, changed);
+        } else {
+            visited = rules.orientImplied(graph);
+            patternOriented = true;
+        }
+
+        for (Node node : visited) {
+            touch(node);
+        }
+
+        return visited;
+    }
+
+    // Records a change to the edges into or out of the given node.
+    private void touch(Node node) {
+        versions[hashIndices.get(node)]++;
     }
 
     // Maps adj to their indices for quick lookup.
     private void buildIndexing(List<Node> nodes) {
         this.hashIndices = new ConcurrentHashMap<>();
+        this.indexedNodes = new Node[nodes.size()];
 
         int i = -1;
 
         for (Node n : nodes) {
             this.hashIndices.put(n, ++i);
+            this.indexedNodes[i] = n;
         }
     }
 
+    // Key for the arrow a->b in arrowsMap and arrowsMapBackward.
+    private static long pairKey(int a, int b) {
+        return ((long) a << 32) | b;
+    }
+
+    private int[] getParents(Node y) {
+        return asIndices(graph.getParents(y));
+    }
+
+    private int[] asIndices(Collection<Node> nodes) {
+        int[] indices = new int[nodes.size()];
+        int count = 0;
+
+        for (Node node : nodes) {
+            indices[count++] = hashIndices.get(node);
+        }
+
+        return sorted(indices, count);
+    }
+
+    private Set<Node> asNodeSet(int[] indices) {
+        Set<Node> nodes = new HashSet<>();
+
+        for (int i : indices) {
+            nodes.add(indexedNodes[i]);
+        }
+
+        return nodes;
+    }
+
+    // The first count elements of the array, sorted.
+    private static int[] sorted(int[] indices, int count) {
+        int[] _indices = count == indices.length ? indices : Arrays.copyOf(indices, count);
+        Arrays.sort(_indices);
+        return _indices;
+    }
+
+    // The elements of the given sorted array picked out by the given (increasing) choice, which are again sorted.
+    private static int[] select(int[] choice, int[] indices) {
+        int[] selected = new int[choice.length];
+
+        for (int i = 0; i < choice.length; i++) {
+            selected[i] = indices[choice[i]];
+        }
+
+        return selected;
+    }
+
+    // The union of sorted arrays, sorted.
+    private static int[] union(int[]... sets) {
+        int length = 0;
+
+        for (int[] set : sets) {
+            length += set.length;
+        }
+
+        int[] union = new int[length];
+        int count = 0;
+
+        for (int[] set : sets) {
+            System.arraycopy(set, 0, union, count, set.length);
+            count += set.length;
+        }
+
+        Arrays.sort(union);
+
+        int distinct = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (i == 0 || union[i] != union[i - 1]) {
+                union[distinct++] = union[i];
+            }
+        }
+
+        return distinct == length ? union : Arrays.copyOf(union, distinct);
+    }
+
+    // The elements of sorted array a not in sorted array b.
+    private static int[] minus(int[] a, int[] b) {
+        int[] diff = new int[a.length];
+        int count = 0;
+
+        for (int i : a) {
+            if (Arrays.binarySearch(b, i) < 0) {
+                diff[count++] = i;
+            }
+        }
+
+        return count == a.length ? diff : Arrays.copyOf(diff, count);
+    }
+
+    //===========================CHECKPOINTING==========================//
+
+    // Identifies a checkpoint file, and the version of its format.
+    private static final long CHECKPOINT_MAGIC = 0x4647455343484B50L;
+    private static final int CHECKPOINT_VERSION = 1;
+
+    // Writes the state of the search to the checkpoint file. The file is written under a temporary name and
+    // then moved into place, so a crash while writing leaves the previous checkpoint intact.
+    private void writeCheckpoint(int phase, boolean phaseStarted) {
+        File temp = new File(checkpointFile.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeLong(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+
+            out.writeInt(indexedNodes.length);
+
+            for (Node node : indexedNodes) {
+                out.writeUTF(node.getName());
+            }
+
+            out.writeInt(phase);
+            out.writeBoolean(phaseStarted);
+            out.writeLong(numChanges);
+
+            writeEdges(out, graph);
+            writeEdges(out, effectEdgesGraph);
+            writeArrows(out, sortedArrows);
+            writeArrows(out, sortedArrowsBack);
+
+            boolean cached = score instanceof CachingScore;
+            out.writeBoolean(cached);
+
+            if (cached) {
+                ((CachingScore) score).getCache().writeEntries(out);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write checkpoint " + temp, e);
+        }
+
+        try {
+            try {
+                Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write checkpoint " + checkpointFile, e);
+        }
+
+        numChangesAtCheckpoint = numChanges;
+
+        if (verbose) {
+            out.println("Wrote checkpoint after " + numChanges + " changes to " + checkpointFile);
+        }
+    }
+
+    // Writes a checkpoint if one is due.
+    private void checkpointIfDue(int phase) {
+        if (checkpointFile != null && numChanges - numChangesAtCheckpoint >= checkpointInterval) {
+            writeCheckpoint(phase, true);
+        }
+    }
+
+    // Restores the state of the search from the resume file, returning {phase, 1 if the phase had started}.
+    private int[] readCheckpoint() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(resumeFile))))) {
+            if (in.readLong() != CHECKPOINT_MAGIC) {
+                throw new IllegalArgumentException("Not an Fges checkpoint: " + resumeFile);
+            }
+
+            int version = in.readInt();
+
+            if (version != CHECKPOINT_VERSION) {
+                throw new IllegalArgumentException("Unsupported checkpoint version " + version + ": " + resumeFile);
+            }
+
+            int numNodes = in.readInt();
+
+            if (numNodes != indexedNodes.length) {
+                throw new IllegalArgumentException("Checkpoint has " + numNodes + " variables; the score has "
+                        + indexedNodes.length + ".");
+            }
+
+            for (Node node : indexedNodes) {
+                String name = in.readUTF();
+
+                if (!name.equals(node.getName())) {
+                    throw new IllegalArgumentException("Checkpoint variable " + name + " does not match score "
+                            + "variable " + node.getName() + ".");
+                }
+            }
+
+            int phase = in.readInt();
+            boolean phaseStarted = in.readBoolean();
+            numChanges = in.readLong();
+            numChangesAtCheckpoint = numChanges;
+
+            graph = new EdgeListGraph(getVariables());
+            readEdges(in, graph);
+
+            effectEdgesGraph = new EdgeListGraph(getVariables());
+            readEdges(in, effectEdgesGraph);
+
+            readArrows(in, sortedArrows);
+            readArrows(in, sortedArrowsBack);
+
+            if (in.readBoolean() && score instanceof CachingScore) {
+                ((CachingScore) score).getCache().readEntries(in);
+            }
+
+            if (verbose) {
+                out.println("Resuming from checkpoint after " + numChanges + " changes: " + resumeFile);
+            }
+
+            return new int[]{phase, phaseStarted ? 1 : 0};
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read checkpoint " + resumeFile, e);
+        }
+    }
+
+    private void writeEdges(DataOutput out, Graph graph) throws IOException {
+        Set<Edge> edges = graph.getEdges();
+        out.writeInt(edges.size());
+
+        for (Edge edge : edges) {
+            out.writeInt(hashIndices.get(edge.getNode1()));
+            out.writeInt(hashIndices.get(edge.getNode2()));
+            out.writeByte(endpointCode(edge.getEndpoint1()));
+            out.writeByte(endpointCode(edge.getEndpoint2()));
+        }
+    }
+
+    private void readEdges(DataInput in, Graph graph) throws IOException {
+        int numEdges = in.readInt();
+
+        for (int i = 0; i < numEdges; i++) {
+            Node node1 = indexedNodes[in.readInt()];
+            Node node2 = indexedNodes[in.readInt()];
+            Endpoint endpoint1 = Endpoint.TYPES[in.readByte()];
+            Endpoint endpoint2 = Endpoint.TYPES[in.readByte()];
+            graph.addEdge(new Edge(node1, node2, endpoint1, endpoint2));
+        }
+    }
+
+    private static int endpointCode(Endpoint endpoint) {
+        for (int i = 0; i < Endpoint.TYPES.length; i++) {
+            if (Endpoint.TYPES[i] == endpoint) return i;
+        }
+
+        throw new IllegalArgumentException("Unrecognized endpoint: " + endpoint);
+    }
+
+    // Arrows are written in the order they would be polled.
+    private static void writeArrows(DataOutput out, ArrowQueue queue) throws IOException {
+        List<Arrow> arrows = queue.toSortedList();
+        out.writeInt(arrows.size());
+
+        for (Arrow arrow : arrows) {
+            out.writeDouble(arrow.getBump());
+            out.writeInt(arrow.getA());
+            out.writeInt(arrow.getB());
+            writeIndices(out, arrow.getHOrT());
+            out.writeBoolean(arrow.getTNeighbors() != null);
+            if (arrow.getTNeighbors() != null) writeIndices(out, arrow.getTNeighbors());
+            writeIndices(out, arrow.getNaYX());
+            writeIndices(out, arrow.getParents());
+        }
+    }
+
+    // Restored arrows are given version -1 so that they are checked against the graph when polled.
+    private static void readArrows(DataInput in, ArrowQueue queue) throws IOException {
+        queue.clear();
+        int numArrows = in.readInt();
+
+        for (int i = 0; i < numArrows; i++) {
+            double bump = in.readDouble();
+            int a = in.readInt();
+            int b = in.readInt();
+            int[] hOrT = readIndices(in);
+            int[] TNeighbors = in.readBoolean() ? readIndices(in) : null;
+            int[] naYX = readIndices(in);
+            int[] parents = readIndices(in);
+            queue.add(new Arrow(bump, a, b, hOrT, TNeighbors, naYX, parents, -1, -1));
+        }
+    }
+
+    private static void writeIndices(DataOutput out, int[] indices) throws IOException {
+        out.writeInt(indices.length);
+
+        for (int i : indices) {
+            out.writeInt(i);
+        }
+    }
+
+    private static int[] readIndices(DataInput in) throws IOException {
+        int[] indices = new int[in.readInt()];
+
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = in.readInt();
+        }
+
+        return indices;
+    }
+
     //===========================SCORING METHODS===================//
 
     private double scoreDag(Graph dag, boolean recordScores) {
@@ -1582,24 +2419,15 @@ public final class Fges implements GraphSearch, GraphScorer {
         return _score;
     }
 
-    private double scoreGraphChange(Node x, Node y, Set<Node> parents,
-                                    Map<Node, Integer> hashIndices, boolean blathering) {
-        int xIndex = hashIndices.get(x);
-        int yIndex = hashIndices.get(y);
-
-        if (x == y) {
+    private double scoreGraphChange(int xIndex, int yIndex, int[] parentIndices, boolean blathering) {
+        if (xIndex == yIndex) {
             throw new IllegalArgumentException();
         }
 
-        if (parents.contains(y)) {
-            throw new IllegalArgumentException();
-        }
-
-        int[] parentIndices = new int[parents.size()];
-
-        int count = 0;
-        for (Node parent : parents) {
-            parentIndices[count++] = hashIndices.get(parent);
+        for (int parent : parentIndices) {
+            if (parent == yIndex) {
+                throw new IllegalArgumentException();
+            }
         }
 
         double v = score.localScoreDiff(xIndex, yIndex, parentIndices);
@@ -1608,6 +2436,9 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         if (blathering && graphScore != null) {
             double _v = graphScore.localScoreDiff(xIndex, yIndex, parentIndices);
+            Node x = indexedNodes[xIndex];
+            Node y = indexedNodes[yIndex];
+            Set<Node> parents = asNodeSet(parentIndices);
 
             if (v > 0 && _v < 0) {
                 System.out.println("Type I: Falsely judged dependent " + x + " ~_||_ " + y + " | " + parents + " v = " + v);
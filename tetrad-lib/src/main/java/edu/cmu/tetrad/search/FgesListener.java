@@ -0,0 +1,47 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+/**
+ * Receives progress reports from a running Fges search. The methods are called on the thread running the
+ * search, so they should return quickly; a listener that needs to do more should hand the report off.
+ *
+ * @author agent
+ * @see Fges#addListener(FgesListener)
+ */
+public interface FgesListener {
+
+    /**
+     * Called when a forward or backward phase of the search begins.
+     */
+    void phaseStarted(FgesProgress progress);
+
+    /**
+     * Called during a phase, after an edge has been added or removed, at most once per progress interval.
+     */
+    void progress(FgesProgress progress);
+
+    /**
+     * Called when a forward or backward phase of the search ends.
+     */
+    void phaseFinished(FgesProgress progress);
+}
@@ -0,0 +1,228 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import org.json.JSONObject;
+
+/**
+ * A snapshot of the progress of an Fges search. Counts are for the search as a whole (counting from the
+ * checkpoint a search was resumed from, where there is one) unless they are said to be for the phase.
+ * <p>
+ * The search runs in phases: FES (adding edges) then BES (removing edges), first with the heuristic speedup,
+ * then covering noncolliders and, if faithfulness is not assumed, allowing unfaithfulness.
+ *
+ * @author agent
+ * @see FgesListener
+ */
+public final class FgesProgress {
+    private final int phase;
+    private final int numPhases;
+    private final String mode;
+    private final long elapsedMillis;
+    private final long phaseElapsedMillis;
+    private final long numInsertEvals;
+    private final long numDeleteEvals;
+    private final long numEdgesAdded;
+    private final long numEdgesRemoved;
+    private final long numPhaseChanges;
+    private final int forwardQueueSize;
+    private final int backwardQueueSize;
+    private final double cacheHitRate;
+    private final double poolUtilization;
+    private final int poolParallelism;
+    private final int poolActiveThreads;
+
+    FgesProgress(int phase, int numPhases, String mode, long elapsedMillis, long phaseElapsedMillis,
+                 long numInsertEvals, long numDeleteEvals, long numEdgesAdded, long numEdgesRemoved,
+                 long numPhaseChanges, int forwardQueueSize, int backwardQueueSize, double cacheHitRate,
+                 double poolUtilization, int poolParallelism, int poolActiveThreads) {
+        this.phase = phase;
+        this.numPhases = numPhases;
+        this.mode = mode;
+        this.elapsedMillis = elapsedMillis;
+        this.phaseElapsedMillis = phaseElapsedMillis;
+        this.numInsertEvals = numInsertEvals;
+        this.numDeleteEvals = numDeleteEvals;
+        this.numEdgesAdded = numEdgesAdded;
+        this.numEdgesRemoved = numEdgesRemoved;
+        this.numPhaseChanges = numPhaseChanges;
+        this.forwardQueueSize = forwardQueueSize;
+        this.backwardQueueSize = backwardQueueSize;
+        this.cacheHitRate = cacheHitRate;
+        this.poolUtilization = poolUtilization;
+        this.poolParallelism = poolParallelism;
+        this.poolActiveThreads = poolActiveThreads;
+    }
+
+    /**
+     * @return the index of the current phase, from 0; even phases are FES and odd phases BES.
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return the number of phases the search will run, 4 if faithfulness is assumed, otherwise 6.
+     */
+    public int getNumPhases() {
+        return numPhases;
+    }
+
+    public boolean isForward() {
+        return phase % 2 == 0;
+    }
+
+    /**
+     * @return the mode of the current phase: heuristicSpeedup, coverNoncolliders or allowUnfaithfulness.
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the time since the search started.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the time since the current phase started.
+     */
+    public long getPhaseElapsedMillis() {
+        return phaseElapsedMillis;
+    }
+
+    /**
+     * @return the number of times an Insert operator has been scored.
+     */
+    public long getNumInsertEvals() {
+        return numInsertEvals;
+    }
+
+    /**
+     * @return the number of times a Delete operator has been scored.
+     */
+    public long getNumDeleteEvals() {
+        return numDeleteEvals;
+    }
+
+    public long getNumEdgesAdded() {
+        return numEdgesAdded;
+    }
+
+    public long getNumEdgesRemoved() {
+        return numEdgesRemoved;
+    }
+
+    /**
+     * @return the number of edges added or removed in the current phase.
+     */
+    public long getNumPhaseChanges() {
+        return numPhaseChanges;
+    }
+
+    /**
+     * @return the number of edges added or removed per second in the current phase.
+     */
+    public double getChangesPerSecond() {
+        return phaseElapsedMillis == 0 ? 0 : 1000.0 * numPhaseChanges / phaseElapsedMillis;
+    }
+
+    /**
+     * @return the number of candidate insertions waiting to be tried. Some will turn out to be stale.
+     */
+    public int getForwardQueueSize() {
+        return forwardQueueSize;
+    }
+
+    /**
+     * @return the number of candidate deletions waiting to be tried. Some will turn out to be stale.
+     */
+    public int getBackwardQueueSize() {
+        return backwardQueueSize;
+    }
+
+    /**
+     * @return the fraction of local scores answered from the cache, or NaN if the score is not a CachingScore
+     * or no scores have been looked up.
+     */
+    public double getCacheHitRate() {
+        return cacheHitRate;
+    }
+
+    /**
+     * @return the fraction of the pool's thread time spent scoring while arrows were being reevaluated in
+     * parallel, or NaN if there has been no reevaluation.
+     */
+    public double getPoolUtilization() {
+        return poolUtilization;
+    }
+
+    public int getPoolParallelism() {
+        return poolParallelism;
+    }
+
+    /**
+     * @return the number of pool threads running tasks when the snapshot was taken.
+     */
+    public int getPoolActiveThreads() {
+        return poolActiveThreads;
+    }
+
+    /**
+     * @return the snapshot as a JSON object. Values that are not defined (NaN) are given as null.
+     */
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("phase", phase);
+        json.put("numPhases", numPhases);
+        json.put("direction", isForward() ? "forward" : "backward");
+        json.put("mode", mode);
+        json.put("elapsedMillis", elapsedMillis);
+        json.put("phaseElapsedMillis", phaseElapsedMillis);
+        json.put("numInsertEvals", numInsertEvals);
+        json.put("numDeleteEvals", numDeleteEvals);
+        json.put("numEdgesAdded", numEdgesAdded);
+        json.put("numEdgesRemoved", numEdgesRemoved);
+        json.put("numPhaseChanges", numPhaseChanges);
+        json.put("changesPerSecond", getChangesPerSecond());
+        json.put("forwardQueueSize", forwardQueueSize);
+        json.put("backwardQueueSize", backwardQueueSize);
+        json.put("cacheHitRate", defined(cacheHitRate));
+        json.put("poolUtilization", defined(poolUtilization));
+        json.put("poolParallelism", poolParallelism);
+        json.put("poolActiveThreads", poolActiveThreads);
+        return json;
+    }
+
+    public String toString() {
+        return "Phase " + (phase + 1) + " of " + numPhases + " (" + (isForward() ? "FES" : "BES") + ", " + mode
+                + "): elapsed = " + elapsedMillis + " ms, added = " + numEdgesAdded + ", removed = "
+                + numEdgesRemoved + ", insert evals = " + numInsertEvals + ", delete evals = " + numDeleteEvals
+                + ", queue = " + (isForward() ? forwardQueueSize : backwardQueueSize);
+    }
+
+    private static Object defined(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? JSONObject.NULL : value;
+    }
+}
@@ -0,0 +1,67 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import org.json.JSONObject;
+
+import java.io.PrintStream;
+
+/**
+ * An FgesListener that prints each progress report as a line of JSON, with an "event" field of
+ * "phaseStarted", "progress" or "phaseFinished", for consumption by monitoring tools.
+ *
+ * @author agent
+ */
+public class FgesProgressWriter implements FgesListener {
+
+    private final PrintStream out;
+
+    public FgesProgressWriter(PrintStream out) {
+        if (out == null) {
+            throw new NullPointerException("Output stream must not be null.");
+        }
+
+        this.out = out;
+    }
+
+    @Override
+    public void phaseStarted(FgesProgress progress) {
+        write("phaseStarted", progress);
+    }
+
+    @Override
+    public void progress(FgesProgress progress) {
+        write("progress", progress);
+    }
+
+    @Override
+    public void phaseFinished(FgesProgress progress) {
+        write("phaseFinished", progress);
+    }
+
+    private void write(String event, FgesProgress progress) {
+        JSONObject json = progress.toJson();
+        json.put("event", event);
+        out.println(json.toString());
+        out.flush();
+    }
+}
@@ -23,6 +23,7 @@ package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.DSeparationOracle;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.IndependenceFact;
 import edu.cmu.tetrad.graph.Node;
@@ -44,6 +45,11 @@ public class IndTestDSep implements IndependenceTest {
      */
     private Graph graph;
 
+    /**
+     * Answers the d-separation questions for a copy of the graph taken when the graph is given.
+     */
+    private volatile DSeparationOracle oracle;
+
     /**
      * The list of observed variables (i.e. variables for observed nodes).
      */
@@ -59,6 +65,8 @@ public class IndTestDSep implements IndependenceTest {
 
     /**
      * Constructs a new independence test that returns d-separation facts for the given graph as independence results.
+     * The facts are those of the graph as it is now; later changes to it are not seen unless it is passed again to
+     * setGraph().
      */
     public IndTestDSep(Graph graph, boolean keepLatents) {
         if (graph == null) {
@@ -66,6 +74,7 @@ public class IndTestDSep implements IndependenceTest {
         }
 
         this.graph = graph;
+        this.oracle = new DSeparationOracle(graph);
 
         this._observedVars = calcVars(graph, keepLatents);
         this.observedVars = new HashSet<>(_observedVars);
@@ -152,7 +161,7 @@ public class IndTestDSep implements IndependenceTest {
             }
         }
 
-        boolean dSeparated = !getGraph().isDConnectedTo(x, y, z);
+        boolean dSeparated = oracle.isDSeparatedFrom(x, y, z);
 
         if (verbose) {
             if (dSeparated) {
@@ -207,7 +216,7 @@ public class IndTestDSep implements IndependenceTest {
             }
         }
 
-        return getGraph().isDSeparatedFrom(x, y, z);
+        return oracle.isDSeparatedFrom(x, y, z);
     }
 
     /**
@@ -266,7 +275,16 @@ public class IndTestDSep implements IndependenceTest {
         return this.graph;
     }
     
+    /**
+     * Sets the graph whose d-separation facts are returned, as it is now. This is also the way to have changes to the
+     * current graph seen.
+     */
     public void setGraph(Graph graph) {
+        if (graph == null) {
+            throw new NullPointerException();
+        }
+
+        this.oracle = new DSeparationOracle(graph);
         this.graph = graph;
     }
 
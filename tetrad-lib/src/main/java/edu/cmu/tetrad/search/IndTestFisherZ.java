@@ -22,6 +22,7 @@
 package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.IndependenceFact;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.*;
 import org.apache.commons.math3.distribution.NormalDistribution;
@@ -46,7 +47,7 @@ public final class IndTestFisherZ implements IndependenceTest {
     /**
      * The correlation matrix.
      */
-    private CorrelationMatrix cor;
+    private ICovarianceMatrix cor;
 
     /**
      * The variables of the covariance matrix, in order. (Unmodifiable list.)
@@ -158,7 +159,10 @@ public final class IndTestFisherZ implements IndependenceTest {
      * matrix and the given significance level.
      */
     public IndTestFisherZ(ICovarianceMatrix covMatrix, double alpha) {
-        this.cor = new CorrelationMatrix(covMatrix);
+
+        // Partial correlations are calculated from covariance submatrices, so a lazy covariance matrix is
+        // used as it is rather than being filled in as a correlation matrix.
+        this.cor = covMatrix instanceof LazyCovarianceMatrix ? covMatrix : new CorrelationMatrix(covMatrix);
         this.variables = covMatrix.getVariables();
         this.indexMap = indexMap(variables);
         this.nameMap = nameMap(variables);
@@ -173,6 +177,14 @@ public final class IndTestFisherZ implements IndependenceTest {
         this.nodesHash = nodesHash;
     }
 
+    /**
+     * Constructs a new independence test that will determine conditional independence facts using the covariance
+     * matrix of the rows counted by the given statistics and the given significance level.
+     */
+    public IndTestFisherZ(CovarianceStatistics statistics, double alpha) {
+        this(statistics.getCovarianceMatrix(), alpha);
+    }
+
     //==========================PUBLIC METHODS=============================//
 
     /**
@@ -261,16 +273,56 @@ public final class IndTestFisherZ implements IndependenceTest {
         }
 
         this.r = r;
-        double q = .5 * (log(1.0 + abs(r)) - log(1.0 - abs(r)));
-        double fisherZ = sqrt(n - 3. - z.size()) * q;
-        double p = 2 * (1.0 - normal.cumulativeProbability(fisherZ));
+        double p = pValue(r, n, z.size());
 
         this.p = p;
         return p;
     }
 
+    /**
+     * Tests xs.get(i) _||_ ys.get(i) | z for each i. The covariance matrix of z is factored once for all of the
+     * pairs, and the partial correlations are calculated from it together, rather than a submatrix being inverted
+     * for each pair. If the data have missing values, or the covariance matrix of z is singular, the pairs are
+     * tested one at a time. The p value of the last pair is kept as the most recent one.
+     *
+     * @return the results, in the order of the pairs.
+     */
+    @Override
+    public synchronized List<IndependenceResult> checkIndependence(List<Node> xs, List<Node> ys, List<Node> z) {
+        double[] r = covMatrix() == null ? null
+                : BatchedPartialCorrelation.partialCorrelations(covMatrix(), indices(z), indices(xs), indices(ys));
+
+        if (r == null) {
+            return IndependenceTest.super.checkIndependence(xs, ys, z);
+        }
+
+        int n = sampleSize();
+        List<IndependenceResult> results = new ArrayList<>(r.length);
+
+        for (int i = 0; i < r.length; i++) {
+            double p = pValue(r[i], n, z.size());
+            this.r = r[i];
+            this.p = p;
+            results.add(new IndependenceResult(new IndependenceFact(xs.get(i), ys.get(i), z), p > alpha, p, r[i]));
+        }
+
+        return results;
+    }
+
     //======================PRIVATE==========================//
 
+    private double pValue(double r, int n, int k) {
+        double q = .5 * (log(1.0 + abs(r)) - log(1.0 - abs(r)));
+        double fisherZ = sqrt(n - 3. - k) * q;
+        return 2 * (1.0 - normal.cumulativeProbability(fisherZ));
+    }
+
+    private int[] indices(List<Node> nodes) {
+        int[] indices = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) indices[i] = indexMap.get(nodes.get(i));
+        return indices;
+    }
+
     private double partialCorrelation(Node x, Node y, List<Node> z, List<Integer> rows) throws SingularMatrixException {
         int[] indices = new int[z.size() + 2];
         indices[0] = indexMap.get(x);
@@ -282,12 +334,19 @@ public final class IndTestFisherZ implements IndependenceTest {
 
 //        if (z.isEmpty()) return cor.get(0, 1);
 
-        return StatUtils.partialCorrelation(cor);
+        // cor is a new matrix, so it is inverted in place rather than into a copy.
+        try {
+            cor.inverseInto(cor);
+        } catch (SingularMatrixException e) {
+            return Double.NaN;
+        }
+
+        return -cor.get(0, 1) / sqrt(cor.get(0, 0) * cor.get(1, 1));
     }
 
     private Matrix getCov(List<Integer> rows, int[] cols) {
         if (getCov() != null) {
-            return getCov().getMatrix().getSelection(cols, cols);
+            return getCov().getSelection(cols, cols);
         }
 
         Matrix cov = new Matrix(cols.length, cols.length);
@@ -394,8 +453,9 @@ public final class IndTestFisherZ implements IndependenceTest {
 
         if (parents.length > 0) {
 
-            // Regress z onto i, yielding regression coefficients b.
-            Matrix Czz = cor.getSelection(parents, parents);
+            // Regress z onto i, yielding regression coefficients b. A lazy covariance matrix holds covariances,
+            // so the selection is converted to correlations, making the singularity threshold free of units.
+            Matrix Czz = MatrixUtils.convertCovToCorr(cor.getSelection(parents, parents));
 
             try {
                 Czz.inverse();
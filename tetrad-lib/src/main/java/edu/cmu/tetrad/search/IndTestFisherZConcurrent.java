@@ -0,0 +1,488 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.IndependenceFact;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.Matrix;
+import org.apache.commons.math3.distribution.NormalDistribution;
+
+import java.text.DecimalFormat;
+import java.util.*;
+
+import static java.lang.Math.*;
+
+/**
+ * Checks conditional independence of variables in a continuous data set using Fisher's Z test, as
+ * IndTestFisherZ does, but without shared mutable state, so that one instance may be used by many threads at
+ * once (for instance by FasConcurrent or PcStable running on the ForkJoinPoolInstance pool) without the tests
+ * being serialized.
+ * <p>
+ * The result of each test is returned as an IndependenceResult by checkIndependence(). The p value of the
+ * most recent test, for callers that ask for it through getPValue(), is kept per thread. Partial
+ * correlations are calculated by a Cholesky decomposition in a scratch matrix that belongs to the calling
+ * thread, so a test allocates next to nothing. See Spirtes, Glymour, and Scheines, "Causation, Prediction and
+ * Search," 2nd edition, page 94.
+ *
+ * @author agent
+ */
+public final class IndTestFisherZConcurrent implements IndependenceTest {
+
+    // Pivots of the Cholesky decomposition smaller than this fraction of the variance are taken as zero.
+    private static final double SINGULARITY_TOLERANCE = 1e-12;
+
+    /**
+     * The correlation matrix, or null if the data has missing values.
+     */
+    private final ICovarianceMatrix cor;
+
+    /**
+     * The data set being analyzed, if there is one.
+     */
+    private final DataSet dataSet;
+
+    /**
+     * The variables of the covariance matrix, in order.
+     */
+    private volatile List<Node> variables;
+
+    /**
+     * Lookups from variables and names to column indices; replaced, never modified.
+     */
+    private volatile Map<Node, Integer> indexMap;
+    private volatile Map<String, Node> nameMap;
+
+    /**
+     * The significance level of the independence tests.
+     */
+    private volatile double alpha;
+
+    private final NormalDistribution normal = new NormalDistribution(0, 1);
+    private boolean verbose = false;
+
+    // Per-thread scratch space and results.
+    private final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+    private final ThreadLocal<IndependenceResult> lastResult = new ThreadLocal<>();
+
+    //==========================CONSTRUCTORS=============================//
+
+    /**
+     * Constructs a new independence test for the given continuous data set and significance level. If the data
+     * set has missing values, each test uses the rows with no missing values for the variables in it.
+     */
+    public IndTestFisherZConcurrent(DataSet dataSet, double alpha) {
+        if (!(dataSet.isContinuous())) {
+            throw new IllegalArgumentException("Data set must be continuous.");
+        }
+
+        this.dataSet = dataSet;
+        this.cor = dataSet.existsMissingValue() ? null : new CorrelationMatrix(dataSet);
+        setVariablesInternal(dataSet.getVariables());
+        setAlpha(alpha);
+    }
+
+    /**
+     * Constructs a new independence test that will determine conditional independence facts using the given
+     * covariance matrix and the given significance level.
+     */
+    public IndTestFisherZConcurrent(ICovarianceMatrix covMatrix, double alpha) {
+        this.dataSet = null;
+        this.cor = covMatrix instanceof LazyCovarianceMatrix ? covMatrix : new CorrelationMatrix(covMatrix);
+        setVariablesInternal(covMatrix.getVariables());
+        setAlpha(alpha);
+    }
+
+    //==========================PUBLIC METHODS=============================//
+
+    /**
+     * Creates a new independence test instance for a subset of the variables.
+     */
+    public IndependenceTest indTestSubset(List<Node> vars) {
+        if (vars.isEmpty()) {
+            throw new IllegalArgumentException("Subset may not be empty.");
+        }
+
+        if (cor == null) {
+            return new IndTestFisherZConcurrent(dataSet.subsetColumns(vars), alpha);
+        }
+
+        int[] indices = new int[vars.size()];
+
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = index(vars.get(i));
+        }
+
+        return new IndTestFisherZConcurrent(cor.getSubmatrix(indices), alpha);
+    }
+
+    /**
+     * Tests x _||_ y | z.
+     *
+     * @return the result of the test, including its p value and the partial correlation.
+     */
+    public IndependenceResult checkIndependence(Node x, Node y, List<Node> z) {
+        Workspace w = workspace.get();
+        int k = z.size();
+        int[] cols = w.columns(k + 2);
+
+        for (int i = 0; i < k; i++) cols[i] = index(z.get(i));
+        cols[k] = index(x);
+        cols[k + 1] = index(y);
+
+        int n;
+
+        if (cor != null) {
+            n = cor.getSampleSize();
+            w.fillFromMatrix(cor, cols, k + 2);
+        } else {
+            n = w.fillFromData(dataSet, cols, k + 2);
+        }
+
+        double r = w.partialCorrelation(k);
+        double p = pValue(r, n, k);
+
+        IndependenceResult result = new IndependenceResult(new IndependenceFact(x, y, z), p > alpha, p, r);
+        lastResult.set(result);
+        return result;
+    }
+
+    /**
+     * Tests xs.get(i) _||_ ys.get(i) | z for each i, factoring the covariance matrix of z once for all of the
+     * pairs. If the data have missing values, or the covariance matrix of z is singular, the pairs are tested one
+     * at a time.
+     *
+     * @return the results, in the order of the pairs.
+     */
+    @Override
+    public List<IndependenceResult> checkIndependence(List<Node> xs, List<Node> ys, List<Node> z) {
+        double[] r = cor == null ? null
+                : BatchedPartialCorrelation.partialCorrelations(cor, indices(z), indices(xs), indices(ys));
+
+        if (r == null) {
+            return IndependenceTest.super.checkIndependence(xs, ys, z);
+        }
+
+        int n = cor.getSampleSize();
+        List<IndependenceResult> results = new ArrayList<>(r.length);
+
+        for (int i = 0; i < r.length; i++) {
+            double p = pValue(r[i], n, z.size());
+            IndependenceResult result = new IndependenceResult(new IndependenceFact(xs.get(i), ys.get(i), z),
+                    p > alpha, p, r[i]);
+            results.add(result);
+            lastResult.set(result);
+        }
+
+        return results;
+    }
+
+    /**
+     * Determines whether variable x is independent of variable y given a list of conditioning variables z.
+     *
+     * @return true iff x _||_ y | z.
+     */
+    public boolean isIndependent(Node x, Node y, List<Node> z) {
+        return checkIndependence(x, y, z).isIndependent();
+    }
+
+    public boolean isIndependent(Node x, Node y, Node... z) {
+        return isIndependent(x, y, Arrays.asList(z));
+    }
+
+    public boolean isDependent(Node x, Node y, List<Node> z) {
+        return !isIndependent(x, y, z);
+    }
+
+    public boolean isDependent(Node x, Node y, Node... z) {
+        return isDependent(x, y, Arrays.asList(z));
+    }
+
+    /**
+     * @return the p value of the most recent test done by the calling thread, or NaN if there has been none.
+     */
+    public double getPValue() {
+        IndependenceResult result = lastResult.get();
+        return result == null ? Double.NaN : result.getPValue();
+    }
+
+    public double getPValue(Node x, Node y, List<Node> z) {
+        return checkIndependence(x, y, z).getPValue();
+    }
+
+    /**
+     * Sets the significance level at which independence judgments should be made.
+     */
+    public void setAlpha(double alpha) {
+        if (alpha < 0.0 || alpha > 1.0) {
+            throw new IllegalArgumentException("Significance out of range: " + alpha);
+        }
+
+        this.alpha = alpha;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+
+    public List<Node> getVariables() {
+        return variables;
+    }
+
+    public Node getVariable(String name) {
+        return nameMap.get(name);
+    }
+
+    public List<String> getVariableNames() {
+        List<String> variableNames = new ArrayList<>();
+        for (Node variable : variables) {
+            variableNames.add(variable.getName());
+        }
+        return variableNames;
+    }
+
+    /**
+     * @return true if the covariance matrix of z is singular, so that x is taken to be determined by z.
+     */
+    public boolean determines(List<Node> z, Node x) {
+        if (z.isEmpty()) return false;
+
+        Workspace w = workspace.get();
+        int k = z.size();
+        int[] cols = w.columns(k);
+
+        for (int i = 0; i < k; i++) cols[i] = index(z.get(i));
+
+        if (cor != null) {
+            w.fillFromMatrix(cor, cols, k);
+        } else {
+            w.fillFromData(dataSet, cols, k);
+        }
+
+        boolean singular = !w.cholesky(k);
+
+        if (singular) {
+            System.out.println(SearchLogUtils.determinismDetected(z, x));
+        }
+
+        return singular;
+    }
+
+    public DataSet getData() {
+        return dataSet;
+    }
+
+    public ICovarianceMatrix getCov() {
+        return cor;
+    }
+
+    @Override
+    public List<DataSet> getDataSets() {
+        List<DataSet> dataSets = new ArrayList<>();
+        dataSets.add(dataSet);
+        return dataSets;
+    }
+
+    @Override
+    public int getSampleSize() {
+        return cor != null ? cor.getSampleSize() : dataSet.getNumRows();
+    }
+
+    @Override
+    public List<Matrix> getCovMatrices() {
+        return null;
+    }
+
+    /**
+     * @return alpha minus the p value of the most recent test done by the calling thread.
+     */
+    @Override
+    public double getScore() {
+        return alpha - getPValue();
+    }
+
+    public void setVariables(List<Node> variables) {
+        if (variables.size() != this.variables.size()) throw new IllegalArgumentException("Wrong # of variables.");
+        if (cor != null) cor.setVariables(variables);
+        setVariablesInternal(variables);
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public String toString() {
+        return "Fisher Z (concurrent), alpha = " + new DecimalFormat("0.0E0").format(getAlpha());
+    }
+
+    //==========================PRIVATE METHODS============================//
+
+    private double pValue(double r, int n, int k) {
+        double q = .5 * (log(1.0 + abs(r)) - log(1.0 - abs(r)));
+        double fisherZ = sqrt(n - 3. - k) * q;
+        return 2 * (1.0 - normal.cumulativeProbability(fisherZ));
+    }
+
+    private int[] indices(List<Node> nodes) {
+        int[] indices = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) indices[i] = index(nodes.get(i));
+        return indices;
+    }
+
+    private int index(Node node) {
+        Integer index = indexMap.get(node);
+
+        if (index == null) {
+            throw new IllegalArgumentException("Not a variable of this test: " + node);
+        }
+
+        return index;
+    }
+
+    private void setVariablesInternal(List<Node> variables) {
+        Map<Node, Integer> indexMap = new HashMap<>();
+        Map<String, Node> nameMap = new HashMap<>();
+
+        for (int i = 0; i < variables.size(); i++) {
+            indexMap.put(variables.get(i), i);
+            nameMap.put(variables.get(i).getName(), variables.get(i));
+        }
+
+        this.indexMap = indexMap;
+        this.nameMap = nameMap;
+        this.variables = Collections.unmodifiableList(new ArrayList<>(variables));
+    }
+
+    // Scratch space for one thread, grown as needed.
+    private static final class Workspace {
+        private int[] cols = new int[8];
+        private double[][] a = new double[8][8];
+        private int[] rows = new int[0];
+
+        int[] columns(int size) {
+            if (cols.length < size) {
+                cols = new int[2 * size];
+                a = new double[2 * size][2 * size];
+            }
+
+            return cols;
+        }
+
+        void fillFromMatrix(ICovarianceMatrix cov, int[] cols, int size) {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j <= i; j++) {
+                    a[i][j] = cov.getValue(cols[i], cols[j]);
+                }
+            }
+        }
+
+        // Fills in covariances over the rows with no missing values; returns the number of such rows.
+        int fillFromData(DataSet data, int[] cols, int size) {
+            int numRows = data.getNumRows();
+            if (rows.length < numRows) rows = new int[numRows];
+            int n = 0;
+
+            K:
+            for (int k = 0; k < numRows; k++) {
+                for (int i = 0; i < size; i++) {
+                    if (Double.isNaN(data.getDouble(k, cols[i]))) continue K;
+                }
+
+                rows[n++] = k;
+            }
+
+            for (int i = 0; i < size; i++) {
+                double mui = mean(data, cols[i], n);
+
+                for (int j = 0; j <= i; j++) {
+                    double muj = mean(data, cols[j], n);
+                    double sum = 0.0;
+
+                    for (int t = 0; t < n; t++) {
+                        sum += (data.getDouble(rows[t], cols[i]) - mui) * (data.getDouble(rows[t], cols[j]) - muj);
+                    }
+
+                    a[i][j] = sum / n;
+                }
+            }
+
+            return n;
+        }
+
+        private double mean(DataSet data, int col, int n) {
+            double sum = 0.0;
+            for (int t = 0; t < n; t++) sum += data.getDouble(rows[t], col);
+            return sum / n;
+        }
+
+        // In-place lower Cholesky decomposition of the leading size x size block; false if it is singular.
+        boolean cholesky(int size) {
+            for (int j = 0; j < size; j++) {
+                double d = a[j][j];
+                double scale = d;
+
+                for (int t = 0; t < j; t++) d -= a[j][t] * a[j][t];
+
+                if (!(d > SINGULARITY_TOLERANCE * scale)) return false;
+
+                double ljj = sqrt(d);
+                a[j][j] = ljj;
+
+                for (int i = j + 1; i < size; i++) {
+                    double s = a[i][j];
+                    for (int t = 0; t < j; t++) s -= a[i][t] * a[j][t];
+                    a[i][j] = s / ljj;
+                }
+            }
+
+            return true;
+        }
+
+        // The partial correlation of the last two variables given the first k, from the Cholesky factor of
+        // the covariance matrix ordered (z, x, y); NaN if the matrix is singular.
+        double partialCorrelation(int k) {
+            if (!cholesky(k + 1)) return Double.NaN;
+
+            double[] yRow = a[k + 1];
+
+            for (int j = 0; j <= k; j++) {
+                double s = yRow[j];
+                for (int t = 0; t < j; t++) s -= yRow[t] * a[j][t];
+                yRow[j] = s / a[j][j];
+            }
+
+            // v is the variance of y given z; yRow[k] * a[k][k] the covariance of x and y given z.
+            double v = yRow[k + 1];
+            for (int t = 0; t < k; t++) v -= yRow[t] * yRow[t];
+
+            if (!(v > 0)) return Double.NaN;
+
+            double lyx = yRow[k];
+
+            return max(-1.0, min(1.0, lyx / sqrt(v)));
+        }
+    }
+}
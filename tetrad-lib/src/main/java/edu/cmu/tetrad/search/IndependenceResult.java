@@ -0,0 +1,99 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.IndependenceFact;
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.List;
+
+/**
+ * The outcome of a single conditional independence test, x _||_ y | z: the judgment, its p value, and, where
+ * the test has one, the statistic it was based on (for instance the partial correlation, for Fisher Z).
+ * Returning this rather than storing the "most recent" p value in the test lets tests be shared by threads.
+ *
+ * @author agent
+ */
+public final class IndependenceResult {
+
+    private final IndependenceFact fact;
+    private final boolean independent;
+    private final double pValue;
+    private final double statistic;
+
+    public IndependenceResult(IndependenceFact fact, boolean independent, double pValue, double statistic) {
+        if (fact == null) {
+            throw new NullPointerException("Fact must not be null.");
+        }
+
+        this.fact = fact;
+        this.independent = independent;
+        this.pValue = pValue;
+        this.statistic = statistic;
+    }
+
+    public IndependenceResult(IndependenceFact fact, boolean independent, double pValue) {
+        this(fact, independent, pValue, Double.NaN);
+    }
+
+    public IndependenceFact getFact() {
+        return fact;
+    }
+
+    public Node getX() {
+        return fact.getX();
+    }
+
+    public Node getY() {
+        return fact.getY();
+    }
+
+    public List<Node> getZ() {
+        return fact.getZ();
+    }
+
+    public boolean isIndependent() {
+        return independent;
+    }
+
+    public boolean isDependent() {
+        return !independent;
+    }
+
+    /**
+     * @return the p value of the test, or NaN if the test does not have one.
+     */
+    public double getPValue() {
+        return pValue;
+    }
+
+    /**
+     * @return the statistic the judgment was based on, or NaN if the test does not report one.
+     */
+    public double getStatistic() {
+        return statistic;
+    }
+
+    public String toString() {
+        return fact + (independent ? " independent" : " dependent") + " p = " + pValue;
+    }
+}
@@ -24,9 +24,11 @@ package edu.cmu.tetrad.search;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.IndependenceFact;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.Matrix;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -57,6 +59,30 @@ public interface IndependenceTest {
      */
     boolean isIndependent(Node x, Node y, Node... z);
 
+    /**
+     * Tests xs.get(i) _||_ ys.get(i) | z for each i. Tests that can share work among tests with the same
+     * conditioning set (Fisher Z, for instance, factors the covariance matrix of z once for all of the pairs)
+     * override this; by default the pairs are tested one at a time.
+     *
+     * @return the results, in the order of the pairs.
+     */
+    default List<IndependenceResult> checkIndependence(List<Node> xs, List<Node> ys, List<Node> z) {
+        if (xs.size() != ys.size()) {
+            throw new IllegalArgumentException("Expected as many y's as x's: " + xs.size() + " != " + ys.size());
+        }
+
+        List<IndependenceResult> results = new ArrayList<>(xs.size());
+
+        for (int i = 0; i < xs.size(); i++) {
+            Node x = xs.get(i);
+            Node y = ys.get(i);
+            boolean independent = isIndependent(x, y, z);
+            results.add(new IndependenceResult(new IndependenceFact(x, y, z), independent, getPValue()));
+        }
+
+        return results;
+    }
+
     /**
      * @return true if the given independence question is judged false, true if not. The independence question is of the
      * form x _||_ y | z, z = <z1,...,zn>, where x, y, z1,...,zn are variables in the list returned by
@@ -21,48 +21,401 @@
 
 package edu.cmu.tetrad.search;
 
-import org.apache.commons.collections4.map.MultiKeyMap;
-
-import java.util.HashSet;
-import java.util.Set;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Stores a map from (variable, parents) to score.
+ * Stores a map from (variable, parents) to score. The parents are treated as a set, so the order in which
+ * they are given does not matter; they are assumed to be distinct.
+ * <p>
+ * Keys are hashed to a long from the variable and an order-independent mix of the parents, so a lookup
+ * does not allocate. Entries are kept in primitive open-addressing tables split into lock-striped segments,
+ * so the cache may be shared by the parallel tasks of a search. The tables start small and are doubled as
+ * entries are added, so a cache that is never filled takes little heap. The total number of entries is
+ * bounded; when a segment is full an entry is evicted using the CLOCK (second chance) policy. Hit, miss and
+ * eviction counts are kept for diagnostics.
  *
  * @author Joseph Ramsey
  */
 public class LocalScoreCache {
-    private MultiKeyMap map;
 
+    // The default maximum number of entries.
+    public static final long DEFAULT_MAX_ENTRIES = 1 << 20;
+
+    // A rough estimate of the heap used by one entry with a handful of parents, in bytes.
+    private static final long BYTES_PER_ENTRY = 96;
+
+    // The number of slots in the table of a new segment.
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final long maxEntries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a cache holding at most DEFAULT_MAX_ENTRIES entries.
+     */
     public LocalScoreCache() {
-        map = new MultiKeyMap();
+        this(DEFAULT_MAX_ENTRIES);
     }
 
-    public void add(int variable, int[] parents, double score) {
-        Set<Integer> _parents = new HashSet<>(parents.length);
+    /**
+     * Constructs a cache holding at most the given number of entries.
+     */
+    public LocalScoreCache(long maxEntries) {
+        this(maxEntries, 4 * Runtime.getRuntime().availableProcessors());
+    }
 
-        for (int parent : parents) {
-            _parents.add(parent);
+    /**
+     * Constructs a cache holding at most the given number of entries, striped over (at least) the given
+     * number of independently locked segments.
+     */
+    public LocalScoreCache(long maxEntries, int concurrencyLevel) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries must be at least 1: " + maxEntries);
+        }
+
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("Concurrency level must be at least 1: " + concurrencyLevel);
+        }
+
+        int numSegments = 1;
+        while (numSegments < concurrencyLevel && numSegments < (1 << 16)) numSegments <<= 1;
+        while (numSegments > 1 && maxEntries / numSegments < 16) numSegments >>= 1;
+
+        this.segments = new Segment[numSegments];
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(numSegments);
+        this.maxEntries = maxEntries;
+
+        long perSegment = (maxEntries + numSegments - 1) / numSegments;
+
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment((int) Math.min(perSegment, 1 << 29));
         }
+    }
 
-        map.put(variable, _parents, score);
+    /**
+     * Constructs a cache whose estimated heap footprint is at most the given number of bytes.
+     */
+    public static LocalScoreCache withMemoryBound(long maxBytes) {
+        return new LocalScoreCache(Math.max(1, maxBytes / BYTES_PER_ENTRY));
+    }
+
+    public void add(int variable, int[] parents, double score) {
+        long hash = hash(variable, parents);
+        segmentFor(hash).put(hash, variable, parents, score, evictions);
     }
 
+    /**
+     * @return the cached score, or NaN if the (variable, parents) pair is not in the cache.
+     */
     public double get(int variable, int[] parents) {
-        Set<Integer> _parents = new HashSet<>(parents.length);
+        long hash = hash(variable, parents);
+        Segment segment = segmentFor(hash);
 
-        for (int parent : parents) {
-            _parents.add(parent);
+        synchronized (segment) {
+            int slot = segment.find(hash, variable, parents);
+
+            if (slot >= 0) {
+                segment.referenced[slot] = true;
+                hits.increment();
+                return segment.values[slot];
+            }
         }
 
-        Double _score = (Double) map.get(variable, _parents);
-        return _score == null ? Double.NaN : (_score);
+        misses.increment();
+        return Double.NaN;
     }
 
     public void clear() {
-        map.clear();
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * @return the number of entries currently in the cache.
+     */
+    public long size() {
+        long size = 0;
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+
+        return size;
+    }
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the fraction of lookups that were answered from the cache, or NaN if there have been none.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? Double.NaN : hits / (double) total;
+    }
+
+    /**
+     * Writes the entries of the cache to the given output, in the form read by readEntries. Entries added while
+     * this is running may or may not be written.
+     */
+    public void writeEntries(DataOutput out) throws IOException {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (int slot = 0; slot < segment.parents.length; slot++) {
+                    int[] parents = segment.parents[slot];
+                    if (parents == null) continue;
+
+                    out.writeInt(segment.variables[slot]);
+                    out.writeInt(parents.length);
+
+                    for (int parent : parents) {
+                        out.writeInt(parent);
+                    }
+
+                    out.writeDouble(segment.values[slot]);
+                }
+            }
+        }
+
+        out.writeInt(-1);
+    }
+
+    /**
+     * Adds the entries written by writeEntries. If more entries were written than this cache holds, some are
+     * evicted as usual.
+     */
+    public void readEntries(DataInput in) throws IOException {
+        int variable;
+
+        while ((variable = in.readInt()) != -1) {
+            int[] parents = new int[in.readInt()];
+
+            for (int j = 0; j < parents.length; j++) {
+                parents[j] = in.readInt();
+            }
+
+            add(variable, parents, in.readDouble());
+        }
+    }
+
+    public String toString() {
+        return "LocalScoreCache size = " + size() + " hits = " + getHits() + " misses = " + getMisses()
+                + " evictions = " + getEvictions();
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private Segment segmentFor(long hash) {
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    // The parents are combined commutatively so that no sorted copy needs to be made for a lookup.
+    private static long hash(int variable, int[] parents) {
+        long sum = 0;
+        long xor = 0;
+
+        for (int parent : parents) {
+            long m = mix(parent + 1L);
+            sum += m;
+            xor ^= Long.rotateLeft(m, 31);
+        }
+
+        return mix(mix(((long) variable << 32) ^ parents.length) ^ sum ^ (xor * 0x9E3779B97F4A7C15L));
     }
-}
 
+    // The MurmurHash3 64-bit finalizer.
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // One lock stripe: an open-addressing table with linear probing, kept at most half full. The table is
+    // doubled as entries are added until it is large enough for the capacity.
+    private static final class Segment {
+        private final int capacity;
+        private final int maxTableSize;
+        private int mask;
+        private long[] hashes;
+        private int[] variables;
+        private int[][] parents;
+        private double[] values;
+        private boolean[] referenced;
+        private int size = 0;
+        private int hand = 0;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.maxTableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+            allocate(Math.min(INITIAL_TABLE_SIZE, maxTableSize));
+        }
+
+        private void allocate(int tableSize) {
+            this.mask = tableSize - 1;
+            this.hashes = new long[tableSize];
+            this.variables = new int[tableSize];
+            this.parents = new int[tableSize][];
+            this.values = new double[tableSize];
+            this.referenced = new boolean[tableSize];
+        }
+
+        // Doubles the table, putting each entry back in its place in the larger table.
+        private void grow() {
+            long[] oldHashes = hashes;
+            int[] oldVariables = variables;
+            int[][] oldParents = parents;
+            double[] oldValues = values;
+            boolean[] oldReferenced = referenced;
+
+            allocate(oldParents.length * 2);
+
+            for (int i = 0; i < oldParents.length; i++) {
+                if (oldParents[i] == null) continue;
+
+                int slot = (int) oldHashes[i] & mask;
+                while (parents[slot] != null) slot = (slot + 1) & mask;
+
+                hashes[slot] = oldHashes[i];
+                variables[slot] = oldVariables[i];
+                parents[slot] = oldParents[i];
+                values[slot] = oldValues[i];
+                referenced[slot] = oldReferenced[i];
+            }
+
+            hand = 0;
+        }
 
+        // Returns the slot of the given key, or -1 if it is not present. The caller holds the lock.
+        int find(long hash, int variable, int[] parents) {
+            for (int slot = (int) hash & mask; this.parents[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && variables[slot] == variable && sameSet(this.parents[slot], parents)) {
+                    return slot;
+                }
+            }
 
+            return -1;
+        }
+
+        synchronized void put(long hash, int variable, int[] parents, double value, LongAdder evictions) {
+            int slot = find(hash, variable, parents);
+
+            if (slot >= 0) {
+                values[slot] = value;
+                referenced[slot] = true;
+                return;
+            }
+
+            if (size >= capacity) {
+                evict();
+                evictions.increment();
+            } else if (2 * (size + 1) > this.parents.length && this.parents.length < maxTableSize) {
+                grow();
+            }
+
+            int[] sorted = Arrays.copyOf(parents, parents.length);
+            Arrays.sort(sorted);
+
+            slot = (int) hash & mask;
+            while (this.parents[slot] != null) slot = (slot + 1) & mask;
+
+            hashes[slot] = hash;
+            variables[slot] = variable;
+            this.parents[slot] = sorted;
+            values[slot] = value;
+            referenced[slot] = false;
+            size++;
+        }
+
+        synchronized void clear() {
+            allocate(Math.min(INITIAL_TABLE_SIZE, maxTableSize));
+            size = 0;
+            hand = 0;
+        }
+
+        // Sweeps the clock hand until an entry that has not been looked up since the last sweep is found.
+        private void evict() {
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) & mask;
+
+                if (parents[slot] == null) continue;
+
+                if (referenced[slot]) {
+                    referenced[slot] = false;
+                } else {
+                    removeAt(slot);
+                    return;
+                }
+            }
+        }
+
+        // Removes the entry in the given slot, shifting later entries of the probe run back so that
+        // lookups never stop early at the hole.
+        private void removeAt(int hole) {
+            parents[hole] = null;
+            size--;
+
+            for (int slot = (hole + 1) & mask; parents[slot] != null; slot = (slot + 1) & mask) {
+                int home = (int) hashes[slot] & mask;
+
+                boolean reachable = hole <= slot
+                        ? home <= hole || home > slot
+                        : home <= hole && home > slot;
+
+                if (reachable) {
+                    hashes[hole] = hashes[slot];
+                    variables[hole] = variables[slot];
+                    parents[hole] = parents[slot];
+                    values[hole] = values[slot];
+                    referenced[hole] = referenced[slot];
+                    parents[slot] = null;
+                    hole = slot;
+                }
+            }
+        }
+
+        // True if the given (unsorted) parents are exactly the elements of the sorted array.
+        private static boolean sameSet(int[] sorted, int[] parents) {
+            if (sorted.length != parents.length) return false;
+
+            for (int parent : parents) {
+                if (Arrays.binarySearch(sorted, parent) < 0) return false;
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Passes requests to a ScoreWorker in the same JVM, encoding and decoding them as they would be sent over
+ * a socket. For testing distributed searches without starting workers.
+ *
+ * @author agent
+ */
+public class LoopbackScoreTransport implements ScoreTransport {
+
+    private final ScoreWorker worker;
+
+    public LoopbackScoreTransport(ScoreWorker worker) {
+        if (worker == null) {
+            throw new NullPointerException("Worker must not be null.");
+        }
+
+        this.worker = worker;
+    }
+
+    @Override
+    public List<String> getVariableNames() throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        ScoreWorker.writeVariablesRequest(new DataOutputStream(request));
+        return ScoreWorker.readVariablesResponse(send(request));
+    }
+
+    @Override
+    public double[] localScoreDiffs(int[] x, int[] y, int[][] z) throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        ScoreWorker.writeScoreDiffsRequest(new DataOutputStream(request), x, y, z);
+        return ScoreWorker.readScoreDiffsResponse(send(request), x.length);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private DataInput send(ByteArrayOutputStream request) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(request.toByteArray()));
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        worker.handle(in.readByte(), in, new DataOutputStream(response));
+        return new DataInputStream(new ByteArrayInputStream(response.toByteArray()));
+    }
+}
@@ -0,0 +1,565 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.IKnowledge;
+import edu.cmu.tetrad.data.Knowledge2;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.Edges;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradLogger;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Applies the rules of MeekRules, reverting to unshielded colliders first if asked, over an int-indexed copy of the
+ * adjacencies. Rather than sweeping all edges until nothing changes, each undirected edge is checked once and then
+ * again only when an edge near it has been oriented. Connected components of the graph cannot affect one another's
+ * orientations, so they are oriented in parallel, and if the nodes changed since the graph was last oriented are
+ * given, only the components containing them are oriented again.
+ * <p>
+ * The nodes returned are the endpoints of edges whose orientation differs from what it was before the call.
+ * <p>
+ * Rule R4 is only performed if knowledge is nonempty.
+ *
+ * @author agent
+ * @see MeekRules
+ */
+public class MeekRulesConcurrent implements ImpliedOrientation {
+
+    // How an edge looks from one of its endpoints: x---y, x-->y, x<--y, or anything else, which is left alone.
+    private static final byte UNDIRECTED = 0;
+    private static final byte OUT = 1;
+    private static final byte IN = 2;
+    private static final byte OTHER = 3;
+
+    // Fewer nodes than this are oriented on the calling thread.
+    private static final int MIN_PARALLEL_NODES = 1000;
+
+    private IKnowledge knowledge = new Knowledge2();
+
+    // If knowledge is available.
+    boolean useRule4;
+
+    // True (default) iff the graph should be reverted to its unshielded colliders before orienting.
+    private boolean revertToUnshieldedColliders = true;
+
+    // True if verbose output should be printed.
+    private boolean verbose = false;
+
+    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+
+    /**
+     * Constructs the <code>MeekRulesConcurrent</code> with no logging.
+     */
+    public MeekRulesConcurrent() {
+        useRule4 = !knowledge.isEmpty();
+    }
+
+    //======================== Public Methods ========================//
+
+    /**
+     * Orients the whole graph.
+     *
+     * @return the endpoints of the edges whose orientation changed.
+     */
+    public Set<Node> orientImplied(Graph graph) {
+        return orientImplied(graph, graph.getNodes());
+    }
+
+    /**
+     * Orients the components of the graph that contain the given nodes, assuming the rest of the graph is already
+     * the result of orienting it with the same settings. This holds, for instance, when every change to the graph
+     * since it was last oriented is to edges between the given nodes.
+     *
+     * @return the endpoints of the edges whose orientation changed.
+     */
+    public Set<Node> orientImplied(Graph graph, Collection<Node> changed) {
+        TetradLogger.getInstance().log("impliedOrientations", "Starting Orientation Step D.");
+
+        List<Node> nodes = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        Set<Node> seen = new HashSet<>();
+
+        for (Node node : changed) {
+            if (!seen.add(node)) continue;
+
+            starts.add(nodes.size());
+            int head = nodes.size();
+            nodes.add(node);
+
+            while (head < nodes.size()) {
+                for (Node adj : graph.getAdjacentNodes(nodes.get(head++))) {
+                    if (seen.add(adj)) nodes.add(adj);
+                }
+            }
+        }
+
+        starts.add(nodes.size());
+
+        final Adjacencies adjacencies = new Adjacencies(graph, nodes);
+        final int[] bounds = new int[starts.size()];
+
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = starts.get(i);
+        }
+
+        // One task per component.
+        class ComponentTask extends RecursiveTask<Boolean> {
+            private final int from;
+            private final int to;
+
+            private ComponentTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected Boolean compute() {
+                if (to - from == 1) {
+                    orient(adjacencies, bounds[from], bounds[to]);
+                } else {
+                    int mid = (from + to) >>> 1;
+                    invokeAll(new ComponentTask(from, mid), new ComponentTask(mid, to));
+                }
+
+                return true;
+            }
+        }
+
+        int numComponents = bounds.length - 1;
+
+        if (numComponents > 1 && nodes.size() >= MIN_PARALLEL_NODES) {
+            pool.invoke(new ComponentTask(0, numComponents));
+        } else {
+            for (int c = 0; c < numComponents; c++) {
+                orient(adjacencies, bounds[c], bounds[c + 1]);
+            }
+        }
+
+        Set<Node> affected = adjacencies.writeChanges(graph);
+
+        TetradLogger.getInstance().log("impliedOrientations", "Finishing Orientation Step D.");
+
+        return affected;
+    }
+
+    public void setKnowledge(IKnowledge knowledge) {
+        if (knowledge == null) throw new IllegalArgumentException();
+        this.knowledge = knowledge;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public void setRevertToUnshieldedColliders(boolean revertToUnshieldedColliders) {
+        this.revertToUnshieldedColliders = revertToUnshieldedColliders;
+    }
+
+    //============================== Private Methods ===================================//
+
+    // Orients the component made of nodes from through to - 1.
+    private void orient(Adjacencies g, int from, int to) {
+        if (revertToUnshieldedColliders) {
+            for (int y = from; y < to; y++) {
+                revertToUnshieldedColliders(y, g);
+            }
+        }
+
+        Worklist worklist = new Worklist(g);
+
+        for (int x = from; x < to; x++) {
+            worklist.addUndirected(x);
+        }
+
+        int p;
+
+        while ((p = worklist.poll()) != -1) {
+            if (g.marks[p] != UNDIRECTED) continue;
+
+            int x = g.nodeAt[p];
+            int y = g.neighbors[p];
+
+            boolean oriented = meekR1(x, y, g) || meekR1(y, x, g)
+                    || meekR2(x, y, g) || meekR2(y, x, g)
+                    || meekR3(x, y, g) || meekR3(y, x, g)
+                    || meekR4(x, y, g) || meekR4(y, x, g);
+
+            if (oriented) {
+                worklist.addUndirected(x);
+                worklist.addUndirected(y);
+
+                if (useRule4) {
+                    for (int q = g.offsets[x]; q < g.offsets[x + 1]; q++) worklist.addUndirected(g.neighbors[q]);
+                    for (int q = g.offsets[y]; q < g.offsets[y + 1]; q++) worklist.addUndirected(g.neighbors[q]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Meek's rule R1: if a-->b, b---c, and a not adj to c, then b-->c
+     */
+    private boolean meekR1(int b, int c, Adjacencies g) {
+        for (int p = g.offsets[b]; p < g.offsets[b + 1]; p++) {
+            if (g.marks[p] != IN) continue;
+            int a = g.neighbors[p];
+            if (g.position(c, a) != -1) continue;
+
+            if (direct(b, c, g)) {
+                log("Meek R1 triangle (" + g.nodes[a] + "-->" + g.nodes[b] + "---" + g.nodes[c] + ")", b, c, g);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * If a-->b-->c, a--c, then a-->c.
+     */
+    private boolean meekR2(int a, int c, Adjacencies g) {
+        int p = g.offsets[a];
+        int q = g.offsets[c];
+
+        // Walks the two sorted rows together to find the common adjacents b.
+        while (p < g.offsets[a + 1] && q < g.offsets[c + 1]) {
+            if (g.neighbors[p] < g.neighbors[q]) {
+                p++;
+            } else if (g.neighbors[p] > g.neighbors[q]) {
+                q++;
+            } else {
+                int b = g.neighbors[p];
+
+                if (g.marks[p] == OUT && g.marks[q] == IN && direct(a, c, g)) {
+                    log("Meek R2 triangle (" + g.nodes[a] + "-->" + g.nodes[b] + "-->" + g.nodes[c] + ", "
+                            + g.nodes[a] + "---" + g.nodes[c] + ")", a, c, g);
+                    return true;
+                }
+
+                if (g.marks[q] == OUT && g.marks[p] == IN && direct(c, a, g)) {
+                    log("Meek R2 triangle (" + g.nodes[c] + "-->" + g.nodes[b] + "-->" + g.nodes[a] + ", "
+                            + g.nodes[c] + "---" + g.nodes[a] + ")", c, a, g);
+                    return true;
+                }
+
+                p++;
+                q++;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Meek's rule R3. If d--a, d--b, d--c, b-->a, c-->a, then orient d-->a.
+     */
+    private boolean meekR3(int d, int a, Adjacencies g) {
+        int da = g.position(d, a);
+        if (g.marks[da] != UNDIRECTED) return false;
+
+        // Common adjacents b of a and d with d---b and b-->a; any two that are not adjacent orient d-->a.
+        List<Integer> candidates = new ArrayList<>();
+        int p = g.offsets[d];
+        int q = g.offsets[a];
+
+        while (p < g.offsets[d + 1] && q < g.offsets[a + 1]) {
+            if (g.neighbors[p] < g.neighbors[q]) {
+                p++;
+            } else if (g.neighbors[p] > g.neighbors[q]) {
+                q++;
+            } else {
+                if (g.marks[p] == UNDIRECTED && g.marks[q] == IN) {
+                    candidates.add(g.neighbors[p]);
+                }
+
+                p++;
+                q++;
+            }
+        }
+
+        for (int i = 0; i < candidates.size(); i++) {
+            for (int j = i + 1; j < candidates.size(); j++) {
+                int b = candidates.get(i);
+                int c = candidates.get(j);
+
+                if (g.position(b, c) == -1 && direct(d, a, g)) {
+                    log("Meek R3 " + g.nodes[d] + "--" + g.nodes[a] + ", " + g.nodes[b] + ", " + g.nodes[c], d, a, g);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean meekR4(int a, int b, Adjacencies g) {
+        if (!useRule4) {
+            return false;
+        }
+
+        for (int p = g.offsets[b]; p < g.offsets[b + 1]; p++) {
+            if (g.marks[p] != IN) continue;
+            int c = g.neighbors[p];
+
+            int r = g.offsets[a];
+            int s = g.offsets[c];
+
+            while (r < g.offsets[a + 1] && s < g.offsets[c + 1]) {
+                if (g.neighbors[r] < g.neighbors[s]) {
+                    r++;
+                } else if (g.neighbors[r] > g.neighbors[s]) {
+                    s++;
+                } else {
+                    int d = g.neighbors[r];
+
+                    // d-->c, a and d joined by an edge that is not directed, and d not adjacent to b.
+                    if (d != b && g.marks[s] == IN && g.marks[r] != OUT && g.marks[r] != IN
+                            && g.position(b, d) == -1 && direct(a, b, g)) {
+                        log("Meek R4 using " + g.nodes[c] + ", " + g.nodes[d], a, b, g);
+                        return true;
+                    }
+
+                    r++;
+                    s++;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean direct(int a, int c, Adjacencies g) {
+        int p = g.position(a, c);
+        if (g.marks[p] != UNDIRECTED) return false;
+        if (!isArrowpointAllowed(g.nodes[a], g.nodes[c], knowledge)) return false;
+
+        g.marks[p] = OUT;
+        g.marks[g.mirror[p]] = IN;
+
+        return true;
+    }
+
+    private static boolean isArrowpointAllowed(Node from, Node to, IKnowledge knowledge) {
+        if (knowledge.isEmpty()) return true;
+        return !knowledge.isRequired(to.toString(), from.toString()) &&
+                !knowledge.isForbidden(from.toString(), to.toString());
+    }
+
+    // Reverts the parents of y that are adjacent to all of y's other parents, until there are none.
+    private void revertToUnshieldedColliders(int y, Adjacencies g) {
+        boolean reverted = true;
+
+        while (reverted) {
+            reverted = false;
+
+            List<Integer> parents = new ArrayList<>();
+
+            for (int p = g.offsets[y]; p < g.offsets[y + 1]; p++) {
+                if (g.marks[p] == IN) parents.add(p);
+            }
+
+            P:
+            for (int p : parents) {
+                for (int q : parents) {
+                    if (p != q && g.position(g.neighbors[p], g.neighbors[q]) == -1) {
+                        continue P;
+                    }
+                }
+
+                String _y = g.nodes[y].getName();
+                String _p = g.nodes[g.neighbors[p]].getName();
+
+                if (knowledge.isForbidden(_y, _p) || knowledge.isRequired(_p, _y)) continue;
+
+                g.marks[p] = UNDIRECTED;
+                g.marks[g.mirror[p]] = UNDIRECTED;
+
+                reverted = true;
+            }
+        }
+    }
+
+    private void log(String message, int a, int c, Adjacencies g) {
+        if (verbose) {
+            Edge edge = Edges.directedEdge(g.nodes[a], g.nodes[c]);
+            TetradLogger.getInstance().forceLogMessage(SearchLogUtils.edgeOrientedMsg(message, edge));
+        }
+    }
+
+    // The adjacencies of a set of nodes closed under adjacency, as sorted rows of neighbor indices, with the mark of
+    // each edge as seen from the row's node. Position p is the edge between nodeAt[p] and neighbors[p]; mirror[p] is
+    // the same edge seen from the other side.
+    private static class Adjacencies {
+        private final Node[] nodes;
+        private final int[] offsets;
+        private final int[] nodeAt;
+        private final int[] neighbors;
+        private final int[] mirror;
+        private final byte[] marks;
+        private final byte[] initialMarks;
+
+        // Whether the edge at a position is on a worklist. Components use disjoint positions, so share this.
+        private final boolean[] queued;
+
+        private Adjacencies(Graph graph, List<Node> nodes) {
+            this.nodes = nodes.toArray(new Node[nodes.size()]);
+
+            Map<Node, Integer> indices = new HashMap<>();
+
+            for (int i = 0; i < this.nodes.length; i++) {
+                indices.put(this.nodes[i], i);
+            }
+
+            // Each row is built as neighbor << 8 | mark, sorted; more than one edge between two nodes is OTHER.
+            long[][] rows = new long[this.nodes.length][];
+            this.offsets = new int[this.nodes.length + 1];
+
+            for (int i = 0; i < this.nodes.length; i++) {
+                Node node = this.nodes[i];
+                List<Edge> edges = graph.getEdges(node);
+                long[] row = new long[edges.size()];
+                int size = 0;
+
+                for (Edge edge : edges) {
+                    Node other = edge.getDistalNode(node);
+                    if (other == node) continue;
+                    row[size++] = ((long) indices.get(other) << 8) | mark(edge, node);
+                }
+
+                row = Arrays.copyOf(row, size);
+                Arrays.sort(row);
+                int n = 0;
+
+                for (int k = 0; k < row.length; k++) {
+                    if (n > 0 && row[n - 1] >>> 8 == row[k] >>> 8) {
+                        row[n - 1] = (row[k] >>> 8) << 8 | OTHER;
+                    } else {
+                        row[n++] = row[k];
+                    }
+                }
+
+                rows[i] = Arrays.copyOf(row, n);
+                this.offsets[i + 1] = this.offsets[i] + n;
+            }
+
+            int size = this.offsets[this.nodes.length];
+            this.nodeAt = new int[size];
+            this.neighbors = new int[size];
+            this.mirror = new int[size];
+            this.marks = new byte[size];
+
+            for (int i = 0; i < this.nodes.length; i++) {
+                for (int k = 0; k < rows[i].length; k++) {
+                    int p = this.offsets[i] + k;
+                    this.nodeAt[p] = i;
+                    this.neighbors[p] = (int) (rows[i][k] >>> 8);
+                    this.marks[p] = (byte) (rows[i][k] & 0xff);
+                }
+            }
+
+            for (int p = 0; p < size; p++) {
+                this.mirror[p] = position(this.neighbors[p], this.nodeAt[p]);
+            }
+
+            this.initialMarks = Arrays.copyOf(this.marks, size);
+            this.queued = new boolean[size];
+        }
+
+        private static byte mark(Edge edge, Node node) {
+            if (Edges.isUndirectedEdge(edge)) return UNDIRECTED;
+            if (!Edges.isDirectedEdge(edge)) return OTHER;
+            return edge.pointsTowards(node) ? IN : OUT;
+        }
+
+        // The position of j in the row of i, or -1 if they are not adjacent.
+        private int position(int i, int j) {
+            int p = Arrays.binarySearch(neighbors, offsets[i], offsets[i + 1], j);
+            return p < 0 ? -1 : p;
+        }
+
+        // Replaces in the graph each edge whose mark has changed, returning the endpoints of those edges.
+        private Set<Node> writeChanges(Graph graph) {
+            Set<Node> affected = new HashSet<>();
+
+            for (int p = 0; p < marks.length; p++) {
+                int i = nodeAt[p];
+                int j = neighbors[p];
+
+                if (i > j || marks[p] == initialMarks[p]) continue;
+
+                Node a = nodes[i];
+                Node b = nodes[j];
+
+                graph.removeEdge(graph.getEdge(a, b));
+
+                if (marks[p] == UNDIRECTED) {
+                    graph.addUndirectedEdge(a, b);
+                } else if (marks[p] == OUT) {
+                    graph.addDirectedEdge(a, b);
+                } else {
+                    graph.addDirectedEdge(b, a);
+                }
+
+                affected.add(a);
+                affected.add(b);
+            }
+
+            return affected;
+        }
+    }
+
+    // Undirected edges waiting to be checked, each held once, by its position from its lower-numbered endpoint.
+    private static class Worklist {
+        private final Adjacencies g;
+        private final ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        private Worklist(Adjacencies g) {
+            this.g = g;
+        }
+
+        // Adds the undirected edges of node x.
+        private void addUndirected(int x) {
+            for (int q = g.offsets[x]; q < g.offsets[x + 1]; q++) {
+                if (g.marks[q] != UNDIRECTED) continue;
+                int p = x < g.neighbors[q] ? q : g.mirror[q];
+
+                if (!g.queued[p]) {
+                    g.queued[p] = true;
+                    queue.add(p);
+                }
+            }
+        }
+
+        private int poll() {
+            Integer p = queue.poll();
+            if (p == null) return -1;
+            g.queued[p] = false;
+            return p;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.IKnowledge;
+import edu.cmu.tetrad.data.Knowledge2;
+import edu.cmu.tetrad.graph.CompactGraph;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Performs the possible-D-SEP step of FCI, looking for each edge x *-* y for a subset of Possible-D-Sep(x, y) or of
+ * Possible-D-Sep(y, x) that makes x and y independent, as SepsetsPossibleDsep does, and removing the edge if one is
+ * found. The edges removed and the SepsetMap returned are those of the sequential loop in Fci.
+ * <p>
+ * That loop visits the edges in order and removes each edge as soon as a sepset is found for it, so the
+ * possible-D-SEP sets of later edges are taken from a graph with fewer edges. Here every edge is first searched in
+ * parallel, one task per edge on the shared pool, with possible-D-SEP sets taken from the graph as it stands at the
+ * start of the step, held as a CompactGraph so that many threads can read it at once. The results are then applied
+ * in the order of the sequential loop, a result being used only if the possible-D-SEP sets it tried are those of the
+ * graph with the edges removed so far; otherwise the edge is searched again against that graph, on the calling
+ * thread. Finding possible-D-SEP sets is cheap next to trying their subsets, so most of the work is done in parallel
+ * unless many edges are removed. With parallel set to false the first searches are also made on the calling thread.
+ * <p>
+ * The independence test must be safe to call from several threads, with getScore() reporting the calling thread's
+ * last test, as for IndTestFisherZConcurrent or CachingIndependenceTest.
+ * <p>
+ * The work for one edge may be bounded by the time allowed to it and by the size of the possible-D-SEP sets whose
+ * subsets are tried.
+ *
+ * @author agent
+ * @see SepsetsPossibleDsep
+ */
+public class PossibleDsepConcurrent {
+
+    /**
+     * The independence test.
+     */
+    private final IndependenceTest test;
+
+    /**
+     * Specification of which edges are forbidden or required.
+     */
+    private IKnowledge knowledge = new Knowledge2();
+
+    /**
+     * The largest conditioning set tried, or -1 for no limit.
+     */
+    private int depth = -1;
+
+    /**
+     * The longest path followed in finding possible-D-SEP sets, or -1 for no limit.
+     */
+    private int maxPathLength = -1;
+
+    /**
+     * The most nodes of a possible-D-SEP set whose subsets are tried, or -1 for all of them.
+     */
+    private int maxPossibleDsepSize = -1;
+
+    /**
+     * The time allowed to one edge, in milliseconds, or -1 for no limit.
+     */
+    private long maxMillisPerEdge = -1;
+
+    /**
+     * True if edges should be examined in parallel.
+     */
+    private boolean parallel = true;
+
+    /**
+     * Set to true if verbose output is desired.
+     */
+    private boolean verbose = false;
+
+    // The concurrency pool.
+    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+
+    //==========================CONSTRUCTORS=============================//
+
+    public PossibleDsepConcurrent(IndependenceTest test) {
+        if (test == null) {
+            throw new NullPointerException("Independence test must not be null.");
+        }
+
+        this.test = test;
+    }
+
+    //==========================PUBLIC METHODS===========================//
+
+    /**
+     * Removes from the graph each edge x *-* y for which a sepset is found among the subsets of Possible-D-Sep(x, y)
+     * or Possible-D-Sep(y, x), visiting the edges in the order of graph.getEdges() and taking these sets from the
+     * graph with the edges removed so far taken out, as the sequential loop in Fci does.
+     *
+     * @return the sepsets of the edges removed.
+     */
+    public SepsetMap search(Graph graph) {
+        final List<Edge> edges = new ArrayList<>(graph.getEdges());
+        final List<SepsetsPossibleDsep.Search> found = new ArrayList<>(edges.size());
+
+        for (int i = 0; i < edges.size(); i++) {
+            found.add(null);
+        }
+
+        final SepsetsPossibleDsep snapshot = sepsetProducer(new CompactGraph(graph));
+
+        // One task per edge.
+        class EdgeTask extends RecursiveTask<Boolean> {
+            private final int from;
+            private final int to;
+
+            private EdgeTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected Boolean compute() {
+                if (to - from == 1) {
+                    if (!Thread.currentThread().isInterrupted()) {
+                        Edge edge = edges.get(from);
+                        found.set(from, snapshot.search(edge.getNode1(), edge.getNode2()));
+                    }
+                } else {
+                    int mid = (from + to) >>> 1;
+                    invokeAll(new EdgeTask(from, mid), new EdgeTask(mid, to));
+                }
+
+                return true;
+            }
+        }
+
+        if (edges.isEmpty()) {
+            return new SepsetMap();
+        } else if (parallel) {
+            pool.invoke(new EdgeTask(0, edges.size()));
+        } else {
+            for (int i = 0; i < edges.size(); i++) {
+                new EdgeTask(i, i + 1).compute();
+            }
+        }
+
+        SepsetsPossibleDsep current = sepsetProducer(graph);
+        SepsetMap sepsets = new SepsetMap();
+
+        for (int i = 0; i < edges.size(); i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            Node x = edges.get(i).getNode1();
+            Node y = edges.get(i).getNode2();
+
+            SepsetsPossibleDsep.Search search = found.get(i);
+
+            if (search == null || !current.isCurrent(x, y, search)) {
+                search = current.search(x, y);
+            }
+
+            List<Node> sepset = search.getSepset();
+            if (sepset == null) continue;
+
+            graph.removeEdge(x, y);
+            sepsets.set(x, y, sepset);
+
+            if (verbose) {
+                System.out.println("Possible DSEP Removed " + x + "--- " + y + " sepset = " + sepset);
+            }
+        }
+
+        return sepsets;
+    }
+
+    public IKnowledge getKnowledge() {
+        return knowledge;
+    }
+
+    public void setKnowledge(IKnowledge knowledge) {
+        if (knowledge == null) {
+            throw new NullPointerException("Knowledge must not be null.");
+        }
+
+        this.knowledge = knowledge;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        if (depth < -1) {
+            throw new IllegalArgumentException("Depth must be -1 (unlimited) or >= 0: " + depth);
+        }
+
+        this.depth = depth;
+    }
+
+    public int getMaxPathLength() {
+        return maxPathLength;
+    }
+
+    public void setMaxPathLength(int maxPathLength) {
+        if (maxPathLength < -1) {
+            throw new IllegalArgumentException("Max path length must be -1 (unlimited) or >= 0: " + maxPathLength);
+        }
+
+        this.maxPathLength = maxPathLength;
+    }
+
+    public int getMaxPossibleDsepSize() {
+        return maxPossibleDsepSize;
+    }
+
+    /**
+     * Sets the most nodes of a possible-D-SEP set whose subsets are tried, or -1 for no limit. The nodes kept are
+     * those most strongly associated with the pair.
+     */
+    public void setMaxPossibleDsepSize(int maxPossibleDsepSize) {
+        if (maxPossibleDsepSize < -1) {
+            throw new IllegalArgumentException("Max possible dsep size must be -1 (unlimited) or >= 0: "
+                    + maxPossibleDsepSize);
+        }
+
+        this.maxPossibleDsepSize = maxPossibleDsepSize;
+    }
+
+    public long getMaxMillisPerEdge() {
+        return maxMillisPerEdge;
+    }
+
+    /**
+     * Sets the time allowed to one edge, in milliseconds, or -1 for no limit. An edge whose time runs out is kept.
+     * With a limit, the result may depend on timing and so may differ between runs.
+     */
+    public void setMaxMillisPerEdge(long maxMillisPerEdge) {
+        if (maxMillisPerEdge < -1) {
+            throw new IllegalArgumentException("Max millis must be -1 (unlimited) or >= 0: " + maxMillisPerEdge);
+        }
+
+        this.maxMillisPerEdge = maxMillisPerEdge;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    //==========================PRIVATE METHODS==========================//
+
+    private SepsetsPossibleDsep sepsetProducer(Graph graph) {
+        SepsetsPossibleDsep sp = new SepsetsPossibleDsep(graph, test, knowledge, depth, maxPathLength);
+        sp.setMaxPossibleDsepSize(maxPossibleDsepSize);
+        sp.setMaxMillisPerSepset(maxMillisPerEdge);
+        return sp;
+    }
+}
@@ -0,0 +1,290 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradLogger;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Calculates score differences for clients in other processes. A worker JVM loads the data set (or
+ * covariance matrix), makes the same score the client uses, and serves it, for example with
+ * <pre>
+ *     new ScoreWorker(score).serve(new ServerSocket(port));
+ * </pre>
+ * A client connects with a SocketScoreTransport and passes the transports to a DistributedScore.
+ * <p>
+ * Requests are answered in the order received on each connection. The differences in a request are
+ * calculated in parallel, so the score must be safe to use from several threads.
+ *
+ * @author agent
+ */
+public class ScoreWorker {
+
+    // Request types.
+    static final byte VARIABLES = 1;
+    static final byte SCORE_DIFFS = 2;
+    static final byte CLOSE = 3;
+
+    // Response statuses.
+    private static final byte OK = 0;
+    private static final byte FAILED = 1;
+
+    // Requests with at most this many differences are calculated in a single task.
+    private static final int CHUNK = 32;
+
+    private final Score score;
+    private final ForkJoinPool pool;
+
+    public ScoreWorker(Score score) {
+        this(score, ForkJoinPoolInstance.getInstance().getPool());
+    }
+
+    public ScoreWorker(Score score, ForkJoinPool pool) {
+        if (score == null) {
+            throw new NullPointerException("Score must not be null.");
+        }
+
+        if (pool == null) {
+            throw new NullPointerException("Pool must not be null.");
+        }
+
+        this.score = score;
+        this.pool = pool;
+    }
+
+    /**
+     * @return an array whose i'th element is localScoreDiff(x[i], y[i], z[i]) for the worker's score.
+     */
+    public double[] localScoreDiffs(final int[] x, final int[] y, final int[][] z) {
+        if (x.length != y.length || x.length != z.length) {
+            throw new IllegalArgumentException("Batch arrays must be the same length.");
+        }
+
+        final double[] diffs = new double[x.length];
+
+        class DiffTask extends RecursiveAction {
+            private final int from;
+            private final int to;
+
+            private DiffTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= CHUNK) {
+                    for (int i = from; i < to; i++) {
+                        diffs[i] = score.localScoreDiff(x[i], y[i], z[i]);
+                    }
+                } else {
+                    int mid = (from + to) / 2;
+                    invokeAll(new DiffTask(from, mid), new DiffTask(mid, to));
+                }
+            }
+        }
+
+        if (x.length <= CHUNK) {
+            new DiffTask(0, x.length).compute();
+        } else {
+            pool.invoke(new DiffTask(0, x.length));
+        }
+
+        return diffs;
+    }
+
+    /**
+     * Answers requests from the given input until the client closes the connection.
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        DataInputStream _in = new DataInputStream(new BufferedInputStream(in));
+        DataOutputStream _out = new DataOutputStream(new BufferedOutputStream(out));
+
+        while (true) {
+            byte request;
+
+            try {
+                request = _in.readByte();
+            } catch (EOFException e) {
+                return;
+            }
+
+            if (!handle(request, _in, _out)) {
+                return;
+            }
+
+            _out.flush();
+        }
+    }
+
+    /**
+     * Accepts connections on the given socket, answering each on its own thread, until the socket is closed.
+     */
+    public void serve(ServerSocket serverSocket) throws IOException {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) return;
+                throw e;
+            }
+
+            socket.setTcpNoDelay(true);
+
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try (Socket _socket = socket) {
+                        serve(_socket.getInputStream(), _socket.getOutputStream());
+                    } catch (IOException e) {
+                        TetradLogger.getInstance().forceLogMessage("Score worker connection from "
+                                + socket.getRemoteSocketAddress() + " failed: " + e);
+                    }
+                }
+            }, "ScoreWorker " + socket.getRemoteSocketAddress());
+
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public Score getScore() {
+        return score;
+    }
+
+    //==============================PROTOCOL=======================//
+
+    // Answers one request, returning false if it was a request to close.
+    boolean handle(byte request, DataInput in, DataOutput out) throws IOException {
+        switch (request) {
+            case VARIABLES:
+                List<Node> variables = score.getVariables();
+                out.writeByte(OK);
+                out.writeInt(variables.size());
+
+                for (Node node : variables) {
+                    out.writeUTF(node.getName());
+                }
+
+                return true;
+            case SCORE_DIFFS:
+                int n = in.readInt();
+                int[] x = new int[n];
+                int[] y = new int[n];
+                int[][] z = new int[n][];
+
+                for (int i = 0; i < n; i++) {
+                    x[i] = in.readInt();
+                    y[i] = in.readInt();
+                    z[i] = new int[in.readInt()];
+
+                    for (int j = 0; j < z[i].length; j++) {
+                        z[i][j] = in.readInt();
+                    }
+                }
+
+                double[] diffs;
+
+                try {
+                    diffs = localScoreDiffs(x, y, z);
+                } catch (RuntimeException e) {
+                    out.writeByte(FAILED);
+                    out.writeUTF(String.valueOf(e));
+                    return true;
+                }
+
+                out.writeByte(OK);
+
+                for (double diff : diffs) {
+                    out.writeDouble(diff);
+                }
+
+                return true;
+            case CLOSE:
+                return false;
+            default:
+                throw new IOException("Unrecognized request: " + request);
+        }
+    }
+
+    static void writeVariablesRequest(DataOutput out) throws IOException {
+        out.writeByte(VARIABLES);
+    }
+
+    static List<String> readVariablesResponse(DataInput in) throws IOException {
+        checkStatus(in);
+        int n = in.readInt();
+        List<String> names = new ArrayList<>(n);
+
+        for (int i = 0; i < n; i++) {
+            names.add(in.readUTF());
+        }
+
+        return names;
+    }
+
+    static void writeScoreDiffsRequest(DataOutput out, int[] x, int[] y, int[][] z) throws IOException {
+        if (x.length != y.length || x.length != z.length) {
+            throw new IllegalArgumentException("Batch arrays must be the same length.");
+        }
+
+        out.writeByte(SCORE_DIFFS);
+        out.writeInt(x.length);
+
+        for (int i = 0; i < x.length; i++) {
+            out.writeInt(x[i]);
+            out.writeInt(y[i]);
+            out.writeInt(z[i].length);
+
+            for (int v : z[i]) {
+                out.writeInt(v);
+            }
+        }
+    }
+
+    static double[] readScoreDiffsResponse(DataInput in, int n) throws IOException {
+        checkStatus(in);
+        double[] diffs = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            diffs[i] = in.readDouble();
+        }
+
+        return diffs;
+    }
+
+    private static void checkStatus(DataInput in) throws IOException {
+        if (in.readByte() != OK) {
+            throw new IOException("Score worker failed: " + in.readUTF());
+        }
+    }
+}
@@ -42,6 +42,14 @@ public class SepsetsPossibleDsep implements SepsetProducer {
     private boolean verbose = false;
     private IndependenceTest test;
 
+    // The most nodes of a possible-D-SEP set searched over, keeping those most strongly associated with the pair, or
+    // -1 for all of them.
+    private int maxPossibleDsepSize = -1;
+
+    // The time allowed to one call to getSepset, in milliseconds, or -1 for no limit. A pair whose time runs out is
+    // treated as having no sepset.
+    private long maxMillisPerSepset = -1;
+
     public SepsetsPossibleDsep(Graph graph, IndependenceTest independenceTest, IKnowledge knowledge,
                                int depth, int maxPathLength) {
         this.graph = graph;
@@ -56,13 +64,38 @@ public class SepsetsPossibleDsep implements SepsetProducer {
      * Pick out the sepset from among adj(i) or adj(k) with the highest p value.
      */
     public List<Node> getSepset(Node i, Node k) {
-        List<Node> condSet = getCondSet(test, i, k, maxPathLength);
+        return search(i, k).getSepset();
+    }
+
+    /**
+     * Looks for a sepset for i and k as getSepset does, also returning the possible-D-SEP sets whose subsets were
+     * tried, so that it can be told later whether the search would still give the same result.
+     */
+    Search search(Node i, Node k) {
+        long deadline = maxMillisPerSepset == -1 ? Long.MAX_VALUE : System.currentTimeMillis() + maxMillisPerSepset;
+
+        List<Node> possibleDsep1 = getPossibleDsep(i, k, maxPathLength);
+        List<Node> possibleDsep2 = null;
+        List<Node> condSet = getCondSet(i, k, possibleDsep1, deadline);
 
         if (condSet == null) {
-            condSet = getCondSet(test, k, i, maxPathLength);
+            possibleDsep2 = getPossibleDsep(k, i, maxPathLength);
+            condSet = getCondSet(k, i, possibleDsep2, deadline);
+        }
+
+        return new Search(possibleDsep1, possibleDsep2, condSet);
+    }
+
+    /**
+     * @return true if the possible-D-SEP sets of i and k in this producer's graph are those tried in the given search
+     * of i and k, in which case searching again would give the same result (time limits aside).
+     */
+    boolean isCurrent(Node i, Node k, Search search) {
+        if (!getPossibleDsep(i, k, maxPathLength).equals(search.possibleDsep1)) {
+            return false;
         }
 
-        return condSet;
+        return search.possibleDsep2 == null || getPossibleDsep(k, i, maxPathLength).equals(search.possibleDsep2);
     }
 
     public boolean isCollider(Node i, Node j, Node k) {
@@ -80,8 +113,7 @@ public class SepsetsPossibleDsep implements SepsetProducer {
         return independenceTest.isIndependent(a, b, c);
     }
 
-    private List<Node> getCondSet(IndependenceTest test, Node node1, Node node2, int maxPathLength) {
-        final List<Node> possibleDsepSet = getPossibleDsep(node1, node2, maxPathLength);
+    private List<Node> getCondSet(Node node1, Node node2, List<Node> possibleDsepSet, long deadline) {
         List<Node> possibleDsep = new ArrayList<>(possibleDsepSet);
         boolean noEdgeRequired = knowledge.noEdgeRequired(node1.getName(), node2.getName());
 
@@ -96,6 +128,10 @@ public class SepsetsPossibleDsep implements SepsetProducer {
                     break;
                 }
 
+                if (System.currentTimeMillis() > deadline) {
+                    return null;
+                }
+
                 List<Node> condSet = GraphUtils.asList(choice, possibleDsep);
                 // check against bk knowledge added by DMalinsky 07/24/17 **/
                 if (!(knowledge == null)) {
@@ -124,6 +160,10 @@ public class SepsetsPossibleDsep implements SepsetProducer {
     private List<Node> getPossibleDsep(Node x, Node y, int maxPathLength) {
         List<Node> dsep = GraphUtils.possibleDsep(x, y, graph, maxPathLength, test);
 
+        if (maxPossibleDsepSize != -1 && dsep.size() > maxPossibleDsepSize) {
+            dsep = new ArrayList<>(dsep.subList(0, maxPossibleDsepSize));
+        }
+
         if (verbose) {
             System.out.println("Possible-D-Sep(" + x + ", " + y + ") = " + dsep);
         }
@@ -178,5 +218,57 @@ public class SepsetsPossibleDsep implements SepsetProducer {
         this.verbose = verbose;
     }
 
+    public int getMaxPossibleDsepSize() {
+        return maxPossibleDsepSize;
+    }
+
+    /**
+     * Sets the most nodes of a possible-D-SEP set that conditioning sets are drawn from, or -1 for no limit. The
+     * nodes kept are those most strongly associated with the pair.
+     */
+    public void setMaxPossibleDsepSize(int maxPossibleDsepSize) {
+        if (maxPossibleDsepSize < -1) {
+            throw new IllegalArgumentException("Max possible dsep size must be -1 (unlimited) or >= 0: "
+                    + maxPossibleDsepSize);
+        }
+
+        this.maxPossibleDsepSize = maxPossibleDsepSize;
+    }
+
+    public long getMaxMillisPerSepset() {
+        return maxMillisPerSepset;
+    }
+
+    /**
+     * Sets the time allowed to one call to getSepset, in milliseconds, or -1 for no limit. If the time runs out
+     * before a sepset is found, getSepset returns null.
+     */
+    public void setMaxMillisPerSepset(long maxMillisPerSepset) {
+        if (maxMillisPerSepset < -1) {
+            throw new IllegalArgumentException("Max millis must be -1 (unlimited) or >= 0: " + maxMillisPerSepset);
+        }
+
+        this.maxMillisPerSepset = maxMillisPerSepset;
+    }
+
+    /**
+     * The result of a search for a sepset: the possible-D-SEP sets tried, the second being null if it was not
+     * needed, and the sepset found, or null.
+     */
+    static final class Search {
+        private final List<Node> possibleDsep1;
+        private final List<Node> possibleDsep2;
+        private final List<Node> sepset;
+
+        private Search(List<Node> possibleDsep1, List<Node> possibleDsep2, List<Node> sepset) {
+            this.possibleDsep1 = possibleDsep1;
+            this.possibleDsep2 = possibleDsep2;
+            this.sepset = sepset;
+        }
+
+        List<Node> getSepset() {
+            return sepset;
+        }
+    }
 }
 
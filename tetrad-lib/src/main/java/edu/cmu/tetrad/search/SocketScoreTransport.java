@@ -0,0 +1,84 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Sends requests to a ScoreWorker serving on a socket. Requests on one transport are sent one at a time;
+ * give a DistributedScore several transports to the same worker to keep more than one request in flight.
+ *
+ * @author agent
+ */
+public class SocketScoreTransport implements ScoreTransport {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public SocketScoreTransport(String host, int port) throws IOException {
+        this(new Socket(host, port));
+    }
+
+    public SocketScoreTransport(Socket socket) throws IOException {
+        if (socket == null) {
+            throw new NullPointerException("Socket must not be null.");
+        }
+
+        socket.setTcpNoDelay(true);
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    @Override
+    public synchronized List<String> getVariableNames() throws IOException {
+        ScoreWorker.writeVariablesRequest(out);
+        out.flush();
+        return ScoreWorker.readVariablesResponse(in);
+    }
+
+    @Override
+    public synchronized double[] localScoreDiffs(int[] x, int[] y, int[][] z) throws IOException {
+        ScoreWorker.writeScoreDiffsRequest(out, x, y, z);
+        out.flush();
+        return ScoreWorker.readScoreDiffsResponse(in, x.length);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (!socket.isClosed()) {
+                out.writeByte(ScoreWorker.CLOSE);
+                out.flush();
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    public String toString() {
+        return "Score worker at " + socket.getRemoteSocketAddress();
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2026 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.cmu.tetrad.stat.correlation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes covariances of row data by tiles. The covariance matrix is split
+ * into square tiles of TILE_SIZE columns, which are computed in parallel on
+ * the common fork-join pool. For each tile, the data is read a block of rows
+ * at a time into small column-major buffers of centered values, and the tile
+ * is updated with dot products of contiguous arrays, which the JIT compiles
+ * into unrolled, pipelined loops. The memory read by a task at one time fits
+ * in cache, and the data is read in row order.
+ *
+ * @author agent
+ */
+public class BlockedCovariance implements RealCovariance {
+
+    // number of variables in a tile
+    static final int TILE_SIZE = 64;
+
+    // number of rows read into the buffers of a tile at a time
+    static final int ROW_BLOCK_SIZE = 256;
+
+    private final double[][] data;
+
+    private final int numOfRows;
+
+    private final int numOfCols;
+
+    /**
+     * @param data data[row][col]
+     */
+    public BlockedCovariance(double[][] data) {
+        this(data, data.length);
+    }
+
+    /**
+     * @param data data[row][col]
+     * @param numOfRows the number of rows of data to use, from the first
+     */
+    public BlockedCovariance(double[][] data, int numOfRows) {
+        if (numOfRows < 1 || numOfRows > data.length) {
+            throw new IllegalArgumentException("Number of rows must be between 1 and " + data.length + ": " + numOfRows);
+        }
+
+        this.data = data;
+        this.numOfRows = numOfRows;
+        this.numOfCols = data[0].length;
+    }
+
+    @Override
+    public double[] computeLowerTriangle(boolean biasCorrected) {
+        double[][] covariance = compute(biasCorrected);
+        double[] lowerTriangle = new double[(numOfCols * (numOfCols + 1)) / 2];
+        int index = 0;
+        for (int col = 0; col < numOfCols; col++) {
+            for (int col2 = 0; col2 <= col; col2++) {
+                lowerTriangle[index++] = covariance[col][col2];
+            }
+        }
+
+        return lowerTriangle;
+    }
+
+    @Override
+    public double[][] compute(boolean biasCorrected) {
+        double[][] covariance = computeCoMoments(computeMeans());
+        double divisor = biasCorrected ? numOfRows - 1 : numOfRows;
+        for (double[] row : covariance) {
+            for (int col = 0; col < numOfCols; col++) {
+                row[col] /= divisor;
+            }
+        }
+
+        return covariance;
+    }
+
+    /**
+     * @return the means of the columns
+     */
+    public double[] computeMeans() {
+        double[] means = new double[numOfCols];
+        for (int row = 0; row < numOfRows; row++) {
+            double[] values = data[row];
+            for (int col = 0; col < numOfCols; col++) {
+                means[col] += values[col];
+            }
+        }
+        for (int col = 0; col < numOfCols; col++) {
+            means[col] /= numOfRows;
+        }
+
+        return means;
+    }
+
+    /**
+     * Computes the sums of products of deviations from the given means.
+     *
+     * @param means column means
+     * @return the symmetric co-moment matrix
+     */
+    public double[][] computeCoMoments(double[] means) {
+        double[][] coMoments = new double[numOfCols][numOfCols];
+
+        List<TileAction> actions = new ArrayList<>();
+        for (int start = 0; start < numOfCols; start += TILE_SIZE) {
+            for (int start2 = 0; start2 <= start; start2 += TILE_SIZE) {
+                actions.add(new TileAction(coMoments, means, start, Math.min(start + TILE_SIZE, numOfCols), start2, Math.min(start2 + TILE_SIZE, numOfCols)));
+            }
+        }
+
+        if (actions.size() == 1) {
+            actions.get(0).compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(actions);
+                }
+            });
+        }
+
+        return coMoments;
+    }
+
+    /**
+     * @return the sum of a[i] * b[i] for i less than length, in four
+     * independent sums so that the multiplications may be pipelined
+     */
+    public static double dot(double[] a, double[] b, int length) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += a[i] * b[i];
+            sum1 += a[i + 1] * b[i + 1];
+            sum2 += a[i + 2] * b[i + 2];
+            sum3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += a[i] * b[i];
+        }
+
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Computes the co-moments of columns start to end - 1 with columns start2
+     * to end2 - 1, where start2 is not after start.
+     */
+    class TileAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 5436017262314460817L;
+
+        private final double[][] coMoments;
+        private final double[] means;
+        private final int start;
+        private final int end;
+        private final int start2;
+        private final int end2;
+
+        public TileAction(double[][] coMoments, double[] means, int start, int end, int start2, int end2) {
+            this.coMoments = coMoments;
+            this.means = means;
+            this.start = start;
+            this.end = end;
+            this.start2 = start2;
+            this.end2 = end2;
+        }
+
+        @Override
+        protected void compute() {
+            boolean diagonal = start == start2;
+            int size = end - start;
+            int size2 = end2 - start2;
+
+            double[][] block = new double[size][ROW_BLOCK_SIZE];
+            double[][] block2 = diagonal ? block : new double[size2][ROW_BLOCK_SIZE];
+            double[][] sums = new double[size][size2];
+
+            for (int firstRow = 0; firstRow < numOfRows; firstRow += ROW_BLOCK_SIZE) {
+                int length = Math.min(ROW_BLOCK_SIZE, numOfRows - firstRow);
+                fill(block, start, end, firstRow, length);
+                if (!diagonal) {
+                    fill(block2, start2, end2, firstRow, length);
+                }
+
+                for (int i = 0; i < size; i++) {
+                    int limit = diagonal ? i + 1 : size2;
+                    for (int j = 0; j < limit; j++) {
+                        sums[i][j] += dot(block[i], block2[j], length);
+                    }
+                }
+            }
+
+            for (int i = 0; i < size; i++) {
+                int limit = diagonal ? i + 1 : size2;
+                for (int j = 0; j < limit; j++) {
+                    coMoments[start + i][start2 + j] = sums[i][j];
+                    coMoments[start2 + j][start + i] = sums[i][j];
+                }
+            }
+        }
+
+        // copies the centered values of columns from to to - 1 into the block, by column
+        private void fill(double[][] block, int from, int to, int firstRow, int length) {
+            for (int r = 0; r < length; r++) {
+                double[] values = data[firstRow + r];
+                for (int col = from; col < to; col++) {
+                    block[col - from][r] = values[col] - means[col];
+                }
+            }
+        }
+
+    }
+
+}
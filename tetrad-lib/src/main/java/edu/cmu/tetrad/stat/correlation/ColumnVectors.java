@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2026 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.cmu.tetrad.stat.correlation;
+
+/**
+ * Continuous data that can be read one column at a time, so that statistics
+ * can be computed without the data being held as a double[][] array.
+ *
+ * @author agent
+ */
+public interface ColumnVectors {
+
+    public int getNumOfRows();
+
+    public int getNumOfCols();
+
+    /**
+     * Copies the given column into vector[0], ..., vector[getNumOfRows() - 1].
+     *
+     * @param col column index
+     * @param vector array of length at least getNumOfRows()
+     */
+    public void getColumn(int col, double[] vector);
+
+}
@@ -33,8 +33,13 @@ import java.util.concurrent.RecursiveAction;
 public class RealCovarianceMatrixForkJoin implements RealCovariance {
     static final long serialVersionUID = 23L;
 
+    // bytes of column vectors held by each task when reading from columns
+    private static final long BLOCK_BYTES = 4 * 1024 * 1024;
+
     private final double[][] data;
 
+    private final ColumnVectors columns;
+
     private final int numOfRows;
 
     private final int numOfCols;
@@ -43,19 +48,41 @@ public class RealCovarianceMatrixForkJoin implements RealCovariance {
 
     public RealCovarianceMatrixForkJoin(double[][] data, int numOfThreads) {
         this.data = data;
+        this.columns = null;
         this.numOfRows = data.length;
         this.numOfCols = data[0].length;
         this.numOfThreads = (numOfThreads > numOfCols) ? numOfCols : numOfThreads;
     }
 
+    /**
+     * Computes covariances from data read a column at a time. Each task holds
+     * only a small block of columns, so the data need not fit in the heap.
+     *
+     * @param columns the data
+     * @param numOfThreads number of threads
+     */
+    public RealCovarianceMatrixForkJoin(ColumnVectors columns, int numOfThreads) {
+        this.data = null;
+        this.columns = columns;
+        this.numOfRows = columns.getNumOfRows();
+        this.numOfCols = columns.getNumOfCols();
+        this.numOfThreads = (numOfThreads > numOfCols) ? numOfCols : numOfThreads;
+    }
+
     @Override
     public double[] computeLowerTriangle(boolean biasCorrected) {
         double[] covarianceMatrix = new double[(numOfCols * (numOfCols + 1)) / 2];
         double[] means = new double[numOfCols];
 
         final ForkJoinPool pool = new ForkJoinPool(this.numOfThreads);
-        pool.invoke(new MeanAction(means, data, 0, numOfCols - 1));
-        pool.invoke(new CovarianceLowerTriangleAction(covarianceMatrix, means, 0, numOfCols - 1, biasCorrected));
+        if (columns == null) {
+            pool.invoke(new MeanAction(means, data, 0, numOfCols - 1));
+            pool.invoke(new CovarianceLowerTriangleAction(covarianceMatrix, means, 0, numOfCols - 1, biasCorrected));
+        } else {
+            pool.invoke(new ColumnCovarianceAction((col, col2, covariance) -> {
+                covarianceMatrix[(col * (col + 1)) / 2 + col2] = covariance;
+            }, 0, numOfCols - 1, biasCorrected));
+        }
         pool.shutdown();
 
         return covarianceMatrix;
@@ -67,8 +94,15 @@ public class RealCovarianceMatrixForkJoin implements RealCovariance {
         double[] means = new double[numOfCols];
 
         final ForkJoinPool pool = new ForkJoinPool(this.numOfThreads);
-        pool.invoke(new MeanAction(means, data, 0, numOfCols - 1));
-        pool.invoke(new CovarianceAction(covarianceMatrix, means, 0, numOfCols - 1, biasCorrected));
+        if (columns == null) {
+            pool.invoke(new MeanAction(means, data, 0, numOfCols - 1));
+            pool.invoke(new CovarianceAction(covarianceMatrix, means, 0, numOfCols - 1, biasCorrected));
+        } else {
+            pool.invoke(new ColumnCovarianceAction((col, col2, covariance) -> {
+                covarianceMatrix[col][col2] = covariance;
+                covarianceMatrix[col2][col] = covariance;
+            }, 0, numOfCols - 1, biasCorrected));
+        }
         pool.shutdown();
 
         return covarianceMatrix;
@@ -197,6 +231,90 @@ public class RealCovarianceMatrixForkJoin implements RealCovariance {
 
     }
 
+    interface CovarianceSink {
+
+        void set(int col, int col2, double covariance);
+
+    }
+
+    /**
+     * Computes the covariances of columns start to end with all columns before
+     * them, reading columns from the column vectors. Ranges are halved until
+     * their columns fit in BLOCK_BYTES.
+     */
+    class ColumnCovarianceAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 7315226342958722135L;
+
+        private final CovarianceSink sink;
+        private final int start;
+        private final int end;
+        private final boolean biasCorrected;
+
+        public ColumnCovarianceAction(CovarianceSink sink, int start, int end, boolean biasCorrected) {
+            this.sink = sink;
+            this.start = start;
+            this.end = end;
+            this.biasCorrected = biasCorrected;
+        }
+
+        private void computeCovariance() {
+            int size = end - start + 1;
+            double[][] vectors = new double[size][numOfRows];
+            double[] vectorMeans = new double[size];
+            for (int i = 0; i < size; i++) {
+                columns.getColumn(start + i, vectors[i]);
+                vectorMeans[i] = mean(vectors[i]);
+            }
+
+            double[] other = new double[numOfRows];
+            for (int col2 = 0; col2 <= end; col2++) {
+                double[] vector2;
+                double mean2;
+                if (col2 >= start) {
+                    vector2 = vectors[col2 - start];
+                    mean2 = vectorMeans[col2 - start];
+                } else {
+                    columns.getColumn(col2, other);
+                    vector2 = other;
+                    mean2 = mean(other);
+                }
+
+                for (int col = Math.max(col2, start); col <= end; col++) {
+                    double[] vector = vectors[col - start];
+                    double mean = vectorMeans[col - start];
+                    double variance = 0;
+                    for (int row = 0; row < numOfRows; row++) {
+                        variance += ((vector[row] - mean) * (vector2[row] - mean2) - variance) / (row + 1);
+                    }
+                    sink.set(col, col2, biasCorrected ? variance * ((double) numOfRows / (double) (numOfRows - 1)) : variance);
+                }
+            }
+        }
+
+        private double mean(double[] vector) {
+            double sum = 0;
+            for (int row = 0; row < numOfRows; row++) {
+                sum += vector[row];
+            }
+
+            return sum / numOfRows;
+        }
+
+        @Override
+        protected void compute() {
+            long blockSize = Math.max(1, BLOCK_BYTES / (8L * Math.max(1, numOfRows)));
+            if (end - start + 1 <= blockSize) {
+                computeCovariance();
+            } else {
+                int middle = (start + end) / 2;
+                invokeAll(new ColumnCovarianceAction(sink, start, middle, biasCorrected),
+                        new ColumnCovarianceAction(sink, middle + 1, end, biasCorrected));
+            }
+        }
+
+    }
+
     class MeanAction extends RecursiveAction {
 
         private static final long serialVersionUID = 2419217605658853345L;
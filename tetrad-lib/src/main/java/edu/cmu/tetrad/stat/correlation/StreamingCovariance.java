@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2026 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.cmu.tetrad.stat.correlation;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+
+/**
+ * Accumulates the means and covariances of rows of data given one at a time,
+ * so that a covariance matrix may be computed for data that is never held in
+ * memory all at once; only the last BATCH_SIZE rows and a p x p matrix are
+ * kept.
+ *
+ * Rows are buffered and each full batch is reduced to its means and
+ * co-moments with BlockedCovariance, then merged into the running totals
+ * with the pairwise update of Chan, Golub and LeVeque, which extends
+ * Welford's one-pass update from one row to a batch of rows. No pass is made
+ * over the data to compute means first.
+ *
+ * The totals are sufficient statistics for the covariance matrix, so
+ * accumulators for different parts of the data (batches arriving over time,
+ * shards, or separate data sets over the same variables) may be merged with
+ * the same update, giving the covariance matrix of all of the rows.
+ *
+ * @author agent
+ */
+public class StreamingCovariance implements Serializable {
+
+    private static final long serialVersionUID = 6107433498260167232L;
+
+    // number of rows reduced at a time
+    static final int BATCH_SIZE = 1024;
+
+    private final int numOfCols;
+
+    // buffered rows are merged into the totals before serialization
+    private transient double[][] batch;
+
+    private int batchSize;
+
+    private long numOfRows;
+
+    private final double[] means;
+
+    // sums of products of deviations from the means
+    private final double[][] coMoments;
+
+    public StreamingCovariance(int numOfCols) {
+        if (numOfCols < 1) {
+            throw new IllegalArgumentException("Number of columns must be at least 1: " + numOfCols);
+        }
+
+        this.numOfCols = numOfCols;
+        this.batch = new double[BATCH_SIZE][];
+        this.means = new double[numOfCols];
+        this.coMoments = new double[numOfCols][numOfCols];
+    }
+
+    /**
+     * Restores an accumulator from its totals.
+     *
+     * @param numOfRows number of rows
+     * @param means means of the columns
+     * @param coMoments sums of products of deviations from the means
+     */
+    public StreamingCovariance(long numOfRows, double[] means, double[][] coMoments) {
+        this(means.length);
+
+        if (numOfRows < 0) {
+            throw new IllegalArgumentException("Number of rows must be at least 0: " + numOfRows);
+        }
+        if (coMoments.length != numOfCols) {
+            throw new IllegalArgumentException(String.format("Expected %d rows of co-moments but found %d.", numOfCols, coMoments.length));
+        }
+
+        this.numOfRows = numOfRows;
+        System.arraycopy(means, 0, this.means, 0, numOfCols);
+        for (int i = 0; i < numOfCols; i++) {
+            System.arraycopy(coMoments[i], 0, this.coMoments[i], 0, numOfCols);
+        }
+    }
+
+    /**
+     * Adds a row. The array is copied.
+     *
+     * @param row values of the columns
+     */
+    public void add(double[] row) {
+        if (row.length != numOfCols) {
+            throw new IllegalArgumentException(String.format("Expected %d values but found %d.", numOfCols, row.length));
+        }
+
+        if (batch[batchSize] == null) {
+            batch[batchSize] = new double[numOfCols];
+        }
+        System.arraycopy(row, 0, batch[batchSize], 0, numOfCols);
+
+        if (++batchSize == BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Adds all of the remaining rows.
+     *
+     * @param rows rows of values of the columns
+     */
+    public void addAll(Iterator<double[]> rows) {
+        while (rows.hasNext()) {
+            add(rows.next());
+        }
+    }
+
+    /**
+     * Adds the rows added to another accumulator over the same columns, as
+     * if they had been added to this one. The other accumulator is not
+     * changed.
+     *
+     * @param other accumulator over the same columns
+     */
+    public void merge(StreamingCovariance other) {
+        if (other.numOfCols != numOfCols) {
+            throw new IllegalArgumentException(String.format("Expected %d columns but found %d.", numOfCols, other.numOfCols));
+        }
+
+        flush();
+
+        if (other == this) {
+            merge(numOfRows, means.clone(), copy(coMoments));
+        } else {
+            other.flush();
+            merge(other.numOfRows, other.means, other.coMoments);
+        }
+    }
+
+    /**
+     * @return an accumulator with the same totals, which may be added to
+     * separately
+     */
+    public StreamingCovariance copy() {
+        flush();
+
+        return new StreamingCovariance(numOfRows, means, coMoments);
+    }
+
+    public int getNumOfCols() {
+        return numOfCols;
+    }
+
+    public long getNumOfRows() {
+        return numOfRows + batchSize;
+    }
+
+    /**
+     * @return the means of the rows added so far
+     */
+    public double[] getMeans() {
+        flush();
+
+        return means.clone();
+    }
+
+    /**
+     * @return the sums of products of deviations from the means of the rows
+     * added so far
+     */
+    public double[][] getCoMoments() {
+        flush();
+
+        return copy(coMoments);
+    }
+
+    /**
+     * @param biasCorrected true to divide by n - 1 rather than n
+     * @return the covariance matrix of the rows added so far
+     */
+    public double[][] getCovariance(boolean biasCorrected) {
+        flush();
+
+        double divisor = biasCorrected ? numOfRows - 1 : numOfRows;
+        double[][] covariance = new double[numOfCols][numOfCols];
+        for (int i = 0; i < numOfCols; i++) {
+            for (int j = 0; j < numOfCols; j++) {
+                covariance[i][j] = coMoments[i][j] / divisor;
+            }
+        }
+
+        return covariance;
+    }
+
+    /**
+     * Merges the buffered rows into the totals.
+     */
+    private void flush() {
+        if (batchSize == 0) {
+            return;
+        }
+
+        BlockedCovariance blockedCovariance = new BlockedCovariance(batch, batchSize);
+        double[] batchMeans = blockedCovariance.computeMeans();
+        double[][] batchCoMoments = blockedCovariance.computeCoMoments(batchMeans);
+
+        int count = batchSize;
+        batchSize = 0;
+        merge(count, batchMeans, batchCoMoments);
+    }
+
+    /**
+     * Merges the totals of other rows into the totals.
+     */
+    private void merge(long count, double[] otherMeans, double[][] otherCoMoments) {
+        if (count == 0) {
+            return;
+        }
+
+        long total = numOfRows + count;
+        double weight = (double) count / total;
+        double crossWeight = (double) numOfRows * count / total;
+
+        double[] delta = new double[numOfCols];
+        for (int i = 0; i < numOfCols; i++) {
+            delta[i] = otherMeans[i] - means[i];
+        }
+
+        for (int i = 0; i < numOfCols; i++) {
+            double[] row = coMoments[i];
+            double[] otherRow = otherCoMoments[i];
+            double scaledDelta = crossWeight * delta[i];
+            for (int j = 0; j < numOfCols; j++) {
+                row[j] += otherRow[j] + scaledDelta * delta[j];
+            }
+        }
+
+        for (int i = 0; i < numOfCols; i++) {
+            means[i] += weight * delta[i];
+        }
+
+        numOfRows = total;
+    }
+
+    private static double[][] copy(double[][] matrix) {
+        double[][] copy = new double[matrix.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            copy[i] = matrix[i].clone();
+        }
+
+        return copy;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        flush();
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        batch = new double[BATCH_SIZE][];
+    }
+
+}
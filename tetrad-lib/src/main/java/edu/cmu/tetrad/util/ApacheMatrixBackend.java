@@ -0,0 +1,77 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import org.apache.commons.math3.linear.*;
+
+import java.util.Arrays;
+
+/**
+ * A MatrixBackend using the Apache math3 library, as Matrix did before backends could be chosen; it may be
+ * used to reproduce results calculated that way exactly. Results are calculated by the library and then copied
+ * into the arrays given.
+ *
+ * @author agent
+ */
+public class ApacheMatrixBackend implements MatrixBackend {
+
+    @Override
+    public void multiply(double[][] a, double[][] b, double[][] c) {
+        if (a.length == 0 || b.length == 0) {
+            for (double[] row : c) Arrays.fill(row, 0.0);
+            return;
+        }
+
+        copy(new BlockRealMatrix(a).multiply(new BlockRealMatrix(b)), c);
+    }
+
+    @Override
+    public void invert(double[][] a, double[][] inverse) {
+        if (a.length == 0) return;
+        copy(new LUDecomposition(new Array2DRowRealMatrix(a, false), 1e-9).getSolver().getInverse(), inverse);
+    }
+
+    @Override
+    public void cholesky(double[][] a, double[][] l) {
+        if (a.length == 0) return;
+
+        // The library checks symmetry, so the upper triangle is filled in from the lower.
+        double[][] symmetric = new double[a.length][a.length];
+
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                symmetric[i][j] = a[i][j];
+                symmetric[j][i] = a[i][j];
+            }
+        }
+
+        copy(new CholeskyDecomposition(new Array2DRowRealMatrix(symmetric, false)).getL(), l);
+    }
+
+    private static void copy(RealMatrix from, double[][] to) {
+        for (int i = 0; i < to.length; i++) {
+            for (int j = 0; j < to[i].length; j++) {
+                to[i][j] = from.getEntry(i, j);
+            }
+        }
+    }
+}
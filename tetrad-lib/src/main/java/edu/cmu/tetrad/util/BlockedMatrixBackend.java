@@ -0,0 +1,204 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+import java.util.Arrays;
+
+/**
+ * The default MatrixBackend, in plain Java. Products are calculated a block of the inner dimension and a
+ * block of columns at a time, so that the rows of the right factor being read stay in cache, with inner loops
+ * over contiguous rows that the JIT can unroll. Inverses are calculated in place by Gauss-Jordan elimination
+ * with partial pivoting, so an inverse needs no memory beyond its result; a pivot is taken to be zero if it is
+ * smaller in magnitude than SINGULARITY_THRESHOLD, as for the LU decomposition this replaces.
+ *
+ * @author agent
+ */
+public class BlockedMatrixBackend implements MatrixBackend {
+
+    // Pivots smaller in magnitude than this are taken to signal singularity.
+    public static final double SINGULARITY_THRESHOLD = 1e-9;
+
+    // Diagonal elements of a Cholesky factor must be greater than the square root of this.
+    public static final double POSITIVITY_THRESHOLD = 1e-10;
+
+    // The number of rows of the right factor, and of columns, in a block of a product.
+    private static final int BLOCK_SIZE = 64;
+
+    // The row swaps of an inversion, per thread.
+    private final ThreadLocal<int[]> pivots = ThreadLocal.withInitial(() -> new int[16]);
+
+    @Override
+    public void multiply(double[][] a, double[][] b, double[][] c) {
+        int m = a.length;
+        int inner = b.length;
+        int n = c.length == 0 ? 0 : c[0].length;
+
+        for (int i = 0; i < m; i++) {
+            Arrays.fill(c[i], 0.0);
+        }
+
+        for (int kk = 0; kk < inner; kk += BLOCK_SIZE) {
+            int kEnd = Math.min(kk + BLOCK_SIZE, inner);
+
+            for (int jj = 0; jj < n; jj += BLOCK_SIZE) {
+                int jEnd = Math.min(jj + BLOCK_SIZE, n);
+
+                for (int i = 0; i < m; i++) {
+                    double[] ai = a[i];
+                    double[] ci = c[i];
+
+                    for (int k = kk; k < kEnd; k++) {
+                        double aik = ai[k];
+                        double[] bk = b[k];
+
+                        for (int j = jj; j < jEnd; j++) {
+                            ci[j] += aik * bk[j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void invert(double[][] a, double[][] inverse) {
+        int n = a.length;
+
+        if (inverse != a) {
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(a[i], 0, inverse[i], 0, n);
+            }
+        }
+
+        int[] pivot = pivots(n);
+
+        for (int k = 0; k < n; k++) {
+            int p = k;
+            double max = Math.abs(inverse[k][k]);
+
+            for (int i = k + 1; i < n; i++) {
+                double v = Math.abs(inverse[i][k]);
+
+                if (v > max) {
+                    max = v;
+                    p = i;
+                }
+            }
+
+            if (!(max >= SINGULARITY_THRESHOLD)) {
+                throw new SingularMatrixException();
+            }
+
+            pivot[k] = p;
+
+            if (p != k) {
+                double[] row = inverse[p];
+                inverse[p] = inverse[k];
+                inverse[k] = row;
+            }
+
+            double[] rowK = inverse[k];
+            double scale = 1.0 / rowK[k];
+            rowK[k] = 1.0;
+
+            for (int j = 0; j < n; j++) {
+                rowK[j] *= scale;
+            }
+
+            for (int i = 0; i < n; i++) {
+                if (i == k) continue;
+
+                double[] rowI = inverse[i];
+                double f = rowI[k];
+
+                if (f == 0.0) continue;
+
+                rowI[k] = 0.0;
+
+                for (int j = 0; j < n; j++) {
+                    rowI[j] -= f * rowK[j];
+                }
+            }
+        }
+
+        // Undoes the row swaps as column swaps, in reverse order.
+        for (int k = n - 1; k >= 0; k--) {
+            int p = pivot[k];
+
+            if (p != k) {
+                for (int i = 0; i < n; i++) {
+                    double[] row = inverse[i];
+                    double t = row[k];
+                    row[k] = row[p];
+                    row[p] = t;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void cholesky(double[][] a, double[][] l) {
+        int n = a.length;
+
+        for (int i = 0; i < n; i++) {
+            double[] ai = a[i];
+            double[] li = l[i];
+
+            for (int j = 0; j <= i; j++) {
+                double[] lj = l[j];
+                double s = ai[j];
+
+                for (int k = 0; k < j; k++) {
+                    s -= li[k] * lj[k];
+                }
+
+                if (i == j) {
+                    if (!(s > POSITIVITY_THRESHOLD)) {
+                        throw new NonPositiveDefiniteMatrixException(s, i, POSITIVITY_THRESHOLD);
+                    }
+
+                    li[i] = Math.sqrt(s);
+                } else {
+                    li[j] = s / lj[j];
+                }
+            }
+
+            for (int j = i + 1; j < n; j++) {
+                li[j] = 0.0;
+            }
+        }
+    }
+
+    private int[] pivots(int n) {
+        int[] pivot = pivots.get();
+
+        if (pivot.length < n) {
+            pivot = new int[Math.max(n, 2 * pivot.length)];
+            pivots.set(pivot);
+        }
+
+        return pivot;
+    }
+}
@@ -26,26 +26,34 @@ import org.apache.commons.math3.linear.*;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.Arrays;
 
 /**
  * Wraps the Apache math3 linear algebra library for most uses in Tetrad.
- * Specialized uses will still have to use the library directly. One issue
- * this fixes is that a BlockRealMatrix cannot represent a matrix with zero
- * rows; this uses an Array2DRowRealMatrix to represent that case.
+ * Specialized uses will still have to use the library directly. The data
+ * are kept in an Array2DRowRealMatrix, whose rows are plain arrays, so that
+ * products, inverses and Cholesky factors can be calculated on them directly
+ * by a MatrixBackend, which may be swapped for another (see setBackend). The
+ * methods ending in "Into" write their results into a matrix given by the
+ * caller rather than allocating a new one, for use in inner loops.
  *
  * @author Joseph Ramsey
+ * @see MatrixBackend
  */
 public class Matrix implements TetradSerializable {
     static final long serialVersionUID = 23L;
 
-    private final RealMatrix apacheData;
+    // The backend used by all matrices.
+    private static volatile MatrixBackend backend = defaultBackend();
+
+    private RealMatrix apacheData;
     private int m, n;
 
     public Matrix(double[][] data) {
         if (data.length == 0) {
             this.apacheData = new Array2DRowRealMatrix();
         } else {
-            this.apacheData = new BlockRealMatrix(data);
+            this.apacheData = new Array2DRowRealMatrix(data);
         }
 
         this.m = data.length;
@@ -56,7 +64,7 @@ public class Matrix implements TetradSerializable {
         if (m == 0 || n == 0) {
             this.apacheData = new Array2DRowRealMatrix();
         } else {
-            this.apacheData = new BlockRealMatrix(m, n);
+            this.apacheData = new Array2DRowRealMatrix(m, n);
         }
 
         this.m = m;
@@ -64,7 +72,25 @@ public class Matrix implements TetradSerializable {
     }
 
     public Matrix(Matrix m) {
-        this(m.apacheData.copy().getData());
+        this(m.apacheData.getData());
+    }
+
+    /**
+     * @return the backend used by all matrices.
+     */
+    public static MatrixBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Sets the backend used by all matrices from now on.
+     */
+    public static void setBackend(MatrixBackend backend) {
+        if (backend == null) {
+            throw new NullPointerException("Backend must not be null.");
+        }
+
+        Matrix.backend = backend;
     }
 
     public void assign(Matrix matrix) {
@@ -94,12 +120,39 @@ public class Matrix implements TetradSerializable {
     }
 
     public Matrix getSelection(int[] rows, int[] cols) {
-        if (rows.length == 0 || cols.length == 0) {
-            return new Matrix(rows.length, cols.length);
+        return getSelectionInto(rows, cols, new Matrix(rows.length, cols.length));
+    }
+
+    /**
+     * Copies the submatrix with the given rows and columns into the given matrix, which must have the right
+     * size and must not be this matrix.
+     *
+     * @return the given matrix.
+     */
+    public Matrix getSelectionInto(int[] rows, int[] cols, Matrix result) {
+        checkResult(result, rows.length, cols.length);
+
+        if (result == this) {
+            throw new IllegalArgumentException("The result of a selection must be a different matrix.");
+        }
+
+        if (result.zeroDimension()) {
+            return result;
         }
 
-        RealMatrix subMatrix = apacheData.getSubMatrix(rows, cols);
-        return new Matrix(subMatrix.getData());
+        double[][] data = data();
+        double[][] to = result.data();
+
+        for (int i = 0; i < rows.length; i++) {
+            double[] from = data[rows[i]];
+            double[] row = to[i];
+
+            for (int j = 0; j < cols.length; j++) {
+                row[j] = from[cols[j]];
+            }
+        }
+
+        return result;
     }
 
     public Matrix copy() {
@@ -116,25 +169,59 @@ public class Matrix implements TetradSerializable {
     }
 
     public Matrix times(Matrix m) {
-        if (this.zeroDimension() || m.zeroDimension())
-            return new Matrix(this.rows(), m.columns());
-        else {
-            return new Matrix(apacheData.multiply(m.apacheData).getData());
+        return timesInto(m, new Matrix(this.rows(), m.columns()));
+    }
+
+    /**
+     * Sets the given matrix to this matrix times m. The result must have the right size and must not be this
+     * matrix or m.
+     *
+     * @return the given matrix.
+     */
+    public Matrix timesInto(Matrix m, Matrix result) {
+        checkResult(result, this.rows(), m.columns());
+
+        if (result == this || result == m) {
+            throw new IllegalArgumentException("The result of a product must be a different matrix.");
+        }
+
+        if (result.zeroDimension()) {
+            return result;
+        }
+
+        if (this.zeroDimension() || m.zeroDimension()) {
+            for (double[] row : result.data()) Arrays.fill(row, 0.0);
+            return result;
+        }
+
+        if (this.columns() != m.rows()) {
+            throw new IllegalArgumentException("Mismatched dimensions: " + rows() + " x " + columns()
+                    + " times " + m.rows() + " x " + m.columns());
         }
+
+        backend.multiply(data(), m.data(), result.data());
+        return result;
     }
 
     public Vector times(Vector v) {
-        if (v.size() != apacheData.getColumnDimension()) {
+        if (v.size() != columns()) {
             throw new IllegalArgumentException("Mismatched dimensions.");
         }
 
-        double[] y = new double[apacheData.getRowDimension()];
+        double[] y = new double[rows()];
 
-        for (int i = 0; i < apacheData.getRowDimension(); i++) {
+        if (zeroDimension()) {
+            return new Vector(y);
+        }
+
+        double[][] data = data();
+
+        for (int i = 0; i < y.length; i++) {
+            double[] row = data[i];
             double sum = 0.0;
 
-            for (int j = 0; j < apacheData.getColumnDimension(); j++) {
-                sum += apacheData.getEntry(i, j) * v.get(j);
+            for (int j = 0; j < row.length; j++) {
+                sum += row[j] * v.get(j);
             }
 
             y[i] = sum;
@@ -174,11 +261,46 @@ public class Matrix implements TetradSerializable {
     public Matrix inverse() throws SingularMatrixException {
         if (!isSquare()) throw new IllegalArgumentException("I can only invert square matrices.");
 
+        return inverseInto(new Matrix(rows(), columns()));
+    }
+
+    /**
+     * Sets the given matrix to the inverse of this matrix. The result must have the same size as this matrix
+     * and may be this matrix, which is then inverted in place.
+     *
+     * @return the given matrix.
+     * @throws SingularMatrixException if this matrix is singular, in which case the contents of the result
+     *                                 are undefined.
+     */
+    public Matrix inverseInto(Matrix result) throws SingularMatrixException {
+        if (!isSquare()) throw new IllegalArgumentException("I can only invert square matrices.");
+        checkResult(result, rows(), columns());
+
+        if (rows() == 0) {
+            return result;
+        }
+
+        backend.invert(data(), result.data());
+        return result;
+    }
+
+    /**
+     * Sets the given matrix to the lower triangular Cholesky factor of this symmetric matrix, of which only the
+     * lower triangle is read. The result must have the same size as this matrix and may be this matrix.
+     *
+     * @return the given matrix.
+     * @throws NonPositiveDefiniteMatrixException if this matrix is not positive definite.
+     */
+    public Matrix choleskyInto(Matrix result) throws NonPositiveDefiniteMatrixException {
+        if (!isSquare()) throw new IllegalArgumentException("Only a square matrix has a Cholesky factor.");
+        checkResult(result, rows(), columns());
+
         if (rows() == 0) {
-            return new Matrix(0, 0);
+            return result;
         }
 
-        return new Matrix(new LUDecomposition(apacheData, 1e-9).getSolver().getInverse().getData());
+        backend.cholesky(data(), result.data());
+        return result;
     }
 
     public Matrix symmetricInverse() {
@@ -340,6 +462,38 @@ public class Matrix implements TetradSerializable {
         return rows() == 0 || columns() == 0;
     }
 
+    // The rows of the data, not copied.
+    private double[][] data() {
+        return ((Array2DRowRealMatrix) apacheData).getDataRef();
+    }
+
+    private static void checkResult(Matrix result, int rows, int columns) {
+        if (result.rows() != rows || result.columns() != columns) {
+            throw new IllegalArgumentException("Expected a " + rows + " x " + columns + " matrix for the result "
+                    + "but found " + result.rows() + " x " + result.columns() + ".");
+        }
+    }
+
+    // Called from the static initializer, so a bad backend name gives a warning and the blocked backend is used, rather
+    // than an exception leaving the class unusable.
+    private static MatrixBackend defaultBackend() {
+        String name = System.getProperty("tetrad.matrix.backend", "blocked");
+
+        if ("blocked".equals(name)) {
+            return new BlockedMatrixBackend();
+        } else if ("apache".equals(name)) {
+            return new ApacheMatrixBackend();
+        }
+
+        try {
+            return (MatrixBackend) Class.forName(name).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            System.err.println("Warning: could not make the matrix backend " + name
+                    + "; using the blocked backend instead: " + e);
+            return new BlockedMatrixBackend();
+        }
+    }
+
     public String toString() {
         if (rows() == 0) {
             return "Empty";
@@ -364,6 +518,11 @@ public class Matrix implements TetradSerializable {
 
         if (m == 0) m = apacheData.getRowDimension();
         if (n == 0) n = apacheData.getColumnDimension();
+
+        // Matrices were once kept as BlockRealMatrix.
+        if (!(apacheData instanceof Array2DRowRealMatrix)) {
+            apacheData = new Array2DRowRealMatrix(apacheData.getData(), false);
+        }
     }
 
     /**
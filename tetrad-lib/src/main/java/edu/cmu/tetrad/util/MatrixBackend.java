@@ -0,0 +1,62 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+/**
+ * The linear algebra behind Matrix. Operations read and write row-major double[][] arrays given by the caller,
+ * so that an implementation need not allocate anything for its results; dimensions are taken from the arrays,
+ * which are assumed to be rectangular and of matching sizes (Matrix checks this). Implementations must be safe
+ * to use from several threads at once.
+ * <p>
+ * The backend used by Matrix is set with Matrix.setBackend, or with the system property
+ * "tetrad.matrix.backend", which may be "blocked" (the default, BlockedMatrixBackend), "apache"
+ * (ApacheMatrixBackend) or the name of a class implementing this interface with a public no-argument
+ * constructor. If that class cannot be made, a warning is printed and the blocked backend is used.
+ *
+ * @author agent
+ * @see Matrix
+ */
+public interface MatrixBackend {
+
+    /**
+     * Sets c to a times b. The array c must not be a or b.
+     */
+    void multiply(double[][] a, double[][] b, double[][] c);
+
+    /**
+     * Sets inverse to the inverse of the square matrix a. The array inverse may be a, in which case a is
+     * inverted in place; otherwise a is not changed.
+     *
+     * @throws org.apache.commons.math3.linear.SingularMatrixException if a is (numerically) singular, in which
+     *                                                                 case the contents of inverse are undefined.
+     */
+    void invert(double[][] a, double[][] inverse);
+
+    /**
+     * Sets l to the lower triangular Cholesky factor of the symmetric matrix a, with zeros above the diagonal.
+     * Only the lower triangle of a is read. The array l may be a.
+     *
+     * @throws org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException if a is not positive
+     *                                                                            definite.
+     */
+    void cholesky(double[][] a, double[][] l);
+}
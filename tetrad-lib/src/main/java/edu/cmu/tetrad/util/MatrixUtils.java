@@ -660,9 +660,12 @@ public final class MatrixUtils {
         return true;
     }
 
+    /**
+     * @return the lower triangular Cholesky factor of the given symmetric matrix, found by the current matrix
+     * backend.
+     */
     public static Matrix cholesky(Matrix covar) {
-        RealMatrix L = new org.apache.commons.math3.linear.CholeskyDecomposition(new BlockRealMatrix(covar.toArray())).getL();
-        return new Matrix(L.getData());
+        return covar.choleskyInto(covar.like());
 
 //        DoubleMatrix2D _covar = new DenseDoubleMatrix2D(covar.toArray());
 //        DoubleMatrix2D l = new CholeskyDecomposition(_covar).getL();
@@ -23,6 +23,7 @@ package edu.cmu.tetrad.test;
 
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.Matrix;
 import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.Vector;
 import org.junit.Test;
@@ -272,9 +273,40 @@ public final class TestBoxDataSet {
             fail("Missing row in permutation.");
         }
     }
-}
 
+    @Test
+    public void testOffHeap() {
+        int rows = 50;
+        int cols = 5;
+        List<Node> variables = new LinkedList<>();
+
+        for (int i = 0; i < cols; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
+
+        DataSet dataSet = new BoxDataSet(new DoubleDataBox(rows, cols), variables);
+        RandomUtil randomUtil = RandomUtil.getInstance();
 
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                dataSet.setDouble(i, j, randomUtil.nextDouble());
+            }
+        }
+
+        DataBox dataBox = ((BoxDataSet) dataSet).getDataBox();
+        DataSet offHeap = new BoxDataSet(new OffHeapDataBox(dataBox, false), variables);
+        DataSet offHeapFloats = new BoxDataSet(new OffHeapDataBox(dataBox, true), variables);
 
+        offHeap.setDouble(3, 1, Double.NaN);
+        assertTrue(Double.isNaN(offHeap.getDouble(3, 1)));
+        offHeap.setDouble(3, 1, dataSet.getDouble(3, 1));
 
+        assertEquals(dataSet, offHeap);
+        assertEquals(dataSet.getDouble(7, 2), offHeapFloats.getDouble(7, 2), 1e-6);
 
+        // Covariances are read from the columns of the off-heap box.
+        Matrix expected = new CovarianceMatrix(dataSet).getMatrix();
+        assertTrue(expected.equals(new CovarianceMatrix(offHeap).getMatrix(), 1e-12));
+        assertTrue(expected.equals(new CovarianceMatrix(offHeapFloats).getMatrix(), 1e-6));
+    }
+}
@@ -0,0 +1,111 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests CompactGraph against EdgeListGraph.
+ *
+ * @author agent
+ */
+public final class TestCompactGraph {
+
+    @Test
+    public void testAgreesWithEdgeListGraph() {
+        RandomUtil.getInstance().setSeed(4829283L);
+
+        Graph graph = new EdgeListGraph(GraphUtils.randomGraph(30, 3, 45, 6, 6, 6, false));
+        CompactGraph compact = new CompactGraph(graph);
+
+        assertEquals(graph, compact);
+        assertEquals(graph.getNumEdges(), compact.getNumEdges());
+        assertTrue(Arrays.deepEquals(graph.getEndpointMatrix(), compact.getEndpointMatrix()));
+
+        List<Node> nodes = graph.getNodes();
+        List<Node> z = nodes.subList(0, 4);
+
+        for (Node x : nodes) {
+            assertEquals(new HashSet<>(graph.getAdjacentNodes(x)), new HashSet<>(compact.getAdjacentNodes(x)));
+            assertEquals(new HashSet<>(graph.getParents(x)), new HashSet<>(compact.getParents(x)));
+            assertEquals(new HashSet<>(graph.getChildren(x)), new HashSet<>(compact.getChildren(x)));
+            assertEquals(new HashSet<>(graph.getAncestors(Collections.singletonList(x))),
+                    new HashSet<>(compact.getAncestors(Collections.singletonList(x))));
+
+            for (Node y : nodes) {
+                assertEquals(graph.isAdjacentTo(x, y), compact.isAdjacentTo(x, y));
+                assertEquals(graph.getEdge(x, y), compact.getEdge(x, y));
+                assertEquals(graph.getEndpoint(x, y), compact.getEndpoint(x, y));
+                assertEquals(graph.isAncestorOf(x, y), compact.isAncestorOf(x, y));
+
+                if (x != y && !z.contains(x) && !z.contains(y)) {
+                    assertEquals(graph.isDConnectedTo(x, y, z), compact.isDConnectedTo(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBuilder() {
+        Node x1 = new GraphNode("x1");
+        Node x2 = new GraphNode("x2");
+        Node x3 = new GraphNode("x3");
+
+        CompactGraph.Builder builder = new CompactGraph.Builder().addNode(x1).addNode(x2).addNode(x3);
+        builder.addDirectedEdge(x1, x2).addDirectedEdge(x2, x3);
+
+        // The same edge twice is kept once.
+        builder.addEdge(new Edge(x3, x2, Endpoint.ARROW, Endpoint.TAIL));
+
+        CompactGraph graph = builder.build();
+
+        assertEquals(2, graph.getNumEdges());
+        assertEquals(Collections.singletonList(x2), graph.getParents(x3));
+        assertFalse(graph.existsDirectedCycle());
+        assertTrue(graph.existsDirectedPathFromTo(x1, x3));
+        assertTrue(graph.existsTrek(x1, x3));
+        assertFalse(graph.existsTrek(x1, new GraphNode("x4")));
+
+        int i = graph.getIndex(x2);
+        assertTrue(graph.isAdjacentTo(i, graph.getIndex(x3)));
+        assertArrayEquals(new int[]{graph.getIndex(x1)}, graph.getParents(i));
+
+        builder.addDirectedEdge(x3, x1);
+        CompactGraph cyclic = builder.build();
+
+        assertTrue(cyclic.existsDirectedCycle());
+        assertEquals(Arrays.asList(x1, x2, x3, x1), cyclic.findCycle());
+
+        try {
+            graph.addDirectedEdge(x1, x3);
+            fail("A compact graph should not be modifiable.");
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+    }
+}
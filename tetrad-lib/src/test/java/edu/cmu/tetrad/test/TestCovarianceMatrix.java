@@ -23,13 +23,17 @@ package edu.cmu.tetrad.test;
 
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.stat.correlation.RealCovarianceMatrixForkJoin;
+import edu.cmu.tetrad.util.Matrix;
 import edu.cmu.tetrad.util.RandomUtil;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests CovarianceMatrix.
@@ -84,9 +88,139 @@ public final class TestCovarianceMatrix {
         assertEquals(-.051, c2.getValue(0, 1), 0.001);
         assertEquals(-.609, c3.getValue(0, 1), 0.001);
     }
-}
 
+    /**
+     * Tests tiled and streamed covariances against the direct calculation,
+     * with more variables than fit in a tile and more rows than fit in a batch.
+     */
+    @Test
+    public void testBlockedAndStreaming() {
+        RandomUtil.getInstance().setSeed(4828384834L);
+
+        List<Node> variables = new LinkedList<>();
+
+        for (int i = 0; i < 70; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
+
+        int numRows = 3000;
+        double[][] data = new double[numRows][variables.size()];
+
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < variables.size(); j++) {
+                data[i][j] = 100 + j + RandomUtil.getInstance().nextNormal(0, 1);
+            }
+        }
+
+        double[][] expected = new RealCovarianceMatrixForkJoin(data, 4).compute(true);
+
+        ICovarianceMatrix blocked = new CovarianceMatrix(new BoxDataSet(new DoubleDataBox(data), variables));
+        ICovarianceMatrix streamed = CovarianceMatrix.fromRows(variables, Arrays.asList(data).iterator(), true);
+
+        assertEquals(numRows, streamed.getSampleSize());
+
+        for (int i = 0; i < variables.size(); i++) {
+            for (int j = 0; j < variables.size(); j++) {
+                assertEquals(expected[i][j], blocked.getValue(i, j), 1e-10);
+                assertEquals(expected[i][j], streamed.getValue(i, j), 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testLazy() {
+        RandomUtil.getInstance().setSeed(4828384834L);
+
+        List<Node> variables = new LinkedList<>();
+
+        for (int i = 0; i < 150; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
+
+        int numRows = 500;
+        DataSet dataSet = new BoxDataSet(new DoubleDataBox(numRows, variables.size()), variables);
+
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < variables.size(); j++) {
+                dataSet.setDouble(i, j, 10 + j + RandomUtil.getInstance().nextNormal(0, 1));
+            }
+        }
+
+        ICovarianceMatrix expected = new CovarianceMatrix(dataSet);
+
+        // A small cache, so that columns are dropped and calculated again.
+        LazyCovarianceMatrix lazy = new LazyCovarianceMatrix(dataSet, 5);
+        lazy.setHotThreshold(2);
+
+        LazyCovarianceMatrix offHeap = new LazyCovarianceMatrix(
+                new BoxDataSet(new OffHeapDataBox(((BoxDataSet) dataSet).getDataBox(), false), variables), 5);
+
+        for (int round = 0; round < 3; round++) {
+            for (int k = 0; k < 40; k++) {
+                int[] indices = new int[4];
+
+                for (int t = 0; t < indices.length; t++) {
+                    indices[t] = RandomUtil.getInstance().nextInt(variables.size());
+                }
+
+                Matrix selection = lazy.getSelection(indices, indices);
+
+                for (int r = 0; r < indices.length; r++) {
+                    for (int c = 0; c < indices.length; c++) {
+                        double value = expected.getValue(indices[r], indices[c]);
+                        assertEquals(value, selection.get(r, c), 1e-10);
+                        assertEquals(value, lazy.getValue(indices[r], indices[c]), 1e-10);
+                        assertEquals(value, offHeap.getValue(indices[r], indices[c]), 1e-10);
+                    }
+                }
+            }
+        }
+
+        assertTrue(lazy.getNumColumnsCalculated() > 5);
+        assertTrue(lazy.getNumCachedColumns() <= 5);
+    }
+
+    @Test
+    public void testStatistics() {
+        RandomUtil.getInstance().setSeed(4828384834L);
+
+        List<Node> variables = new LinkedList<>();
+
+        for (int i = 0; i < 10; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
+
+        int numRows = 2500;
+        DataSet dataSet = new BoxDataSet(new DoubleDataBox(numRows, variables.size()), variables);
 
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < variables.size(); j++) {
+                dataSet.setDouble(i, j, 10 * j + RandomUtil.getInstance().nextNormal(0, j + 1));
+            }
+        }
 
+        int[] first = new int[1000];
+        int[] second = new int[numRows - first.length];
+        for (int i = 0; i < first.length; i++) first[i] = i;
+        for (int i = 0; i < second.length; i++) second[i] = first.length + i;
 
+        // The second batch has its columns in the reverse order.
+        int[] reversed = new int[variables.size()];
+        for (int j = 0; j < reversed.length; j++) reversed[j] = reversed.length - 1 - j;
 
+        CovarianceStatistics statistics = new CovarianceStatistics(dataSet.subsetRows(first));
+        CovarianceStatistics other = new CovarianceStatistics(dataSet.subsetRowsColumns(second, reversed));
+        statistics.merge(other);
+
+        ICovarianceMatrix expected = new CovarianceMatrix(dataSet);
+        ICovarianceMatrix merged = statistics.getCovarianceMatrix();
+
+        assertEquals(numRows, merged.getSampleSize());
+
+        for (int i = 0; i < variables.size(); i++) {
+            for (int j = 0; j < variables.size(); j++) {
+                assertEquals(expected.getValue(i, j), merged.getValue(i, j), 1e-8);
+            }
+        }
+    }
+}
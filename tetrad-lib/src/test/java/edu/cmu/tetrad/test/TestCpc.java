@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static junit.framework.TestCase.fail;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -102,6 +103,34 @@ public class TestCpc {
 
     }
 
+    /**
+     * CPC asks some questions twice (adjacency search, then collider orientation); with a caching test the
+     * answers must be the same and the repeats must come from the cache.
+     */
+    @Test
+    public void testCachingTest() {
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Dag trueGraph = new Dag(GraphUtils.randomGraph(nodes, 0, 12,
+                7, 5, 5, false));
+
+        SemIm semIm = new SemIm(new SemPm(trueGraph));
+        DataSet dataSet = semIm.simulateData(1000, false);
+
+        Graph graph1 = new Cpc(new IndTestFisherZ(dataSet, 0.05)).search();
+
+        CachingIndependenceTest test = new CachingIndependenceTest(new IndTestFisherZ(dataSet, 0.05));
+        Graph graph2 = new Cpc(test).search();
+
+        assertEquals(graph1, graph2);
+        assertTrue(test.getHits() > 0);
+        assertEquals(test.getMisses(), test.size());
+    }
+
     /**
      * Presents the input graph to FCI and checks to make sure the output of FCI is equivalent to the given output
      * graph.
@@ -34,10 +34,12 @@ import edu.cmu.tetrad.util.RandomUtil;
 import org.junit.Test;
 
 import java.io.*;
+import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
 
 import static junit.framework.TestCase.fail;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -134,9 +136,102 @@ public class TestDataLoadersRoundtrip {
             fail(e.getMessage());
         }
     }
-}
 
+    @Test
+    public void testColumnarRoundtrip() {
+        setUp();
+
+        try {
+            List<Node> nodes = new ArrayList<>();
+
+            for (int j = 0; j < 5; j++) {
+                nodes.add(new ContinuousVariable("X" + (j + 1)));
+            }
+
+            Dag dag = new Dag(GraphUtils.randomGraph(nodes, 0, 8, 30, 15, 15, false));
+
+            DataSet continuous = new SemIm(new SemPm(dag)).simulateData(10, false);
+            continuous.setDouble(3, 2, Double.NaN);
+
+            DataSet discrete = new MlBayesIm(new BayesPm(dag), MlBayesIm.RANDOM).simulateData(10, false);
+            discrete.setInt(4, 1, DiscreteVariable.MISSING_VALUE);
+
+            DataSet[] dataSets = {continuous, discrete};
 
+            for (int i = 0; i < dataSets.length; i++) {
+                DataSet dataSet = dataSets[i];
 
+                // A separate file for each, since a mapped file should not be overwritten.
+                File file = new File("target/test_data/roundtrip" + i + ".tcd");
+                DataWriter.writeColumnarData(dataSet, file);
 
+                BoxDataSet _dataSet = MappedColumnDataBox.loadDataSet(file);
 
+                assertTrue(_dataSet.getDataBox() instanceof MappedColumnDataBox);
+                assertSameData(dataSet, _dataSet);
+                assertSameData(dataSet, new BoxDataSet(_dataSet));
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            fail(e.getMessage());
+        }
+    }
+
+    // BoxDataSet.equals compares discrete values with ==, so a missing discrete value, which reads as NaN, is never
+    // equal to itself. Here values are compared column by column, NaN being equal to NaN.
+    private void assertSameData(DataSet expected, DataSet actual) {
+        assertEquals(expected.getVariables(), actual.getVariables());
+        assertEquals(expected.getNumRows(), actual.getNumRows());
+
+        for (int j = 0; j < expected.getNumColumns(); j++) {
+            for (int i = 0; i < expected.getNumRows(); i++) {
+                if (expected.getVariable(j) instanceof DiscreteVariable) {
+                    assertEquals(expected.getInt(i, j), actual.getInt(i, j));
+                } else {
+                    assertEquals(0, Double.compare(expected.getDouble(i, j), actual.getDouble(i, j)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCovarianceRoundtrip() {
+        setUp();
+
+        try {
+            List<Node> nodes = new ArrayList<>();
+
+            for (int j = 0; j < 40; j++) {
+                nodes.add(new ContinuousVariable("X" + (j + 1)));
+            }
+
+            Dag dag = new Dag(GraphUtils.randomGraph(nodes, 0, 40, 30, 15, 15, false));
+            DataSet dataSet = new SemIm(new SemPm(dag)).simulateData(100, false);
+            ICovarianceMatrix cov = new CovarianceMatrix(dataSet);
+
+            File textFile = new File("target/test_data/roundtrip_cov.txt");
+            DataWriter.writeCovMatrix(cov, new PrintWriter(new FileWriter(textFile)), new DecimalFormat("0.0000"));
+            ICovarianceMatrix _cov = new DataReader().parseCovariance(textFile);
+
+            assertEquals(cov.getVariableNames(), _cov.getVariableNames());
+            assertEquals(cov.getSampleSize(), _cov.getSampleSize());
+            assertTrue(cov.getMatrix().equals(_cov.getMatrix(), 1e-4));
+
+            File binaryFile = new File("target/test_data/roundtrip_cov.tcv");
+            DataWriter.writeCovMatrixBinary(cov, binaryFile);
+            MappedCovarianceMatrix mapped = MappedCovarianceMatrix.open(binaryFile);
+
+            assertEquals(cov.getVariableNames(), mapped.getVariableNames());
+            assertEquals(cov.getSampleSize(), mapped.getSampleSize());
+            assertTrue(cov.getMatrix().equals(mapped.getMatrix(), 0));
+
+            int[] indices = {7, 2, 31};
+            assertTrue(cov.getSelection(indices, indices).equals(mapped.getSubmatrix(indices).getMatrix(), 0));
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            fail(e.getMessage());
+        }
+    }
+}
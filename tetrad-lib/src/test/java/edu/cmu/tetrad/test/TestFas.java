@@ -22,6 +22,7 @@
 package edu.cmu.tetrad.test;
 
 import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.graph.EdgeListGraph;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
@@ -29,9 +30,10 @@ import edu.cmu.tetrad.search.*;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * @author Joseph Ramsey
@@ -58,9 +60,101 @@ public class TestFas {
 
         assertEquals(fasGraph, GraphUtils.undirectedGraph(pcGraph));
     }
-}
 
+    @Test
+    public void test2() {
+        int numVars = 30;
+        double edgesPerNode = 2.0;
+
+        List<Node> vars = new ArrayList<>();
+
+        for (int i = 0; i < numVars; i++) {
+            vars.add(new ContinuousVariable("X" + i));
+        }
+
+        Graph graph = GraphUtils.randomGraphRandomForwardEdges(vars, 0, (int) (numVars * edgesPerNode), 30, 15, 15, false, true);
+        Graph skeleton = GraphUtils.undirectedGraph(graph);
+
+        IndependenceTest test = new IndTestDSep(graph);
+
+        Fas fas = new Fas(test);
+        assertEquals(skeleton, new EdgeListGraph(fas.search()));
+
+        fas.setStable(true);
+        assertEquals(skeleton, new EdgeListGraph(fas.search()));
+
+        FasConcurrent fasConcurrent = new FasConcurrent(test);
+        assertEquals(skeleton, new EdgeListGraph(fasConcurrent.search()));
 
+        fasConcurrent.setStable(false);
+        assertEquals(skeleton, new EdgeListGraph(fasConcurrent.search()));
 
+        FasConcurrent fasBatched = new FasConcurrent(test);
+        fasBatched.setBatchSize(1);
+        assertEquals(skeleton, new EdgeListGraph(fasBatched.search()));
 
+        long numTests = 0;
 
+        for (FasConcurrent.DepthStats stats : fasBatched.getDepthStats()) {
+            numTests += stats.getNumTests();
+        }
+
+        assertEquals(0, fasBatched.getDepthStats().get(0).getDepth());
+        assertEquals(fasBatched.getNumIndependenceTests(), numTests);
+
+        // With the stable adjustment the sepsets do not depend on how the tests are scheduled.
+        SepsetMap sepsets = fasBatched.getSepsets();
+
+        for (int i = 0; i < 5; i++) {
+            FasConcurrent fas2 = new FasConcurrent(test);
+            fas2.search();
+            assertEquals(sepsets, fas2.getSepsets());
+        }
+    }
+
+    @Test
+    public void testBitSetAdjacencies() {
+        BitSetAdjacencies adjacencies = new BitSetAdjacencies(130);
+
+        adjacencies.addEdge(0, 64);
+        adjacencies.addEdge(0, 129);
+        adjacencies.addEdge(3, 0);
+
+        BitSetAdjacencies snapshot = adjacencies.snapshot();
+
+        assertTrue(adjacencies.removeEdge(129, 0));
+        assertFalse(adjacencies.removeEdge(0, 129));
+
+        assertEquals(2, adjacencies.getDegree(0));
+        assertEquals(3, snapshot.getDegree(0));
+        assertEquals(3, snapshot.getMaxDegree());
+        assertEquals(2, adjacencies.getNumEdges());
+        assertEquals("[3, 64]", Arrays.toString(adjacencies.getAdjacents(0)));
+        assertEquals("[3, 129]", Arrays.toString(snapshot.getAdjacents(0, 64)));
+        assertFalse(adjacencies.isAdjacent(129, 0));
+        assertTrue(snapshot.isAdjacent(129, 0));
+    }
+
+    @Test
+    public void testTestErrorsPropagate() {
+        Graph graph = GraphUtils.randomDag(10, 0, 15, 10, 10, 10, false);
+
+        // A test failing on the first test at depth 0, then one failing on the first test at depth 1.
+        for (final int depth : new int[]{0, 1}) {
+            IndependenceTest test = new IndTestDSep(graph) {
+                public boolean isIndependent(Node x, Node y, List<Node> z) {
+                    if (z.size() == depth) throw new IllegalStateException("Test failed");
+                    return super.isIndependent(x, y, z);
+                }
+            };
+
+            try {
+                new FasConcurrent(test).search();
+                fail("Expected the search to fail at depth " + depth + ".");
+            } catch (IllegalStateException e) {
+                // The pool may rethrow a copy of the exception with the original as its cause.
+                assertTrue(e.getMessage().endsWith("Test failed"));
+            }
+        }
+    }
+}
@@ -27,6 +27,7 @@ import edu.cmu.tetrad.search.*;
 import edu.cmu.tetrad.sem.SemIm;
 import edu.cmu.tetrad.sem.SemPm;
 import edu.cmu.tetrad.util.ChoiceGenerator;
+import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TextTable;
 import org.junit.Test;
 
@@ -224,6 +225,113 @@ public class TestFci {
         search.search();
     }
 
+    @Test
+    public void testPossibleDsepConcurrent() {
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 30; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Dag trueGraph = new Dag(GraphUtils.randomGraph(nodes, 10, 35,
+                7, 5, 5, false));
+
+        IndependenceTest test = new CachingIndependenceTest(new IndTestDSep(trueGraph));
+
+        Graph graph = new Fas(test).search();
+        graph.reorientAllWith(Endpoint.CIRCLE);
+
+        Graph graph1 = new EdgeListGraph(graph);
+        Graph graph2 = new EdgeListGraph(graph);
+
+        PossibleDsepConcurrent possibleDsep = new PossibleDsepConcurrent(test);
+
+        possibleDsep.setParallel(true);
+        SepsetMap sepsets1 = possibleDsep.search(graph1);
+
+        possibleDsep.setParallel(false);
+        SepsetMap sepsets2 = possibleDsep.search(graph2);
+
+        assertEquals(sepsets2, sepsets1);
+        assertEquals(graph2, graph1);
+    }
+
+    @Test
+    public void testPossibleDsepConcurrentFci() {
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 30; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Dag trueGraph = new Dag(GraphUtils.randomGraph(nodes, 10, 35,
+                7, 5, 5, false));
+
+        Graph truePag = new DagToPag2(trueGraph).convert();
+
+        IndependenceTest test = new CachingIndependenceTest(new IndTestDSep(trueGraph));
+
+        Fci fci1 = new Fci(test);
+        fci1.setPossibleDsepConcurrent(false);
+        Graph graph1 = fci1.search();
+
+        Fci fci2 = new Fci(test);
+        fci2.setPossibleDsepConcurrent(true);
+        Graph graph2 = fci2.search();
+
+        assertEquals(truePag, graph1);
+        assertEquals(graph1, graph2);
+    }
+
+    @Test
+    public void testPossibleDsepConcurrentFisherZ() {
+        RandomUtil.getInstance().setSeed(38472934L);
+
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 30; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Dag trueGraph = new Dag(GraphUtils.randomGraph(nodes, 5, 45,
+                7, 5, 5, false));
+
+        DataSet data = new SemIm(new SemPm(trueGraph)).simulateData(1000, false);
+        IndependenceTest test = new IndTestFisherZConcurrent(data, 0.01);
+
+        // A skeleton searched only to depth 1 leaves edges for the possible dsep step to remove.
+        Fas fas = new Fas(test);
+        fas.setDepth(1);
+        Graph graph = fas.search();
+        graph.reorientAllWith(Endpoint.CIRCLE);
+
+        // The sequential loop in Fci.
+        Graph graph1 = new EdgeListGraph(graph);
+        SepsetsPossibleDsep sp = new SepsetsPossibleDsep(graph1, test, new Knowledge2(), -1, -1);
+        SepsetMap sepsets1 = new SepsetMap();
+
+        for (Edge edge : new ArrayList<>(graph1.getEdges())) {
+            List<Node> sepset = sp.getSepset(edge.getNode1(), edge.getNode2());
+
+            if (sepset != null) {
+                graph1.removeEdge(edge);
+                sepsets1.set(edge.getNode1(), edge.getNode2(), sepset);
+            }
+        }
+
+        assertTrue(sepsets1.size() > 0);
+
+        PossibleDsepConcurrent possibleDsep = new PossibleDsepConcurrent(test);
+
+        for (boolean parallel : new boolean[]{true, false}) {
+            Graph graph2 = new EdgeListGraph(graph);
+            possibleDsep.setParallel(parallel);
+
+            assertEquals(sepsets1, possibleDsep.search(graph2));
+            assertEquals(graph1, graph2);
+        }
+    }
+
     /**
      * Presents the input graph to FCI and checks to make sure the output of FCI is equivalent to the given output
      * graph.
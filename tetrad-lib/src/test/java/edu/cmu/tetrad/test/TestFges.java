@@ -46,10 +46,12 @@ import java.io.*;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.TestCase.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
@@ -720,6 +722,161 @@ public class TestFges {
         }
     }
 
+    // A small seeded DAG, for tests that run several searches with a graph score.
+    private static Graph smallDag() {
+        RandomUtil.getInstance().setSeed(492834L);
+        return GraphUtils.randomDag(10, 0, 15, 10, 10, 10, false);
+    }
+
+    @Test
+    public void testSearchTwice() {
+        Graph dag = smallDag();
+        Fges fges = new Fges(new GraphScore(dag));
+        Graph pattern1 = fges.search();
+        Graph pattern2 = fges.search();
+        assertEquals(new Pc(new IndTestDSep(dag)).search(), pattern1);
+        assertEquals(pattern1, pattern2);
+    }
+
+    @Test
+    public void testCheckpointResume() throws IOException {
+        final Graph dag = smallDag();
+        Graph expected = new Fges(new GraphScore(dag)).search();
+
+        File checkpoint = File.createTempFile("fges", ".checkpoint");
+        checkpoint.deleteOnExit();
+
+        // Interrupt a search partway through, after some checkpoints have been written.
+        final AtomicInteger numDiffs = new AtomicInteger();
+
+        Fges interrupted = new Fges(new GraphScore(dag) {
+            public double localScoreDiff(int x, int y, int[] z) {
+                if (numDiffs.incrementAndGet() > 1500) throw new IllegalStateException("Interrupted");
+                return super.localScoreDiff(x, y, z);
+            }
+        });
+
+        interrupted.setCheckpointFile(checkpoint);
+        interrupted.setCheckpointInterval(2);
+
+        try {
+            interrupted.search();
+            fail("Expected the search to be interrupted.");
+        } catch (RuntimeException e) {
+            // Expected.
+        }
+
+        Fges resumed = new Fges(new GraphScore(dag));
+        resumed.setResumeFile(checkpoint);
+        assertEquals(expected, resumed.search());
+        assertTrue(resumed.getNumChanges() > 0);
+
+        // A checkpoint written at the end of a search resumes to the same pattern.
+        Fges complete = new Fges(new GraphScore(dag));
+        complete.setCheckpointFile(checkpoint);
+        assertEquals(expected, complete.search());
+
+        Fges resumedComplete = new Fges(new GraphScore(dag));
+        resumedComplete.setResumeFile(checkpoint);
+        assertEquals(expected, resumedComplete.search());
+        assertEquals(complete.getNumChanges(), resumedComplete.getNumChanges());
+    }
+
+    @Test
+    public void testProgress() {
+        Graph dag = smallDag();
+
+        final List<FgesProgress> started = new ArrayList<>();
+        final List<FgesProgress> reported = new ArrayList<>();
+        final List<FgesProgress> finished = new ArrayList<>();
+
+        Fges fges = new Fges(new GraphScore(dag));
+        fges.setProgressInterval(0);
+
+        fges.addListener(new FgesListener() {
+            public void phaseStarted(FgesProgress progress) {
+                started.add(progress);
+            }
+
+            public void progress(FgesProgress progress) {
+                reported.add(progress);
+            }
+
+            public void phaseFinished(FgesProgress progress) {
+                finished.add(progress);
+            }
+        });
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        fges.addListener(new FgesProgressWriter(new PrintStream(json)));
+
+        Graph pattern = fges.search();
+
+        assertEquals(4, started.size());
+        assertEquals(4, finished.size());
+        assertEquals(fges.getNumChanges(), reported.size());
+
+        FgesProgress last = finished.get(3);
+        assertEquals(3, last.getPhase());
+        assertFalse(last.isForward());
+        assertEquals(pattern.getNumEdges(), last.getNumEdgesAdded() - last.getNumEdgesRemoved());
+        assertTrue(last.getNumInsertEvals() > 0);
+        assertTrue(Double.isNaN(last.getCacheHitRate()));
+        assertEquals(0, last.getBackwardQueueSize());
+
+        String[] lines = json.toString().trim().split("\n");
+        assertEquals(8 + reported.size(), lines.length);
+        assertTrue(lines[0].contains("\"event\":\"phaseStarted\""));
+    }
+
+    @Test
+    public void testDistributedScore() throws IOException {
+        Graph dag = smallDag();
+        GraphScore graphScore = new GraphScore(dag);
+
+        List<ScoreTransport> transports = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            transports.add(new LoopbackScoreTransport(new ScoreWorker(new GraphScore(dag))));
+        }
+
+        DistributedScore score = new DistributedScore(new GraphScore(dag), transports);
+
+        // A handful of candidates, scored in one batch and then one at a time.
+        int n = dag.getNumNodes();
+        int[] x = new int[2 * n];
+        int[] y = new int[2 * n];
+        int[][] z = new int[2 * n][];
+
+        for (int k = 0; k < 2 * n; k++) {
+            x[k] = k % n;
+            y[k] = (k + 1) % n;
+            z[k] = k < n ? new int[0] : new int[]{(k + 2) % n};
+        }
+
+        double[] diffs = score.localScoreDiffs(x, y, z);
+
+        assertEquals(1, score.getNumBatches());
+        assertEquals(2 * n, score.getNumDiffs());
+
+        for (int k = 0; k < 2 * n; k++) {
+            assertEquals(graphScore.localScoreDiff(x[k], y[k], z[k]), diffs[k], 0.0);
+            assertEquals(diffs[k], score.localScoreDiff(x[k], y[k], z[k]), 0.0);
+        }
+
+        assertEquals(1 + 2 * n, score.getNumBatches());
+
+        // Fges sends its candidates to the workers in batches.
+        long numBatches = score.getNumBatches();
+        long numDiffs = score.getNumDiffs();
+
+        Graph pattern = new Fges(score).search();
+        score.close();
+
+        assertEquals(new Pc(new IndTestDSep(dag)).search(), pattern);
+        assertTrue(score.getNumDiffs() - numDiffs > score.getNumBatches() - numBatches);
+    }
+
     //    @Test
     public void testFromData() {
         int numIterations = 1;
@@ -1558,6 +1715,36 @@ public class TestFges {
 
     }
 
+    @Test
+    public void testMeekRulesConcurrent() {
+        RandomUtil.getInstance().setSeed(29384732L);
+
+        for (int i = 0; i < 20; i++) {
+            Graph dag = GraphUtils.randomGraph(60, 0, 50, 6, 6, 6, false);
+
+            Graph expected = new EdgeListGraph(dag);
+            new MeekRules().orientImplied(expected);
+
+            Graph pattern = new EdgeListGraph(dag);
+            new MeekRulesConcurrent().orientImplied(pattern);
+
+            assertEquals(expected, pattern);
+
+            // Reorienting only around a removed edge gives what reorienting everything does.
+            List<Edge> edges = new ArrayList<>(dag.getEdges());
+            Edge edge = edges.get(RandomUtil.getInstance().nextInt(edges.size()));
+            dag.removeEdge(edge);
+            pattern.removeEdge(pattern.getEdge(edge.getNode1(), edge.getNode2()));
+
+            expected = new EdgeListGraph(dag);
+            new MeekRules().orientImplied(expected);
+
+            new MeekRulesConcurrent().orientImplied(pattern, Arrays.asList(edge.getNode1(), edge.getNode2()));
+
+            assertEquals(expected, pattern);
+        }
+    }
+
 //    @Test
     public void test7() {
         for (int i = 0; i < 10; i++) {
@@ -252,6 +252,71 @@ public final class TestGraphUtils {
 
         assertTrue(graph.isDConnectedTo(a, c, Collections.singletonList(b)));
         assertTrue(graph.isDConnectedTo(c, a, Collections.singletonList(b)));
+
+        DSeparationOracle oracle = new DSeparationOracle(graph);
+
+        assertTrue(oracle.isDConnectedTo(a, c, Collections.singletonList(b)));
+        assertTrue(oracle.isDConnectedTo(c, a, Collections.singletonList(b)));
+    }
+
+    @Test
+    public void testDsepOracle() {
+        RandomUtil.getInstance().setSeed(3928384L);
+
+        Graph graph = GraphUtils.randomGraph(25, 3, 35, 5, 5, 5, false);
+        DSeparationOracle oracle = new DSeparationOracle(graph, 4);
+        List<Node> nodes = graph.getNodes();
+
+        for (int i = 0; i < 2000; i++) {
+            Node x = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            Node y = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            List<Node> z = new ArrayList<>();
+
+            for (int k = 0; k < 3; k++) {
+                Node w = nodes.get(RandomUtil.getInstance().nextInt(8));
+                if (w != x && w != y && !z.contains(w)) z.add(w);
+            }
+
+            assertEquals(graph.isDConnectedTo(x, y, z), oracle.isDConnectedTo(x, y, z));
+        }
+    }
+
+    @Test
+    public void testDConnectedNodes() {
+        RandomUtil.getInstance().setSeed(3928384L);
+
+        Graph graph = GraphUtils.randomGraph(20, 2, 30, 5, 5, 5, false);
+        DSeparationOracle oracle = new DSeparationOracle(graph);
+        List<Node> nodes = graph.getNodes();
+
+        for (int i = 0; i < 200; i++) {
+            Node x = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            List<Node> z = new ArrayList<>();
+
+            for (int k = 0; k < 3; k++) {
+                Node w = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+                if (w != x && !z.contains(w)) z.add(w);
+            }
+
+            List<Node> connected = new ArrayList<>();
+
+            for (Node y : nodes) {
+                if (y != x && graph.isDConnectedTo(x, y, z)) connected.add(y);
+            }
+
+            assertEquals(connected, GraphUtils.getDConnectedNodes(x, z, graph));
+            assertEquals(connected, oracle.getDConnectedNodes(x, z));
+        }
+
+        List<Node> measured = new ArrayList<>();
+
+        for (Node node : nodes) {
+            if (node.getNodeType() == NodeType.MEASURED) measured.add(node);
+        }
+
+        for (IndependenceFact fact : oracle.getIndependenceFacts(measured, 2)) {
+            assertTrue(graph.isDSeparatedFrom(fact.getX(), fact.getY(), fact.getZ()));
+        }
     }
 
 
@@ -24,6 +24,8 @@ package edu.cmu.tetrad.test;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.IndTestFisherZConcurrent;
+import edu.cmu.tetrad.search.IndependenceResult;
 import edu.cmu.tetrad.search.IndependenceTest;
 import edu.cmu.tetrad.sem.SemIm;
 import edu.cmu.tetrad.sem.SemPm;
@@ -33,10 +35,14 @@ import edu.cmu.tetrad.util.StatUtils;
 import edu.cmu.tetrad.util.Matrix;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static java.lang.Math.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 
 /**
@@ -181,6 +187,114 @@ public class TestIndTestFisherZ {
             System.out.println(abs(f1) > abs(f2));
         }
     }
-}
 
+    @Test
+    public void testConcurrentAgreesWithSynchronized() {
+        RandomUtil.getInstance().setSeed(29348294L);
+
+        List<Node> vars = new ArrayList<>();
+
+        for (int i = 0; i < 15; i++) {
+            vars.add(new ContinuousVariable("X" + i));
+        }
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 20, 30, 15, 15, false, true);
+        SemIm im = new SemIm(new SemPm(dag));
+        DataSet data = im.simulateData(500, false);
+
+        IndTestFisherZ test1 = new IndTestFisherZ(data, 0.05);
+        IndTestFisherZConcurrent test2 = new IndTestFisherZConcurrent(data, 0.05);
+
+        List<Node> nodes = test1.getVariables();
+
+        // Run the concurrent test from many threads at once; each result must match the synchronized test.
+        boolean allMatch = IntStream.range(0, 2000).parallel().allMatch(t -> {
+            Node x = nodes.get(t % nodes.size());
+            Node y = nodes.get((t / nodes.size() + 1 + t) % nodes.size());
+
+            if (x == y) return true;
+
+            List<Node> z = new ArrayList<>();
+
+            for (int i = 0; i < t % 4; i++) {
+                Node w = nodes.get((7 * t + 3 * i) % nodes.size());
+                if (w != x && w != y && !z.contains(w)) z.add(w);
+            }
+
+            double p1;
+
+            synchronized (test1) {
+                p1 = test1.getPValue(x, y, z);
+            }
+
+            double p2 = test2.checkIndependence(x, y, z).getPValue();
+
+            return Math.abs(p1 - p2) < 1e-8 && test2.getPValue() == p2;
+        });
+
+        assertTrue(allMatch);
+    }
+
+    @Test
+    public void testBatchedAgreesWithSingle() {
+        RandomUtil.getInstance().setSeed(58372945L);
+
+        List<Node> vars = new ArrayList<>();
 
+        for (int i = 0; i < 12; i++) {
+            vars.add(new ContinuousVariable("X" + i));
+        }
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 18, 30, 15, 15, false, true);
+        SemIm im = new SemIm(new SemPm(dag));
+        DataSet data = im.simulateData(500, false);
+
+        IndTestFisherZ test1 = new IndTestFisherZ(data, 0.05);
+        IndTestFisherZConcurrent test2 = new IndTestFisherZConcurrent(data, 0.05);
+
+        List<Node> nodes = test1.getVariables();
+        List<Node> z = nodes.subList(0, 3);
+        List<Node> xs = new ArrayList<>();
+        List<Node> ys = new ArrayList<>();
+
+        for (int i = 3; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                xs.add(nodes.get(i));
+                ys.add(nodes.get(j));
+            }
+        }
+
+        List<IndependenceResult> results1 = test1.checkIndependence(xs, ys, z);
+        List<IndependenceResult> results2 = test2.checkIndependence(xs, ys, z);
+
+        assertEquals(xs.size(), results1.size());
+
+        for (int k = 0; k < xs.size(); k++) {
+            double p = new IndTestFisherZ(data, 0.05).getPValue(xs.get(k), ys.get(k), z);
+            assertEquals(p, results1.get(k).getPValue(), 1e-8);
+            assertEquals(p, results2.get(k).getPValue(), 1e-8);
+            assertEquals(p > 0.05, results1.get(k).isIndependent());
+        }
+    }
+
+    @Test
+    public void testDeterminesIsFreeOfUnits() {
+        RandomUtil.getInstance().setSeed(58372945L);
+
+        Graph dag = GraphUtils.randomDag(5, 0, 5, 10, 10, 10, false);
+        DataSet data = new SemIm(new SemPm(dag)).simulateData(500, false);
+
+        // Variances of about 1e-10, below the singularity threshold for inverses.
+        for (int i = 0; i < data.getNumRows(); i++) {
+            for (int j = 0; j < data.getNumColumns(); j++) {
+                data.setDouble(i, j, 1e-5 * data.getDouble(i, j));
+            }
+        }
+
+        IndTestFisherZ test = new IndTestFisherZ(new LazyCovarianceMatrix(data), 0.05);
+        List<Node> nodes = test.getVariables();
+
+        assertFalse(test.determines(nodes.subList(0, 2), nodes.get(4)));
+        assertFalse(new IndTestFisherZ(data, 0.05).determines(nodes.subList(0, 2), nodes.get(4)));
+    }
+}
@@ -0,0 +1,160 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.CachingScore;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.GraphScore;
+import edu.cmu.tetrad.search.LocalScoreCache;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the local score cache and the caching score wrapper.
+ *
+ * @author agent
+ */
+public class TestLocalScoreCache {
+
+    @Test
+    public void testParentOrderDoesNotMatter() {
+        LocalScoreCache cache = new LocalScoreCache(100, 1);
+
+        cache.add(3, new int[]{5, 1, 7}, 2.5);
+
+        assertEquals(2.5, cache.get(3, new int[]{7, 5, 1}), 0.0);
+        assertEquals(2.5, cache.get(3, new int[]{1, 5, 7}), 0.0);
+        assertTrue(Double.isNaN(cache.get(4, new int[]{1, 5, 7})));
+        assertTrue(Double.isNaN(cache.get(3, new int[]{1, 5})));
+        assertTrue(Double.isNaN(cache.get(3, new int[]{1, 5, 8})));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testBounded() {
+        LocalScoreCache cache = new LocalScoreCache(64, 4);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.add(i, new int[]{i + 1, i + 2}, i);
+        }
+
+        assertTrue(cache.size() <= 64);
+        assertTrue(cache.getEvictions() >= 1000 - 64);
+
+        // Whatever survived eviction must still map to the right score.
+        int found = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            double s = cache.get(i, new int[]{i + 2, i + 1});
+
+            if (!Double.isNaN(s)) {
+                assertEquals(i, s, 0.0);
+                found++;
+            }
+        }
+
+        assertEquals(cache.size(), found);
+    }
+
+    @Test
+    public void testGrows() {
+        LocalScoreCache cache = new LocalScoreCache(10000, 2);
+
+        for (int i = 0; i < 5000; i++) {
+            cache.add(i, new int[]{i + 1}, i);
+        }
+
+        assertEquals(5000, cache.size());
+        assertEquals(0, cache.getEvictions());
+
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, cache.get(i, new int[]{i + 1}), 0.0);
+        }
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertTrue(Double.isNaN(cache.get(0, new int[]{1})));
+    }
+
+    @Test
+    public void testCachingScoreAgreesWithScore() {
+        RandomUtil.getInstance().setSeed(38482838L);
+
+        List<Node> vars = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            vars.add(new ContinuousVariable("X" + i));
+        }
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 10, 30, 15, 15, false, true);
+        SemIm im = new SemIm(new SemPm(dag));
+        DataSet data = im.simulateData(1000, false);
+
+        SemBicScore score = new SemBicScore(data);
+        CachingScore cachingScore = new CachingScore(score);
+        cachingScore.setScoreDiffsCached(true);
+
+        assertEquals(score.localScore(2, 0, 1), cachingScore.localScore(2, 1, 0), 1e-10);
+        assertEquals(score.localScoreDiff(3, 2, new int[]{1}), cachingScore.localScoreDiff(3, 2, new int[]{1}), 1e-10);
+
+        Graph pattern1 = new Fges(score, 1).search();
+        Graph pattern2 = new Fges(cachingScore, 4).search();
+
+        assertEquals(pattern1, pattern2);
+        assertTrue(cachingScore.getCache().getHits() > 0);
+    }
+
+    @Test
+    public void testCachingScorePassesDiffsThrough() {
+        RandomUtil.getInstance().setSeed(38482838L);
+        Graph dag = GraphUtils.randomDag(6, 0, 8, 10, 10, 10, false);
+
+        // GraphScore has no local scores, only differences.
+        GraphScore graphScore = new GraphScore(dag);
+        CachingScore cachingGraphScore = new CachingScore(graphScore);
+        assertEquals(graphScore.localScoreDiff(0, 1, new int[]{2}),
+                cachingGraphScore.localScoreDiff(0, 1, new int[]{2}), 0.0);
+        assertEquals(graphScore.localScoreDiff(0, 1), cachingGraphScore.localScoreDiff(0, 1), 0.0);
+
+        // With the NANDY rule type, SemBicScore's differences are not differences of its local scores.
+        SemBicScore score = new SemBicScore(new SemIm(new SemPm(dag)).simulateData(500, false));
+        score.setRuleType(SemBicScore.RuleType.NANDY);
+        CachingScore cachingScore = new CachingScore(score);
+        assertEquals(score.localScoreDiff(3, 2, new int[]{1}), cachingScore.localScoreDiff(3, 2, new int[]{1}), 1e-10);
+    }
+}
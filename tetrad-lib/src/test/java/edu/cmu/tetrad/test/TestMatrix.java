@@ -21,10 +21,15 @@
 
 package edu.cmu.tetrad.test;
 
+import edu.cmu.tetrad.util.ApacheMatrixBackend;
+import edu.cmu.tetrad.util.BlockedMatrixBackend;
 import edu.cmu.tetrad.util.Matrix;
+import edu.cmu.tetrad.util.MatrixBackend;
+import edu.cmu.tetrad.util.RandomUtil;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests basic functionality of the tetrad.util.Point class.
@@ -44,9 +49,50 @@ public class TestMatrix {
         assertEquals(0, xTx.trace(), 0.01);
         assertEquals(0, xTxInv.trace(), 0.01);
     }
-}
 
+    @Test
+    public void testBackends() {
+        RandomUtil.getInstance().setSeed(4828384834L);
+
+        Matrix a = new Matrix(70, 70);
+        Matrix b = new Matrix(70, 3);
+
+        for (int i = 0; i < a.rows(); i++) {
+            for (int j = 0; j < a.columns(); j++) {
+                a.set(i, j, RandomUtil.getInstance().nextNormal(0, 1));
+            }
+
+            for (int j = 0; j < b.columns(); j++) {
+                b.set(i, j, RandomUtil.getInstance().nextNormal(0, 1));
+            }
+        }
 
+        Matrix spd = a.times(a.transpose()).plus(Matrix.identity(a.rows()));
 
+        MatrixBackend backend = Matrix.getBackend();
 
+        try {
+            Matrix.setBackend(new ApacheMatrixBackend());
+            Matrix product = a.times(b);
+            Matrix inverse = a.inverse();
+            Matrix factor = spd.choleskyInto(spd.like());
 
+            Matrix.setBackend(new BlockedMatrixBackend());
+            assertTrue(product.equals(a.times(b), 1e-10));
+            assertTrue(inverse.equals(a.inverse(), 1e-8));
+            assertTrue(factor.equals(spd.choleskyInto(spd.like()), 1e-10));
+
+            Matrix c = a.copy();
+            c.inverseInto(c);
+            assertTrue(inverse.equals(c, 1e-8));
+            assertTrue(Matrix.identity(a.rows()).equals(a.timesInto(c, a.like()), 1e-8));
+
+            int[] rows = {3, 1, 4};
+            int[] cols = {1, 5};
+            Matrix selection = a.getSelectionInto(rows, cols, new Matrix(3, 2));
+            assertEquals(a.get(4, 5), selection.get(2, 1), 0.0);
+        } finally {
+            Matrix.setBackend(backend);
+        }
+    }
+}
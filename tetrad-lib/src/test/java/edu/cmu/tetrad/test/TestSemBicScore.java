@@ -0,0 +1,82 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the incremental (Cholesky update) mode of SemBicScore against the direct calculation.
+ *
+ * @author agent
+ */
+public class TestSemBicScore {
+
+    @Test
+    public void testIncrementalAgreesWithDirect() {
+        RandomUtil.getInstance().setSeed(29384829L);
+
+        List<Node> vars = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            vars.add(new ContinuousVariable("X" + i));
+        }
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 30, 30, 15, 15, false, true);
+        SemIm im = new SemIm(new SemPm(dag));
+        DataSet data = im.simulateData(1000, false);
+        CovarianceMatrix cov = new CovarianceMatrix(data);
+
+        SemBicScore direct = new SemBicScore(cov);
+        SemBicScore incremental = new SemBicScore(cov);
+        incremental.setIncremental(true);
+
+        int[][] parentSets = {{}, {1}, {1, 2}, {2, 1, 3}, {1, 3}, {3}, {4, 5, 6, 7}, {4, 6, 7}, {7, 6, 4, 8}};
+
+        for (int[] parents : parentSets) {
+            assertEquals(direct.localScore(0, parents), incremental.localScore(0, parents), 1e-8);
+        }
+
+        assertTrue(incremental.getFactorCache().getUpdates() > 0);
+
+        Graph pattern1 = new Fges(direct).search();
+        Graph pattern2 = new Fges(incremental).search();
+
+        assertEquals(pattern1, pattern2);
+    }
+}